@@ -7,6 +7,7 @@ public class OperationError {
 
     public static final String MESSAGE_FAILED_TO_FIND_GROUP = "Failed to find group";
     public static final String MESSAGE_FAILED_TO_FIND_NOTE = "Failed to find note";
+    public static final String MESSAGE_FAILED_TO_FIND_ATTACHMENT = "Failed to find attachment";
     public static final String MESSAGE_FAILED_TO_COMMIT = "Failed to commit";
     public static final String MESSAGE_UNKNOWN_ERROR = "Unknown error";
     public static final String MESSAGE_FILE_ACCESS_IS_FORBIDDEN = "File access is forbidden";
@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import com.ivanovsky.passnotes.data.entity.FileDescriptor;
 import com.ivanovsky.passnotes.data.entity.OperationResult;
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenListener;
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase;
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseKey;
 import com.ivanovsky.passnotes.data.repository.file.FSOptions;
@@ -23,6 +24,7 @@ public interface EncryptedDatabaseRepository {
      * @param key the key to decrypt database
      * @param file file to read database from
      * @param options options for reading file
+     * @param listener receives progress of the opening, can be called from any thread
      * @return database
      */
     @NonNull
@@ -30,7 +32,8 @@ public interface EncryptedDatabaseRepository {
             @NonNull KeepassImplementation type,
             @NonNull EncryptedDatabaseKey key,
             @NonNull FileDescriptor file,
-            @NonNull FSOptions options);
+            @NonNull FSOptions options,
+            @Nullable DatabaseOpenListener listener);
 
     @NonNull
     OperationResult<Boolean> createNew(
@@ -8,6 +8,7 @@ import com.ivanovsky.passnotes.data.repository.encdb.dao.GroupDao;
 import com.ivanovsky.passnotes.data.repository.encdb.dao.NoteDao;
 import com.ivanovsky.passnotes.data.repository.file.FSOptions;
 import java.util.concurrent.locks.ReentrantLock;
+import kotlinx.coroutines.Deferred;
 
 public interface EncryptedDatabase {
 
@@ -38,14 +39,62 @@ public interface EncryptedDatabase {
     @NonNull
     TemplateDao getTemplateDao();
 
+    /**
+     * Index of titles and properties of notes and groups, it is kept up to date with the
+     * content of the database.
+     */
+    @NonNull
+    TrigramSearchIndex getSearchIndex();
+
+    /**
+     * Index of web domains and application ids of notes which is used to find notes
+     * for autofill, it is kept up to date with the content of the database.
+     */
+    @NonNull
+    AutofillIndex getAutofillIndex();
+
+    /**
+     * Version of the database content, it is increased after every modification.
+     * Versions of different instances of the database are not comparable.
+     */
+    long getContentVersion();
+
     // TODO: refactor, change key should not invoke commit
     @NonNull
     OperationResult<Boolean> changeKey(
             @NonNull EncryptedDatabaseKey oldKey, @NonNull EncryptedDatabaseKey newKey);
 
+    /**
+     * Writes the current state of the database, the calling thread is blocked until
+     * the state is written.
+     */
     @NonNull
     OperationResult<Boolean> commit();
 
+    /**
+     * Schedules write of the current state of the database, returned {@link Deferred} is
+     * completed once the state or any newer state is written to the storage. Inside of
+     * a transaction the write is scheduled after the transaction is finished and the
+     * returned value is completed immediately.
+     */
+    @NonNull
+    Deferred<OperationResult<Boolean>> commitAsync();
+
+    /**
+     * Executes DAO operations against a single working copy of the database. Changes are
+     * published and committed once, after the transaction is finished, and are discarded
+     * if the transaction fails. Content watchers receive all changes as a single batch once
+     * the changes are published, a failed write doesn't revert them.
+     */
+    @NonNull
+    <T> OperationResult<T> transaction(@NonNull DatabaseTransaction<T> transaction);
+
     @NonNull
     DatabaseWatcher getWatcher();
+
+    /**
+     * Releases resources of the database, it should be invoked when the database is closed
+     * or replaced by another instance. Commits requested after this call are failed.
+     */
+    void close();
 }
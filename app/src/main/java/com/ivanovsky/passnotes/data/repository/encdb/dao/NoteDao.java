@@ -1,9 +1,12 @@
 package com.ivanovsky.passnotes.data.repository.encdb.dao;
 
 import androidx.annotation.NonNull;
+import com.ivanovsky.passnotes.data.entity.Attachment;
 import com.ivanovsky.passnotes.data.entity.Note;
+import com.ivanovsky.passnotes.data.entity.NoteSummary;
 import com.ivanovsky.passnotes.data.entity.OperationResult;
 import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher;
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,6 +21,12 @@ public interface NoteDao {
     @NonNull
     OperationResult<Note> getNoteByUid(@NonNull UUID noteUid);
 
+    @NonNull
+    OperationResult<List<NoteSummary>> getAllSummaries();
+
+    @NonNull
+    OperationResult<List<NoteSummary>> getSummariesByGroupUid(@NonNull UUID groupUid);
+
     @NonNull
     OperationResult<UUID> insert(@NonNull Note note);
 
@@ -42,4 +51,10 @@ public interface NoteDao {
 
     @NonNull
     OperationResult<List<Note>> getHistory(@NonNull UUID noteUid);
+
+    /**
+     * Opens content of the attachment, returned stream should be closed by the caller
+     */
+    @NonNull
+    OperationResult<InputStream> openAttachment(@NonNull Attachment attachment);
 }
@@ -3,13 +3,19 @@ package com.ivanovsky.passnotes.data.entity
 import android.os.Parcelable
 import kotlinx.parcelize.Parcelize
 
+/**
+ * Handle to the attached file, content is not loaded with the note and should be read
+ * on demand through [com.ivanovsky.passnotes.data.repository.encdb.dao.NoteDao.openAttachment]
+ */
 @Parcelize
 data class Attachment(
     val uid: String,
     val name: String,
     val hash: Hash,
-    val data: ByteArray
+    val size: Long,
+    val source: AttachmentSource
 ) : Parcelable {
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (javaClass != other?.javaClass) return false
@@ -19,7 +25,7 @@ data class Attachment(
         if (uid != other.uid) return false
         if (name != other.name) return false
         if (hash != other.hash) return false
-        if (!data.contentEquals(other.data)) return false
+        if (size != other.size) return false
 
         return true
     }
@@ -28,7 +34,7 @@ data class Attachment(
         var result = uid.hashCode()
         result = 31 * result + name.hashCode()
         result = 31 * result + hash.hashCode()
-        result = 31 * result + data.contentHashCode()
+        result = 31 * result + size.hashCode()
         return result
     }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.ivanovsky.passnotes.data.entity
+
+import android.os.Parcelable
+import kotlinx.parcelize.Parcelize
+
+sealed interface AttachmentSource : Parcelable {
+
+    /**
+     * Content is stored in the binary pool of the opened database and found by [Attachment.hash]
+     */
+    @Parcelize
+    object BinaryPool : AttachmentSource
+
+    /**
+     * Content of the small file that is not added to the database yet
+     */
+    @Parcelize
+    class InMemory(val data: ByteArray) : AttachmentSource
+
+    /**
+     * Content of the large file that is not added to the database yet,
+     * the file is located in the private cache directory
+     */
+    @Parcelize
+    data class CachedFile(val path: String) : AttachmentSource
+}
\ No newline at end of file
@@ -1,6 +1,6 @@
 package com.ivanovsky.passnotes.data.entity
 
 /**
- * Interface for [Group] and [Note]
+ * Interface for [Group], [Note] and [NoteSummary]
  */
 interface EncryptedDatabaseEntry : EncryptedDatabaseElement
\ No newline at end of file
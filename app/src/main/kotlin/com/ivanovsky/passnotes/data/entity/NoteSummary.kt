@@ -0,0 +1,25 @@
+package com.ivanovsky.passnotes.data.entity
+
+import java.util.Date
+import java.util.UUID
+
+/**
+ * List-level projection of [Note], it doesn't contain properties and attachments, only
+ * the fields which are shown in the list of notes. Full [Note] should be loaded by [uid]
+ * when it is required.
+ *
+ * @param description first not empty value of user name, URL or notes
+ * @param isOtpEnabled true if note contains valid OTP property
+ */
+data class NoteSummary(
+    val uid: UUID,
+    val groupUid: UUID,
+    val created: Date,
+    val modified: Date,
+    val expiration: Date?,
+    val title: String,
+    val description: String,
+    val isOtpEnabled: Boolean,
+    val attachmentCount: Int,
+    val tags: List<String> = emptyList()
+) : EncryptedDatabaseEntry
\ No newline at end of file
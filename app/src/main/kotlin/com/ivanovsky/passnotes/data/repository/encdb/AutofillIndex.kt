@@ -0,0 +1,167 @@
+package com.ivanovsky.passnotes.data.repository.encdb
+
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.domain.entity.PropertyFilter
+import com.ivanovsky.passnotes.util.UrlUtils
+import java.util.UUID
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * Index from web domains and Android application ids to uids of notes. Domains are taken from
+ * URL properties, application ids are taken from autofill properties.
+ */
+class AutofillIndex {
+
+    private val lock = ReentrantReadWriteLock()
+    private val domainPostings = HashMap<String, MutableSet<UUID>>()
+    private val applicationIdPostings = HashMap<String, MutableSet<UUID>>()
+    private val entryKeys = HashMap<UUID, Keys>()
+
+    val size: Int
+        get() = lock.read { entryKeys.size }
+
+    fun putNote(note: Note) {
+        put(note.uid, note.properties)
+    }
+
+    fun remove(uid: UUID) {
+        lock.write {
+            removeInternal(uid)
+        }
+    }
+
+    fun clear() {
+        lock.write {
+            domainPostings.clear()
+            applicationIdPostings.clear()
+            entryKeys.clear()
+        }
+    }
+
+    /**
+     * @return uids of notes with [applicationId], in the order they were indexed
+     */
+    fun findByApplicationId(applicationId: String): List<UUID> {
+        val key = applicationId.trim()
+        if (key.isEmpty()) {
+            return emptyList()
+        }
+
+        return lock.read {
+            applicationIdPostings[key]?.toList() ?: emptyList()
+        }
+    }
+
+    /**
+     * @param domain host returned by [UrlUtils.extractHost]
+     * @return uids of notes with [domain], in the order they were indexed
+     */
+    fun findByDomain(domain: String): List<UUID> {
+        return lock.read {
+            domainPostings[domain]?.toList() ?: emptyList()
+        }
+    }
+
+    /**
+     * @return uids of notes which domains contain [text]
+     */
+    fun findByDomainSubstring(text: String): List<UUID> {
+        if (text.isEmpty()) {
+            return emptyList()
+        }
+
+        return lock.read {
+            val result = LinkedHashSet<UUID>()
+            for ((domain, uids) in domainPostings) {
+                if (domain.contains(text)) {
+                    result.addAll(uids)
+                }
+            }
+            result.toList()
+        }
+    }
+
+    /**
+     * Starts listening to changes of [noteWatcher]
+     */
+    fun subscribe(noteWatcher: ContentWatcher<Note>) {
+        noteWatcher.subscribe(
+            object : ContentWatcher.OnContentChangeListener<Note> {
+                override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+                    for (change in changes) {
+                        when (change) {
+                            is ContentWatcher.Change.Inserted -> putNote(change.entry)
+                            is ContentWatcher.Change.Changed -> putNote(change.newEntry)
+                            is ContentWatcher.Change.Removed -> remove(change.entry.uid)
+                        }
+                    }
+                }
+            }
+        )
+    }
+
+    private fun put(uid: UUID, properties: List<Property>) {
+        val domains = URL_FILTER.apply(properties)
+            .mapNotNull { property -> property.value?.let { UrlUtils.extractHost(it) } }
+            .toSet()
+
+        val applicationIds = APPLICATION_ID_FILTER.apply(properties)
+            .mapNotNull { property -> property.value?.trim() }
+            .filter { applicationId -> applicationId.isNotEmpty() }
+            .toSet()
+
+        lock.write {
+            removeInternal(uid)
+
+            if (domains.isEmpty() && applicationIds.isEmpty()) {
+                return@write
+            }
+
+            entryKeys[uid] = Keys(domains, applicationIds)
+            for (domain in domains) {
+                domainPostings.getOrPut(domain) { LinkedHashSet() }.add(uid)
+            }
+            for (applicationId in applicationIds) {
+                applicationIdPostings.getOrPut(applicationId) { LinkedHashSet() }.add(uid)
+            }
+        }
+    }
+
+    private fun removeInternal(uid: UUID) {
+        val keys = entryKeys.remove(uid) ?: return
+
+        domainPostings.removeUid(keys.domains, uid)
+        applicationIdPostings.removeUid(keys.applicationIds, uid)
+    }
+
+    private fun HashMap<String, MutableSet<UUID>>.removeUid(keys: Set<String>, uid: UUID) {
+        for (key in keys) {
+            val uids = this[key] ?: continue
+            uids.remove(uid)
+            if (uids.isEmpty()) {
+                remove(key)
+            }
+        }
+    }
+
+    private data class Keys(
+        val domains: Set<String>,
+        val applicationIds: Set<String>
+    )
+
+    companion object {
+
+        private val URL_FILTER = PropertyFilter.Builder()
+            .filterUrl()
+            .notEmpty()
+            .build()
+
+        private val APPLICATION_ID_FILTER = PropertyFilter.Builder()
+            .filterAutofillAppId()
+            .notEmpty()
+            .build()
+    }
+}
\ No newline at end of file
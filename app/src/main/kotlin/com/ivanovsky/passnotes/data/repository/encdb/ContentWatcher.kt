@@ -6,29 +6,45 @@ import java.util.concurrent.CopyOnWriteArrayList
 class ContentWatcher<T : EncryptedDatabaseEntry> {
 
     private val listeners: MutableList<EntryListener<T>> = CopyOnWriteArrayList()
+    private val batch = ThreadLocal<MutableList<Change<T>>?>()
 
     fun notifyEntryInserted(entry: T) {
-        listeners.filterIsInstance<OnEntryCreateListener<T>>()
-            .forEach { it.onEntryCreated(entry) }
+        notify(listOf(Change.Inserted(entry)))
     }
 
     fun notifyEntriesInserted(entries: List<T>) {
-        listeners.filterIsInstance<OnEntryCreateListener<T>>()
-            .forEach {
-                for (entry in entries) {
-                    it.onEntryCreated(entry)
-                }
-            }
+        notify(entries.map { entry -> Change.Inserted(entry) })
     }
 
     fun notifyEntryRemoved(entry: T) {
-        listeners.filterIsInstance<OnEntryRemoveListener<T>>()
-            .forEach { it.onEntryRemoved(entry) }
+        notify(listOf(Change.Removed(entry)))
+    }
+
+    fun notifyEntriesRemoved(entries: List<T>) {
+        notify(entries.map { entry -> Change.Removed(entry) })
     }
 
     fun notifyEntryChanged(oldEntry: T, newEntry: T) {
-        listeners.filterIsInstance<OnEntryChangeListener<T>>()
-            .forEach { it.onEntryChanged(oldEntry, newEntry) }
+        notify(listOf(Change.Changed(oldEntry, newEntry)))
+    }
+
+    /**
+     * Notifications from the current thread are collected until [finishBatch] is called
+     */
+    fun beginBatch() {
+        if (batch.get() == null) {
+            batch.set(mutableListOf())
+        }
+    }
+
+    fun finishBatch() {
+        val changes = batch.get() ?: return
+        batch.remove()
+        dispatch(changes)
+    }
+
+    fun cancelBatch() {
+        batch.remove()
     }
 
     fun subscribe(listener: EntryListener<T>) {
@@ -41,6 +57,52 @@ class ContentWatcher<T : EncryptedDatabaseEntry> {
         listeners.remove(listener)
     }
 
+    private fun notify(changes: List<Change<T>>) {
+        val pendingChanges = batch.get()
+        if (pendingChanges != null) {
+            pendingChanges.addAll(changes)
+        } else {
+            dispatch(changes)
+        }
+    }
+
+    private fun dispatch(changes: List<Change<T>>) {
+        if (changes.isEmpty()) {
+            return
+        }
+
+        listeners.filterIsInstance<OnContentChangeListener<T>>()
+            .forEach { it.onContentChanged(changes) }
+
+        for (change in changes) {
+            when (change) {
+                is Change.Inserted -> {
+                    listeners.filterIsInstance<OnEntryCreateListener<T>>()
+                        .forEach { it.onEntryCreated(change.entry) }
+                }
+
+                is Change.Removed -> {
+                    listeners.filterIsInstance<OnEntryRemoveListener<T>>()
+                        .forEach { it.onEntryRemoved(change.entry) }
+                }
+
+                is Change.Changed -> {
+                    listeners.filterIsInstance<OnEntryChangeListener<T>>()
+                        .forEach { it.onEntryChanged(change.oldEntry, change.newEntry) }
+                }
+            }
+        }
+    }
+
+    sealed interface Change<T : EncryptedDatabaseEntry> {
+        data class Inserted<T : EncryptedDatabaseEntry>(val entry: T) : Change<T>
+        data class Removed<T : EncryptedDatabaseEntry>(val entry: T) : Change<T>
+        data class Changed<T : EncryptedDatabaseEntry>(
+            val oldEntry: T,
+            val newEntry: T
+        ) : Change<T>
+    }
+
     interface EntryListener<T : EncryptedDatabaseEntry>
 
     interface OnEntryCreateListener<T : EncryptedDatabaseEntry> : EntryListener<T> {
@@ -54,4 +116,11 @@ class ContentWatcher<T : EncryptedDatabaseEntry> {
     interface OnEntryChangeListener<T : EncryptedDatabaseEntry> : EntryListener<T> {
         fun onEntryChanged(oldEntry: T, newEntry: T)
     }
+
+    /**
+     * Receives all changes made by a single operation or transaction at once
+     */
+    interface OnContentChangeListener<T : EncryptedDatabaseEntry> : EntryListener<T> {
+        fun onContentChanged(changes: List<Change<T>>)
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.ivanovsky.passnotes.data.repository.encdb
+
+/**
+ * Receives progress of the database opening, some of the stages are executed in parallel,
+ * so methods can be called from different threads
+ */
+interface DatabaseOpenListener {
+    fun onStageStarted(stage: DatabaseOpenStage)
+    fun onStageFinished(stage: DatabaseOpenStage, durationInMillis: Long)
+}
\ No newline at end of file
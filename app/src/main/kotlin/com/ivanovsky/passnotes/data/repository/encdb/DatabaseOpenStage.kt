@@ -0,0 +1,30 @@
+package com.ivanovsky.passnotes.data.repository.encdb
+
+enum class DatabaseOpenStage {
+
+    /**
+     * Opening of the database file in the file system, content of the file is read
+     * during [DECRYPT]
+     */
+    FETCH,
+
+    /**
+     * Reading of the key file and preparing of the credentials
+     */
+    PREPARE_KEY,
+
+    /**
+     * Reading of the database file, key derivation, decryption and parsing of
+     * the database content
+     */
+    DECRYPT,
+
+    BUILD_INDEX,
+    SCAN_TEMPLATES,
+    BUILD_SEARCH_INDEX,
+
+    /**
+     * Notification of the observers about opened database
+     */
+    NOTIFY
+}
\ No newline at end of file
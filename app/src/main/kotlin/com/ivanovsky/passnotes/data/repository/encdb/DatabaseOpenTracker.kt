@@ -0,0 +1,49 @@
+package com.ivanovsky.passnotes.data.repository.encdb
+
+import java.util.EnumMap
+import timber.log.Timber
+
+/**
+ * Measures duration of every [DatabaseOpenStage] and forwards progress to [listener]
+ */
+class DatabaseOpenTracker(
+    private val listener: DatabaseOpenListener?
+) {
+
+    private val durations = EnumMap<DatabaseOpenStage, Long>(DatabaseOpenStage::class.java)
+
+    fun <T> measure(stage: DatabaseOpenStage, block: () -> T): T {
+        listener?.onStageStarted(stage)
+
+        val start = System.currentTimeMillis()
+        try {
+            return block.invoke()
+        } finally {
+            val duration = System.currentTimeMillis() - start
+
+            synchronized(durations) {
+                durations[stage] = duration
+            }
+
+            listener?.onStageFinished(stage, duration)
+        }
+    }
+
+    fun getDurations(): Map<DatabaseOpenStage, Long> {
+        return synchronized(durations) {
+            EnumMap(durations)
+        }
+    }
+
+    fun logDurations() {
+        val durations = getDurations()
+        if (durations.isEmpty()) {
+            return
+        }
+
+        Timber.d(
+            "Database opened in %s",
+            durations.entries.joinToString { (stage, duration) -> "$stage=${duration}ms" }
+        )
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.ivanovsky.passnotes.data.repository.encdb
+
+import com.ivanovsky.passnotes.data.entity.OperationResult
+
+/**
+ * Group of DAO operations that are applied to the database as a single change,
+ * see [EncryptedDatabase.transaction]
+ */
+fun interface DatabaseTransaction<T> {
+    fun execute(db: EncryptedDatabase): OperationResult<T>
+}
\ No newline at end of file
@@ -0,0 +1,241 @@
+package com.ivanovsky.passnotes.data.repository.encdb
+
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.domain.entity.PropertyMap
+import java.util.EnumMap
+import java.util.UUID
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * Inverted index from trigrams of titles and property names/values to uids of
+ * notes and groups. It is used to narrow down candidates for case insensitive substring search,
+ * result of [findCandidates] is a superset of matched entries and should be verified.
+ * Values of properties with type from [INDEXED_PROPERTY_TYPES] are also indexed separately,
+ * to search by a single field.
+ */
+class TrigramSearchIndex {
+
+    private val lock = ReentrantReadWriteLock()
+    private val postings = HashMap<Long, MutableSet<UUID>>()
+    private val entryTrigrams = HashMap<UUID, Set<Long>>()
+
+    val size: Int
+        get() = lock.read { entryTrigrams.size }
+
+    fun putNote(note: Note) {
+        put(
+            uid = note.uid,
+            texts = collectTexts(note.title, note.properties),
+            fieldTexts = collectFieldTexts(note.properties)
+        )
+    }
+
+    fun putGroup(group: Group) {
+        putGroup(group.uid, group.title)
+    }
+
+    fun putGroup(uid: UUID, title: String) {
+        put(
+            uid = uid,
+            texts = listOf(title),
+            fieldTexts = mapOf(PropertyType.TITLE to title)
+        )
+    }
+
+    fun remove(uid: UUID) {
+        lock.write {
+            removeInternal(uid)
+        }
+    }
+
+    fun clear() {
+        lock.write {
+            postings.clear()
+            entryTrigrams.clear()
+        }
+    }
+
+    /**
+     * @param field if specified only values of properties with this type are looked up,
+     * it should be one of [INDEXED_PROPERTY_TYPES]
+     * @return uids of entries which contain all trigrams of [query] or null if [query] is too
+     * short to be looked up in the index
+     */
+    fun findCandidates(query: String, field: PropertyType? = null): Set<UUID>? {
+        require(field == null || field in INDEXED_PROPERTY_TYPES)
+
+        val queryTrigrams = extractTrigrams(query, field)
+        if (queryTrigrams.isEmpty()) {
+            return null
+        }
+
+        return lock.read {
+            val lists = queryTrigrams
+                .map { trigram -> postings[trigram] ?: return@read emptySet() }
+                .sortedBy { it.size }
+
+            val smallest = lists.first()
+            val others = lists.subList(1, lists.size)
+
+            smallest.filterTo(HashSet()) { uid -> others.all { list -> uid in list } }
+        }
+    }
+
+    /**
+     * Starts listening to changes of [noteWatcher] and [groupWatcher]
+     */
+    fun subscribe(
+        noteWatcher: ContentWatcher<Note>,
+        groupWatcher: ContentWatcher<Group>
+    ) {
+        noteWatcher.subscribe(
+            object : ContentWatcher.OnContentChangeListener<Note> {
+                override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+                    for (change in changes) {
+                        when (change) {
+                            is ContentWatcher.Change.Inserted -> putNote(change.entry)
+                            is ContentWatcher.Change.Changed -> putNote(change.newEntry)
+                            is ContentWatcher.Change.Removed -> remove(change.entry.uid)
+                        }
+                    }
+                }
+            }
+        )
+
+        groupWatcher.subscribe(
+            object : ContentWatcher.OnContentChangeListener<Group> {
+                override fun onContentChanged(changes: List<ContentWatcher.Change<Group>>) {
+                    for (change in changes) {
+                        when (change) {
+                            is ContentWatcher.Change.Inserted -> putGroup(change.entry)
+                            is ContentWatcher.Change.Changed -> putGroup(change.newEntry)
+                            is ContentWatcher.Change.Removed -> remove(change.entry.uid)
+                        }
+                    }
+                }
+            }
+        )
+    }
+
+    private fun put(
+        uid: UUID,
+        texts: List<String>,
+        fieldTexts: Map<PropertyType, String>
+    ) {
+        val trigrams = HashSet<Long>()
+        for (text in texts) {
+            trigrams.addAll(extractTrigrams(text))
+        }
+        for ((field, text) in fieldTexts) {
+            trigrams.addAll(extractTrigrams(text, field))
+        }
+
+        lock.write {
+            removeInternal(uid)
+
+            entryTrigrams[uid] = trigrams
+            for (trigram in trigrams) {
+                postings.getOrPut(trigram) { HashSet() }.add(uid)
+            }
+        }
+    }
+
+    private fun removeInternal(uid: UUID) {
+        val trigrams = entryTrigrams.remove(uid) ?: return
+
+        for (trigram in trigrams) {
+            val list = postings[trigram] ?: continue
+            list.remove(uid)
+            if (list.isEmpty()) {
+                postings.remove(trigram)
+            }
+        }
+    }
+
+    private fun collectTexts(title: String, properties: List<Property>): List<String> {
+        val result = ArrayList<String>(properties.size * 2 + 1)
+        result.add(title)
+        for (property in properties) {
+            if (!property.name.isNullOrEmpty()) {
+                result.add(property.name)
+            }
+            if (!property.value.isNullOrEmpty()) {
+                result.add(property.value)
+            }
+        }
+        return result
+    }
+
+    private fun collectFieldTexts(properties: List<Property>): Map<PropertyType, String> {
+        val propertyMap = PropertyMap.mapByType(properties)
+
+        val result = EnumMap<PropertyType, String>(PropertyType::class.java)
+        for (type in INDEXED_PROPERTY_TYPES) {
+            val value = propertyMap.get(type)?.value
+            if (!value.isNullOrEmpty()) {
+                result[type] = value
+            }
+        }
+
+        return result
+    }
+
+    companion object {
+
+        val INDEXED_PROPERTY_TYPES = setOf(
+            PropertyType.TITLE,
+            PropertyType.USER_NAME,
+            PropertyType.URL,
+            PropertyType.NOTES
+        )
+
+        private const val TRIGRAM_LENGTH = 3
+        private const val CHAR_BITS = 16
+
+        /**
+         * @param field type of the property which contains [text], trigrams of different
+         * fields are not equal to each other and to the trigrams without field
+         */
+        fun extractTrigrams(text: String, field: PropertyType? = null): Set<Long> {
+            if (text.length < TRIGRAM_LENGTH) {
+                return emptySet()
+            }
+
+            val fieldBits = if (field != null) {
+                (field.ordinal + 1).toLong() shl (CHAR_BITS * TRIGRAM_LENGTH)
+            } else {
+                0L
+            }
+
+            val result = HashSet<Long>()
+            var first = normalize(text[0])
+            var second = normalize(text[1])
+            for (idx in TRIGRAM_LENGTH - 1 until text.length) {
+                val third = normalize(text[idx])
+                result.add(
+                    fieldBits or
+                        (first.code.toLong() shl (CHAR_BITS * 2)) or
+                        (second.code.toLong() shl CHAR_BITS) or
+                        third.code.toLong()
+                )
+                first = second
+                second = third
+            }
+
+            return result
+        }
+
+        /**
+         * Maps characters that are equal according to [Char.equals] with ignoreCase = true
+         * to the same character, the same way as [String.contains] compares them
+         */
+        private fun normalize(char: Char): Char {
+            return char.uppercaseChar().lowercaseChar()
+        }
+    }
+}
\ No newline at end of file
@@ -6,6 +6,9 @@ import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_GET_
 import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
 import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.repository.EncryptedDatabaseRepository
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenListener
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenStage
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenTracker
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseKey
 import com.ivanovsky.passnotes.data.repository.file.FSOptions
@@ -15,6 +18,7 @@ import com.ivanovsky.passnotes.data.repository.file.FileSystemResolver
 import com.ivanovsky.passnotes.data.repository.file.OnConflictStrategy
 import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase
 import com.ivanovsky.passnotes.domain.DatabaseLockInteractor
+import com.ivanovsky.passnotes.domain.FileHelper
 import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.extensions.mapWithObject
@@ -27,7 +31,8 @@ class KeepassDatabaseRepository(
     private val fileSystemResolver: FileSystemResolver,
     private val lockInteractor: DatabaseLockInteractor,
     private val syncStatusProvider: DatabaseSyncStateProvider,
-    private val observerBus: ObserverBus
+    private val observerBus: ObserverBus,
+    private val fileHelper: FileHelper
 ) : EncryptedDatabaseRepository {
 
     private val database = AtomicReference<DatabaseReference>()
@@ -41,31 +46,31 @@ class KeepassDatabaseRepository(
         type: KeepassImplementation,
         key: EncryptedDatabaseKey,
         file: FileDescriptor,
-        options: FSOptions
+        options: FSOptions,
+        listener: DatabaseOpenListener?
     ): OperationResult<EncryptedDatabase> {
         val fsProvider = fileSystemResolver.resolveProvider(file.fsAuthority)
+        val tracker = DatabaseOpenTracker(listener)
 
         val openDbResult = lock.withLock {
             if (isOpened) {
                 close()
             }
 
-            val openFileResult = fsProvider.openFileForRead(
-                file,
-                OnConflictStrategy.CANCEL,
-                options
-            )
-            if (openFileResult.isFailed) {
-                return@withLock openFileResult.takeError()
-            }
-
             val openResult = openDatabase(
-                type,
-                fileSystemResolver,
-                options,
-                file,
-                openFileResult,
-                key
+                type = type,
+                fsResolver = fileSystemResolver,
+                fsOptions = options,
+                file = file,
+                contentProvider = {
+                    fsProvider.openFileForRead(
+                        file,
+                        OnConflictStrategy.CANCEL,
+                        options
+                    )
+                },
+                key = key,
+                tracker = tracker
             )
             if (openResult.isFailed) {
                 return@withLock openResult.takeError()
@@ -77,7 +82,10 @@ class KeepassDatabaseRepository(
         }
 
         if (openDbResult.isSucceededOrDeferred) {
-            onDatabaseOpened(openDbResult.getOrThrow(), openDbResult)
+            tracker.measure(DatabaseOpenStage.NOTIFY) {
+                onDatabaseOpened(openDbResult.getOrThrow(), openDbResult)
+            }
+            tracker.logDurations()
         }
 
         return openDbResult
@@ -97,22 +105,20 @@ class KeepassDatabaseRepository(
 
         val reloadedFile = reloadFileResult.getOrThrow()
 
-        val openFileResult = fsProvider.openFileForRead(
-            reloadedFile,
-            OnConflictStrategy.CANCEL,
-            READ_ONLY
-        )
-        if (openFileResult.isFailed) {
-            return openFileResult.mapError()
-        }
-
         return openDatabase(
-            type,
-            fileSystemResolver,
-            READ_ONLY,
-            reloadedFile,
-            openFileResult,
-            key
+            type = type,
+            fsResolver = fileSystemResolver,
+            fsOptions = READ_ONLY,
+            file = reloadedFile,
+            contentProvider = {
+                fsProvider.openFileForRead(
+                    reloadedFile,
+                    OnConflictStrategy.CANCEL,
+                    READ_ONLY
+                )
+            },
+            key = key,
+            tracker = DatabaseOpenTracker(listener = null)
         )
     }
 
@@ -129,22 +135,20 @@ class KeepassDatabaseRepository(
             val file = oldDb.file
             val key = oldDb.key
 
-            val openFileResult = fsProvider.openFileForRead(
-                file,
-                OnConflictStrategy.CANCEL,
-                fsOptions
-            )
-            if (openFileResult.isFailed) {
-                return@withLock openFileResult.takeError()
-            }
-
             val openResult = openDatabase(
                 type = type,
                 fsResolver = fileSystemResolver,
                 fsOptions = fsOptions,
                 file = file,
-                input = openFileResult,
-                key = key
+                contentProvider = {
+                    fsProvider.openFileForRead(
+                        file,
+                        OnConflictStrategy.CANCEL,
+                        fsOptions
+                    )
+                },
+                key = key,
+                tracker = DatabaseOpenTracker(listener = null)
             )
             if (openResult.isFailed) {
                 return@withLock openResult.takeError()
@@ -152,6 +156,7 @@ class KeepassDatabaseRepository(
 
             val db = openResult.obj
             database.set(DatabaseReference(type, db))
+            oldDb.close()
             openResult.takeStatusWith(db)
         }
 
@@ -190,6 +195,7 @@ class KeepassDatabaseRepository(
                 database.get().database
                     .apply {
                         this.watcher.unsubscribe(syncStatusProvider)
+                        this.close()
                     }
 
                 database.set(null)
@@ -213,6 +219,7 @@ class KeepassDatabaseRepository(
     private fun onDatabaseClosed() {
         lockInteractor.onDatabaseClosed()
         syncStatusProvider.onDatabaseClosed()
+        fileHelper.removeCachedAttachments()
         observerBus.notifyDatabaseClosed()
     }
 
@@ -221,16 +228,18 @@ class KeepassDatabaseRepository(
         fsResolver: FileSystemResolver,
         fsOptions: FSOptions,
         file: FileDescriptor,
-        input: OperationResult<InputStream>,
-        key: EncryptedDatabaseKey
+        contentProvider: () -> OperationResult<InputStream>,
+        key: EncryptedDatabaseKey,
+        tracker: DatabaseOpenTracker
     ): OperationResult<EncryptedDatabase> {
         val openResult = when (type) {
             KeepassImplementation.KOTPASS -> KotpassDatabase.open(
-                fsResolver,
-                fsOptions,
-                file,
-                input,
-                key
+                fsResolver = fsResolver,
+                fsOptions = fsOptions,
+                file = file,
+                contentProvider = contentProvider,
+                key = key,
+                tracker = tracker
             )
         }
 
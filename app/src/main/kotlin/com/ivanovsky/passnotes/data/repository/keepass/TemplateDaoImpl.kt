@@ -16,9 +16,14 @@ import com.ivanovsky.passnotes.data.repository.keepass.TemplateConst.TEMPLATE_GR
 import java.util.UUID
 import java.util.concurrent.atomic.AtomicReference
 
+/**
+ * @param initialTemplates templates found before the database was created, if not specified
+ * they are searched in the constructor
+ */
 class TemplateDaoImpl(
     private val groupDao: GroupDao,
-    private val noteDao: NoteDao
+    private val noteDao: NoteDao,
+    initialTemplates: Templates? = null
 ) : TemplateDao {
 
     private val templateGroupUidRef = AtomicReference<UUID>()
@@ -26,31 +31,34 @@ class TemplateDaoImpl(
 
     init {
         // TODO: unsubscribe may be called after db is closed
-        noteDao.contentWatcher.subscribe(object : ContentWatcher.OnEntryChangeListener<Note> {
-            override fun onEntryChanged(oldEntry: Note, newEntry: Note) {
-                checkGroupUid(newEntry.groupUid)
+        noteDao.contentWatcher.subscribe(object : ContentWatcher.OnContentChangeListener<Note> {
+            override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+                val groupUids = changes.map { change ->
+                    when (change) {
+                        is ContentWatcher.Change.Inserted -> change.entry.groupUid
+                        is ContentWatcher.Change.Removed -> change.entry.groupUid
+                        is ContentWatcher.Change.Changed -> change.newEntry.groupUid
+                    }
+                }
+                checkGroupUids(groupUids.toSet())
             }
         })
 
-        noteDao.contentWatcher.subscribe(object : ContentWatcher.OnEntryCreateListener<Note> {
-            override fun onEntryCreated(entry: Note) {
-                checkGroupUid(entry.groupUid)
+        groupDao.contentWatcher.subscribe(object : ContentWatcher.OnContentChangeListener<Group> {
+            override fun onContentChanged(changes: List<ContentWatcher.Change<Group>>) {
+                val groupUids = changes
+                    .filterIsInstance<ContentWatcher.Change.Removed<Group>>()
+                    .map { change -> change.entry.uid }
+                checkGroupUids(groupUids.toSet())
             }
         })
 
-        noteDao.contentWatcher.subscribe(object : ContentWatcher.OnEntryRemoveListener<Note> {
-            override fun onEntryRemoved(entry: Note) {
-                checkGroupUid(entry.groupUid)
-            }
-        })
-
-        groupDao.contentWatcher.subscribe(object : ContentWatcher.OnEntryRemoveListener<Group> {
-            override fun onEntryRemoved(entry: Group) {
-                checkGroupUid(entry.uid)
-            }
-        })
-
-        findTemplateNotes()
+        if (initialTemplates != null) {
+            templatesRef.set(initialTemplates.templates)
+            templateGroupUidRef.set(initialTemplates.groupUid)
+        } else {
+            findTemplateNotes()
+        }
     }
 
     override fun getTemplateGroupUid(): OperationResult<UUID?> {
@@ -133,10 +141,7 @@ class TemplateDaoImpl(
             return notesResult.takeError()
         }
 
-        val templateNotes = notesResult.obj
-        val templates = templateNotes
-            .mapNotNull { note -> TemplateParser.parse(note) }
-            .sortedBy { template -> template.title }
+        val templates = parseTemplates(notesResult.obj)
 
         templatesRef.set(templates)
         templateGroupUidRef.set(templateGroup.uid)
@@ -144,9 +149,11 @@ class TemplateDaoImpl(
         return OperationResult.success(true)
     }
 
-    private fun checkGroupUid(groupUid: UUID) {
+    private fun checkGroupUids(groupUids: Set<UUID>) {
+        if (groupUids.isEmpty()) return
+
         val templateGroupUid = templateGroupUidRef.get()
-        if (templateGroupUid != null && templateGroupUid != groupUid) return
+        if (templateGroupUid != null && templateGroupUid !in groupUids) return
 
         // TODO: refactor
 
@@ -156,4 +163,18 @@ class TemplateDaoImpl(
             return
         }
     }
+
+    data class Templates(
+        val groupUid: UUID?,
+        val templates: List<Template>
+    )
+
+    companion object {
+
+        fun parseTemplates(templateNotes: List<Note>): List<Template> {
+            return templateNotes
+                .mapNotNull { note -> TemplateParser.parse(note) }
+                .sortedBy { template -> template.title }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_COMMIT
+import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
+import com.ivanovsky.passnotes.data.entity.OperationResult
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import timber.log.Timber
+
+/**
+ * Writes [KotpassDatabaseSnapshot] to the storage outside of the database lock.
+ * Only one write is running at a time, commit requests that arrive while the database
+ * is being encoded are coalesced into a single follow-up write of the latest snapshot.
+ * Pipeline should be closed with [close] when the database is closed.
+ */
+class KotpassCommitPipeline(
+    private val snapshotProvider: () -> KotpassDatabaseSnapshot,
+    private val writer: (snapshot: KotpassDatabaseSnapshot) -> OperationResult<Boolean>,
+    private val onCommitted: (result: OperationResult<Boolean>) -> Unit
+) {
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val lock = ReentrantLock()
+    private var pendingRequests = mutableListOf<CommitRequest>()
+    private var isWriting = false
+    private var isClosed = false
+    private var lastResult: OperationResult<Boolean>? = null
+
+    /**
+     * Version of the latest snapshot that was written to the storage
+     */
+    @Volatile
+    var durableVersion = NO_VERSION
+        private set
+
+    /**
+     * Schedules write of the snapshot with [version] or any newer snapshot,
+     * returned [Deferred] is completed when the data is written
+     */
+    fun submit(version: Long): Deferred<OperationResult<Boolean>> {
+        val request = CommitRequest(version, CompletableDeferred())
+
+        val isStartWriter = lock.withLock {
+            if (isClosed) {
+                request.result.complete(OperationResult.error(newDbError(MESSAGE_FAILED_TO_COMMIT)))
+                return request.result
+            }
+
+            pendingRequests.add(request)
+
+            if (!isWriting) {
+                isWriting = true
+                true
+            } else {
+                false
+            }
+        }
+
+        if (isStartWriter) {
+            scope
+                .launch {
+                    drainRequests()
+                }
+                .invokeOnCompletion { cause ->
+                    if (cause != null) {
+                        failPendingRequests()
+                    }
+                }
+        }
+
+        return request.result
+    }
+
+    /**
+     * Cancels the writer, write which is already running is not interrupted and completes
+     * requests that it has picked up. Requests which are still pending after that write and
+     * requests submitted after this call are failed.
+     */
+    fun close() {
+        lock.withLock {
+            isClosed = true
+        }
+
+        scope.cancel()
+    }
+
+    private fun drainRequests() {
+        while (true) {
+            val requests = lock.withLock {
+                if (isClosed) {
+                    null
+                } else if (pendingRequests.isEmpty()) {
+                    isWriting = false
+                    return
+                } else {
+                    pendingRequests.also {
+                        pendingRequests = mutableListOf()
+                    }
+                }
+            }
+
+            // scope.cancel() can't interrupt this loop, so it is checked before each write
+            if (requests == null) {
+                failPendingRequests()
+                return
+            }
+
+            val result = writeLatestSnapshot(requests)
+            for (request in requests) {
+                request.result.complete(result)
+            }
+        }
+    }
+
+    private fun failPendingRequests() {
+        val requests = lock.withLock {
+            isWriting = false
+            pendingRequests.also {
+                pendingRequests = mutableListOf()
+            }
+        }
+
+        for (request in requests) {
+            request.result.complete(OperationResult.error(newDbError(MESSAGE_FAILED_TO_COMMIT)))
+        }
+    }
+
+    private fun writeLatestSnapshot(requests: List<CommitRequest>): OperationResult<Boolean> {
+        val previousResult = lastResult
+        val isAlreadyWritten = requests.all { it.version <= durableVersion }
+        if (isAlreadyWritten && previousResult != null && previousResult.isSucceeded) {
+            return previousResult
+        }
+
+        val snapshot = snapshotProvider.invoke()
+
+        val result = try {
+            writer.invoke(snapshot)
+        } catch (e: Exception) {
+            Timber.d(e)
+            OperationResult.error(newDbError(MESSAGE_FAILED_TO_COMMIT, e))
+        }
+
+        lastResult = result
+
+        if (result.isSucceededOrDeferred) {
+            durableVersion = snapshot.version
+            onCommitted.invoke(result)
+        }
+
+        return result
+    }
+
+    private class CommitRequest(
+        val version: Long,
+        val result: CompletableDeferred<OperationResult<Boolean>>
+    )
+
+    companion object {
+        const val NO_VERSION = -1L
+    }
+}
\ No newline at end of file
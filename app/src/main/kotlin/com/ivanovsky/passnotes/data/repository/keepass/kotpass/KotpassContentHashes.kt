@@ -0,0 +1,129 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.models.Entry as RawEntry
+import app.keemobile.kotpass.models.Group as RawGroup
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import okio.Buffer
+import okio.ByteString
+
+/**
+ * Content hashes of groups and entries that form a Merkle tree: hash of the group
+ * includes hashes of its child groups and entries, so two subtrees are equal if their
+ * hashes are equal. Hashes are computed lazily and are kept while the raw object is
+ * the same instance, kotpass models are immutable and modification of the entry
+ * replaces only the groups on the path to the root, other subtrees are not hashed again.
+ * Hashes are shared by all snapshots of the database and are modified in place,
+ * hash of another instance of the raw object is not returned.
+ */
+class KotpassContentHashes {
+
+    private val entryHashes = ConcurrentHashMap<UUID, CachedHash<RawEntry>>()
+    private val groupHashes = ConcurrentHashMap<UUID, CachedHash<RawGroup>>()
+
+    /**
+     * Number of the cached hashes
+     */
+    val size: Int
+        get() = entryHashes.size + groupHashes.size
+
+    /**
+     * @return SHA-256 of the uid, title, child groups and entries of [group]
+     */
+    fun getGroupHash(group: RawGroup): ByteString {
+        val cached = groupHashes[group.uuid]
+        if (cached != null && cached.raw === group) {
+            return cached.hash
+        }
+
+        val buffer = Buffer()
+            .writeByte(GROUP_TAG)
+            .writeUid(group.uuid)
+            .writeString(group.name)
+            .writeInt(group.groups.size)
+            .writeInt(group.entries.size)
+
+        for (childGroup in group.groups) {
+            buffer.write(getGroupHash(childGroup))
+        }
+        for (entry in group.entries) {
+            buffer.write(getEntryHash(entry))
+        }
+
+        val hash = buffer.sha256()
+        groupHashes[group.uuid] = CachedHash(group, hash)
+        return hash
+    }
+
+    /**
+     * @return SHA-256 of the uid, fields, tags and attachments of [entry],
+     * history and timestamps are not included
+     */
+    fun getEntryHash(entry: RawEntry): ByteString {
+        val cached = entryHashes[entry.uuid]
+        if (cached != null && cached.raw === entry) {
+            return cached.hash
+        }
+
+        val buffer = Buffer()
+            .writeByte(ENTRY_TAG)
+            .writeUid(entry.uuid)
+
+        // Order of the fields doesn't matter, they are looked up by name
+        val fields = entry.fields.entries.sortedBy { field -> field.key }
+        buffer.writeInt(fields.size)
+        for (field in fields) {
+            buffer.writeString(field.key)
+            buffer.writeString(field.value.content)
+        }
+
+        buffer.writeInt(entry.tags.size)
+        for (tag in entry.tags) {
+            buffer.writeString(tag)
+        }
+
+        buffer.writeInt(entry.binaries.size)
+        for (binary in entry.binaries) {
+            buffer.writeString(binary.name)
+            buffer.writeInt(binary.hash.size)
+            buffer.write(binary.hash)
+        }
+
+        val hash = buffer.sha256()
+        entryHashes[entry.uuid] = CachedHash(entry, hash)
+        return hash
+    }
+
+    /**
+     * Removes hashes of the removed entries and groups
+     */
+    fun remove(uids: Collection<UUID>) {
+        for (uid in uids) {
+            entryHashes.remove(uid)
+            groupHashes.remove(uid)
+        }
+    }
+
+    private fun Buffer.writeUid(uid: UUID): Buffer {
+        writeLong(uid.mostSignificantBits)
+        writeLong(uid.leastSignificantBits)
+        return this
+    }
+
+    private fun Buffer.writeString(value: String): Buffer {
+        val bytes = value.encodeToByteArray()
+        writeInt(bytes.size)
+        write(bytes)
+        return this
+    }
+
+    private class CachedHash<R>(
+        val raw: R,
+        val hash: ByteString
+    )
+
+    companion object {
+        private const val GROUP_TAG = 1
+        private const val ENTRY_TAG = 2
+    }
+}
\ No newline at end of file
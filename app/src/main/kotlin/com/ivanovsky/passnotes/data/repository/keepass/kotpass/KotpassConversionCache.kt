@@ -0,0 +1,105 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.models.Entry as RawEntry
+import app.keemobile.kotpass.models.Group as RawGroup
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.ConversionCacheStatistics
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.InheritableOptions
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Keeps results of [convertToNote], [convertToNoteSummary] and [convertToGroup].
+ * Kotpass models are immutable, so converted object is reused while the raw object
+ * is the same instance and the conversion arguments are equal. The cache is shared
+ * by all snapshots of the database and is modified in place, value that was cached for
+ * another snapshot or for a discarded transaction is not returned, because its raw object
+ * is a different instance, it is just converted again.
+ */
+class KotpassConversionCache {
+
+    private val notes = ConcurrentHashMap<UUID, CachedValue<RawEntry, Note>>()
+    private val summaries = ConcurrentHashMap<UUID, CachedValue<RawEntry, NoteSummary>>()
+    private val groups = ConcurrentHashMap<UUID, CachedValue<RawGroup, Group>>()
+    private val hitCount = AtomicLong(0L)
+    private val missCount = AtomicLong(0L)
+
+    fun getNote(
+        entry: RawEntry,
+        groupUid: UUID,
+        convert: () -> Note
+    ): Note {
+        return getOrConvert(notes, entry.uuid, entry, groupUid, convert)
+    }
+
+    fun getNoteSummary(
+        entry: RawEntry,
+        groupUid: UUID,
+        convert: () -> NoteSummary
+    ): NoteSummary {
+        return getOrConvert(summaries, entry.uuid, entry, groupUid, convert)
+    }
+
+    fun getGroup(
+        group: RawGroup,
+        parentGroupUid: UUID?,
+        options: InheritableOptions,
+        convert: () -> Group
+    ): Group {
+        return getOrConvert(groups, group.uuid, group, Pair(parentGroupUid, options), convert)
+    }
+
+    /**
+     * Removes converted values of the removed entries and groups
+     */
+    fun remove(uids: Collection<UUID>) {
+        for (uid in uids) {
+            notes.remove(uid)
+            summaries.remove(uid)
+            groups.remove(uid)
+        }
+    }
+
+    fun clear() {
+        notes.clear()
+        summaries.clear()
+        groups.clear()
+    }
+
+    fun getStatistics(): ConversionCacheStatistics {
+        return ConversionCacheStatistics(
+            hitCount = hitCount.get(),
+            missCount = missCount.get(),
+            size = notes.size + summaries.size + groups.size
+        )
+    }
+
+    private fun <R : Any, V> getOrConvert(
+        values: MutableMap<UUID, CachedValue<R, V>>,
+        uid: UUID,
+        raw: R,
+        arguments: Any?,
+        convert: () -> V
+    ): V {
+        val cached = values[uid]
+        if (cached != null && cached.raw === raw && cached.arguments == arguments) {
+            hitCount.incrementAndGet()
+            return cached.value
+        }
+
+        missCount.incrementAndGet()
+
+        val value = convert.invoke()
+        values[uid] = CachedValue(raw, arguments, value)
+        return value
+    }
+
+    private class CachedValue<R, V>(
+        val raw: R,
+        val arguments: Any?,
+        val value: V
+    )
+}
\ No newline at end of file
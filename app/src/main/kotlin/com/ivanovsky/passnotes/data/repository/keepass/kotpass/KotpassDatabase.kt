@@ -1,8 +1,10 @@
 package com.ivanovsky.passnotes.data.repository.keepass.kotpass
 
+import app.keemobile.kotpass.database.Credentials
 import app.keemobile.kotpass.database.KeePassDatabase
 import app.keemobile.kotpass.database.decode
 import app.keemobile.kotpass.database.encode
+import app.keemobile.kotpass.database.modifiers.binaries
 import app.keemobile.kotpass.database.modifiers.modifyCredentials
 import app.keemobile.kotpass.database.modifiers.modifyMeta
 import app.keemobile.kotpass.models.Entry
@@ -10,9 +12,7 @@ import app.keemobile.kotpass.models.Group as RawGroup
 import app.keemobile.kotpass.models.Meta
 import com.ivanovsky.passnotes.data.entity.FileDescriptor
 import com.ivanovsky.passnotes.data.entity.KeyType
-import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.data.entity.OperationError
-import com.ivanovsky.passnotes.data.entity.OperationError.GENERIC_MESSAGE_FAILED_TO_FIND_ENTITY_BY_UID
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_FIND_GROUP
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_INVALID_KEY_FILE
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_INVALID_PASSWORD
@@ -21,18 +21,26 @@ import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
 import com.ivanovsky.passnotes.data.entity.OperationError.newGenericIOError
 import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.repository.TemplateDao
+import com.ivanovsky.passnotes.data.repository.encdb.AutofillIndex
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenStage
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenTracker
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseTransaction
 import com.ivanovsky.passnotes.data.repository.encdb.DatabaseWatcher
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseConfig
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseKey
 import com.ivanovsky.passnotes.data.repository.encdb.MutableEncryptedDatabaseConfig
+import com.ivanovsky.passnotes.data.repository.encdb.TrigramSearchIndex
 import com.ivanovsky.passnotes.data.repository.encdb.dao.GroupDao
 import com.ivanovsky.passnotes.data.repository.encdb.dao.NoteDao
 import com.ivanovsky.passnotes.data.repository.file.FSOptions
 import com.ivanovsky.passnotes.data.repository.file.FileSystemResolver
 import com.ivanovsky.passnotes.data.repository.file.OnConflictStrategy
+import com.ivanovsky.passnotes.data.repository.keepass.TemplateConst.TEMPLATE_GROUP_NAME
 import com.ivanovsky.passnotes.data.repository.keepass.TemplateDaoImpl
 import com.ivanovsky.passnotes.data.repository.keepass.TemplateFactory
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.ConversionCacheStatistics
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.DatabaseChange
 import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.InheritableOptions
 import com.ivanovsky.passnotes.extensions.getOrNull
 import com.ivanovsky.passnotes.extensions.mapError
@@ -44,26 +52,61 @@ import java.util.UUID
 import java.util.concurrent.atomic.AtomicReference
 import java.util.concurrent.locks.ReentrantLock
 import kotlin.concurrent.withLock
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import okio.ByteString
 import timber.log.Timber
 
-class KotpassDatabase(
+class KotpassDatabase private constructor(
     private val fsResolver: FileSystemResolver,
     private val fsOptions: FSOptions,
     private val file: FileDescriptor,
     key: EncryptedDatabaseKey,
-    db: KeePassDatabase
+    initialSnapshot: KotpassDatabaseSnapshot,
+    initialTemplates: TemplateDaoImpl.Templates?,
+    indexes: SearchIndexes
 ) : EncryptedDatabase {
 
+    constructor(
+        fsResolver: FileSystemResolver,
+        fsOptions: FSOptions,
+        file: FileDescriptor,
+        key: EncryptedDatabaseKey,
+        db: KeePassDatabase
+    ) : this(
+        fsResolver = fsResolver,
+        fsOptions = fsOptions,
+        file = file,
+        key = key,
+        initialSnapshot = KotpassDatabaseSnapshot.create(db),
+        initialTemplates = null,
+        indexes = db.buildSearchIndexes()
+    )
+
     private val lock = ReentrantLock()
-    private val database = AtomicReference(db)
+    private val searchIndex = indexes.searchIndex
+    private val autofillIndex = indexes.autofillIndex
+    private val snapshot = AtomicReference(initialSnapshot)
+    private var transactionState: TransactionState? = null
     private val key = AtomicReference(key)
-    private val autotypeOptionMap = AtomicReference(createInheritableOptionsMap())
-    private val groupUidToParentMap = AtomicReference(createGroupUidToParentMap())
     private val groupDao = KotpassGroupDao(this)
     private val noteDao = KotpassNoteDao(this)
-    private val templateDao = TemplateDaoImpl(groupDao, noteDao)
+    private val templateDao = TemplateDaoImpl(groupDao, noteDao, initialTemplates)
     private val dbWatcher = DatabaseWatcher()
     private val fsProvider = fsResolver.resolveProvider(file.fsAuthority)
+    private val commitPipeline = KotpassCommitPipeline(
+        snapshotProvider = { snapshot.get() },
+        writer = { snapshot -> writeSnapshot(snapshot) },
+        onCommitted = { result -> dbWatcher.notifyOnCommit(this, result) }
+    )
+
+    init {
+        searchIndex.subscribe(noteDao.contentWatcher, groupDao.contentWatcher)
+        autofillIndex.subscribe(noteDao.contentWatcher)
+    }
 
     override fun getWatcher(): DatabaseWatcher = dbWatcher
 
@@ -81,24 +124,28 @@ class KotpassDatabase(
 
     override fun getTemplateDao(): TemplateDao = templateDao
 
+    override fun getSearchIndex(): TrigramSearchIndex = searchIndex
+
+    override fun getAutofillIndex(): AutofillIndex = autofillIndex
+
+    override fun getContentVersion(): Long = getSnapshot().version
+
     override fun getConfig(): OperationResult<EncryptedDatabaseConfig> {
-        return lock.withLock {
-            val rawDatabase = getRawDatabase()
+        val rawDatabase = getRawDatabase()
 
-            val config = MutableEncryptedDatabaseConfig(
-                isRecycleBinEnabled = rawDatabase.content.meta.recycleBinEnabled,
-                maxHistoryItems = rawDatabase.content.meta.historyMaxItems
-            )
+        val config = MutableEncryptedDatabaseConfig(
+            isRecycleBinEnabled = rawDatabase.content.meta.recycleBinEnabled,
+            maxHistoryItems = rawDatabase.content.meta.historyMaxItems
+        )
 
-            OperationResult.success(config)
-        }
+        return OperationResult.success(config)
     }
 
     override fun applyConfig(newConfig: EncryptedDatabaseConfig): OperationResult<Boolean> {
-        return lock.withLock {
+        lock.withLock {
             val getOldConfigResult = config
             if (getOldConfigResult.isFailed) {
-                return@withLock getOldConfigResult.mapError()
+                return getOldConfigResult.mapError()
             }
 
             val oldConfig = getOldConfigResult.obj
@@ -109,22 +156,23 @@ class KotpassDatabase(
                         copy(
                             recycleBinEnabled = newConfig.isRecycleBinEnabled
                         )
-                    }
+                    },
+                    DatabaseChange.MetaChanged
                 )
             }
-
-            commit()
         }
+
+        return commit()
     }
 
     override fun changeKey(
         oldKey: EncryptedDatabaseKey,
         newKey: EncryptedDatabaseKey
     ): OperationResult<Boolean> {
-        return lock.withLock {
+        lock.withLock {
             val currentKey = key.get()
             if (oldKey != currentKey) {
-                return@withLock OperationResult.error(
+                return OperationResult.error(
                     newAuthError(
                         if (currentKey.type == KeyType.PASSWORD) {
                             MESSAGE_INVALID_PASSWORD
@@ -141,125 +189,197 @@ class KotpassDatabase(
             }
 
             val newCredentials = getCredentialsResult.obj
-            val newDb = database.get().modifyCredentials {
+            val newDb = getRawDatabase().modifyCredentials {
                 newCredentials
             }
-            swapDatabase(newDb)
+            swapDatabase(newDb, DatabaseChange.MetaChanged)
             key.set(newKey)
-
-            commit()
         }
+
+        return commit()
     }
 
+    /**
+     * Waits until the current state of the database is written, it should be invoked after
+     * [lock] is released, otherwise other writers will wait for the encoding
+     */
     override fun commit(): OperationResult<Boolean> {
-        val commitResult = lock.withLock {
-            val updatedFile = file.copy(modified = System.currentTimeMillis())
+        val result = commitAsync()
+        return runBlocking {
+            result.await()
+        }
+    }
 
-            val outResult =
-                fsProvider.openFileForWrite(updatedFile, OnConflictStrategy.CANCEL, fsOptions)
-            if (outResult.isFailed) {
-                return outResult.mapError()
+    override fun commitAsync(): Deferred<OperationResult<Boolean>> {
+        val transaction = getCurrentTransaction()
+        if (transaction != null) {
+            transaction.isCommitRequested = true
+            return CompletableDeferred(OperationResult.success(true))
+        }
+
+        return commitPipeline.submit(snapshot.get().version)
+    }
+
+    /**
+     * Stops [commitPipeline], write that is already running is finished
+     */
+    override fun close() {
+        commitPipeline.close()
+    }
+
+    override fun <T> transaction(transaction: DatabaseTransaction<T>): OperationResult<T> {
+        val (state, result) = lock.withLock {
+            if (getCurrentTransaction() != null) {
+                // nested transaction becomes a part of the outer one
+                return transaction.execute(this)
             }
 
-            val out = outResult.obj
-            val db = database.get()
-            try {
-                db.encode(out)
-                outResult.takeStatusWith(true)
-            } catch (e: IOException) {
-                InputOutputUtils.close(out)
+            val state = TransactionState(snapshot.get())
+            transactionState = state
+            beginWatcherBatch()
+
+            val result = try {
+                transaction.execute(this)
+            } catch (e: Exception) {
+                cancelWatcherBatch()
+                throw e
+            } finally {
+                transactionState = null
+            }
 
-                OperationResult.error(newGenericIOError(e))
+            if (result.isSucceededOrDeferred) {
+                snapshot.set(state.workingSnapshot)
             }
+
+            Pair(state, result)
         }
 
-        if (commitResult.isSucceededOrDeferred) {
-            dbWatcher.notifyOnCommit(this, commitResult)
+        if (result.isFailed) {
+            cancelWatcherBatch()
+            return result
         }
 
-        return commitResult
-    }
+        // working snapshot is already applied, watchers should receive its changes even if
+        // the following write fails, otherwise indexes and caches will be out of sync
+        finishWatcherBatch()
 
-    fun swapDatabase(db: KeePassDatabase) {
-        lock.withLock {
-            database.set(db)
-            autotypeOptionMap.set(createInheritableOptionsMap())
-            groupUidToParentMap.set(createGroupUidToParentMap())
+        val isModified = (state.workingSnapshot !== state.initialSnapshot)
+        if (state.isCommitRequested && isModified) {
+            val commitResult = commit()
+            if (commitResult.isFailed) {
+                return commitResult.mapError()
+            }
         }
+
+        return result
     }
 
-    fun getRawDatabase(): KeePassDatabase = database.get()
+    fun getConversionCacheStatistics(): ConversionCacheStatistics =
+        snapshot.get().conversionCache.getStatistics()
 
-    fun getRawRootGroup(): RawGroup = database.get().content.group
+    private fun writeSnapshot(snapshot: KotpassDatabaseSnapshot): OperationResult<Boolean> {
+        val updatedFile = file.copy(modified = System.currentTimeMillis())
 
-    fun getRawRootGroupOptions(): InheritableOptions {
-        val root = getRawRootGroup()
+        val outResult =
+            fsProvider.openFileForWrite(updatedFile, OnConflictStrategy.CANCEL, fsOptions)
+        if (outResult.isFailed) {
+            return outResult.mapError()
+        }
 
-        return InheritableOptions(
-            autotypeEnabled = root.enableAutoType.convertToInheritableOption(
-                parentValue = DEFAULT_ROOT_INHERITABLE_VALUE
-            ),
-            searchEnabled = root.enableSearching.convertToInheritableOption(
-                parentValue = DEFAULT_ROOT_INHERITABLE_VALUE
-            )
-        )
+        val out = outResult.obj
+        return try {
+            snapshot.db.encode(out)
+            outResult.takeStatusWith(true)
+        } catch (e: IOException) {
+            InputOutputUtils.close(out)
+
+            OperationResult.error(newGenericIOError(e))
+        }
     }
 
-    fun getRawParentGroup(childUid: UUID): OperationResult<RawGroup> {
-        val parentGroup = groupUidToParentMap.get()[childUid]
-            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+    fun swapDatabase(db: KeePassDatabase) {
+        lock.withLock {
+            setSnapshot(getSnapshot().rebuild(db))
+        }
+    }
 
-        return OperationResult.success(parentGroup)
+    fun swapDatabase(
+        db: KeePassDatabase,
+        change: DatabaseChange
+    ) {
+        swapDatabase(db, listOf(change))
     }
 
-    fun getRawGroupByUid(uid: UUID): OperationResult<RawGroup> {
-        val rootGroup = database.get().content.group
-        if (rootGroup.uuid == uid) {
-            return OperationResult.success(rootGroup)
+    fun swapDatabase(
+        db: KeePassDatabase,
+        changes: List<DatabaseChange>
+    ) {
+        lock.withLock {
+            setSnapshot(getSnapshot().applyChanges(db, changes))
         }
+    }
 
-        val (_, parentGroup) = rootGroup.findChildGroup { it.uuid == uid }
-            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+    /**
+     * Returns the latest consistent state of the database, it should be used by readers
+     * instead of taking the lock. Inside of transaction its working copy is returned.
+     */
+    fun getSnapshot(): KotpassDatabaseSnapshot {
+        return getCurrentTransaction()?.workingSnapshot ?: snapshot.get()
+    }
 
-        return OperationResult.success(parentGroup)
+    private fun setSnapshot(newSnapshot: KotpassDatabaseSnapshot) {
+        val transaction = getCurrentTransaction()
+        if (transaction != null) {
+            transaction.workingSnapshot = newSnapshot
+        } else {
+            snapshot.set(newSnapshot)
+        }
     }
 
-    fun getRawEntryAndGroupByUid(noteUid: UUID): OperationResult<Pair<RawGroup, Entry>> {
-        val result = database.get().content.group.findChildEntry { entry ->
-            entry.uuid == noteUid
+    private fun getCurrentTransaction(): TransactionState? {
+        return if (lock.isHeldByCurrentThread) {
+            transactionState
+        } else {
+            null
         }
-            ?: return OperationResult.error(
-                newDbError(
-                    String.format(
-                        GENERIC_MESSAGE_FAILED_TO_FIND_ENTITY_BY_UID,
-                        Note::class.simpleName,
-                        noteUid
-                    )
-                )
-            )
+    }
 
-        return OperationResult.success(result)
+    private fun beginWatcherBatch() {
+        noteDao.contentWatcher.beginBatch()
+        groupDao.contentWatcher.beginBatch()
     }
 
-    fun getRawChildGroups(root: RawGroup): List<RawGroup> {
-        val nextGroups = LinkedList<RawGroup>()
-            .apply {
-                add(root)
-            }
+    private fun finishWatcherBatch() {
+        groupDao.contentWatcher.finishBatch()
+        noteDao.contentWatcher.finishBatch()
+    }
+
+    private fun cancelWatcherBatch() {
+        groupDao.contentWatcher.cancelBatch()
+        noteDao.contentWatcher.cancelBatch()
+    }
 
-        val allGroups = mutableListOf<RawGroup>()
+    fun getRawDatabase(): KeePassDatabase = getSnapshot().db
 
-        while (nextGroups.size > 0) {
-            val currentGroup = nextGroups.removeFirst()
+    fun getRawRootGroup(): RawGroup = getSnapshot().getRawRootGroup()
 
-            nextGroups.addAll(currentGroup.groups)
-            allGroups.addAll(currentGroup.groups)
-        }
+    fun getRawRootGroupOptions(): InheritableOptions = getSnapshot().getRawRootGroupOptions()
 
-        return allGroups
-    }
+    fun getRawParentGroup(childUid: UUID): OperationResult<RawGroup> =
+        getSnapshot().getRawParentGroup(childUid)
 
-    fun getAllRawGroups(): List<RawGroup> = database.get().getAllGroups()
+    fun getRawGroupByUid(uid: UUID): OperationResult<RawGroup> =
+        getSnapshot().getRawGroupByUid(uid)
+
+    fun getRawEntryAndGroupByUid(noteUid: UUID): OperationResult<Pair<RawGroup, Entry>> =
+        getSnapshot().getRawEntryAndGroupByUid(noteUid)
+
+    fun getAllRawGroups(): List<RawGroup> = getSnapshot().getAllRawGroups()
+
+    /**
+     * @return hash of the group tree which is equal for databases with the same content
+     */
+    fun getContentHash(): ByteString = getSnapshot().getContentHash()
 
     fun getRawChildEntries(root: RawGroup): List<Entry> {
         val nextGroups = LinkedList<RawGroup>()
@@ -298,64 +418,8 @@ class KotpassDatabase(
         return result
     }
 
-    fun getInheritableOptions(groupUid: UUID): OperationResult<InheritableOptions> {
-        val options = autotypeOptionMap.get()[groupUid]
-        return options?.let { OperationResult.success(it) }
-            ?: OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
-    }
-
-    private fun createInheritableOptionsMap(): Map<UUID, InheritableOptions> {
-        val result = hashMapOf<UUID, InheritableOptions>()
-
-        val root = getRawRootGroup()
-        val rootOptions = getRawRootGroupOptions()
-        result[root.uuid] = rootOptions
-
-        val nextGroups = LinkedList<Pair<RawGroup, InheritableOptions>>()
-            .apply {
-                add(Pair(root, rootOptions))
-            }
-
-        while (nextGroups.size > 0) {
-            val (group, parentOptions) = nextGroups.removeFirst()
-
-            val options = InheritableOptions(
-                autotypeEnabled = group.enableAutoType.convertToInheritableOption(
-                    parentValue = parentOptions.autotypeEnabled.isEnabled
-                ),
-                searchEnabled = group.enableSearching.convertToInheritableOption(
-                    parentValue = parentOptions.searchEnabled.isEnabled
-                )
-            )
-            result[group.uuid] = options
-
-            for (child in group.groups) {
-                nextGroups.add(Pair(child, options))
-            }
-        }
-
-        return result
-    }
-
-    private fun createGroupUidToParentMap(): Map<UUID, RawGroup> {
-        val result = hashMapOf<UUID, RawGroup>()
-
-        val nextGroups = LinkedList<RawGroup>()
-            .apply {
-                add(getRawRootGroup())
-            }
-
-        while (nextGroups.size > 0) {
-            val group = nextGroups.removeFirst()
-
-            for (child in group.groups) {
-                result[child.uuid] = group
-                nextGroups.add(child)
-            }
-        }
-
-        return result
-    }
+    fun getInheritableOptions(groupUid: UUID): OperationResult<InheritableOptions> =
+        getSnapshot().getInheritableOptions(groupUid)
 
     private fun setupRecycleBin(): OperationResult<Unit> {
         swapDatabase(
@@ -364,17 +428,20 @@ class KotpassDatabase(
                     recycleBinEnabled = true,
                     recycleBinUuid = UUID.randomUUID()
                 )
-            }
+            },
+            DatabaseChange.MetaChanged
         )
 
         return OperationResult.success(Unit)
     }
 
     private fun setupTemplates(doCommit: Boolean): OperationResult<Unit> {
-        val addTemplatesResult = templateDao.addTemplates(
-            templates = TemplateFactory.createDefaultTemplates(),
-            doInterstitialCommits = doCommit
-        )
+        val addTemplatesResult = transaction {
+            templateDao.addTemplates(
+                templates = TemplateFactory.createDefaultTemplates(),
+                doInterstitialCommits = doCommit
+            )
+        }
         if (addTemplatesResult.isFailed) {
             return addTemplatesResult.mapError()
         }
@@ -392,7 +459,8 @@ class KotpassDatabase(
                 this.copy(
                     entryTemplatesGroup = templateGroupUid
                 )
-            }
+            },
+            DatabaseChange.MetaChanged
         )
 
         return if (doCommit) {
@@ -405,19 +473,14 @@ class KotpassDatabase(
     fun isEntryInsideGroupTree(
         entryUid: UUID,
         groupTreeRootUid: UUID
-    ): OperationResult<Boolean> {
-        val getTreeRootResult = getRawGroupByUid(groupTreeRootUid)
-        if (getTreeRootResult.isFailed) {
-            return getTreeRootResult.mapError()
-        }
-
-        val rawTreeRoot = getTreeRootResult.obj
-        val tree = getRawChildEntries(rawTreeRoot)
+    ): OperationResult<Boolean> =
+        getSnapshot().isEntryInsideGroupTree(entryUid, groupTreeRootUid)
 
-        val isEntryInsideTree = tree.any { entry -> entry.uuid == entryUid }
-
-        return OperationResult.success(isEntryInsideTree)
-    }
+    fun isGroupInsideGroupTree(
+        groupUid: UUID,
+        groupTreeRootUid: UUID
+    ): OperationResult<Boolean> =
+        getSnapshot().isGroupInsideGroupTree(groupUid, groupTreeRootUid)
 
     fun getRecycleBinGroup(): OperationResult<RawGroup?> {
         val rawDb = getRawDatabase()
@@ -434,6 +497,18 @@ class KotpassDatabase(
         return OperationResult.success(getRecycleBinResult.getOrNull())
     }
 
+    private class SearchIndexes(
+        val searchIndex: TrigramSearchIndex,
+        val autofillIndex: AutofillIndex
+    )
+
+    private class TransactionState(
+        val initialSnapshot: KotpassDatabaseSnapshot
+    ) {
+        var workingSnapshot: KotpassDatabaseSnapshot = initialSnapshot
+        var isCommitRequested = false
+    }
+
     companion object {
 
         const val DEFAULT_ROOT_INHERITABLE_VALUE = true
@@ -490,37 +565,91 @@ class KotpassDatabase(
             return OperationResult.success(db)
         }
 
+        /**
+         * Opens database in stages, opening of the file and reading of the key are executed
+         * in parallel as well as building of the indices and searching of templates after
+         * decryption. Content of the file is not buffered, it is read by the decoder.
+         */
         fun open(
             fsResolver: FileSystemResolver,
             fsOptions: FSOptions,
             file: FileDescriptor,
-            content: OperationResult<InputStream>,
-            key: EncryptedDatabaseKey
-        ): OperationResult<KotpassDatabase> {
-            if (content.isFailed) {
-                return content.mapError()
-            }
+            contentProvider: () -> OperationResult<InputStream>,
+            key: EncryptedDatabaseKey,
+            tracker: DatabaseOpenTracker
+        ): OperationResult<KotpassDatabase> =
+            runBlocking {
+                val fetchContent = async(Dispatchers.IO) {
+                    tracker.measure(DatabaseOpenStage.FETCH) {
+                        contentProvider.invoke()
+                    }
+                }
+                val getCredentials = async(Dispatchers.IO) {
+                    tracker.measure(DatabaseOpenStage.PREPARE_KEY) {
+                        key.toCredentials(fsResolver)
+                    }
+                }
 
-            val contentStream = content.obj
-            val getCredentialsResult = key.toCredentials(fsResolver)
-            if (getCredentialsResult.isFailed) {
-                return getCredentialsResult.mapError()
-            }
+                val fetchContentResult = fetchContent.await()
+                if (fetchContentResult.isFailed) {
+                    getCredentials.cancel()
+                    return@runBlocking fetchContentResult.mapError()
+                }
 
-            val credentials = getCredentialsResult.obj
+                val getCredentialsResult = getCredentials.await()
+                if (getCredentialsResult.isFailed) {
+                    InputOutputUtils.close(fetchContentResult.obj)
+                    return@runBlocking getCredentialsResult.mapError()
+                }
 
-            try {
-                val db = KeePassDatabase.decode(contentStream, credentials)
+                val decodeResult = tracker.measure(DatabaseOpenStage.DECRYPT) {
+                    decode(fetchContentResult.obj, getCredentialsResult.obj)
+                }
+                if (decodeResult.isFailed) {
+                    return@runBlocking decodeResult.mapError()
+                }
+
+                val rawDb = decodeResult.obj
+                val buildSnapshot = async(Dispatchers.Default) {
+                    tracker.measure(DatabaseOpenStage.BUILD_INDEX) {
+                        KotpassDatabaseSnapshot.create(rawDb)
+                    }
+                }
+                val findTemplates = async(Dispatchers.Default) {
+                    tracker.measure(DatabaseOpenStage.SCAN_TEMPLATES) {
+                        rawDb.findTemplates()
+                    }
+                }
+                val buildSearchIndexes = async(Dispatchers.Default) {
+                    tracker.measure(DatabaseOpenStage.BUILD_SEARCH_INDEX) {
+                        rawDb.buildSearchIndexes()
+                    }
+                }
 
-                return OperationResult.success(
+                OperationResult.success(
                     KotpassDatabase(
                         fsResolver = fsResolver,
                         fsOptions = fsOptions,
                         file = file,
                         key = key,
-                        db = db
+                        initialSnapshot = buildSnapshot.await(),
+                        initialTemplates = findTemplates.await(),
+                        indexes = buildSearchIndexes.await()
                     )
                 )
+            }
+
+        /**
+         * Decodes database from [content], the stream is closed after decoding
+         */
+        private fun decode(
+            content: InputStream,
+            credentials: Credentials
+        ): OperationResult<KeePassDatabase> {
+            return try {
+                OperationResult.success(
+                    KeePassDatabase.decode(content, credentials)
+                )
             } catch (e: Exception) {
                 Timber.d(e)
 
@@ -530,14 +659,45 @@ class KotpassDatabase(
                     OperationError.MESSAGE_FAILED_TO_OPEN_DB_FILE
                 }
 
-                return if (e is IOException) {
+                if (e is IOException) {
                     OperationResult.error(newGenericIOError(message, e))
                 } else {
                     OperationResult.error(newDbError(message, e))
                 }
             } finally {
-                InputOutputUtils.close(contentStream)
+                InputOutputUtils.close(content)
             }
         }
+
+        private fun KeePassDatabase.findTemplates(): TemplateDaoImpl.Templates {
+            val templateGroup = getAllGroups()
+                .firstOrNull { group -> group.name == TEMPLATE_GROUP_NAME }
+                ?: return TemplateDaoImpl.Templates(groupUid = null, templates = emptyList())
+
+            val templateNotes = templateGroup.entries.map { entry ->
+                entry.convertToNote(templateGroup.uuid, binaries)
+            }
+
+            return TemplateDaoImpl.Templates(
+                groupUid = templateGroup.uuid,
+                templates = TemplateDaoImpl.parseTemplates(templateNotes)
+            )
+        }
+
+        private fun KeePassDatabase.buildSearchIndexes(): SearchIndexes {
+            val searchIndex = TrigramSearchIndex()
+            val autofillIndex = AutofillIndex()
+
+            for (group in getAllGroups()) {
+                searchIndex.putGroup(group.uuid, group.name)
+                for (entry in group.entries) {
+                    val note = entry.convertToNote(group.uuid, binaries)
+                    searchIndex.putNote(note)
+                    autofillIndex.putNote(note)
+                }
+            }
+
+            return SearchIndexes(searchIndex, autofillIndex)
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,496 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.database.KeePassDatabase
+import app.keemobile.kotpass.models.Entry as RawEntry
+import app.keemobile.kotpass.models.Group as RawGroup
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase.Companion.DEFAULT_ROOT_INHERITABLE_VALUE
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.DatabaseChange
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.InheritableOptions
+import java.util.LinkedList
+import java.util.UUID
+import kotlinx.collections.immutable.PersistentMap
+import kotlinx.collections.immutable.persistentHashMapOf
+import timber.log.Timber
+
+/**
+ * Immutable set of lookup maps derived from the group tree of [KeePassDatabase].
+ * Maps are persistent, so applying [DatabaseChange] costs proportionally to the size
+ * of the modified part of the tree instead of the size of the whole database.
+ *
+ * Every group has a [TreeInterval] with its enter and exit positions of the depth-first
+ * traversal of the tree, so group A is located inside group B if interval of A is nested
+ * into interval of B. Intervals are renumbered only if the group tree is changed,
+ * modification of entries updates the counters on the path to the root.
+ */
+class KotpassDatabaseIndex private constructor(
+    private val rootUid: UUID,
+    private val groups: PersistentMap<UUID, RawGroup>,
+    private val groupParents: PersistentMap<UUID, UUID>,
+    private val entries: PersistentMap<UUID, Pair<UUID, RawEntry>>,
+    private val options: PersistentMap<UUID, InheritableOptions>,
+    private val intervals: PersistentMap<UUID, TreeInterval>
+) {
+
+    fun getGroup(groupUid: UUID): RawGroup? = groups[groupUid]
+
+    fun getParentGroup(childUid: UUID): RawGroup? {
+        val parentUid = groupParents[childUid] ?: return null
+        return groups[parentUid]
+    }
+
+    fun getEntryAndGroup(entryUid: UUID): Pair<RawGroup, RawEntry>? {
+        val (groupUid, entry) = entries[entryUid] ?: return null
+        val group = groups[groupUid] ?: return null
+        return Pair(group, entry)
+    }
+
+    fun getOptions(groupUid: UUID): InheritableOptions? = options[groupUid]
+
+    /**
+     * @return true if group or entry with [uid] is in the index
+     */
+    fun contains(uid: UUID): Boolean = groups.containsKey(uid) || entries.containsKey(uid)
+
+    /**
+     * @return true if group with [groupUid] is a descendant of group with [treeRootUid]
+     * or null if any of the groups is not found
+     */
+    fun isGroupInsideTree(groupUid: UUID, treeRootUid: UUID): Boolean? {
+        val group = intervals[groupUid] ?: return null
+        val treeRoot = intervals[treeRootUid] ?: return null
+        return treeRoot.enter < group.enter && group.exit < treeRoot.exit
+    }
+
+    /**
+     * @return true if entry with [entryUid] is located in group with [treeRootUid]
+     * or in any of its descendants or null if entry or group is not found
+     */
+    fun isEntryInsideTree(entryUid: UUID, treeRootUid: UUID): Boolean? {
+        val (groupUid, _) = entries[entryUid] ?: return null
+        val group = intervals[groupUid] ?: return null
+        val treeRoot = intervals[treeRootUid] ?: return null
+        return treeRoot.enter <= group.enter && group.exit <= treeRoot.exit
+    }
+
+    /**
+     * @return number of groups in the tree of [groupUid], not including the group itself
+     */
+    fun getSubtreeGroupCount(groupUid: UUID): Int? = intervals[groupUid]?.groupCount
+
+    /**
+     * @return number of entries in the group and all of its descendants
+     */
+    fun getSubtreeEntryCount(groupUid: UUID): Int? = intervals[groupUid]?.entryCount
+
+    /**
+     * @return uids of the group, its descendant groups and entries inside them
+     * or empty list if group is not found
+     */
+    fun getSubtreeUids(groupUid: UUID): List<UUID> {
+        val group = groups[groupUid] ?: return emptyList()
+        val interval = intervals[groupUid]
+        val size = if (interval != null) {
+            interval.groupCount + interval.entryCount + 1
+        } else {
+            group.groups.size + group.entries.size + 1
+        }
+
+        val result = ArrayList<UUID>(size)
+
+        val nextGroups = LinkedList<RawGroup>()
+            .apply {
+                add(group)
+            }
+
+        while (nextGroups.size > 0) {
+            val current = nextGroups.removeFirst()
+
+            result.add(current.uuid)
+            for (entry in current.entries) {
+                result.add(entry.uuid)
+            }
+
+            nextGroups.addAll(current.groups)
+        }
+
+        return result
+    }
+
+    /**
+     * @param db database with [changes] already applied
+     */
+    fun applyChanges(
+        db: KeePassDatabase,
+        changes: List<DatabaseChange>
+    ): KotpassDatabaseIndex {
+        val root = db.content.group
+        if (root.uuid != rootUid) {
+            return build(db)
+        }
+
+        val mutator = Mutator(this, root)
+        for (change in changes) {
+            val isApplied = mutator.apply(change)
+            if (!isApplied) {
+                Timber.w("Failed to apply change: %s, rebuilding index", change)
+                return build(db)
+            }
+        }
+
+        return mutator.build()
+    }
+
+    private class Mutator(
+        index: KotpassDatabaseIndex,
+        private val root: RawGroup
+    ) {
+
+        private val rootUid = index.rootUid
+        private val groups = index.groups.builder()
+        private val groupParents = index.groupParents.builder()
+        private val entries = index.entries.builder()
+        private val options = index.options.builder()
+        private val intervals = index.intervals.builder()
+        private var isTreeChanged = false
+
+        fun apply(change: DatabaseChange): Boolean {
+            return when (change) {
+                is DatabaseChange.EntryInserted -> {
+                    refreshPath(change.groupUid) ?: return false
+                    entries[change.entry.uuid] = Pair(change.groupUid, change.entry)
+                    updateEntryCount(change.groupUid, delta = 1)
+                    true
+                }
+
+                is DatabaseChange.EntryUpdated -> {
+                    val (groupUid, _) = entries[change.entry.uuid] ?: return false
+                    refreshPath(groupUid) ?: return false
+                    entries[change.entry.uuid] = Pair(groupUid, change.entry)
+                    true
+                }
+
+                is DatabaseChange.EntryMoved -> {
+                    val (oldGroupUid, _) = entries[change.entry.uuid] ?: return false
+                    refreshPath(oldGroupUid) ?: return false
+                    refreshPath(change.newGroupUid) ?: return false
+                    entries[change.entry.uuid] = Pair(change.newGroupUid, change.entry)
+                    updateEntryCount(oldGroupUid, delta = -1)
+                    updateEntryCount(change.newGroupUid, delta = 1)
+                    true
+                }
+
+                is DatabaseChange.EntryRemoved -> {
+                    val (groupUid, _) = entries[change.entryUid] ?: return false
+                    refreshPath(groupUid) ?: return false
+                    entries.remove(change.entryUid)
+                    updateEntryCount(groupUid, delta = -1)
+                    true
+                }
+
+                is DatabaseChange.GroupInserted -> {
+                    val parent = refreshPath(change.parentUid) ?: return false
+                    val group = parent.groups.firstOrNull { it.uuid == change.groupUid }
+                        ?: return false
+                    val parentOptions = options[parent.uuid] ?: return false
+                    addSubtree(group, parent.uuid, parentOptions)
+                    isTreeChanged = true
+                    true
+                }
+
+                is DatabaseChange.GroupUpdated -> {
+                    val oldGroup = groups[change.groupUid] ?: return false
+                    val newGroup = refreshPath(change.groupUid) ?: return false
+
+                    val isOptionsChanged = (oldGroup.enableAutoType != newGroup.enableAutoType ||
+                        oldGroup.enableSearching != newGroup.enableSearching)
+
+                    if (isOptionsChanged) {
+                        val parentOptions = getParentOptions(change.groupUid) ?: return false
+                        updateSubtreeOptions(newGroup, parentOptions)
+                    }
+                    true
+                }
+
+                is DatabaseChange.GroupMoved -> {
+                    val oldParentUid = groupParents[change.groupUid] ?: return false
+                    refreshPath(oldParentUid) ?: return false
+
+                    val newParent = refreshPath(change.newParentUid) ?: return false
+                    val group = newParent.groups.firstOrNull { it.uuid == change.groupUid }
+                        ?: return false
+                    val parentOptions = options[newParent.uuid] ?: return false
+
+                    removeSubtree(change.groupUid)
+                    addSubtree(group, newParent.uuid, parentOptions)
+                    isTreeChanged = true
+                    true
+                }
+
+                is DatabaseChange.GroupRemoved -> {
+                    val parentUid = groupParents[change.groupUid] ?: return false
+                    removeSubtree(change.groupUid)
+                    refreshPath(parentUid) ?: return false
+                    isTreeChanged = true
+                    true
+                }
+
+                is DatabaseChange.MetaChanged -> {
+                    groups[rootUid] === root
+                }
+            }
+        }
+
+        fun build(): KotpassDatabaseIndex {
+            if (isTreeChanged) {
+                rebuildIntervals()
+            }
+
+            return KotpassDatabaseIndex(
+                rootUid = rootUid,
+                groups = groups.build(),
+                groupParents = groupParents.build(),
+                entries = entries.build(),
+                options = options.build(),
+                intervals = intervals.build()
+            )
+        }
+
+        fun setTreeChanged() {
+            isTreeChanged = true
+        }
+
+        /**
+         * Numbers groups in order of the depth-first traversal, each group gets
+         * one position when the traversal enters it and another one when it exits
+         */
+        private fun rebuildIntervals() {
+            intervals.clear()
+
+            var position = 0
+            val enterPositions = HashMap<UUID, Int>()
+            val nextGroups = LinkedList<Pair<RawGroup, Boolean>>()
+                .apply {
+                    add(Pair(root, false))
+                }
+
+            while (nextGroups.size > 0) {
+                val (group, isVisited) = nextGroups.removeFirst()
+
+                if (!isVisited) {
+                    enterPositions[group.uuid] = position++
+                    nextGroups.addFirst(Pair(group, true))
+
+                    for (child in group.groups.asReversed()) {
+                        nextGroups.addFirst(Pair(child, false))
+                    }
+                    continue
+                }
+
+                val enter = enterPositions[group.uuid] ?: continue
+                val exit = position++
+
+                var entryCount = group.entries.size
+                for (child in group.groups) {
+                    entryCount += intervals[child.uuid]?.entryCount ?: 0
+                }
+
+                intervals[group.uuid] = TreeInterval(
+                    enter = enter,
+                    exit = exit,
+                    groupCount = (exit - enter - 1) / 2,
+                    entryCount = entryCount
+                )
+            }
+
+            isTreeChanged = false
+        }
+
+        private fun updateEntryCount(groupUid: UUID, delta: Int) {
+            if (isTreeChanged) {
+                return
+            }
+
+            var currentUid: UUID? = groupUid
+            while (currentUid != null) {
+                val interval = intervals[currentUid]
+                if (interval == null) {
+                    isTreeChanged = true
+                    return
+                }
+
+                intervals[currentUid] = interval.copy(entryCount = interval.entryCount + delta)
+                currentUid = groupParents[currentUid]
+            }
+        }
+
+        /**
+         * Replaces groups on the path from root to the specified group with the
+         * new instances from the modified database
+         */
+        private fun refreshPath(groupUid: UUID): RawGroup? {
+            val path = LinkedList<UUID>()
+
+            var currentUid: UUID? = groupUid
+            while (currentUid != null && currentUid != rootUid) {
+                path.addFirst(currentUid)
+                currentUid = groupParents[currentUid]
+            }
+
+            if (currentUid == null) {
+                return null
+            }
+
+            var group = root
+            groups[rootUid] = root
+
+            for (uid in path) {
+                group = group.groups.firstOrNull { it.uuid == uid } ?: return null
+                groups[uid] = group
+            }
+
+            return group
+        }
+
+        private fun getParentOptions(groupUid: UUID): InheritableOptions? {
+            if (groupUid == rootUid) {
+                return DEFAULT_PARENT_OPTIONS
+            }
+
+            val parentUid = groupParents[groupUid] ?: return null
+            return options[parentUid]
+        }
+
+        fun addSubtree(
+            group: RawGroup,
+            parentUid: UUID?,
+            parentOptions: InheritableOptions
+        ) {
+            if (parentUid != null) {
+                groupParents[group.uuid] = parentUid
+            }
+
+            val nextGroups = LinkedList<Pair<RawGroup, InheritableOptions>>()
+                .apply {
+                    add(Pair(group, parentOptions))
+                }
+
+            while (nextGroups.size > 0) {
+                val (current, currentParentOptions) = nextGroups.removeFirst()
+                val currentOptions = current.createOptions(currentParentOptions)
+
+                groups[current.uuid] = current
+                options[current.uuid] = currentOptions
+
+                for (entry in current.entries) {
+                    entries[entry.uuid] = Pair(current.uuid, entry)
+                }
+
+                for (child in current.groups) {
+                    groupParents[child.uuid] = current.uuid
+                    nextGroups.add(Pair(child, currentOptions))
+                }
+            }
+        }
+
+        private fun removeSubtree(groupUid: UUID) {
+            val group = groups[groupUid] ?: return
+
+            val nextGroups = LinkedList<RawGroup>()
+                .apply {
+                    add(group)
+                }
+
+            while (nextGroups.size > 0) {
+                val current = nextGroups.removeFirst()
+
+                groups.remove(current.uuid)
+                groupParents.remove(current.uuid)
+                options.remove(current.uuid)
+
+                for (entry in current.entries) {
+                    entries.remove(entry.uuid)
+                }
+
+                nextGroups.addAll(current.groups)
+            }
+        }
+
+        private fun updateSubtreeOptions(
+            group: RawGroup,
+            parentOptions: InheritableOptions
+        ) {
+            val nextGroups = LinkedList<Pair<RawGroup, InheritableOptions>>()
+                .apply {
+                    add(Pair(group, parentOptions))
+                }
+
+            while (nextGroups.size > 0) {
+                val (current, currentParentOptions) = nextGroups.removeFirst()
+                val currentOptions = current.createOptions(currentParentOptions)
+                options[current.uuid] = currentOptions
+
+                for (child in current.groups) {
+                    nextGroups.add(Pair(child, currentOptions))
+                }
+            }
+        }
+    }
+
+    companion object {
+
+        private val DEFAULT_PARENT_OPTIONS = InheritableOptions(
+            autotypeEnabled = InheritableBooleanOption(
+                isEnabled = DEFAULT_ROOT_INHERITABLE_VALUE,
+                isInheritValue = false
+            ),
+            searchEnabled = InheritableBooleanOption(
+                isEnabled = DEFAULT_ROOT_INHERITABLE_VALUE,
+                isInheritValue = false
+            )
+        )
+
+        fun build(db: KeePassDatabase): KotpassDatabaseIndex {
+            val root = db.content.group
+
+            val mutator = Mutator(
+                index = KotpassDatabaseIndex(
+                    rootUid = root.uuid,
+                    groups = persistentHashMapOf(),
+                    groupParents = persistentHashMapOf(),
+                    entries = persistentHashMapOf(),
+                    options = persistentHashMapOf(),
+                    intervals = persistentHashMapOf()
+                ),
+                root = root
+            )
+
+            mutator.addSubtree(
+                group = root,
+                parentUid = null,
+                parentOptions = DEFAULT_PARENT_OPTIONS
+            )
+            mutator.setTreeChanged()
+
+            return mutator.build()
+        }
+
+        private fun RawGroup.createOptions(parentOptions: InheritableOptions): InheritableOptions {
+            return InheritableOptions(
+                autotypeEnabled = enableAutoType.convertToInheritableOption(
+                    parentValue = parentOptions.autotypeEnabled.isEnabled
+                ),
+                searchEnabled = enableSearching.convertToInheritableOption(
+                    parentValue = parentOptions.searchEnabled.isEnabled
+                )
+            )
+        }
+    }
+
+    private data class TreeInterval(
+        val enter: Int,
+        val exit: Int,
+        val groupCount: Int,
+        val entryCount: Int
+    )
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.database.KeePassDatabase
+import app.keemobile.kotpass.database.modifiers.binaries
+import app.keemobile.kotpass.models.BinaryData
+import app.keemobile.kotpass.models.Entry
+import app.keemobile.kotpass.models.Group as RawGroup
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.OperationError.GENERIC_MESSAGE_FAILED_TO_FIND_ENTITY_BY_UID
+import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_FIND_GROUP
+import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
+import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase.Companion.DEFAULT_ROOT_INHERITABLE_VALUE
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.DatabaseChange
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.InheritableOptions
+import java.util.UUID
+import okio.ByteString
+
+/**
+ * Consistent view of [KeePassDatabase] together with the indexes derived from it.
+ * Database and indexes of the snapshot are immutable, so it can be read from any thread
+ * without locking, [version] is incremented on every modification of the database.
+ * Converted notes and groups are memoized by [conversionCache] and content hashes
+ * are memoized by [contentHashes], both are thread-safe and mutable, they are shared with
+ * the next snapshot, so only modified entries are converted and hashed again.
+ */
+class KotpassDatabaseSnapshot private constructor(
+    val version: Long,
+    val db: KeePassDatabase,
+    private val index: KotpassDatabaseIndex,
+    val conversionCache: KotpassConversionCache,
+    val contentHashes: KotpassContentHashes
+) {
+
+    val binaries: Map<ByteString, BinaryData>
+        get() = db.binaries
+
+    fun getRawRootGroup(): RawGroup = db.content.group
+
+    fun getRawRootGroupOptions(): InheritableOptions {
+        val root = getRawRootGroup()
+
+        return InheritableOptions(
+            autotypeEnabled = root.enableAutoType.convertToInheritableOption(
+                parentValue = DEFAULT_ROOT_INHERITABLE_VALUE
+            ),
+            searchEnabled = root.enableSearching.convertToInheritableOption(
+                parentValue = DEFAULT_ROOT_INHERITABLE_VALUE
+            )
+        )
+    }
+
+    fun getRawParentGroup(childUid: UUID): OperationResult<RawGroup> {
+        val parentGroup = index.getParentGroup(childUid)
+            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+
+        return OperationResult.success(parentGroup)
+    }
+
+    fun getRawGroupByUid(uid: UUID): OperationResult<RawGroup> {
+        val group = index.getGroup(uid)
+            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+
+        return OperationResult.success(group)
+    }
+
+    fun getRawEntryAndGroupByUid(noteUid: UUID): OperationResult<Pair<RawGroup, Entry>> {
+        val result = index.getEntryAndGroup(noteUid)
+            ?: return OperationResult.error(
+                newDbError(
+                    String.format(
+                        GENERIC_MESSAGE_FAILED_TO_FIND_ENTITY_BY_UID,
+                        Note::class.simpleName,
+                        noteUid
+                    )
+                )
+            )
+
+        return OperationResult.success(result)
+    }
+
+    fun getAllRawGroups(): List<RawGroup> = db.getAllGroups()
+
+    fun isEntryInsideGroupTree(
+        entryUid: UUID,
+        groupTreeRootUid: UUID
+    ): OperationResult<Boolean> {
+        val isInside = index.isEntryInsideTree(entryUid, groupTreeRootUid)
+            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+
+        return OperationResult.success(isInside)
+    }
+
+    fun isGroupInsideGroupTree(
+        groupUid: UUID,
+        groupTreeRootUid: UUID
+    ): OperationResult<Boolean> {
+        val isInside = index.isGroupInsideTree(groupUid, groupTreeRootUid)
+            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+
+        return OperationResult.success(isInside)
+    }
+
+    fun getSubtreeGroupCount(groupUid: UUID): OperationResult<Int> {
+        val count = index.getSubtreeGroupCount(groupUid)
+            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+
+        return OperationResult.success(count)
+    }
+
+    fun getSubtreeEntryCount(groupUid: UUID): OperationResult<Int> {
+        val count = index.getSubtreeEntryCount(groupUid)
+            ?: return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+
+        return OperationResult.success(count)
+    }
+
+    fun convertToNote(groupUid: UUID, entry: Entry): Note {
+        return conversionCache.getNote(entry, groupUid) {
+            entry.convertToNote(groupUid, binaries)
+        }
+    }
+
+    fun convertToNoteSummary(groupUid: UUID, entry: Entry): NoteSummary {
+        return conversionCache.getNoteSummary(entry, groupUid) {
+            entry.convertToNoteSummary(groupUid)
+        }
+    }
+
+    fun convertToGroup(
+        group: RawGroup,
+        parentGroupUid: UUID?,
+        options: InheritableOptions
+    ): Group {
+        return conversionCache.getGroup(group, parentGroupUid, options) {
+            group.convertToGroup(parentGroupUid, options)
+        }
+    }
+
+    /**
+     * @return content hash of the whole group tree, see [KotpassContentHashes]
+     */
+    fun getContentHash(): ByteString = contentHashes.getGroupHash(getRawRootGroup())
+
+    fun getGroupContentHash(group: RawGroup): ByteString = contentHashes.getGroupHash(group)
+
+    fun getEntryContentHash(entry: Entry): ByteString = contentHashes.getEntryHash(entry)
+
+    fun getInheritableOptions(groupUid: UUID): OperationResult<InheritableOptions> {
+        val options = index.getOptions(groupUid)
+        return options?.let { OperationResult.success(it) }
+            ?: OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_GROUP))
+    }
+
+    fun rebuild(newDb: KeePassDatabase): KotpassDatabaseSnapshot {
+        val newIndex = KotpassDatabaseIndex.build(newDb)
+        val removedUids = index.getSubtreeUids(getRawRootGroup().uuid)
+            .filter { uid -> !newIndex.contains(uid) }
+        conversionCache.remove(removedUids)
+        contentHashes.remove(removedUids)
+
+        return KotpassDatabaseSnapshot(
+            version = version + 1,
+            db = newDb,
+            index = newIndex,
+            conversionCache = conversionCache,
+            contentHashes = contentHashes
+        )
+    }
+
+    fun applyChanges(
+        newDb: KeePassDatabase,
+        changes: List<DatabaseChange>
+    ): KotpassDatabaseSnapshot {
+        val removedUids = getRemovedUids(changes)
+        conversionCache.remove(removedUids)
+        contentHashes.remove(removedUids)
+
+        return KotpassDatabaseSnapshot(
+            version = version + 1,
+            db = newDb,
+            index = index.applyChanges(newDb, changes),
+            conversionCache = conversionCache,
+            contentHashes = contentHashes
+        )
+    }
+
+    /**
+     * @return uids of removed entries and of all groups and entries inside removed
+     * group trees, they are looked up in the index before [changes] are applied
+     */
+    private fun getRemovedUids(changes: List<DatabaseChange>): List<UUID> {
+        val result = mutableListOf<UUID>()
+
+        for (change in changes) {
+            when (change) {
+                is DatabaseChange.EntryRemoved -> result.add(change.entryUid)
+                is DatabaseChange.GroupRemoved -> {
+                    result.addAll(index.getSubtreeUids(change.groupUid))
+                }
+
+                else -> {}
+            }
+        }
+
+        return result
+    }
+
+    companion object {
+
+        fun create(db: KeePassDatabase): KotpassDatabaseSnapshot {
+            return KotpassDatabaseSnapshot(
+                version = 0L,
+                db = db,
+                index = KotpassDatabaseIndex.build(db),
+                conversionCache = KotpassConversionCache(),
+                contentHashes = KotpassContentHashes()
+            )
+        }
+    }
+}
\ No newline at end of file
@@ -11,24 +11,43 @@ import app.keemobile.kotpass.models.EntryValue
 import app.keemobile.kotpass.models.Group as RawGroup
 import app.keemobile.kotpass.models.TimeData
 import com.ivanovsky.passnotes.data.entity.Attachment
+import com.ivanovsky.passnotes.data.entity.AttachmentSource
 import com.ivanovsky.passnotes.data.entity.Group
 import com.ivanovsky.passnotes.data.entity.Hash
 import com.ivanovsky.passnotes.data.entity.HashType
 import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
 import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_FIND_ATTACHMENT
+import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
+import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.entity.Property
 import com.ivanovsky.passnotes.data.entity.PropertyType
 import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.InheritableOptions
 import com.ivanovsky.passnotes.domain.entity.PropertyFilter
 import com.ivanovsky.passnotes.domain.otp.OtpUriFactory
+import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.extensions.toByteString
+import com.ivanovsky.passnotes.util.InputOutputUtils
 import com.ivanovsky.passnotes.util.StringUtils.EMPTY
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.io.InputStream
 import java.time.Instant
 import java.util.Date
 import java.util.LinkedList
 import java.util.UUID
+import java.util.zip.GZIPInputStream
 import okio.ByteString
 
+private const val GZIP_TRAILER_SIZE = 4
+
+private val DESCRIPTION_PROPERTY_TYPES = listOf(
+    PropertyType.USER_NAME,
+    PropertyType.URL,
+    PropertyType.NOTES
+)
+
 fun GroupOverride.convertToInheritableOption(parentValue: Boolean): InheritableBooleanOption {
     return when (this) {
         GroupOverride.Enabled -> InheritableBooleanOption(
@@ -86,20 +105,7 @@ fun RawEntry.convertToNote(
     groupUid: UUID,
     allBinaries: Map<ByteString, BinaryData>
 ): Note {
-    val properties = mutableListOf<Property>()
-
-    for (field in fields.entries) {
-        val type = determinePropertyType(field.key, field.value.content)
-
-        properties.add(
-            Property(
-                type = type,
-                name = type?.propertyName ?: field.key,
-                value = field.value.content,
-                isProtected = field.value is EntryValue.Encrypted
-            )
-        )
-    }
+    val properties = convertToProperties()
 
     val attachments = binaries.mapNotNull { binary ->
         binary.toAttachment(allBinaries = allBinaries)
@@ -120,6 +126,62 @@ fun RawEntry.convertToNote(
     )
 }
 
+fun RawEntry.convertToNoteSummary(groupUid: UUID): NoteSummary {
+    val expirationTime = getExpirationTime()
+
+    return NoteSummary(
+        uid = uuid,
+        groupUid = groupUid,
+        created = Date(getCreationTime()),
+        modified = Date(getModificationTime()),
+        expiration = if (expirationTime != null) Date(expirationTime) else null,
+        title = getFieldValue(PropertyType.TITLE) ?: EMPTY,
+        description = getDescription(),
+        isOtpEnabled = getFieldValue(PropertyType.OTP)
+            ?.let { value -> OtpUriFactory.parseUri(value) } != null,
+        attachmentCount = binaries.size,
+        tags = tags
+    )
+}
+
+/**
+ * @return value of the field with [type], values of the other fields are not read
+ */
+private fun RawEntry.getFieldValue(type: PropertyType): String? {
+    val field = fields.entries.firstOrNull { field -> PropertyType.getByName(field.key) == type }
+    return field?.value?.content
+}
+
+private fun RawEntry.getDescription(): String {
+    for (type in DESCRIPTION_PROPERTY_TYPES) {
+        val value = getFieldValue(type)
+        if (!value.isNullOrEmpty()) {
+            return value
+        }
+    }
+
+    return EMPTY
+}
+
+private fun RawEntry.convertToProperties(): List<Property> {
+    val properties = mutableListOf<Property>()
+
+    for (field in fields.entries) {
+        val type = determinePropertyType(field.key, field.value.content)
+
+        properties.add(
+            Property(
+                type = type,
+                name = type?.propertyName ?: field.key,
+                value = field.value.content,
+                isProtected = field.value is EntryValue.Encrypted
+            )
+        )
+    }
+
+    return properties
+}
+
 fun BinaryReference.toAttachment(
     allBinaries: Map<ByteString, BinaryData>
 ): Attachment? {
@@ -129,10 +191,42 @@ fun BinaryReference.toAttachment(
         uid = hash.base64(),
         name = name,
         hash = Hash(hash.toByteArray(), HashType.SHA_256),
-        data = data.getContent()
+        size = data.getContentSize(),
+        source = AttachmentSource.BinaryPool
     )
 }
 
+fun BinaryData.openStream(): InputStream {
+    val stream = ByteArrayInputStream(rawContent)
+    return when (this) {
+        is BinaryData.Compressed -> GZIPInputStream(stream)
+        is BinaryData.Uncompressed -> stream
+    }
+}
+
+/**
+ * Returns size of decompressed content, for gzip it is stored in the last 4 bytes
+ * of the stream, so the content doesn't have to be decompressed
+ */
+fun BinaryData.getContentSize(): Long {
+    return when (this) {
+        is BinaryData.Compressed -> {
+            if (rawContent.size < GZIP_TRAILER_SIZE) {
+                return getContent().size.toLong()
+            }
+
+            val offset = rawContent.size - GZIP_TRAILER_SIZE
+            var size = 0L
+            for (idx in GZIP_TRAILER_SIZE - 1 downTo 0) {
+                size = (size shl 8) or (rawContent[offset + idx].toLong() and 0xFF)
+            }
+            size
+        }
+
+        is BinaryData.Uncompressed -> rawContent.size.toLong()
+    }
+}
+
 private fun determinePropertyType(name: String, value: String): PropertyType? {
     val type = PropertyType.getByName(name) ?: return null
 
@@ -175,13 +269,6 @@ private fun RawEntry.getExpirationTime(): Long? {
     }
 }
 
-fun List<RawEntry>.convertToNotes(
-    groupUid: UUID,
-    allBinaries: Map<ByteString, BinaryData>
-): List<Note> {
-    return map { it.convertToNote(groupUid, allBinaries) }
-}
-
 fun Property.convertToEntryValue(): EntryValue {
     return if (isProtected) {
         val bytes = value?.toByteArray() ?: byteArrayOf()
@@ -242,9 +329,40 @@ fun Attachment.convertToBinaryReference(): BinaryReference {
     )
 }
 
-fun Attachment.convertToBinaryData(): BinaryData {
-    return BinaryData.Uncompressed(
-        memoryProtection = false,
-        rawContent = data
+/**
+ * Reads content of the attachment that is not stored in the binary pool yet.
+ * Attachment with [AttachmentSource.BinaryPool] source can't be converted, its content
+ * should already be in the binary pool of the database
+ */
+fun Attachment.convertToBinaryData(): OperationResult<BinaryData> {
+    val content = when (source) {
+        is AttachmentSource.InMemory -> source.data
+        is AttachmentSource.CachedFile -> {
+            val openResult = InputOutputUtils.newMappedFileInputStream(File(source.path))
+            if (openResult.isFailed) {
+                return openResult.mapError()
+            }
+
+            val readResult = InputOutputUtils.readAllBytes(
+                openResult.obj,
+                isCloseOnFinish = true
+            )
+            if (readResult.isFailed) {
+                return readResult.mapError()
+            }
+
+            readResult.obj
+        }
+
+        is AttachmentSource.BinaryPool -> {
+            return OperationResult.error(newDbError(MESSAGE_FAILED_TO_FIND_ATTACHMENT))
+        }
+    }
+
+    return OperationResult.success(
+        BinaryData.Uncompressed(
+            memoryProtection = false,
+            rawContent = content
+        )
     )
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import app.keemobile.kotpass.models.Group as RawGroup
 import com.ivanovsky.passnotes.data.entity.Group
 import com.ivanovsky.passnotes.data.entity.GroupEntity
 import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_MOVE_GROUP_INSIDE_ITS_OWN_TREE
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_PARENT_UID_IS_NULL
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_UID_IS_NULL
@@ -15,12 +16,14 @@ import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
 import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher
 import com.ivanovsky.passnotes.data.repository.encdb.dao.GroupDao
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.DatabaseChange
 import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.extensions.map
 import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.extensions.mapWithObject
 import com.ivanovsky.passnotes.extensions.matches
 import com.ivanovsky.passnotes.extensions.toEntity
+import java.util.LinkedList
 import java.util.UUID
 import kotlin.concurrent.withLock
 
@@ -33,69 +36,72 @@ class KotpassGroupDao(
     override fun getContentWatcher(): ContentWatcher<Group> = watcher
 
     override fun getAll(): OperationResult<List<Group>> {
-        return db.lock.withLock {
-            val rootUid = db.getRawRootGroup().uuid
-
-            val allGroups = db.getAllRawGroups()
-                .map { group ->
-                    val getOptionsResult = db.getInheritableOptions(group.uuid)
-                    if (getOptionsResult.isFailed) {
-                        return@withLock getOptionsResult.mapError()
-                    }
-
-                    val parent = if (group.uuid != rootUid) {
-                        val getParentResult = db.getRawParentGroup(group.uuid)
-                        if (getParentResult.isFailed) {
-                            return@withLock getParentResult.mapError()
-                        }
+        val snapshot = db.getSnapshot()
+        val rootUid = snapshot.getRawRootGroup().uuid
+
+        val allGroups = snapshot.getAllRawGroups()
+            .map { group ->
+                val getOptionsResult = snapshot.getInheritableOptions(group.uuid)
+                if (getOptionsResult.isFailed) {
+                    return getOptionsResult.mapError()
+                }
 
-                        getParentResult.obj
-                    } else {
-                        null
+                val parent = if (group.uuid != rootUid) {
+                    val getParentResult = snapshot.getRawParentGroup(group.uuid)
+                    if (getParentResult.isFailed) {
+                        return getParentResult.mapError()
                     }
 
-                    group.convertToGroup(
-                        parentGroupUid = parent?.uuid,
-                        options = getOptionsResult.obj
-                    )
+                    getParentResult.obj
+                } else {
+                    null
                 }
 
-            OperationResult.success(allGroups)
-        }
+                snapshot.convertToGroup(
+                    group = group,
+                    parentGroupUid = parent?.uuid,
+                    options = getOptionsResult.obj
+                )
+            }
+
+        return OperationResult.success(allGroups)
     }
 
     override fun getRootGroup(): OperationResult<Group> {
-        val root = db.getRawRootGroup()
-        val result = root.convertToGroup(
+        val snapshot = db.getSnapshot()
+        val root = snapshot.getRawRootGroup()
+        val result = snapshot.convertToGroup(
+            group = root,
             parentGroupUid = null,
-            options = db.getRawRootGroupOptions()
+            options = snapshot.getRawRootGroupOptions()
         )
         return OperationResult.success(result)
     }
 
     override fun getChildGroups(parentGroupUid: UUID): OperationResult<List<Group>> {
-        return db.lock.withLock {
-            val getGroupResult = db.getRawGroupByUid(parentGroupUid)
-            if (getGroupResult.isFailed) {
-                return@withLock getGroupResult.mapError()
-            }
+        val snapshot = db.getSnapshot()
 
-            val group = getGroupResult.obj
-            val groups = group.groups
-                .map { child ->
-                    val getOptionsResult = db.getInheritableOptions(child.uuid)
-                    if (getOptionsResult.isFailed) {
-                        return@withLock getOptionsResult.mapError()
-                    }
+        val getGroupResult = snapshot.getRawGroupByUid(parentGroupUid)
+        if (getGroupResult.isFailed) {
+            return getGroupResult.mapError()
+        }
 
-                    child.convertToGroup(
-                        parentGroupUid = group.uuid,
-                        options = getOptionsResult.obj
-                    )
+        val group = getGroupResult.obj
+        val groups = group.groups
+            .map { child ->
+                val getOptionsResult = snapshot.getInheritableOptions(child.uuid)
+                if (getOptionsResult.isFailed) {
+                    return getOptionsResult.mapError()
                 }
 
-            OperationResult.success(groups)
-        }
+                snapshot.convertToGroup(
+                    group = child,
+                    parentGroupUid = group.uuid,
+                    options = getOptionsResult.obj
+                )
+            }
+
+        return OperationResult.success(groups)
     }
 
     override fun insert(group: GroupEntity): OperationResult<UUID> {
@@ -103,7 +109,7 @@ class KotpassGroupDao(
     }
 
     override fun insert(entity: GroupEntity, doCommit: Boolean): OperationResult<UUID> {
-        val result = db.lock.withLock {
+        val insertResult = db.lock.withLock {
             if (entity.parentUid == null) {
                 return@withLock OperationResult.error(newDbError(MESSAGE_PARENT_UID_IS_NULL))
             }
@@ -132,7 +138,13 @@ class KotpassGroupDao(
                 )
             }
 
-            db.swapDatabase(newRawDatabase)
+            db.swapDatabase(
+                newRawDatabase,
+                DatabaseChange.GroupInserted(
+                    parentUid = parentRawGroup.uuid,
+                    groupUid = uid
+                )
+            )
 
             val getGroupResult = db.getRawGroupByUid(uid)
             if (getGroupResult.isFailed) {
@@ -149,22 +161,29 @@ class KotpassGroupDao(
                 options = getOptionsResult.obj
             )
 
-            if (doCommit) {
-                db.commit().mapWithObject(newGroup)
-            } else {
-                OperationResult.success(newGroup)
-            }
+            OperationResult.success(newGroup)
         }
 
-        if (result.isSucceededOrDeferred) {
-            contentWatcher.notifyEntryInserted(result.obj)
+        if (insertResult.isFailed) {
+            return insertResult.mapError()
         }
 
-        return result.map { it.uid }
+        // group is already inserted in memory, even if it won't be written
+        val newGroup = insertResult.obj
+        contentWatcher.notifyEntryInserted(newGroup)
+
+        return if (doCommit) {
+            db.commit().mapWithObject(newGroup.uid)
+        } else {
+            insertResult.map { it.uid }
+        }
     }
 
     override fun remove(groupUid: UUID): OperationResult<Boolean> {
-        val result = db.lock.withLock {
+        var removedGroups = emptyList<Group>()
+        var removedNotes = emptyList<Note>()
+
+        val removeResult = db.lock.withLock {
             val getGroupResult = getGroupByUid(groupUid)
             if (getGroupResult.isFailed) {
                 return@withLock getGroupResult.mapError()
@@ -179,7 +198,7 @@ class KotpassGroupDao(
             val recycleBinGroup = getRecycleBinResult.getOrThrow()
 
             val isInsideRecycleBin = if (recycleBinGroup != null) {
-                val isInsideRecycleBinResult = isGroupInsideGroupTree(
+                val isInsideRecycleBinResult = db.isGroupInsideGroupTree(
                     groupUid = groupUid,
                     groupTreeRootUid = recycleBinGroup.uuid
                 )
@@ -204,57 +223,112 @@ class KotpassGroupDao(
                 }
 
                 else -> {
-                    // remove permanently
+                    // remove permanently, content of the group tree is removed too
+                    val getRawGroupResult = db.getRawGroupByUid(groupUid)
+                    if (getRawGroupResult.isFailed) {
+                        return@withLock getRawGroupResult.mapError()
+                    }
+
+                    val collectResult = collectGroupTree(getRawGroupResult.obj)
+                    if (collectResult.isFailed) {
+                        return@withLock collectResult.mapError()
+                    }
+
+                    removedGroups = collectResult.obj.first
+                    removedNotes = collectResult.obj.second
+
                     val newDb = db.getRawDatabase().removeGroup(groupUid)
-                    db.swapDatabase(newDb)
+                    db.swapDatabase(newDb, DatabaseChange.GroupRemoved(groupUid))
                 }
             }
 
-            db.commit().mapWithObject(group)
+            OperationResult.success(group)
         }
 
-        if (result.isSucceededOrDeferred) {
-            contentWatcher.notifyEntryRemoved(result.obj)
+        if (removeResult.isFailed) {
+            return removeResult.mapError()
         }
 
-        return result.mapWithObject(true)
+        db.noteDao.contentWatcher.notifyEntriesRemoved(removedNotes)
+        contentWatcher.notifyEntriesRemoved(removedGroups + removeResult.obj)
+
+        return db.commit().mapWithObject(true)
     }
 
-    override fun getGroupByUid(groupUid: UUID): OperationResult<Group> {
-        return db.lock.withLock {
-            val getGroupResult = db.getRawGroupByUid(groupUid)
-            if (getGroupResult.isFailed) {
-                return@withLock getGroupResult.mapError()
+    /**
+     * @return groups and notes inside the group tree with root [root], root is not included
+     */
+    private fun collectGroupTree(root: RawGroup): OperationResult<Pair<List<Group>, List<Note>>> {
+        val snapshot = db.getSnapshot()
+        val groups = mutableListOf<Group>()
+        val notes = mutableListOf<Note>()
+
+        val queue = LinkedList<RawGroup>()
+        queue.add(root)
+
+        while (queue.isNotEmpty()) {
+            val group = queue.poll()
+
+            for (entry in group.entries) {
+                notes.add(snapshot.convertToNote(group.uuid, entry))
             }
 
-            val getOptionsResult = db.getInheritableOptions(groupUid)
-            if (getOptionsResult.isFailed) {
-                return@withLock getOptionsResult.mapError()
+            for (childGroup in group.groups) {
+                val getOptionsResult = snapshot.getInheritableOptions(childGroup.uuid)
+                if (getOptionsResult.isFailed) {
+                    return getOptionsResult.mapError()
+                }
+
+                groups.add(
+                    snapshot.convertToGroup(
+                        group = childGroup,
+                        parentGroupUid = group.uuid,
+                        options = getOptionsResult.obj
+                    )
+                )
+                queue.add(childGroup)
             }
+        }
+
+        return OperationResult.success(Pair(groups, notes))
+    }
 
-            val group = getGroupResult.obj
-            val options = getOptionsResult.obj
+    override fun getGroupByUid(groupUid: UUID): OperationResult<Group> {
+        val snapshot = db.getSnapshot()
 
-            val rootUid = db.getRawRootGroup().uuid
+        val getGroupResult = snapshot.getRawGroupByUid(groupUid)
+        if (getGroupResult.isFailed) {
+            return getGroupResult.mapError()
+        }
 
-            val parent = if (group.uuid != rootUid) {
-                val getParentResult = db.getRawParentGroup(group.uuid)
-                if (getParentResult.isFailed) {
-                    return@withLock getParentResult.mapError()
-                }
+        val getOptionsResult = snapshot.getInheritableOptions(groupUid)
+        if (getOptionsResult.isFailed) {
+            return getOptionsResult.mapError()
+        }
 
-                getParentResult.obj
-            } else {
-                null
+        val group = getGroupResult.obj
+        val options = getOptionsResult.obj
+
+        val rootUid = snapshot.getRawRootGroup().uuid
+
+        val parent = if (group.uuid != rootUid) {
+            val getParentResult = snapshot.getRawParentGroup(group.uuid)
+            if (getParentResult.isFailed) {
+                return getParentResult.mapError()
             }
 
-            OperationResult.success(
-                group.convertToGroup(
-                    parentGroupUid = parent?.uuid,
-                    options = options
-                )
-            )
+            getParentResult.obj
+        } else {
+            null
         }
+
+        return OperationResult.success(
+            snapshot.convertToGroup(
+                group = group,
+                parentGroupUid = parent?.uuid,
+                options = options
+            )
+        )
     }
 
     override fun update(entity: GroupEntity, doCommit: Boolean): OperationResult<Boolean> {
@@ -274,7 +348,7 @@ class KotpassGroupDao(
             autotypeEnabled = entity.autotypeEnabled
         )
 
-        val result = db.lock.withLock {
+        val updateResult = db.lock.withLock {
             if (entity.parentUid == null) {
                 val newDb = db.getRawDatabase().modifyGroup(entity.uid) {
                     copy(
@@ -284,12 +358,12 @@ class KotpassGroupDao(
                     )
                 }
 
-                db.swapDatabase(newDb)
+                db.swapDatabase(newDb, DatabaseChange.GroupUpdated(entity.uid))
 
-                return@withLock db.commit().mapWithObject(newGroup)
+                return@withLock OperationResult.success(newGroup)
             }
 
-            val isInsideItself = isGroupInsideGroupTree(entity.parentUid, entity.uid)
+            val isInsideItself = db.isGroupInsideGroupTree(entity.parentUid, entity.uid)
             if (isInsideItself.isFailed) {
                 return@withLock isInsideItself.mapError()
             }
@@ -319,7 +393,9 @@ class KotpassGroupDao(
             val oldRawParent = getOldParentResult.obj
             val newRawParent = getNewParentResult.obj
 
-            val newDb = if (oldRawParent.uuid != newRawParent.uuid) {
+            val isMoved = (oldRawParent.uuid != newRawParent.uuid)
+
+            val newDb = if (isMoved) {
                 db.getRawDatabase()
                     .moveGroup(entity.uid, entity.parentUid)
                     .modifyGroup(entity.uid) {
@@ -340,57 +416,47 @@ class KotpassGroupDao(
                     }
             }
 
-            db.swapDatabase(newDb)
+            val change = if (isMoved) {
+                DatabaseChange.GroupMoved(
+                    newParentUid = newRawParent.uuid,
+                    groupUid = entity.uid
+                )
+            } else {
+                DatabaseChange.GroupUpdated(entity.uid)
+            }
 
-            db.commit().mapWithObject(newGroup)
-        }
+            db.swapDatabase(newDb, change)
 
-        if (result.isSucceededOrDeferred) {
-            contentWatcher.notifyEntryChanged(oldGroup, newGroup)
+            OperationResult.success(newGroup)
         }
 
-        return result.mapWithObject(true)
-    }
-
-    override fun find(query: String): OperationResult<List<Group>> {
-        return db.lock.withLock {
-            val getRootResult = rootGroup
-            if (getRootResult.isFailed) {
-                return@withLock getRootResult.mapError()
-            }
-
-            val allGroupsResult = all
-            if (allGroupsResult.isFailed) {
-                return@withLock allGroupsResult.mapError()
-            }
+        if (updateResult.isFailed) {
+            return updateResult.mapError()
+        }
 
-            val allGroups = allGroupsResult.obj
-            val root = getRootResult.obj
+        contentWatcher.notifyEntryChanged(oldGroup, newGroup)
 
-            val matchedGroups = allGroups
-                .filter { group ->
-                    group.uid != root.uid && group.matches(query)
-                }
-
-            OperationResult.success(matchedGroups)
+        return if (doCommit) {
+            db.commit().mapWithObject(true)
+        } else {
+            updateResult.mapWithObject(true)
         }
     }
 
-    private fun isGroupInsideGroupTree(
-        groupUid: UUID,
-        groupTreeRootUid: UUID
-    ): OperationResult<Boolean> {
-        val getTreeRootResult = db.getRawGroupByUid(groupTreeRootUid)
-        if (getTreeRootResult.isFailed) {
-            return getTreeRootResult.mapError()
-        }
+    override fun find(query: String): OperationResult<List<Group>> {
+        val rootUid = db.getSnapshot().getRawRootGroup().uuid
 
-        val rawTreeRoot = getTreeRootResult.obj
-        val tree = db.getRawChildGroups(rawTreeRoot)
+        val allGroupsResult = all
+        if (allGroupsResult.isFailed) {
+            return allGroupsResult.mapError()
+        }
 
-        val isGroupInsideTree = tree.any { it.uuid == groupUid }
+        val matchedGroups = allGroupsResult.obj
+            .filter { group ->
+                group.uid != rootUid && group.matches(query)
+            }
 
-        return OperationResult.success(isGroupInsideTree)
+        return OperationResult.success(matchedGroups)
     }
 
     private fun InheritableBooleanOption.toRawOption(): GroupOverride {
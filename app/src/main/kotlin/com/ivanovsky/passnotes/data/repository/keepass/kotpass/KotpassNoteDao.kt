@@ -1,7 +1,6 @@
 package com.ivanovsky.passnotes.data.repository.keepass.kotpass
 
 import app.keemobile.kotpass.database.KeePassDatabase
-import app.keemobile.kotpass.database.getEntry
 import app.keemobile.kotpass.database.modifiers.binaries
 import app.keemobile.kotpass.database.modifiers.modifyBinaries
 import app.keemobile.kotpass.database.modifiers.modifyGroup
@@ -10,17 +9,19 @@ import app.keemobile.kotpass.models.BinaryData
 import app.keemobile.kotpass.models.BinaryReference
 import app.keemobile.kotpass.models.Entry
 import com.ivanovsky.passnotes.data.entity.Attachment
+import com.ivanovsky.passnotes.data.entity.AttachmentSource
 import com.ivanovsky.passnotes.data.entity.Hash
 import com.ivanovsky.passnotes.data.entity.HashType
 import com.ivanovsky.passnotes.data.entity.Note
-import com.ivanovsky.passnotes.data.entity.OperationError.GENERIC_MESSAGE_FAILED_TO_FIND_ENTITY_BY_UID
-import com.ivanovsky.passnotes.data.entity.OperationError.GENERIC_MESSAGE_NOT_FOUND
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_FIND_ATTACHMENT
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_FAILED_TO_FIND_NOTE
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_UID_IS_NULL
 import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
 import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher
 import com.ivanovsky.passnotes.data.repository.encdb.dao.NoteDao
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.DatabaseChange
 import com.ivanovsky.passnotes.domain.NoteDiffer
 import com.ivanovsky.passnotes.domain.NoteDiffer.DiffAction
 import com.ivanovsky.passnotes.extensions.getOrNull
@@ -29,6 +30,10 @@ import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.extensions.mapWithObject
 import com.ivanovsky.passnotes.extensions.matches
 import com.ivanovsky.passnotes.extensions.toByteString
+import com.ivanovsky.passnotes.util.InputOutputUtils
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.io.InputStream
 import java.util.UUID
 import kotlin.concurrent.withLock
 import kotlin.math.max
@@ -44,59 +49,66 @@ class KotpassNoteDao(
     override fun getContentWatcher(): ContentWatcher<Note> = watcher
 
     override fun getAll(): OperationResult<List<Note>> {
-        return db.lock.withLock {
-            val root = db.getRawRootGroup()
+        val snapshot = db.getSnapshot()
 
-            val allNotes = db.collectEntries(root) { rawGroup, rawGroupEntries ->
-                rawGroupEntries.convertToNotes(
-                    groupUid = rawGroup.uuid,
-                    allBinaries = db.getRawDatabase().binaries
-                )
-            }
-
-            OperationResult.success(allNotes)
+        val allNotes = db.collectEntries(snapshot.getRawRootGroup()) { rawGroup, rawGroupEntries ->
+            rawGroupEntries.map { entry -> snapshot.convertToNote(rawGroup.uuid, entry) }
         }
+
+        return OperationResult.success(allNotes)
     }
 
     override fun getNotesByGroupUid(groupUid: UUID): OperationResult<List<Note>> {
-        return db.lock.withLock {
-            val getGroupResult = db.getRawGroupByUid(groupUid)
-            if (getGroupResult.isFailed) {
-                return@withLock getGroupResult.mapError()
-            }
+        val snapshot = db.getSnapshot()
 
-            val rawGroup = getGroupResult.obj
-            return@withLock OperationResult.success(
-                rawGroup.entries.convertToNotes(
-                    groupUid = rawGroup.uuid,
-                    allBinaries = db.getRawDatabase().binaries
-                )
-            )
+        val getGroupResult = snapshot.getRawGroupByUid(groupUid)
+        if (getGroupResult.isFailed) {
+            return getGroupResult.mapError()
         }
+
+        val rawGroup = getGroupResult.obj
+        return OperationResult.success(
+            rawGroup.entries.map { entry -> snapshot.convertToNote(rawGroup.uuid, entry) }
+        )
     }
 
     override fun getNoteByUid(noteUid: UUID): OperationResult<Note> {
-        return db.lock.withLock {
-            val result = db.getRawDatabase().getEntry { rawEntry -> rawEntry.uuid == noteUid }
-                ?: return@withLock OperationResult.error(
-                    newDbError(
-                        String.format(
-                            GENERIC_MESSAGE_FAILED_TO_FIND_ENTITY_BY_UID,
-                            Note::class.simpleName,
-                            noteUid
-                        )
-                    )
-                )
+        val snapshot = db.getSnapshot()
 
-            val (rawGroup, rawEntry) = result
+        val getEntryAndGroupResult = snapshot.getRawEntryAndGroupByUid(noteUid)
+        if (getEntryAndGroupResult.isFailed) {
+            return getEntryAndGroupResult.mapError()
+        }
 
-            OperationResult.success(
-                rawEntry.convertToNote(
-                    groupUid = rawGroup.uuid,
-                    allBinaries = db.getRawDatabase().binaries
-                )
-            )
+        val (rawGroup, rawEntry) = getEntryAndGroupResult.getOrThrow()
+
+        return OperationResult.success(
+            snapshot.convertToNote(rawGroup.uuid, rawEntry)
+        )
+    }
+
+    override fun getAllSummaries(): OperationResult<List<NoteSummary>> {
+        val snapshot = db.getSnapshot()
+
+        val summaries = db.collectEntries(snapshot.getRawRootGroup()) { rawGroup, rawGroupEntries ->
+            rawGroupEntries.map { entry -> snapshot.convertToNoteSummary(rawGroup.uuid, entry) }
         }
+
+        return OperationResult.success(summaries)
+    }
+
+    override fun getSummariesByGroupUid(groupUid: UUID): OperationResult<List<NoteSummary>> {
+        val snapshot = db.getSnapshot()
+
+        val getGroupResult = snapshot.getRawGroupByUid(groupUid)
+        if (getGroupResult.isFailed) {
+            return getGroupResult.mapError()
+        }
+
+        val rawGroup = getGroupResult.obj
+        return OperationResult.success(
+            rawGroup.entries.map { entry -> snapshot.convertToNoteSummary(rawGroup.uuid, entry) }
+        )
     }
 
     override fun insert(note: Note): OperationResult<UUID> {
@@ -115,45 +127,22 @@ class KotpassNoteDao(
     }
 
     override fun insert(notes: List<Note>, doCommit: Boolean): OperationResult<Boolean> {
-        val results = notes.map { note ->
-            insert(
-                note,
-                notifyWatcher = false,
-                doCommit = doCommit
-            )
-        }
-
-        val isSuccess = results.all { it.isSucceededOrDeferred }
+        val newNotes = notes.map { note -> note.copy(uid = UUID.randomUUID()) }
 
-        return if (isSuccess) {
-            val commitResult = if (doCommit) {
-                val commit = db.commit()
-                if (commit.isFailed) {
-                    return commit.mapError()
+        return db.transaction {
+            for ((groupUid, groupNotes) in newNotes.groupBy { note -> note.groupUid }) {
+                val insertResult = insertIntoGroup(groupUid, groupNotes)
+                if (insertResult.isFailed) {
+                    return@transaction insertResult.mapError()
                 }
-                commit
-            } else {
-                null
-            }
-
-            val newNotes = notes.mapIndexed { idx, note ->
-                val uid = results[idx].obj
-                note.copy(uid = uid)
             }
 
             watcher.notifyEntriesInserted(newNotes)
 
-            commitResult ?: OperationResult.success(true)
-        } else {
-            val failedOperation = results.firstOrNull { it.isFailed }
-            if (failedOperation != null) {
-                failedOperation.mapError()
+            if (doCommit) {
+                db.commit()
             } else {
-                OperationResult.error(
-                    newDbError(
-                        String.format(GENERIC_MESSAGE_NOT_FOUND, "Operation")
-                    )
-                )
+                OperationResult.success(true)
             }
         }
     }
@@ -161,19 +150,17 @@ class KotpassNoteDao(
     override fun update(newNote: Note, doCommit: Boolean): OperationResult<UUID> {
         val noteUid = newNote.uid ?: return OperationResult.error(newDbError(MESSAGE_UID_IS_NULL))
 
-        val getOldNoteResult = db.lock.withLock { getNoteByUid(noteUid) }
-        if (getOldNoteResult.isFailed) {
-            return getOldNoteResult.takeError()
-        }
-        val oldNote = getOldNoteResult.obj
-
-        val result = db.lock.withLock {
-            val getOldEntryAndGroupResult = db.getRawEntryAndGroupByUid(noteUid)
+        // Old note is read under the same lock as it is replaced, so it can't be changed
+        // by another writer in between
+        val updateResult: OperationResult<Note> = db.lock.withLock {
+            val snapshot = db.getSnapshot()
+            val getOldEntryAndGroupResult = snapshot.getRawEntryAndGroupByUid(noteUid)
             if (getOldEntryAndGroupResult.isFailed) {
-                return@withLock getOldEntryAndGroupResult.takeError()
+                return@withLock getOldEntryAndGroupResult.mapError()
             }
 
             val (oldRawGroup, oldRawEntry) = getOldEntryAndGroupResult.getOrThrow()
+            val oldNote = snapshot.convertToNote(oldRawGroup.uuid, oldRawEntry)
 
             val isInTheSameGroup = (newNote.groupUid == oldNote.groupUid)
 
@@ -200,11 +187,16 @@ class KotpassNoteDao(
             )
 
             if (toInsert.isNotEmpty() || toRemove.isNotEmpty()) {
-                newDb = modifyBinaries(
+                val modifyBinariesResult = modifyBinaries(
                     noteUid = oldNote.uid,
                     toInsert = toInsert,
                     toRemove = toRemove
                 )
+                if (modifyBinariesResult.isFailed) {
+                    return@withLock modifyBinariesResult.mapError()
+                }
+
+                newDb = modifyBinariesResult.obj
             }
 
             if (isInTheSameGroup) {
@@ -241,16 +233,32 @@ class KotpassNoteDao(
                 }
             }
 
-            db.swapDatabase(newDb)
+            val change = if (isInTheSameGroup) {
+                DatabaseChange.EntryUpdated(newEntry)
+            } else {
+                DatabaseChange.EntryMoved(
+                    newGroupUid = newNote.groupUid,
+                    entry = newEntry
+                )
+            }
 
-            db.commit().mapWithObject(noteUid)
+            db.swapDatabase(newDb, change)
+
+            OperationResult.success(oldNote)
         }
 
-        if (result.isSucceededOrDeferred) {
-            watcher.notifyEntryChanged(oldNote, newNote)
+        if (updateResult.isFailed) {
+            return updateResult.mapError()
         }
 
-        return result
+        // note is already changed in memory, even if it won't be written
+        watcher.notifyEntryChanged(updateResult.obj, newNote)
+
+        return if (doCommit) {
+            db.commit().mapWithObject(noteUid)
+        } else {
+            updateResult.mapWithObject(noteUid)
+        }
     }
 
     private fun prepareEntryHistory(oldEntry: Entry): OperationResult<List<Entry>> {
@@ -352,7 +360,7 @@ class KotpassNoteDao(
     }
 
     override fun remove(noteUid: UUID): OperationResult<Boolean> {
-        val result = db.lock.withLock {
+        val removeResult = db.lock.withLock {
             val getNoteResult = getNoteByUid(noteUid)
             if (getNoteResult.isFailed) {
                 return@withLock getNoteResult.mapError()
@@ -394,33 +402,32 @@ class KotpassNoteDao(
                 else -> {
                     // remove permanently
                     val newDb = db.getRawDatabase().removeEntry(noteUid)
-                    db.swapDatabase(newDb)
+                    db.swapDatabase(newDb, DatabaseChange.EntryRemoved(noteUid))
                 }
             }
 
-            db.commit().mapWithObject(note)
+            OperationResult.success(note)
         }
 
-        if (result.isSucceededOrDeferred) {
-            val note = result.obj
-            watcher.notifyEntryRemoved(note)
+        if (removeResult.isFailed) {
+            return removeResult.mapError()
         }
 
-        return result.mapWithObject(true)
+        watcher.notifyEntryRemoved(removeResult.obj)
+
+        return db.commit().mapWithObject(true)
     }
 
     override fun find(query: String): OperationResult<List<Note>> {
-        return db.lock.withLock {
-            val allNotesResult = getAll()
-            if (allNotesResult.isFailed) {
-                return@withLock allNotesResult.mapError()
-            }
+        val allNotesResult = getAll()
+        if (allNotesResult.isFailed) {
+            return allNotesResult.mapError()
+        }
 
-            val matchedNotes = allNotesResult.obj
-                .filter { it.matches(query) }
+        val matchedNotes = allNotesResult.obj
+            .filter { it.matches(query) }
 
-            OperationResult.success(matchedNotes)
-        }
+        return OperationResult.success(matchedNotes)
     }
 
     private fun insert(
@@ -431,54 +438,82 @@ class KotpassNoteDao(
         val newUid = UUID.randomUUID()
         val newNote = note.copy(uid = newUid)
 
-        val result = db.lock.withLock {
-            val getGroupResult = db.getRawGroupByUid(newNote.groupUid)
-            if (getGroupResult.isFailed) {
-                return@withLock getGroupResult.mapError()
-            }
+        val insertResult = db.lock.withLock {
+            insertIntoGroup(newNote.groupUid, listOf(newNote))
+        }
 
-            val rawGroup = getGroupResult.obj
-            val rawEntry = newNote.convertToEntry()
+        if (insertResult.isFailed) {
+            return insertResult.mapError()
+        }
 
-            val newEntries = rawGroup.entries.plus(rawEntry)
+        if (notifyWatcher) {
+            watcher.notifyEntryInserted(newNote)
+        }
 
-            var newDb = db.getRawDatabase()
+        return if (doCommit) {
+            db.commit().mapWithObject(newUid)
+        } else {
+            insertResult.mapWithObject(newUid)
+        }
+    }
 
-            if (note.attachments.isNotEmpty()) {
-                newDb = modifyBinaries(
-                    noteUid = null,
-                    toInsert = note.attachments,
-                    toRemove = emptyList()
-                )
-            }
+    /**
+     * Inserts notes with one modification of the group, notes should already have uids
+     */
+    private fun insertIntoGroup(
+        groupUid: UUID,
+        notes: List<Note>
+    ): OperationResult<Unit> {
+        val getGroupResult = db.getRawGroupByUid(groupUid)
+        if (getGroupResult.isFailed) {
+            return getGroupResult.mapError()
+        }
 
-            newDb = newDb.modifyGroup(newNote.groupUid) {
-                copy(
-                    entries = newEntries
-                )
-            }
+        val rawGroup = getGroupResult.obj
+        val rawEntries = notes.map { note -> note.convertToEntry() }
 
-            db.swapDatabase(newDb)
+        val newEntries = rawGroup.entries.plus(rawEntries)
 
-            if (doCommit) {
-                db.commit().mapWithObject(newUid)
-            } else {
-                OperationResult.success(newUid)
+        var newDb = db.getRawDatabase()
+
+        val attachments = notes.flatMap { note -> note.attachments }
+        if (attachments.isNotEmpty()) {
+            val modifyBinariesResult = modifyBinaries(
+                noteUid = null,
+                toInsert = attachments,
+                toRemove = emptyList()
+            )
+            if (modifyBinariesResult.isFailed) {
+                return modifyBinariesResult.mapError()
             }
+
+            newDb = modifyBinariesResult.obj
         }
 
-        if (notifyWatcher && result.isSucceededOrDeferred) {
-            watcher.notifyEntryInserted(newNote)
+        newDb = newDb.modifyGroup(groupUid) {
+            copy(
+                entries = newEntries
+            )
         }
 
-        return result
+        db.swapDatabase(
+            newDb,
+            rawEntries.map { rawEntry ->
+                DatabaseChange.EntryInserted(
+                    groupUid = groupUid,
+                    entry = rawEntry
+                )
+            }
+        )
+
+        return OperationResult.success(Unit)
     }
 
     private fun modifyBinaries(
         noteUid: UUID?,
         toInsert: List<Attachment>,
         toRemove: List<Attachment>
-    ): KeePassDatabase {
+    ): OperationResult<KeePassDatabase> {
         val root = db.getRawRootGroup()
         val allEntries = db.collectEntries(root) { _, entries ->
             entries.filter { entry -> entry.uuid != noteUid }
@@ -498,47 +533,78 @@ class KotpassNoteDao(
             }
         }
 
-        return db.getRawDatabase().modifyBinaries {
-            val binaryMap = it.toMutableMap()
+        val rawDb = db.getRawDatabase()
+        val binaryMap = rawDb.binaries.toMutableMap()
 
-            for (attachment in toInsert) {
-                val key = attachment.hash.toByteString()
-                if (!binaryMap.containsKey(key)) {
-                    binaryMap[key] = attachment.convertToBinaryData()
-                }
+        for (attachment in toInsert) {
+            val key = attachment.hash.toByteString()
+            if (binaryMap.containsKey(key)) {
+                continue
             }
 
-            for (attachment in toRemove) {
-                if (attachment.hash in skip) {
-                    continue
-                }
+            // Failure means that content of the attachment can't be read,
+            // note shouldn't be saved with the broken reference to the binary
+            val convertResult = attachment.convertToBinaryData()
+            if (convertResult.isFailed) {
+                return convertResult.mapError()
+            }
 
-                val key = attachment.hash.toByteString()
-                binaryMap.remove(key)
+            binaryMap[key] = convertResult.obj
+        }
+
+        for (attachment in toRemove) {
+            if (attachment.hash in skip) {
+                continue
             }
 
-            binaryMap
+            val key = attachment.hash.toByteString()
+            binaryMap.remove(key)
         }
+
+        return OperationResult.success(
+            rawDb.modifyBinaries { binaryMap }
+        )
     }
 
     override fun getHistory(uid: UUID): OperationResult<List<Note>> {
-        return db.lock.withLock {
-            val getEntryAndGroupResult = db.getRawEntryAndGroupByUid(uid)
-            if (getEntryAndGroupResult.isFailed) {
-                return@withLock getEntryAndGroupResult.mapError()
+        val snapshot = db.getSnapshot()
+
+        val getEntryAndGroupResult = snapshot.getRawEntryAndGroupByUid(uid)
+        if (getEntryAndGroupResult.isFailed) {
+            return getEntryAndGroupResult.mapError()
+        }
+
+        val (group, entry) = getEntryAndGroupResult.getOrThrow()
+
+        val history = entry.history
+            .map { historyEntry ->
+                historyEntry.convertToNote(
+                    groupUid = group.uuid,
+                    allBinaries = snapshot.binaries
+                )
             }
 
-            val (group, entry) = getEntryAndGroupResult.getOrThrow()
+        return OperationResult.success(history)
+    }
 
-            val history = entry.history
-                .map { historyEntry ->
-                    historyEntry.convertToNote(
-                        groupUid = group.uuid,
-                        allBinaries = db.getRawDatabase().binaries
+    override fun openAttachment(attachment: Attachment): OperationResult<InputStream> {
+        return when (val source = attachment.source) {
+            is AttachmentSource.BinaryPool -> {
+                val binary = db.getSnapshot().binaries[attachment.hash.toByteString()]
+                    ?: return OperationResult.error(
+                        newDbError(MESSAGE_FAILED_TO_FIND_ATTACHMENT)
                     )
-                }
 
-            OperationResult.success(history)
+                OperationResult.success(binary.openStream())
+            }
+
+            is AttachmentSource.InMemory -> {
+                OperationResult.success(ByteArrayInputStream(source.data))
+            }
+
+            is AttachmentSource.CachedFile -> {
+                InputOutputUtils.newMappedFileInputStream(File(source.path))
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass.model
+
+data class ConversionCacheStatistics(
+    val hitCount: Long,
+    val missCount: Long,
+    val size: Int
+)
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass.model
+
+import app.keemobile.kotpass.models.Entry as RawEntry
+import java.util.UUID
+
+/**
+ * Describes a single modification of the group tree, it allows
+ * [com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabaseIndex]
+ * to be updated without traversing the whole database
+ */
+sealed interface DatabaseChange {
+
+    data class EntryInserted(
+        val groupUid: UUID,
+        val entry: RawEntry
+    ) : DatabaseChange
+
+    data class EntryUpdated(
+        val entry: RawEntry
+    ) : DatabaseChange
+
+    data class EntryMoved(
+        val newGroupUid: UUID,
+        val entry: RawEntry
+    ) : DatabaseChange
+
+    data class EntryRemoved(
+        val entryUid: UUID
+    ) : DatabaseChange
+
+    data class GroupInserted(
+        val parentUid: UUID,
+        val groupUid: UUID
+    ) : DatabaseChange
+
+    /**
+     * Group was renamed or its inheritable options were changed
+     */
+    data class GroupUpdated(
+        val groupUid: UUID
+    ) : DatabaseChange
+
+    data class GroupMoved(
+        val newParentUid: UUID,
+        val groupUid: UUID
+    ) : DatabaseChange
+
+    data class GroupRemoved(
+        val groupUid: UUID
+    ) : DatabaseChange
+
+    /**
+     * Meta, credentials or binaries were changed, group tree is the same
+     */
+    data object MetaChanged : DatabaseChange
+}
\ No newline at end of file
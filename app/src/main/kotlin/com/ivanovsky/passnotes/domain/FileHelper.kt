@@ -80,6 +80,34 @@ class FileHelper(
         return OperationResult.success(File(path))
     }
 
+    /**
+     * Generates file in the private cache directory for the attachment that is too large
+     * to be kept in memory
+     */
+    fun generateDestinationForCachedAttachment(): OperationResult<File> {
+        val dir = File(context.cacheDir, ATTACHMENTS_DIR_NAME)
+        if (!dir.exists() && !dir.mkdirs()) {
+            return OperationResult.error(
+                newGenericIOError(
+                    MESSAGE_FAILED_TO_CREATE_A_DIRECTORY
+                )
+            )
+        }
+
+        return OperationResult.success(File(dir, UUID.randomUUID().toString()))
+    }
+
+    /**
+     * Removes attachments that were copied to the private cache directory, but were not
+     * added to the database
+     */
+    fun removeCachedAttachments() {
+        val dir = File(context.cacheDir, ATTACHMENTS_DIR_NAME)
+        if (dir.exists()) {
+            dir.deleteRecursively()
+        }
+    }
+
     fun isLocatedInInternalStorage(file: File): Boolean {
         val dataDirPath = context.filesDir?.parentFile?.path
         return dataDirPath != null && file.path.startsWith(dataDirPath)
@@ -138,5 +166,6 @@ class FileHelper(
 
     companion object {
         private const val REMOTE_FILES_DIR_NAME = "remote-files"
+        private const val ATTACHMENTS_DIR_NAME = "attachments"
     }
 }
\ No newline at end of file
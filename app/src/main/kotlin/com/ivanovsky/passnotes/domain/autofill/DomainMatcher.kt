@@ -0,0 +1,59 @@
+package com.ivanovsky.passnotes.domain.autofill
+
+import com.ivanovsky.passnotes.domain.entity.DomainMatchType
+import com.ivanovsky.passnotes.util.UrlUtils
+
+class DomainMatcher(
+    private val publicSuffixList: PublicSuffixList
+) {
+
+    /**
+     * @return registrable domain of [url] or its host if it doesn't have one
+     */
+    fun getRegistrableDomain(url: String): String? {
+        val host = UrlUtils.extractHost(url) ?: return null
+        return publicSuffixList.getRegistrableDomain(host) ?: host
+    }
+
+    /**
+     * @return host of [url] and its parent domains until the registrable domain,
+     * from the most specific to the least specific
+     */
+    fun getLookupDomains(url: String): List<String> {
+        val host = UrlUtils.extractHost(url) ?: return emptyList()
+        val registrableDomain = publicSuffixList.getRegistrableDomain(host)
+            ?: return listOf(host)
+
+        val result = mutableListOf(host)
+        var domain = host
+        while (domain.length > registrableDomain.length) {
+            domain = domain.substringAfter('.')
+            result.add(domain)
+        }
+
+        return result
+    }
+
+    /**
+     * @return the strongest match between domains of [url] and [otherUrl] or null if
+     * they don't match
+     */
+    fun getMatchType(url: String, otherUrl: String): DomainMatchType? {
+        val host = UrlUtils.extractHost(url) ?: return null
+        val otherHost = UrlUtils.extractHost(otherUrl) ?: return null
+        if (host == otherHost) {
+            return DomainMatchType.EXACT_HOST
+        }
+
+        val registrableDomain = publicSuffixList.getRegistrableDomain(host)
+        val otherRegistrableDomain = publicSuffixList.getRegistrableDomain(otherHost)
+
+        return when {
+            registrableDomain != null && registrableDomain == otherRegistrableDomain -> {
+                DomainMatchType.REGISTRABLE_DOMAIN
+            }
+            otherHost.contains(registrableDomain ?: host) -> DomainMatchType.SUBSTRING
+            else -> null
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,216 @@
+package com.ivanovsky.passnotes.domain.autofill
+
+import android.content.Context
+import java.io.InputStream
+import java.util.LinkedList
+import java.util.TreeMap
+
+/**
+ * Rules of the Public Suffix List (https://publicsuffix.org/list/) which are used to find
+ * the registrable domain of a host, for example "example.co.uk" for "login.example.co.uk".
+ * Rules are read from the bundled asset on the first lookup and are kept as a trie of
+ * reversed domain labels, which is flattened into arrays to keep memory footprint low.
+ */
+class PublicSuffixList(
+    private val streamProvider: () -> InputStream
+) {
+
+    constructor(context: Context) : this({ context.assets.open(ASSET_FILE_NAME) })
+
+    private val trie: SuffixTrie by lazy { loadTrie() }
+
+    /**
+     * @param host lower case host without user info and port
+     * @return public suffix of [host], for example "co.uk" for "login.example.co.uk"
+     */
+    fun getPublicSuffix(host: String): String? {
+        val labels = splitLabels(host) ?: return null
+        val suffixLength = trie.getSuffixLength(labels)
+
+        return joinLabels(labels, suffixLength)
+    }
+
+    /**
+     * @param host lower case host without user info and port
+     * @return public suffix of [host] with one more label, for example "example.co.uk"
+     * for "login.example.co.uk", or null if [host] is a public suffix itself
+     */
+    fun getRegistrableDomain(host: String): String? {
+        val labels = splitLabels(host) ?: return null
+        val suffixLength = trie.getSuffixLength(labels)
+        if (suffixLength >= labels.size) {
+            return null
+        }
+
+        return joinLabels(labels, suffixLength + 1)
+    }
+
+    private fun splitLabels(host: String): List<String>? {
+        if (host.isEmpty()) {
+            return null
+        }
+
+        val labels = host.split(DOT)
+        if (labels.any { label -> label.isEmpty() }) {
+            return null
+        }
+
+        // IP addresses don't have a public suffix
+        if (labels.last().all { char -> char.isDigit() }) {
+            return null
+        }
+
+        return labels
+    }
+
+    private fun joinLabels(labels: List<String>, count: Int): String {
+        return labels.subList(labels.size - count, labels.size).joinToString(DOT)
+    }
+
+    private fun loadTrie(): SuffixTrie {
+        val root = TrieBuilderNode()
+
+        streamProvider.invoke().bufferedReader().useLines { lines ->
+            for (line in lines) {
+                val rule = line.trim().substringBefore(' ').lowercase()
+                if (rule.isEmpty() || rule.startsWith(COMMENT_PREFIX)) {
+                    continue
+                }
+
+                val isException = rule.startsWith(EXCEPTION_PREFIX)
+                val labels = rule.removePrefix(EXCEPTION_PREFIX).split(DOT)
+
+                var node = root
+                for (label in labels.asReversed()) {
+                    node = node.children.getOrPut(label.intern()) { TrieBuilderNode() }
+                }
+
+                node.flags = node.flags or if (isException) FLAG_EXCEPTION else FLAG_RULE
+            }
+        }
+
+        return SuffixTrie.build(root)
+    }
+
+    private class TrieBuilderNode(
+        val children: TreeMap<String, TrieBuilderNode> = TreeMap(),
+        var flags: Int = 0
+    )
+
+    /**
+     * Trie where nodes are numbered in breadth-first order, so children of every node are
+     * stored next to each other and are sorted by label. Children of node i are nodes
+     * from childOffsets[i] until childOffsets[i + 1].
+     */
+    private class SuffixTrie(
+        private val labels: Array<String>,
+        private val flags: ByteArray,
+        private val childOffsets: IntArray
+    ) {
+
+        /**
+         * @return number of labels of the public suffix of the host
+         */
+        fun getSuffixLength(hostLabels: List<String>): Int {
+            // If no rules match, the prevailing rule is "*"
+            var suffixLength = 1
+            var node = ROOT
+
+            for (depth in 1..hostLabels.size) {
+                val label = hostLabels[hostLabels.size - depth]
+
+                val child = findChild(node, label)
+                if (child != NO_NODE && hasFlag(child, FLAG_EXCEPTION)) {
+                    return depth - 1
+                }
+
+                val wildcard = findChild(node, WILDCARD)
+                if (wildcard != NO_NODE && hasFlag(wildcard, FLAG_RULE)) {
+                    suffixLength = depth
+                }
+
+                if (child == NO_NODE) {
+                    break
+                }
+
+                if (hasFlag(child, FLAG_RULE)) {
+                    suffixLength = depth
+                }
+
+                node = child
+            }
+
+            return suffixLength
+        }
+
+        private fun hasFlag(node: Int, flag: Int): Boolean {
+            return (flags[node].toInt() and flag) != 0
+        }
+
+        private fun findChild(node: Int, label: String): Int {
+            var low = childOffsets[node]
+            var high = childOffsets[node + 1] - 1
+
+            while (low <= high) {
+                val middle = (low + high) ushr 1
+                val comparison = labels[middle].compareTo(label)
+                when {
+                    comparison < 0 -> low = middle + 1
+                    comparison > 0 -> high = middle - 1
+                    else -> return middle
+                }
+            }
+
+            return NO_NODE
+        }
+
+        companion object {
+
+            private const val ROOT = 0
+            private const val NO_NODE = -1
+
+            fun build(root: TrieBuilderNode): SuffixTrie {
+                val nodes = mutableListOf<TrieBuilderNode>()
+                val nodeLabels = mutableListOf<String>()
+                val queue = LinkedList<Pair<String, TrieBuilderNode>>()
+                queue.add(Pair("", root))
+
+                while (queue.isNotEmpty()) {
+                    val (label, node) = queue.removeFirst()
+                    nodes.add(node)
+                    nodeLabels.add(label)
+                    for ((childLabel, child) in node.children) {
+                        queue.add(Pair(childLabel, child))
+                    }
+                }
+
+                val childOffsets = IntArray(nodes.size + 1)
+                var offset = 1
+                for ((index, node) in nodes.withIndex()) {
+                    childOffsets[index] = offset
+                    offset += node.children.size
+                }
+                childOffsets[nodes.size] = offset
+
+                return SuffixTrie(
+                    labels = nodeLabels.toTypedArray(),
+                    flags = ByteArray(nodes.size) { index -> nodes[index].flags.toByte() },
+                    childOffsets = childOffsets
+                )
+            }
+        }
+    }
+
+    companion object {
+
+        const val ASSET_FILE_NAME = "public_suffix_list.dat"
+
+        private const val DOT = "."
+        private const val WILDCARD = "*"
+        private const val COMMENT_PREFIX = "//"
+        private const val EXCEPTION_PREFIX = "!"
+
+        private const val FLAG_RULE = 1
+        private const val FLAG_EXCEPTION = 2
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.ivanovsky.passnotes.domain.entity
+
+/**
+ * Rank of the match between two web domains, from the strongest to the weakest
+ */
+enum class DomainMatchType {
+    EXACT_HOST,
+    REGISTRABLE_DOMAIN,
+    SUBSTRING
+}
\ No newline at end of file
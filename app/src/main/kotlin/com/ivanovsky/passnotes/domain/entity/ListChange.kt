@@ -0,0 +1,12 @@
+package com.ivanovsky.passnotes.domain.entity
+
+/**
+ * Positional change of a list, changes of a single update should be applied in order
+ * and positions of every change are relative to the list after the previous change
+ */
+sealed interface ListChange {
+    data class Inserted(val position: Int, val count: Int = 1) : ListChange
+    data class Removed(val position: Int, val count: Int = 1) : ListChange
+    data class Moved(val fromPosition: Int, val toPosition: Int) : ListChange
+    data class Changed(val position: Int) : ListChange
+}
\ No newline at end of file
@@ -1,7 +0,0 @@
-package com.ivanovsky.passnotes.domain.entity
-
-data class MatcherResult<T>(
-    val entry: T,
-    val title: String,
-    val highlights: List<Int>
-)
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.ivanovsky.passnotes.domain.entity
+
+/**
+ * Timings of a single search query, in milliseconds
+ *
+ * @param queueTime time between the query was typed and the search was started,
+ * including debounce delay
+ * @param matchTime time of matching all entries
+ * @param renderTime time of creating and publishing cells of the first page
+ */
+data class SearchMetrics(
+    val entryCount: Int,
+    val resultCount: Int,
+    val queueTime: Long,
+    val matchTime: Long,
+    val renderTime: Long
+)
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.ivanovsky.passnotes.domain.entity
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+
+/**
+ * @param isComplete false if [entries] contains only the best matched entries and
+ * the rest of the results will be emitted later
+ */
+data class SearchResults(
+    val entries: List<EncryptedDatabaseEntry>,
+    val isComplete: Boolean
+)
\ No newline at end of file
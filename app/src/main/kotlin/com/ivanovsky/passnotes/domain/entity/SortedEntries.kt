@@ -0,0 +1,14 @@
+package com.ivanovsky.passnotes.domain.entity
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+
+/**
+ * @param previousEntries entries that were returned before, or null if [entries] were
+ * sorted from scratch
+ * @param changes positional changes that turn [previousEntries] into [entries]
+ */
+class SortedEntries(
+    val entries: List<EncryptedDatabaseEntry>,
+    val previousEntries: List<EncryptedDatabaseEntry>?,
+    val changes: List<ListChange>
+)
\ No newline at end of file
@@ -21,6 +21,8 @@ import com.ivanovsky.passnotes.data.repository.keepass.KeepassImplementation
 import com.ivanovsky.passnotes.data.repository.keepass.PasswordKeepassKey
 import com.ivanovsky.passnotes.domain.DispatcherProvider
 import com.ivanovsky.passnotes.domain.FileHelper
+import com.ivanovsky.passnotes.domain.entity.SearchMetrics
+import com.ivanovsky.passnotes.domain.search.SearchMetricsHolder
 import com.ivanovsky.passnotes.domain.usecases.test.GetTestCredentialsUseCase
 import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.extensions.mapError
@@ -39,9 +41,12 @@ class DebugMenuInteractor(
     private val dbRepository: EncryptedDatabaseRepository,
     private val fileHelper: FileHelper,
     private val getTestCredentialsUseCase: GetTestCredentialsUseCase,
-    private val dispatchers: DispatcherProvider
+    private val dispatchers: DispatcherProvider,
+    private val searchMetricsHolder: SearchMetricsHolder
 ) {
 
+    fun getLastSearchMetrics(): SearchMetrics? = searchMetricsHolder.getLastMetrics()
+
     fun getTestWebDavCredentials() = getTestCredentialsUseCase.getDebugWebDavCredentials()
 
     fun getTestGitCredentials() = getTestCredentialsUseCase.getDebugGitCredentials()
@@ -265,7 +270,8 @@ class DebugMenuInteractor(
             type,
             key,
             descriptor,
-            FSOptions.DEFAULT
+            FSOptions.DEFAULT,
+            null
         )
         if (openResult.isSucceededOrDeferred) {
             result.obj = true
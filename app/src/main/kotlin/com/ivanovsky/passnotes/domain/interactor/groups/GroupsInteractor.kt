@@ -4,20 +4,27 @@ import com.ivanovsky.passnotes.data.ObserverBus
 import com.ivanovsky.passnotes.data.crypto.biometric.BiometricEncoder
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
 import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.entity.Template
 import com.ivanovsky.passnotes.data.entity.UsedFile
+import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseKey
 import com.ivanovsky.passnotes.domain.DatabaseLockInteractor
 import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.entity.SearchMetrics
+import com.ivanovsky.passnotes.domain.entity.SearchResults
 import com.ivanovsky.passnotes.domain.entity.SelectionItem
 import com.ivanovsky.passnotes.domain.entity.SelectionItemType
+import com.ivanovsky.passnotes.domain.entity.SortedEntries
 import com.ivanovsky.passnotes.domain.interactor.SelectionHolder
+import com.ivanovsky.passnotes.domain.search.SearchMetricsHolder
 import com.ivanovsky.passnotes.domain.usecases.AddTemplatesUseCase
 import com.ivanovsky.passnotes.domain.usecases.EncodePasswordWithBiometricUseCase
 import com.ivanovsky.passnotes.domain.usecases.FindParentGroupsUseCase
 import com.ivanovsky.passnotes.domain.usecases.GetDatabaseUseCase
 import com.ivanovsky.passnotes.domain.usecases.GetGroupUseCase
+import com.ivanovsky.passnotes.domain.usecases.GetNoteUseCase
 import com.ivanovsky.passnotes.domain.usecases.GetUsedFileUseCase
 import com.ivanovsky.passnotes.domain.usecases.LockDatabaseUseCase
 import com.ivanovsky.passnotes.domain.usecases.MoveGroupUseCase
@@ -30,6 +37,7 @@ import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.extensions.mapWithObject
 import java.util.UUID
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.withContext
 
 class GroupsInteractor(
@@ -48,7 +56,9 @@ class GroupsInteractor(
     private val encodePasswordUseCase: EncodePasswordWithBiometricUseCase,
     private val searchUseCases: SearchUseCases,
     private val findParentGroupsUseCase: FindParentGroupsUseCase,
-    private val getGroupUseCase: GetGroupUseCase
+    private val getGroupUseCase: GetGroupUseCase,
+    private val getNoteUseCase: GetNoteUseCase,
+    private val searchMetricsHolder: SearchMetricsHolder
 ) {
 
     fun invalidateLockNotification() {
@@ -82,7 +92,7 @@ class GroupsInteractor(
             db.groupDao.rootGroup
         }
 
-    suspend fun getRootEntries(): OperationResult<List<EncryptedDatabaseEntry>> =
+    suspend fun getRootEntries(): OperationResult<SortedEntries> =
         withContext(dispatchers.IO) {
             val getDbResult = getDbUseCase.getDatabaseSynchronously()
             if (getDbResult.isFailed) {
@@ -101,7 +111,7 @@ class GroupsInteractor(
             getGroupEntries(groupUid)
         }
 
-    suspend fun getGroupEntries(groupUid: UUID): OperationResult<List<EncryptedDatabaseEntry>> =
+    suspend fun getGroupEntries(groupUid: UUID): OperationResult<SortedEntries> =
         withContext(dispatchers.IO) {
             val getDbResult = getDbUseCase.getDatabaseSynchronously()
             if (getDbResult.isFailed) {
@@ -109,27 +119,12 @@ class GroupsInteractor(
             }
 
             val db = getDbResult.obj
-            val groupsResult = db.groupDao.getChildGroups(groupUid)
-            if (groupsResult.isFailed) {
-                return@withContext groupsResult.mapError()
-            }
 
-            val notesResult = db.noteDao.getNotesByGroupUid(groupUid)
-            if (notesResult.isFailed) {
-                return@withContext groupsResult.mapError()
+            sortUseCase.getSortedGroupEntriesAccordingToSettings(db, groupUid) {
+                loadGroupEntries(db, groupUid)
             }
-
-            val groups = groupsResult.obj
-            val notes = notesResult.obj
-
-            OperationResult.success(groups + notes)
         }
 
-    suspend fun sortData(
-        data: List<EncryptedDatabaseEntry>
-    ): List<EncryptedDatabaseEntry> =
-        sortUseCase.sortGroupsAndNotesAccordingToSettings(data)
-
     fun removeGroup(groupUid: UUID): OperationResult<Unit> {
         val getDbResult = getDbUseCase.getDatabaseSynchronously()
         if (getDbResult.isFailed) {
@@ -158,6 +153,9 @@ class GroupsInteractor(
         return removeResult.takeStatusWith(Unit)
     }
 
+    suspend fun getNote(noteUid: UUID): OperationResult<Note> =
+        getNoteUseCase.getNoteByUid(noteUid)
+
     suspend fun getGroup(groupUid: UUID): OperationResult<Group> =
         getGroupUseCase.getGroupByUid(groupUid)
 
@@ -259,9 +257,34 @@ class GroupsInteractor(
     ): OperationResult<List<EncryptedDatabaseEntry>> =
         searchUseCases.getAllSearchableEntries(isRespectAutotypeProperty)
 
-    suspend fun filterEntries(
+    fun searchEntries(
         entries: List<EncryptedDatabaseEntry>,
-        query: String
-    ): List<EncryptedDatabaseEntry> =
-        searchUseCases.filterEntries(entries, query)
+        query: String,
+        firstPageSize: Int
+    ): Flow<SearchResults> =
+        searchUseCases.searchEntries(entries, query, firstPageSize)
+
+    fun onSearchFinished(metrics: SearchMetrics) {
+        searchMetricsHolder.put(metrics)
+    }
+
+    private fun loadGroupEntries(
+        db: EncryptedDatabase,
+        groupUid: UUID
+    ): OperationResult<List<EncryptedDatabaseEntry>> {
+        val groupsResult = db.groupDao.getChildGroups(groupUid)
+        if (groupsResult.isFailed) {
+            return groupsResult.mapError()
+        }
+
+        val notesResult = db.noteDao.getSummariesByGroupUid(groupUid)
+        if (notesResult.isFailed) {
+            return notesResult.mapError()
+        }
+
+        val groups = groupsResult.obj
+        val notes = notesResult.obj
+
+        return OperationResult.success(groups + notes)
+    }
 }
\ No newline at end of file
@@ -58,7 +58,8 @@ class NewDatabaseInteractor(
                 KeepassImplementation.KOTPASS,
                 key,
                 file,
-                FSOptions.DEFAULT
+                FSOptions.DEFAULT,
+                null
             )
             if (openResult.isFailed) {
                 return@withContext openResult.takeError()
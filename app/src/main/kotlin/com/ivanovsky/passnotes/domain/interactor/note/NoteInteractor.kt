@@ -18,7 +18,6 @@ import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.presentation.autofill.model.AutofillStructure
 import com.ivanovsky.passnotes.util.InputOutputUtils
-import java.io.ByteArrayInputStream
 import java.io.File
 import java.util.UUID
 import kotlinx.coroutines.withContext
@@ -38,15 +37,28 @@ class NoteInteractor(
 
     suspend fun saveAttachmentToStorage(attachment: Attachment): OperationResult<File> =
         withContext(dispatchers.IO) {
+            val getDbResult = getDbUseCase.getDatabaseSynchronously()
+            if (getDbResult.isFailed) {
+                return@withContext getDbResult.mapError()
+            }
+
+            val db = getDbResult.obj
+            val openAttachmentResult = db.noteDao.openAttachment(attachment)
+            if (openAttachmentResult.isFailed) {
+                return@withContext openAttachmentResult.mapError()
+            }
+
+            val source = openAttachmentResult.obj
+
             val generateDirResult = fileHelper.generateDestinationDirectoryForSharedFile()
             if (generateDirResult.isFailed) {
+                InputOutputUtils.close(source)
                 return@withContext generateDirResult.mapError()
             }
 
             val outDir = generateDirResult.getOrThrow()
             val outFile = File(outDir, attachment.name)
 
-            val source = ByteArrayInputStream(attachment.data)
             val copyResult = InputOutputUtils.copy(source, outFile)
             if (copyResult.isFailed) {
                 return@withContext copyResult.mapError()
@@ -3,6 +3,7 @@ package com.ivanovsky.passnotes.domain.interactor.noteEditor
 import com.ivanovsky.passnotes.R
 import com.ivanovsky.passnotes.data.ObserverBus
 import com.ivanovsky.passnotes.data.entity.Attachment
+import com.ivanovsky.passnotes.data.entity.AttachmentSource
 import com.ivanovsky.passnotes.data.entity.FileDescriptor
 import com.ivanovsky.passnotes.data.entity.Hash
 import com.ivanovsky.passnotes.data.entity.Note
@@ -13,12 +14,16 @@ import com.ivanovsky.passnotes.data.repository.file.FSOptions
 import com.ivanovsky.passnotes.data.repository.file.FileSystemResolver
 import com.ivanovsky.passnotes.data.repository.file.OnConflictStrategy
 import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.FileHelper
 import com.ivanovsky.passnotes.domain.ResourceProvider
 import com.ivanovsky.passnotes.domain.usecases.GetDatabaseUseCase
 import com.ivanovsky.passnotes.domain.usecases.UpdateNoteUseCase
 import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.util.InputOutputUtils
 import com.ivanovsky.passnotes.util.ShaUtils
+import java.io.File
+import java.io.FileInputStream
+import java.security.DigestInputStream
 import java.util.UUID
 import kotlinx.coroutines.withContext
 
@@ -28,7 +33,8 @@ class NoteEditorInteractor(
     private val getDbUseCase: GetDatabaseUseCase,
     private val dispatchers: DispatcherProvider,
     private val observerBus: ObserverBus,
-    private val resourceProvider: ResourceProvider
+    private val resourceProvider: ResourceProvider,
+    private val fileHelper: FileHelper
 ) {
 
     fun createNewNote(note: Note): OperationResult<Unit> {
@@ -43,6 +49,7 @@ class NoteEditorInteractor(
             return insertResult.mapError()
         }
 
+        removeCachedAttachments(note.attachments)
         observerBus.notifyNoteDataSetChanged(note.groupUid)
 
         return insertResult.takeStatusWith(Unit)
@@ -58,8 +65,27 @@ class NoteEditorInteractor(
         return db.noteDao.getNoteByUid(uid)
     }
 
-    suspend fun updateNote(note: Note): OperationResult<Unit> =
-        updateNoteUseCase.updateNote(note)
+    suspend fun updateNote(note: Note): OperationResult<Unit> {
+        val updateResult = updateNoteUseCase.updateNote(note)
+        if (updateResult.isSucceededOrDeferred) {
+            removeCachedAttachments(note.attachments)
+        }
+
+        return updateResult
+    }
+
+    /**
+     * Removes files of the attachments that were copied to the cache directory,
+     * it should be called when attachments are added to the database or discarded
+     */
+    fun removeCachedAttachments(attachments: Collection<Attachment>) {
+        for (attachment in attachments) {
+            val source = attachment.source
+            if (source is AttachmentSource.CachedFile) {
+                File(source.path).delete()
+            }
+        }
+    }
 
     suspend fun loadTemplate(templateUid: UUID): OperationResult<Template?> =
         withContext(dispatchers.IO) {
@@ -93,23 +119,36 @@ class NoteEditorInteractor(
                 return@withContext openFileResult.mapError()
             }
 
-            val readBytesResult = InputOutputUtils.readAllBytes(
-                openFileResult.obj,
-                isCloseOnFinish = true
+            val getDestinationResult = fileHelper.generateDestinationForCachedAttachment()
+            if (getDestinationResult.isFailed) {
+                InputOutputUtils.close(openFileResult.obj)
+                return@withContext getDestinationResult.mapError()
+            }
+
+            // Content is copied to the cache directory and hashed at the same time,
+            // so the whole file is never loaded into memory
+            val cachedFile = getDestinationResult.obj
+            val digest = ShaUtils.newSha256Digest()
+            val copyResult = InputOutputUtils.copy(
+                DigestInputStream(openFileResult.obj, digest),
+                cachedFile
             )
-            if (readBytesResult.isFailed) {
-                return@withContext readBytesResult.mapError()
+            if (copyResult.isFailed) {
+                cachedFile.delete()
+                return@withContext copyResult.mapError()
             }
 
-            val content = readBytesResult.obj
-            val hash = ShaUtils.sha256(content)
+            val hash = ShaUtils.sha256(digest)
+            val size = cachedFile.length()
             val findExistingResult = findExistingAttachment(hash)
             if (findExistingResult.isFailed) {
+                cachedFile.delete()
                 return@withContext findExistingResult.mapError()
             }
 
             for (current in currentAttachments) {
                 if (current.hash == hash) {
+                    cachedFile.delete()
                     return@withContext OperationResult.error(
                         newErrorMessage(
                             resourceProvider.getString(
@@ -123,15 +162,32 @@ class NoteEditorInteractor(
 
             val existing = findExistingResult.obj
             if (existing != null) {
+                cachedFile.delete()
                 return@withContext OperationResult.success(existing)
             }
 
+            val source = if (size <= MAX_IN_MEMORY_ATTACHMENT_SIZE) {
+                val readBytesResult = InputOutputUtils.readAllBytes(
+                    FileInputStream(cachedFile),
+                    isCloseOnFinish = true
+                )
+                cachedFile.delete()
+                if (readBytesResult.isFailed) {
+                    return@withContext readBytesResult.mapError()
+                }
+
+                AttachmentSource.InMemory(readBytesResult.obj)
+            } else {
+                AttachmentSource.CachedFile(cachedFile.path)
+            }
+
             OperationResult.success(
                 Attachment(
                     uid = hash.toString(),
                     name = file.name,
                     hash = hash,
-                    data = content
+                    size = size,
+                    source = source
                 )
             )
         }
@@ -159,4 +215,8 @@ class NoteEditorInteractor(
 
         return OperationResult.success(null)
     }
+
+    companion object {
+        private const val MAX_IN_MEMORY_ATTACHMENT_SIZE = 256L * 1024L
+    }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import com.ivanovsky.passnotes.data.entity.SyncState
 import com.ivanovsky.passnotes.data.entity.UsedFile
 import com.ivanovsky.passnotes.data.repository.EncryptedDatabaseRepository
 import com.ivanovsky.passnotes.data.repository.UsedFileRepository
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenListener
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseKey
 import com.ivanovsky.passnotes.data.repository.file.FSOptions
@@ -90,7 +91,8 @@ class UnlockInteractor(
 
     suspend fun openDatabase(
         key: EncryptedDatabaseKey,
-        file: FileDescriptor
+        file: FileDescriptor,
+        listener: DatabaseOpenListener? = null
     ): OperationResult<Boolean> =
         withContext(dispatchers.IO) {
             val awaitResult = awaitIfSyncInProgress(file)
@@ -103,7 +105,8 @@ class UnlockInteractor(
                     KeepassImplementation.KOTPASS,
                     key,
                     file,
-                    FSOptions.CACHE_ONLY
+                    FSOptions.CACHE_ONLY,
+                    listener
                 )
             } else {
                 val fsOptions = FSOptions.DEFAULT.copy(
@@ -114,7 +117,8 @@ class UnlockInteractor(
                     KeepassImplementation.KOTPASS,
                     key,
                     file,
-                    fsOptions
+                    fsOptions,
+                    listener
                 )
             }
 
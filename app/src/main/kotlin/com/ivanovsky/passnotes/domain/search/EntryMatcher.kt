@@ -1,10 +1,33 @@
 package com.ivanovsky.passnotes.domain.search
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.domain.entity.SearchResults
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
 
 interface EntryMatcher {
-    fun match(
+    suspend fun match(
         query: String,
         entries: List<EncryptedDatabaseEntry>
     ): List<EncryptedDatabaseEntry>
+
+    /**
+     * Emits at least [firstPageSize] best matched entries as soon as they are known,
+     * the last emitted value contains all matched entries and starts with entries
+     * of the previously emitted values
+     */
+    fun matchProgressively(
+        query: String,
+        entries: List<EncryptedDatabaseEntry>,
+        firstPageSize: Int
+    ): Flow<SearchResults> {
+        return flow {
+            emit(
+                SearchResults(
+                    entries = match(query, entries),
+                    isComplete = true
+                )
+            )
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import java.util.UUID
+
+/**
+ * Keeps texts which are matched by [Fzf4jFuzzyEntryMatcher], texts of the entry are formatted
+ * only once and reused until the entry instance is changed. Texts of the entries that were not
+ * requested during the latest content version are dropped on the next version change.
+ *
+ * @param propertiesProvider provides properties of the note which form its content
+ */
+class FuzzySearchCorpus(
+    private val propertiesProvider: (NoteSummary) -> List<Property> = { emptyList() }
+) {
+
+    private var contentVersion: Long? = null
+    private var items = HashMap<UUID, Item>()
+    private var previousItems = HashMap<UUID, Item>()
+    private var lastEntries: List<EncryptedDatabaseEntry>? = null
+    private var lastShardSize = 0
+    private var lastShards: List<Shard> = emptyList()
+
+    /**
+     * Splits [entries] into shards of [shardSize] entries, texts of every shard contain
+     * titles of its entries followed by their content
+     */
+    @Synchronized
+    fun getShards(
+        entries: List<EncryptedDatabaseEntry>,
+        contentVersion: Long?,
+        shardSize: Int
+    ): List<Shard> {
+        if (this.contentVersion != contentVersion) {
+            this.contentVersion = contentVersion
+            previousItems = items
+            items = HashMap()
+        } else if (entries === lastEntries && shardSize == lastShardSize) {
+            return lastShards
+        }
+
+        val shards = ArrayList<Shard>((entries.size + shardSize - 1) / shardSize)
+        var offset = 0
+        while (offset < entries.size) {
+            val size = minOf(shardSize, entries.size - offset)
+
+            val titles = ArrayList<String>(size * 2)
+            val contents = ArrayList<String>(size)
+            for (idx in offset until offset + size) {
+                val item = getItem(entries[idx])
+                titles.add(item.title)
+                contents.add(item.content)
+            }
+            titles.addAll(contents)
+
+            shards.add(Shard(offset = offset, size = size, texts = titles))
+            offset += size
+        }
+
+        lastEntries = entries
+        lastShardSize = shardSize
+        lastShards = shards
+
+        return shards
+    }
+
+    @Synchronized
+    fun clear() {
+        contentVersion = null
+        items = HashMap()
+        previousItems = HashMap()
+        lastEntries = null
+        lastShardSize = 0
+        lastShards = emptyList()
+    }
+
+    private fun getItem(entry: EncryptedDatabaseEntry): Item {
+        val uid = entry.getUid() ?: return Item(entry, entry.formatTitle(), entry.formatContent())
+
+        val item = items[uid]
+        if (item != null && item.entry === entry) {
+            return item
+        }
+
+        val previousItem = previousItems.remove(uid)
+        val newItem = if (previousItem != null && previousItem.entry === entry) {
+            previousItem
+        } else {
+            Item(entry, entry.formatTitle(), entry.formatContent())
+        }
+
+        items[uid] = newItem
+        return newItem
+    }
+
+    private fun EncryptedDatabaseEntry.getUid(): UUID? {
+        return when (this) {
+            is NoteSummary -> uid
+            is Group -> uid
+            else -> null
+        }
+    }
+
+    private fun EncryptedDatabaseEntry.formatTitle(): String {
+        return when (this) {
+            is NoteSummary -> title
+            is Group -> title
+            else -> ""
+        }
+    }
+
+    private fun EncryptedDatabaseEntry.formatContent(): String {
+        return when (this) {
+            is NoteSummary -> {
+                val words = mutableListOf<String>()
+
+                for (property in propertiesProvider.invoke(this)) {
+                    if (!property.name.isNullOrEmpty()) {
+                        words.add(property.name)
+                    }
+                    if (!property.value.isNullOrEmpty()) {
+                        words.add(property.value)
+                    }
+                }
+
+                words.joinToString(separator = " ")
+            }
+            is Group -> title
+            else -> ""
+        }
+    }
+
+    /**
+     * @param offset index of the first entry of the shard in the list of all entries
+     */
+    class Shard(
+        val offset: Int,
+        val size: Int,
+        val texts: List<String>
+    )
+
+    private class Item(
+        val entry: EncryptedDatabaseEntry,
+        val title: String,
+        val content: String
+    )
+}
\ No newline at end of file
@@ -1,103 +1,218 @@
 package com.ivanovsky.passnotes.domain.search
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
-import com.ivanovsky.passnotes.data.entity.Group
-import com.ivanovsky.passnotes.data.entity.Note
-import com.ivanovsky.passnotes.domain.entity.MatcherResult
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.domain.entity.SearchResults
 import de.gesundkrank.fzf4j.matchers.FuzzyMatcherV1
 import de.gesundkrank.fzf4j.models.OrderBy
-import java.util.UUID
+import java.util.PriorityQueue
+import kotlin.coroutines.coroutineContext
+import kotlin.math.min
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.last
 
-class Fzf4jFuzzyEntryMatcher : EntryMatcher {
+/**
+ * Matches titles and content of the entries, entries matched by title are placed before
+ * entries matched only by content. Entries are split into shards which are matched
+ * in parallel on [dispatcher], every shard is scored in small chunks of texts and
+ * matching is stopped between chunks if the coroutine is cancelled.
+ *
+ * @param contentVersionProvider provides version of the database content which is used
+ * to drop outdated texts from [FuzzySearchCorpus]
+ * @param propertiesProvider provides properties of the note, they are requested once per
+ * note and content version and kept in [FuzzySearchCorpus]
+ * @param maxResults maximum number of returned entries
+ */
+class Fzf4jFuzzyEntryMatcher(
+    private val contentVersionProvider: () -> Long? = { null },
+    private val dispatcher: CoroutineDispatcher = Dispatchers.Default,
+    private val maxResults: Int = Int.MAX_VALUE,
+    propertiesProvider: (NoteSummary) -> List<Property> = { emptyList() }
+) : EntryMatcher {
 
-    override fun match(
+    private val corpus = FuzzySearchCorpus(propertiesProvider)
+
+    override suspend fun match(
         query: String,
         entries: List<EncryptedDatabaseEntry>
     ): List<EncryptedDatabaseEntry> {
-        val resultUids = mutableSetOf<UUID>()
-        val result = mutableListOf<EncryptedDatabaseEntry>()
+        return matchProgressively(query, entries, firstPageSize = Int.MAX_VALUE)
+            .last()
+            .entries
+    }
 
-        val matchedEntriesByTitle = match(
-            titles = entries.map { it.formatTitle() },
-            entries = entries,
-            query = query
-        )
-            .map { it.entry }
+    /**
+     * Titles of all shards are matched first and entries matched by title are emitted
+     * before content is matched, they are the beginning of the final result. Content is
+     * matched only if [maxResults] is not reached by title matches.
+     */
+    override fun matchProgressively(
+        query: String,
+        entries: List<EncryptedDatabaseEntry>,
+        firstPageSize: Int
+    ): Flow<SearchResults> {
+        return flow {
+            val shards = corpus.getShards(
+                entries = entries,
+                contentVersion = contentVersionProvider.invoke(),
+                shardSize = getShardSize(entries.size)
+            )
 
-        for (entry in matchedEntriesByTitle) {
-            val uid = entry.getUid() ?: continue
-            result.add(entry)
-            resultUids.add(uid)
-        }
+            val isAdded = BooleanArray(entries.size)
+            val result = ArrayList<EncryptedDatabaseEntry>()
 
-        val matchedEntriesByAllContent = match(
-            titles = entries.map { it.formatAllContent() },
-            entries = entries,
-            query = query
-        )
-            .map { it.entry }
+            val titleMatches = matchShards(query, shards, isTitle = true)
+            mergeByScore(titleMatches, isAdded, entries, result)
 
-        for (entry in matchedEntriesByAllContent) {
-            val uid = entry.getUid() ?: continue
-            if (uid !in resultUids) {
-                result.add(entry)
-                resultUids.add(uid)
+            if (result.size >= maxResults) {
+                emit(
+                    SearchResults(
+                        entries = result,
+                        isComplete = true
+                    )
+                )
+                return@flow
             }
-        }
-
-        return result
-    }
 
-    private fun <T> match(
-        titles: List<String>,
-        entries: List<T>,
-        query: String
-    ): List<MatcherResult<T>> {
-        return FuzzyMatcherV1(titles, OrderBy.SCORE, false, false)
-            .match(query)
-            .map { result ->
-                MatcherResult(
-                    entry = entries[result.itemIndex],
-                    title = titles[result.itemIndex],
-                    highlights = result.positions?.toList() ?: emptyList()
+            if (result.size >= firstPageSize) {
+                emit(
+                    SearchResults(
+                        entries = result.toList(),
+                        isComplete = false
+                    )
                 )
             }
-    }
 
-    private fun EncryptedDatabaseEntry.getUid(): UUID? {
-        return when (this) {
-            is Note -> uid
-            is Group -> uid
-            else -> null
+            val contentMatches = matchShards(query, shards, isTitle = false)
+            mergeByScore(contentMatches, isAdded, entries, result)
+
+            emit(
+                SearchResults(
+                    entries = result,
+                    isComplete = true
+                )
+            )
         }
     }
 
-    private fun EncryptedDatabaseEntry.formatTitle(): String {
-        return when (this) {
-            is Note -> title
-            is Group -> title
-            else -> ""
+    /**
+     * @return matches of every chunk sorted by score
+     */
+    private suspend fun matchShards(
+        query: String,
+        shards: List<FuzzySearchCorpus.Shard>,
+        isTitle: Boolean
+    ): List<List<ScoredMatch>> {
+        return coroutineScope {
+            shards
+                .map { shard ->
+                    async(dispatcher) {
+                        matchShard(query, shard, isTitle)
+                    }
+                }
+                .awaitAll()
+                .flatten()
         }
     }
 
-    private fun EncryptedDatabaseEntry.formatAllContent(): String {
-        return when (this) {
-            is Note -> {
-                val words = mutableListOf<String>()
+    /**
+     * @param isTitle if true titles of the shard are matched, otherwise content is matched
+     */
+    private suspend fun matchShard(
+        query: String,
+        shard: FuzzySearchCorpus.Shard,
+        isTitle: Boolean
+    ): List<List<ScoredMatch>> {
+        val start = if (isTitle) 0 else shard.size
+        val end = if (isTitle) shard.size else shard.texts.size
+        val chunkMatches = ArrayList<List<ScoredMatch>>()
 
-                for (property in properties) {
-                    if (!property.name.isNullOrEmpty()) {
-                        words.add(property.name)
-                    }
-                    if (!property.value.isNullOrEmpty()) {
-                        words.add(property.value)
-                    }
+        for (chunkStart in start until end step CHUNK_SIZE) {
+            coroutineContext.ensureActive()
+
+            val chunkEnd = min(chunkStart + CHUNK_SIZE, end)
+            val texts = shard.texts.subList(chunkStart, chunkEnd)
+            val chunkOffset = shard.offset + chunkStart - start
+
+            val matches = FuzzyMatcherV1(texts, OrderBy.SCORE, false, false)
+                .match(query)
+                .map { match ->
+                    ScoredMatch(
+                        entryIndex = chunkOffset + match.itemIndex,
+                        score = match.score
+                    )
                 }
 
-                words.joinToString(separator = " ")
+            chunkMatches.add(matches)
+        }
+
+        return chunkMatches
+    }
+
+    /**
+     * Merges lists sorted by score into [result] until it contains [maxResults] entries
+     */
+    private fun mergeByScore(
+        shardMatches: List<List<ScoredMatch>>,
+        isAdded: BooleanArray,
+        entries: List<EncryptedDatabaseEntry>,
+        result: MutableList<EncryptedDatabaseEntry>
+    ) {
+        val queue = PriorityQueue<ShardCursor>(
+            maxOf(shardMatches.size, 1),
+            compareByDescending<ShardCursor> { it.current.score }
+                .thenBy { it.current.entryIndex }
+        )
+
+        for (matches in shardMatches) {
+            if (matches.isNotEmpty()) {
+                queue.add(ShardCursor(matches, position = 0))
+            }
+        }
+
+        while (queue.isNotEmpty() && result.size < maxResults) {
+            val cursor = queue.poll() ?: break
+            val entryIndex = cursor.current.entryIndex
+
+            if (!isAdded[entryIndex]) {
+                isAdded[entryIndex] = true
+                result.add(entries[entryIndex])
+            }
+
+            if (cursor.position + 1 < cursor.matches.size) {
+                queue.add(ShardCursor(cursor.matches, cursor.position + 1))
             }
-            is Group -> title
-            else -> ""
         }
     }
+
+    private fun getShardSize(entryCount: Int): Int {
+        val shardCount = Runtime.getRuntime().availableProcessors() * SHARDS_PER_CORE
+        return maxOf(MIN_SHARD_SIZE, (entryCount + shardCount - 1) / shardCount)
+    }
+
+    private class ScoredMatch(
+        val entryIndex: Int,
+        val score: Int
+    )
+
+    private class ShardCursor(
+        val matches: List<ScoredMatch>,
+        val position: Int
+    ) {
+        val current: ScoredMatch = matches[position]
+    }
+
+    companion object {
+        private const val MIN_SHARD_SIZE = 1024
+        private const val SHARDS_PER_CORE = 2
+        private const val CHUNK_SIZE = 256
+    }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.ivanovsky.passnotes.domain.entity.SearchMetrics
+import java.util.concurrent.atomic.AtomicReference
+
+class SearchMetricsHolder {
+
+    private val lastMetrics = AtomicReference<SearchMetrics>()
+
+    fun put(metrics: SearchMetrics) {
+        lastMetrics.set(metrics)
+    }
+
+    fun getLastMetrics(): SearchMetrics? {
+        return lastMetrics.get()
+    }
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.domain.entity.SearchType
+import java.util.Collections
+import java.util.IdentityHashMap
+
+/**
+ * Keeps results of the previous queries while the user is typing. If a new query extends
+ * one of the cached queries, entries matched by that query are the only candidates for
+ * the new one. Cached data is dropped if the database content version, the list of entries
+ * or the search type is changed.
+ */
+class SearchRefinementCache {
+
+    private var contentVersion: Long? = null
+    private var entries: List<EncryptedDatabaseEntry>? = null
+    private var searchType: SearchType? = null
+    private val levels = ArrayList<Level>()
+
+    /**
+     * @return cached result for [query] or entries that should be matched against [query]
+     */
+    @Synchronized
+    fun getCandidates(
+        query: String,
+        entries: List<EncryptedDatabaseEntry>,
+        searchType: SearchType,
+        contentVersion: Long?
+    ): Candidates {
+        if (this.entries !== entries ||
+            this.searchType != searchType ||
+            this.contentVersion != contentVersion
+        ) {
+            this.entries = entries
+            this.searchType = searchType
+            this.contentVersion = contentVersion
+            levels.clear()
+        }
+
+        while (levels.isNotEmpty() && !query.startsWith(levels.last().query)) {
+            levels.removeAt(levels.lastIndex)
+        }
+
+        val level = levels.lastOrNull()
+        return when {
+            level == null -> Candidates(entries = entries, cachedResult = null)
+            level.query == query -> Candidates(entries = entries, cachedResult = level.result)
+            else -> Candidates(entries = level.getMatchedEntries(entries), cachedResult = null)
+        }
+    }
+
+    @Synchronized
+    fun put(
+        query: String,
+        result: List<EncryptedDatabaseEntry>,
+        entries: List<EncryptedDatabaseEntry>
+    ) {
+        if (this.entries !== entries) {
+            return
+        }
+
+        while (levels.isNotEmpty() && !query.startsWith(levels.last().query)) {
+            levels.removeAt(levels.lastIndex)
+        }
+
+        if (levels.size == MAX_LEVELS) {
+            levels.removeAt(0)
+        }
+
+        levels.add(Level(query, result))
+    }
+
+    @Synchronized
+    fun clear() {
+        entries = null
+        searchType = null
+        contentVersion = null
+        levels.clear()
+    }
+
+    class Candidates(
+        val entries: List<EncryptedDatabaseEntry>,
+        val cachedResult: List<EncryptedDatabaseEntry>?
+    )
+
+    private class Level(
+        val query: String,
+        val result: List<EncryptedDatabaseEntry>
+    ) {
+
+        private var matchedEntries: List<EncryptedDatabaseEntry>? = null
+
+        /**
+         * Returns matched entries in the original order, to keep order of the results the same
+         * as without the cache
+         */
+        fun getMatchedEntries(
+            allEntries: List<EncryptedDatabaseEntry>
+        ): List<EncryptedDatabaseEntry> {
+            matchedEntries?.let { return it }
+
+            val matchedSet = Collections.newSetFromMap(
+                IdentityHashMap<EncryptedDatabaseEntry, Boolean>()
+            )
+            matchedSet.addAll(result)
+
+            return allEntries.filter { entry -> entry in matchedSet }
+                .also { matchedEntries = it }
+        }
+    }
+
+    companion object {
+        private const val MAX_LEVELS = 64
+    }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher
+import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
+import com.ivanovsky.passnotes.domain.entity.SortDirection
+import com.ivanovsky.passnotes.domain.entity.SortType
+import java.util.UUID
+
+/**
+ * Keeps searchable entries of the database for both variants: with and without respect
+ * of the autotype property. Cached entries are valid for a single
+ * [EncryptedDatabase.getContentVersion], changes of the notes that are made after that are
+ * collected from content watchers to update cached entries without loading of
+ * the whole database.
+ */
+class SearchableEntriesCache {
+
+    private var db: EncryptedDatabase? = null
+    private val states = HashMap<Boolean, State>()
+    private val changes = HashMap<Boolean, PendingChanges>()
+
+    private val noteListener = object : ContentWatcher.OnContentChangeListener<Note> {
+        override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+            onNotesChanged(changes)
+        }
+    }
+
+    private val groupListener = object : ContentWatcher.OnContentChangeListener<Group> {
+        override fun onContentChanged(changes: List<ContentWatcher.Change<Group>>) {
+            onGroupsChanged()
+        }
+    }
+
+    /**
+     * @return cached state for [db] or null if [db] is not the same database that was cached
+     */
+    @Synchronized
+    fun getState(
+        db: EncryptedDatabase,
+        isRespectAutotypeProperty: Boolean
+    ): State? {
+        bindDatabase(db)
+        return states[isRespectAutotypeProperty]
+    }
+
+    /**
+     * Returns and resets changes made after the latest [putState] for this variant
+     */
+    @Synchronized
+    fun takeChanges(
+        db: EncryptedDatabase,
+        isRespectAutotypeProperty: Boolean
+    ): PendingChanges {
+        bindDatabase(db)
+        return changes.remove(isRespectAutotypeProperty) ?: PendingChanges()
+    }
+
+    @Synchronized
+    fun putState(
+        db: EncryptedDatabase,
+        isRespectAutotypeProperty: Boolean,
+        state: State
+    ) {
+        if (this.db !== db) {
+            return
+        }
+
+        states[isRespectAutotypeProperty] = state
+    }
+
+    @Synchronized
+    fun clear() {
+        unbindDatabase()
+    }
+
+    private fun bindDatabase(db: EncryptedDatabase) {
+        if (this.db === db) {
+            return
+        }
+
+        unbindDatabase()
+
+        this.db = db
+        db.noteDao.contentWatcher.subscribe(noteListener)
+        db.groupDao.contentWatcher.subscribe(groupListener)
+    }
+
+    private fun unbindDatabase() {
+        val currentDb = db ?: return
+
+        currentDb.noteDao.contentWatcher.unsubscribe(noteListener)
+        currentDb.groupDao.contentWatcher.unsubscribe(groupListener)
+
+        db = null
+        states.clear()
+        changes.clear()
+    }
+
+    @Synchronized
+    private fun onNotesChanged(noteChanges: List<ContentWatcher.Change<Note>>) {
+        for (variant in VARIANTS) {
+            val pending = changes.getOrPut(variant) { PendingChanges() }
+
+            for (change in noteChanges) {
+                when (change) {
+                    is ContentWatcher.Change.Inserted -> {
+                        pending.groupUids.add(change.entry.groupUid)
+                    }
+                    is ContentWatcher.Change.Changed -> {
+                        pending.groupUids.add(change.oldEntry.groupUid)
+                        pending.groupUids.add(change.newEntry.groupUid)
+                    }
+                    is ContentWatcher.Change.Removed -> {
+                        pending.groupUids.add(change.entry.groupUid)
+                    }
+                }
+            }
+        }
+    }
+
+    @Synchronized
+    private fun onGroupsChanged() {
+        for (variant in VARIANTS) {
+            changes.getOrPut(variant) { PendingChanges() }.isGroupsChanged = true
+        }
+    }
+
+    /**
+     * @param sortKey settings that were used to sort [entries]
+     * @param notesByGroupUid searchable notes by uid of their group, groups are kept in
+     * the same order as notes are returned by the database
+     * @param groups searchable groups
+     * @param searchableGroupUids uids of the groups which notes are searchable
+     */
+    class State(
+        val contentVersion: Long,
+        val sortKey: SortKey,
+        val notesByGroupUid: Map<UUID, List<NoteSummary>>,
+        val groups: List<Group>,
+        val searchableGroupUids: Set<UUID>,
+        val entries: List<EncryptedDatabaseEntry>
+    )
+
+    /**
+     * Settings of the sort order, cached entries are sorted again if they are changed
+     */
+    data class SortKey(
+        val sortType: SortType,
+        val sortDirection: SortDirection,
+        val isGroupsAtStart: Boolean
+    )
+
+    /**
+     * @param groupUids uids of the groups which notes were inserted, changed or removed
+     */
+    class PendingChanges(
+        val groupUids: MutableSet<UUID> = HashSet(),
+        var isGroupsChanged: Boolean = false
+    )
+
+    companion object {
+        private val VARIANTS = listOf(true, false)
+    }
+}
\ No newline at end of file
@@ -2,21 +2,85 @@ package com.ivanovsky.passnotes.domain.search
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
 import com.ivanovsky.passnotes.data.entity.Group
-import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.repository.encdb.TrigramSearchIndex
+import com.ivanovsky.passnotes.domain.entity.SearchResults
 import com.ivanovsky.passnotes.extensions.matches
+import java.util.UUID
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
 
-class StrictEntryMatcher : EntryMatcher {
+/**
+ * @param indexProvider provides index that is used to skip entries which can't contain
+ * the query, if it is not available all entries are checked
+ * @param propertiesProvider provides properties of the note, it is invoked only if title
+ * of the note doesn't match the query
+ */
+class StrictEntryMatcher(
+    private val indexProvider: () -> TrigramSearchIndex? = { null },
+    private val propertiesProvider: (NoteSummary) -> List<Property> = { emptyList() }
+) : EntryMatcher {
 
-    override fun match(
+    override suspend fun match(
         query: String,
         entries: List<EncryptedDatabaseEntry>
     ): List<EncryptedDatabaseEntry> {
-        return entries.filter { entry ->
-            when (entry) {
-                is Note -> entry.matches(query)
-                is Group -> entry.matches(query)
-                else -> throw IllegalArgumentException()
+        val candidates = indexProvider.invoke()?.findCandidates(query)
+
+        return entries.filter { entry -> entry.matches(query, candidates) }
+    }
+
+    /**
+     * Entries are matched in the order of [entries], so the first page is emitted
+     * as soon as [firstPageSize] entries are matched
+     */
+    override fun matchProgressively(
+        query: String,
+        entries: List<EncryptedDatabaseEntry>,
+        firstPageSize: Int
+    ): Flow<SearchResults> {
+        return flow {
+            val candidates = indexProvider.invoke()?.findCandidates(query)
+            val result = mutableListOf<EncryptedDatabaseEntry>()
+
+            for (entry in entries) {
+                if (!entry.matches(query, candidates)) {
+                    continue
+                }
+
+                result.add(entry)
+                if (result.size == firstPageSize) {
+                    emit(
+                        SearchResults(
+                            entries = result.toList(),
+                            isComplete = false
+                        )
+                    )
+                }
+            }
+
+            emit(
+                SearchResults(
+                    entries = result,
+                    isComplete = true
+                )
+            )
+        }
+    }
+
+    private fun EncryptedDatabaseEntry.matches(
+        query: String,
+        candidates: Set<UUID>?
+    ): Boolean {
+        return when (this) {
+            is NoteSummary -> {
+                (candidates == null || uid in candidates) &&
+                    (title.contains(query, ignoreCase = true) ||
+                        propertiesProvider.invoke(this).any { it.matches(query) })
             }
+            is Group -> (candidates == null || uid in candidates) && matches(query)
+            else -> throw IllegalArgumentException()
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package com.ivanovsky.passnotes.domain.search.query
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.encdb.TrigramSearchIndex
+import com.ivanovsky.passnotes.domain.entity.PropertyMap
+import com.ivanovsky.passnotes.extensions.isExpired
+import java.util.UUID
+
+/**
+ * Filters entries by predicates of [SearchPlan]
+ *
+ * @param indexProvider provides index for [SearchPlan.indexedPredicates], if it is not
+ * available all predicates are checked for every entry
+ * @param groupTitlesProvider provides titles of all groups by uid, it is used only if query
+ * contains [QueryField.GROUP]
+ * @param propertiesProvider provides properties of the note, it is used only if query
+ * contains [QueryField.USER] or [QueryField.URL]
+ */
+class FieldQueryMatcher(
+    private val indexProvider: () -> TrigramSearchIndex? = { null },
+    private val groupTitlesProvider: () -> Map<UUID, String> = { emptyMap() },
+    private val propertiesProvider: (NoteSummary) -> List<Property> = { emptyList() }
+) {
+
+    fun filter(
+        plan: SearchPlan,
+        entries: List<EncryptedDatabaseEntry>
+    ): List<EncryptedDatabaseEntry> {
+        val candidates = findCandidates(plan.indexedPredicates)
+        if (candidates != null && candidates.isEmpty()) {
+            return emptyList()
+        }
+
+        val predicates = plan.indexedPredicates + plan.scanPredicates
+        val groupTitles = if (predicates.any { it.field == QueryField.GROUP }) {
+            groupTitlesProvider.invoke()
+        } else {
+            emptyMap()
+        }
+
+        return entries.filter { entry ->
+            when (entry) {
+                is NoteSummary -> {
+                    (candidates == null || entry.uid in candidates) &&
+                        entry.matches(predicates, groupTitles)
+                }
+                is Group -> {
+                    (candidates == null || entry.uid in candidates) &&
+                        entry.matches(predicates, groupTitles)
+                }
+                else -> throw IllegalArgumentException()
+            }
+        }
+    }
+
+    private fun findCandidates(predicates: List<FieldPredicate>): Set<UUID>? {
+        val index = indexProvider.invoke() ?: return null
+
+        var result: Set<UUID>? = null
+        for (predicate in predicates) {
+            val type = predicate.field.propertyType ?: continue
+            val found = index.findCandidates(predicate.value, type) ?: continue
+
+            val current = result
+            result = when {
+                current == null -> found
+                current.size <= found.size -> current.filterTo(HashSet()) { it in found }
+                else -> found.filterTo(HashSet()) { it in current }
+            }
+
+            if (result.isEmpty()) {
+                break
+            }
+        }
+
+        return result
+    }
+
+    private fun NoteSummary.matches(
+        predicates: List<FieldPredicate>,
+        groupTitles: Map<UUID, String>
+    ): Boolean {
+        val propertyMap by lazy { PropertyMap.mapByType(propertiesProvider.invoke(this)) }
+
+        return predicates.all { predicate ->
+            when (predicate.field) {
+                QueryField.TITLE -> title.contains(predicate.value, ignoreCase = true)
+                QueryField.USER -> propertyMap.contains(PropertyType.USER_NAME, predicate.value)
+                QueryField.URL -> propertyMap.contains(PropertyType.URL, predicate.value)
+                QueryField.TAG -> tags.any { tag -> tag.equals(predicate.value, ignoreCase = true) }
+                QueryField.GROUP -> {
+                    groupTitles[groupUid]?.contains(predicate.value, ignoreCase = true) == true
+                }
+                QueryField.EXPIRED -> isExpired() == SearchQueryParser.parseBoolean(predicate.value)
+            }
+        }
+    }
+
+    private fun Group.matches(
+        predicates: List<FieldPredicate>,
+        groupTitles: Map<UUID, String>
+    ): Boolean {
+        return predicates.all { predicate ->
+            when (predicate.field) {
+                QueryField.TITLE -> title.contains(predicate.value, ignoreCase = true)
+                QueryField.GROUP -> {
+                    val parentTitle = parentUid?.let { groupTitles[it] }
+                    parentTitle?.contains(predicate.value, ignoreCase = true) == true
+                }
+                QueryField.EXPIRED -> SearchQueryParser.parseBoolean(predicate.value) == false
+                QueryField.USER, QueryField.URL, QueryField.TAG -> false
+            }
+        }
+    }
+
+    private fun PropertyMap<PropertyType>.contains(type: PropertyType, value: String): Boolean {
+        return get(type)?.value?.contains(value, ignoreCase = true) == true
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.ivanovsky.passnotes.domain.search.query
+
+import com.ivanovsky.passnotes.data.entity.PropertyType
+
+/**
+ * Fields that can be used in the search query as "keyword:value"
+ *
+ * @param propertyType type of the property that is matched by the field, if it is specified
+ * the field can be looked up in the search index
+ */
+enum class QueryField(
+    val keyword: String,
+    val propertyType: PropertyType?
+) {
+    TITLE("title", PropertyType.TITLE),
+    USER("user", PropertyType.USER_NAME),
+    URL("url", PropertyType.URL),
+    TAG("tag", null),
+    GROUP("group", null),
+    EXPIRED("expired", null);
+
+    companion object {
+
+        private val KEYWORD_MAP = values().associateBy { it.keyword }
+
+        fun getByKeyword(keyword: String): QueryField? {
+            return KEYWORD_MAP[keyword.lowercase()]
+        }
+    }
+}
\ No newline at end of file
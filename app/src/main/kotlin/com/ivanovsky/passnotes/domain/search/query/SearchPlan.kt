@@ -0,0 +1,33 @@
+package com.ivanovsky.passnotes.domain.search.query
+
+import com.ivanovsky.passnotes.data.repository.encdb.TrigramSearchIndex
+
+/**
+ * Describes how [SearchQuery] is executed
+ *
+ * @param indexedPredicates predicates that are looked up in [TrigramSearchIndex] to find
+ * candidates, they are verified on candidates as well, because index may return extra entries
+ * @param scanPredicates predicates that are checked for every entry
+ * @param text query that is matched by the selected search type after predicates
+ */
+data class SearchPlan(
+    val indexedPredicates: List<FieldPredicate>,
+    val scanPredicates: List<FieldPredicate>,
+    val text: String
+) {
+
+    companion object {
+
+        fun create(query: SearchQuery): SearchPlan {
+            val (indexed, scanned) = query.predicates.partition { predicate ->
+                predicate.field.propertyType in TrigramSearchIndex.INDEXED_PROPERTY_TYPES
+            }
+
+            return SearchPlan(
+                indexedPredicates = indexed,
+                scanPredicates = scanned,
+                text = query.text
+            )
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.ivanovsky.passnotes.domain.search.query
+
+/**
+ * Parsed search query
+ *
+ * @param predicates conditions for the specific fields, all of them should be satisfied
+ * @param text the rest of the query that is matched against all content of the entry
+ */
+data class SearchQuery(
+    val predicates: List<FieldPredicate>,
+    val text: String
+) {
+
+    val isFieldScoped: Boolean
+        get() = predicates.isNotEmpty()
+}
+
+data class FieldPredicate(
+    val field: QueryField,
+    val value: String
+)
\ No newline at end of file
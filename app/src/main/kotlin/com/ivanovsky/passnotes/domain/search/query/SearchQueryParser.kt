@@ -0,0 +1,102 @@
+package com.ivanovsky.passnotes.domain.search.query
+
+/**
+ * Parses queries like `url:example.com user:"John Doe" bank`, words that are not
+ * a valid "field:value" pair are left as a text query. Query without any field is
+ * returned as is.
+ */
+object SearchQueryParser {
+
+    private const val FIELD_DELIMITER = ':'
+    private const val QUOTE = '"'
+
+    private val TRUE_VALUES = setOf("true", "yes", "1")
+    private val FALSE_VALUES = setOf("false", "no", "0")
+
+    fun parse(query: String): SearchQuery {
+        val predicates = mutableListOf<FieldPredicate>()
+        val words = mutableListOf<String>()
+
+        for (token in tokenize(query)) {
+            val predicate = parsePredicate(token)
+            if (predicate != null) {
+                predicates.add(predicate)
+            } else {
+                words.add(token)
+            }
+        }
+
+        return if (predicates.isEmpty()) {
+            SearchQuery(predicates = emptyList(), text = query)
+        } else {
+            SearchQuery(predicates = predicates, text = words.joinToString(separator = " "))
+        }
+    }
+
+    /**
+     * @return true or false if [value] is a valid boolean value, otherwise null
+     */
+    fun parseBoolean(value: String): Boolean? {
+        val loweredValue = value.lowercase()
+        return when (loweredValue) {
+            in TRUE_VALUES -> true
+            in FALSE_VALUES -> false
+            else -> null
+        }
+    }
+
+    private fun parsePredicate(token: String): FieldPredicate? {
+        val delimiterIdx = token.indexOf(FIELD_DELIMITER)
+        if (delimiterIdx <= 0) {
+            return null
+        }
+
+        val field = QueryField.getByKeyword(token.substring(0, delimiterIdx)) ?: return null
+        val value = token.substring(delimiterIdx + 1).unquote()
+        if (value.isEmpty()) {
+            return null
+        }
+
+        if (field == QueryField.EXPIRED && parseBoolean(value) == null) {
+            return null
+        }
+
+        return FieldPredicate(field, value)
+    }
+
+    private fun tokenize(query: String): List<String> {
+        val tokens = mutableListOf<String>()
+        val token = StringBuilder()
+        var isInsideQuotes = false
+
+        for (char in query) {
+            when {
+                char == QUOTE -> {
+                    isInsideQuotes = !isInsideQuotes
+                    token.append(char)
+                }
+                char.isWhitespace() && !isInsideQuotes -> {
+                    if (token.isNotEmpty()) {
+                        tokens.add(token.toString())
+                        token.clear()
+                    }
+                }
+                else -> token.append(char)
+            }
+        }
+
+        if (token.isNotEmpty()) {
+            tokens.add(token.toString())
+        }
+
+        return tokens
+    }
+
+    private fun String.unquote(): String {
+        return if (length >= 2 && first() == QUOTE && last() == QUOTE) {
+            substring(1, length - 1)
+        } else {
+            this
+        }
+    }
+}
\ No newline at end of file
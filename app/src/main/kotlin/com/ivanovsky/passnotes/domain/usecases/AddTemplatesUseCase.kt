@@ -21,7 +21,9 @@ class AddTemplatesUseCase(
             }
 
             val db = getDbResult.obj
-            val addTemplatesResult = db.templateDao.addTemplates(createDefaultTemplates())
+            val addTemplatesResult = db.transaction {
+                db.templateDao.addTemplates(createDefaultTemplates())
+            }
 
             if (addTemplatesResult.isSucceededOrDeferred) {
                 observerBus.notifyGroupDataSetChanged()
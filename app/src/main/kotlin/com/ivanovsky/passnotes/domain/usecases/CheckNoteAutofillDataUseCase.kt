@@ -4,12 +4,14 @@ import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.data.entity.Property
 import com.ivanovsky.passnotes.data.entity.PropertyType
 import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.autofill.DomainMatcher
+import com.ivanovsky.passnotes.domain.entity.DomainMatchType
 import com.ivanovsky.passnotes.domain.entity.PropertyFilter
 import com.ivanovsky.passnotes.presentation.autofill.model.AutofillStructure
-import com.ivanovsky.passnotes.util.UrlUtils.extractCleanWebDomain
 import kotlinx.coroutines.withContext
 
 class CheckNoteAutofillDataUseCase(
+    private val domainMatcher: DomainMatcher,
     private val dispatchers: DispatcherProvider
 ) {
 
@@ -19,12 +21,15 @@ class CheckNoteAutofillDataUseCase(
     ): Boolean =
         withContext(dispatchers.IO) {
             if (structure.webDomain != null) {
-                val domain = extractCleanWebDomain(structure.webDomain)
-                val domains = URL_FILTER
+                val urls = URL_FILTER
                     .apply(note.properties)
-                    .mapNotNull { property -> property.value?.let { extractCleanWebDomain(it) } }
+                    .mapNotNull { property -> property.value }
 
-                !domains.contains(domain)
+                urls.none { url ->
+                    val matchType = domainMatcher.getMatchType(structure.webDomain, url)
+                    matchType == DomainMatchType.EXACT_HOST ||
+                        matchType == DomainMatchType.REGISTRABLE_DOMAIN
+                }
             } else if (structure.applicationId != null) {
                 val appIds = APP_ID_FILTER
                     .apply(note.properties)
@@ -2,13 +2,17 @@ package com.ivanovsky.passnotes.domain.usecases
 
 import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.autofill.DomainMatcher
+import com.ivanovsky.passnotes.extensions.getOrNull
 import com.ivanovsky.passnotes.presentation.autofill.model.AutofillStructure
-import com.ivanovsky.passnotes.util.UrlUtils
+import java.util.UUID
 import kotlinx.coroutines.withContext
 
 class FindNoteForAutofillUseCase(
     private val getDbUseCase: GetDatabaseUseCase,
+    private val domainMatcher: DomainMatcher,
     private val dispatchers: DispatcherProvider
 ) {
 
@@ -24,35 +28,45 @@ class FindNoteForAutofillUseCase(
             }
 
             val db = getDbResult.obj
-            val domain = structure.webDomain?.let { UrlUtils.extractCleanWebDomain(it) }
+            val autofillIndex = db.autofillIndex
+            val domain = structure.webDomain
             val applicationId = structure.applicationId
 
-            // TODO(autofill): to improve search, autofill-properties should be also checked after
-            //  noteDao.find()
-            if (applicationId != null) {
-                val findResult = db.noteDao.find(applicationId)
-                if (findResult.isFailed) {
-                    return@withContext findResult.takeError()
-                }
-
-                val notes = findResult.obj
-                if (notes.isNotEmpty()) {
-                    return@withContext OperationResult.success(notes.firstOrNull())
+            if (!applicationId.isNullOrEmpty()) {
+                val note = findFirstNote(db, autofillIndex.findByApplicationId(applicationId))
+                if (note != null) {
+                    return@withContext OperationResult.success(note)
                 }
             }
 
-            if (domain != null && domain.isNotEmpty()) {
-                val findResult = db.noteDao.find(domain)
-                if (findResult.isFailed) {
-                    return@withContext findResult.takeError()
+            if (!domain.isNullOrEmpty()) {
+                // Exact host is preferred over parent domains and over the registrable domain
+                for (lookupDomain in domainMatcher.getLookupDomains(domain)) {
+                    val note = findFirstNote(db, autofillIndex.findByDomain(lookupDomain))
+                    if (note != null) {
+                        return@withContext OperationResult.success(note)
+                    }
                 }
 
-                val notes = findResult.obj
-                if (notes.isNotEmpty()) {
-                    return@withContext OperationResult.success(notes.firstOrNull())
+                val registrableDomain = domainMatcher.getRegistrableDomain(domain)
+                if (registrableDomain != null) {
+                    val noteUids = autofillIndex.findByDomainSubstring(registrableDomain)
+                    val note = findFirstNote(db, noteUids)
+                    if (note != null) {
+                        return@withContext OperationResult.success(note)
+                    }
                 }
             }
 
             OperationResult.success(null)
         }
+
+    private fun findFirstNote(
+        db: EncryptedDatabase,
+        noteUids: List<UUID>
+    ): Note? {
+        return noteUids.firstNotNullOfOrNull { noteUid ->
+            db.noteDao.getNoteByUid(noteUid).getOrNull()
+        }
+    }
 }
\ No newline at end of file
@@ -28,12 +28,17 @@ class MoveNoteUseCase(
             val note = getNoteResult.obj
             val updateNoteResult = db.noteDao.update(
                 note.copy(groupUid = newGroupUid),
-                true
+                false
             )
             if (updateNoteResult.isFailed) {
                 return@withContext updateNoteResult.takeError()
             }
 
+            val commitResult = db.commitAsync().await()
+            if (commitResult.isFailed) {
+                return@withContext commitResult.takeError()
+            }
+
             observerBus.notifyNoteDataSetChanged(note.groupUid)
             observerBus.notifyNoteDataSetChanged(newGroupUid)
 
@@ -1,15 +1,36 @@
 package com.ivanovsky.passnotes.domain.usecases
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.data.repository.settings.Settings
 import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.entity.SearchResults
 import com.ivanovsky.passnotes.domain.entity.SearchType
 import com.ivanovsky.passnotes.domain.search.EntryMatcher
 import com.ivanovsky.passnotes.domain.search.Fzf4jFuzzyEntryMatcher
+import com.ivanovsky.passnotes.domain.search.SearchRefinementCache
+import com.ivanovsky.passnotes.domain.search.SearchableEntriesCache
+import com.ivanovsky.passnotes.domain.search.SearchableEntriesCache.SortKey
 import com.ivanovsky.passnotes.domain.search.StrictEntryMatcher
+import com.ivanovsky.passnotes.domain.search.query.FieldQueryMatcher
+import com.ivanovsky.passnotes.domain.search.query.SearchPlan
+import com.ivanovsky.passnotes.domain.search.query.SearchQueryParser
+import com.ivanovsky.passnotes.extensions.getOrNull
 import com.ivanovsky.passnotes.extensions.mapError
+import java.util.UUID
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
+import timber.log.Timber
 
 class SearchUseCases(
     private val dispatchers: DispatcherProvider,
@@ -18,9 +39,30 @@ class SearchUseCases(
     private val settings: Settings
 ) {
 
-    private val strictMatcher: EntryMatcher = StrictEntryMatcher()
-    private val fuzzyMatcher: EntryMatcher = Fzf4jFuzzyEntryMatcher()
+    private val strictMatcher: EntryMatcher = StrictEntryMatcher(
+        indexProvider = { getDbUseCase.getDatabaseSynchronously().getOrNull()?.searchIndex },
+        propertiesProvider = { note -> getNoteProperties(note) }
+    )
+    private val fuzzyMatcher: EntryMatcher = Fzf4jFuzzyEntryMatcher(
+        contentVersionProvider = { getContentVersion() },
+        dispatcher = dispatchers.Default,
+        maxResults = MAX_FUZZY_RESULTS,
+        propertiesProvider = { note -> getNoteProperties(note) }
+    )
+    private val fieldMatcher = FieldQueryMatcher(
+        indexProvider = { getDbUseCase.getDatabaseSynchronously().getOrNull()?.searchIndex },
+        groupTitlesProvider = { getGroupTitles() },
+        propertiesProvider = { note -> getNoteProperties(note) }
+    )
+    private val refinementCache = SearchRefinementCache()
+    private val entriesCache = SearchableEntriesCache()
+    private val entriesMutex = Mutex()
 
+    /**
+     * Returns entries cached by [entriesCache] if content of the database was not changed,
+     * if only notes were changed since the last call, only notes of the affected groups are
+     * loaded again.
+     */
     suspend fun getAllSearchableEntries(
         isRespectAutotypeProperty: Boolean
     ): OperationResult<List<EncryptedDatabaseEntry>> {
@@ -30,78 +72,315 @@ class SearchUseCases(
                 return@withContext dbResult.mapError()
             }
 
-            val db = dbResult.obj
-            val getRootResult = db.groupDao.rootGroup
-            if (getRootResult.isFailed) {
-                return@withContext getRootResult.mapError()
-            }
+            entriesMutex.withLock {
+                val db = dbResult.obj
+                val contentVersion = db.contentVersion
+                val sortKey = SortKey(
+                    sortType = settings.sortType,
+                    sortDirection = settings.sortDirection,
+                    isGroupsAtStart = settings.isGroupsAtStartEnabled
+                )
+
+                val cachedState = entriesCache.getState(db, isRespectAutotypeProperty)
+                if (cachedState != null &&
+                    cachedState.contentVersion == contentVersion &&
+                    cachedState.sortKey == sortKey
+                ) {
+                    return@withLock OperationResult.success(cachedState.entries)
+                }
+
+                val changes = entriesCache.takeChanges(db, isRespectAutotypeProperty)
+                val isUpdateAllowed = cachedState != null &&
+                    !changes.isGroupsChanged &&
+                    (changes.groupUids.isNotEmpty() ||
+                        cachedState.contentVersion == contentVersion)
+
+                val updatedState = if (cachedState != null && isUpdateAllowed) {
+                    updateSearchableEntries(db, cachedState, changes, contentVersion, sortKey)
+                } else {
+                    null
+                }
+
+                val stateResult = if (updatedState != null) {
+                    OperationResult.success(updatedState)
+                } else {
+                    loadSearchableEntries(db, isRespectAutotypeProperty, contentVersion, sortKey)
+                }
+                if (stateResult.isFailed) {
+                    entriesCache.clear()
+                    return@withLock stateResult.mapError()
+                }
+
+                val state = stateResult.obj
+                entriesCache.putState(db, isRespectAutotypeProperty, state)
 
-            val getAllNotesResult = db.noteDao.all
-            if (getAllNotesResult.isFailed) {
-                return@withContext getAllNotesResult.mapError()
+                OperationResult.success(state.entries)
             }
+        }
+    }
+
+    /**
+     * Emits the first page of [firstPageSize] matched entries as soon as it is known,
+     * the last emitted value contains all matched entries, fuzzy search returns only
+     * [MAX_FUZZY_RESULTS] best matched entries.
+     * [query] may contain field predicates, see [SearchQueryParser].
+     */
+    fun searchEntries(
+        entries: List<EncryptedDatabaseEntry>,
+        query: String,
+        firstPageSize: Int
+    ): Flow<SearchResults> {
+        if (query.isEmpty()) {
+            return flowOf(SearchResults(entries = entries, isComplete = true))
+        }
 
-            val getAllGroupsResult = db.groupDao.all
-            if (getAllGroupsResult.isFailed) {
-                return@withContext getAllGroupsResult.mapError()
+        return flow {
+            val searchType = settings.searchType
+            val searchQuery = SearchQueryParser.parse(query)
+            if (searchQuery.isFieldScoped) {
+                emitAll(
+                    searchByFields(
+                        plan = SearchPlan.create(searchQuery),
+                        entries = entries,
+                        searchType = searchType,
+                        firstPageSize = firstPageSize
+                    )
+                )
+                return@flow
             }
 
-            val root = getRootResult.obj
-            val allNotes = getAllNotesResult.obj
-            val allGroups = getAllGroupsResult.obj
+            val contentVersion = getContentVersion()
+            val start = System.currentTimeMillis()
+
+            val candidates = refinementCache.getCandidates(
+                query = query,
+                entries = entries,
+                searchType = searchType,
+                contentVersion = contentVersion
+            )
+            if (candidates.cachedResult != null) {
+                emit(SearchResults(entries = candidates.cachedResult, isComplete = true))
+                return@flow
+            }
 
-            val searchableGroupMap = allGroups
-                .filter { it.searchEnabled.isEnabled }
-                .associateBy { it.uid }
+            getMatcher(searchType).matchProgressively(
+                query = query,
+                entries = candidates.entries,
+                firstPageSize = firstPageSize
+            )
+                .collect { results ->
+                    // Result that is limited by MAX_FUZZY_RESULTS may miss entries of
+                    // the refined query, so it can't be used as candidates
+                    if (results.isComplete && results.entries.size < MAX_FUZZY_RESULTS) {
+                        refinementCache.put(
+                            query = query,
+                            result = results.entries,
+                            entries = entries
+                        )
 
-            val searchableNotes = allNotes
-                .filter { searchableGroupMap.containsKey(it.groupUid) }
+                        Timber.d(
+                            "Search: type=%s, entries=%s, candidates=%s, results=%s, time=%sms",
+                            searchType,
+                            entries.size,
+                            candidates.entries.size,
+                            results.entries.size,
+                            System.currentTimeMillis() - start
+                        )
+                    }
 
-            val entries = if (isRespectAutotypeProperty) {
-                val autotypeableGroups = searchableGroupMap.values
-                    .filter { it.uid != root.uid && it.autotypeEnabled.isEnabled }
+                    emit(results)
+                }
+        }
+            .flowOn(dispatchers.IO)
+    }
 
-                val autotypeableGroupMap = searchableGroupMap.values
-                    .filter { it.autotypeEnabled.isEnabled }
-                    .associateBy { it.uid }
+    /**
+     * Filters entries by predicates of [plan], the rest of the query is matched
+     * according to [searchType]. Results are not cached by [refinementCache], because
+     * extended field query may match entries that were not matched before.
+     */
+    private fun searchByFields(
+        plan: SearchPlan,
+        entries: List<EncryptedDatabaseEntry>,
+        searchType: SearchType,
+        firstPageSize: Int
+    ): Flow<SearchResults> {
+        return flow {
+            val start = System.currentTimeMillis()
+            val filteredEntries = fieldMatcher.filter(plan, entries)
 
-                val autotypeableNotes = searchableNotes
-                    .filter { autotypeableGroupMap.containsKey(it.groupUid) }
+            Timber.d(
+                "Search by fields: indexed=%s, scanned=%s, entries=%s, results=%s, time=%sms",
+                plan.indexedPredicates.size,
+                plan.scanPredicates.size,
+                entries.size,
+                filteredEntries.size,
+                System.currentTimeMillis() - start
+            )
 
-                autotypeableNotes + autotypeableGroups
+            if (plan.text.isEmpty()) {
+                emit(SearchResults(entries = filteredEntries, isComplete = true))
             } else {
-                searchableNotes + searchableGroupMap.values.filter { it.uid != root.uid }
+                emitAll(
+                    getMatcher(searchType).matchProgressively(
+                        query = plan.text,
+                        entries = filteredEntries,
+                        firstPageSize = firstPageSize
+                    )
+                )
             }
+        }
+    }
 
-            val sortedEntries = sortUseCase.sortGroupsAndNotesAccordingToSettings(entries)
+    private suspend fun loadSearchableEntries(
+        db: EncryptedDatabase,
+        isRespectAutotypeProperty: Boolean,
+        contentVersion: Long,
+        sortKey: SortKey
+    ): OperationResult<SearchableEntriesCache.State> {
+        val getRootResult = db.groupDao.rootGroup
+        if (getRootResult.isFailed) {
+            return getRootResult.mapError()
+        }
 
-            OperationResult.success(sortedEntries)
+        val getAllNotesResult = db.noteDao.allSummaries
+        if (getAllNotesResult.isFailed) {
+            return getAllNotesResult.mapError()
         }
-    }
 
-    suspend fun filterEntries(
-        entries: List<EncryptedDatabaseEntry>,
-        query: String
-    ): List<EncryptedDatabaseEntry> {
-        if (query.isEmpty()) {
-            return entries
+        val getAllGroupsResult = db.groupDao.all
+        if (getAllGroupsResult.isFailed) {
+            return getAllGroupsResult.mapError()
         }
 
-        return withContext(dispatchers.IO) {
-            when (settings.searchType) {
-                SearchType.FUZZY -> {
-                    fuzzyMatcher.match(
-                        query = query,
-                        entries = entries
-                    )
-                }
-                SearchType.STRICT -> {
-                    strictMatcher.match(
-                        query = query,
-                        entries = entries
-                    )
-                }
+        val root = getRootResult.obj
+        val allNotes = getAllNotesResult.obj
+        val allGroups = getAllGroupsResult.obj
+
+        val searchableGroups = allGroups
+            .filter { it.searchEnabled.isEnabled }
+
+        val (groups, noteGroupUids) = if (isRespectAutotypeProperty) {
+            val autotypeableGroups = searchableGroups
+                .filter { it.autotypeEnabled.isEnabled }
+
+            Pair(
+                autotypeableGroups.filter { it.uid != root.uid },
+                autotypeableGroups.map { it.uid }.toSet()
+            )
+        } else {
+            Pair(
+                searchableGroups.filter { it.uid != root.uid },
+                searchableGroups.map { it.uid }.toSet()
+            )
+        }
+
+        val notesByGroupUid = allNotes
+            .filter { noteGroupUids.contains(it.groupUid) }
+            .groupByTo(LinkedHashMap()) { it.groupUid }
+
+        return OperationResult.success(
+            newSearchableEntriesState(
+                contentVersion = contentVersion,
+                sortKey = sortKey,
+                notesByGroupUid = notesByGroupUid,
+                groups = groups,
+                searchableGroupUids = noteGroupUids
+            )
+        )
+    }
+
+    /**
+     * @return updated [state] or null if [state] can't be updated and all entries
+     * should be loaded again
+     */
+    private suspend fun updateSearchableEntries(
+        db: EncryptedDatabase,
+        state: SearchableEntriesCache.State,
+        changes: SearchableEntriesCache.PendingChanges,
+        contentVersion: Long,
+        sortKey: SortKey
+    ): SearchableEntriesCache.State? {
+        val notesByGroupUid = LinkedHashMap(state.notesByGroupUid)
+
+        for (groupUid in changes.groupUids) {
+            if (groupUid !in state.searchableGroupUids) {
+                continue
             }
+
+            // Position of the new group in the default order is unknown
+            if (groupUid !in notesByGroupUid) {
+                return null
+            }
+
+            notesByGroupUid[groupUid] = db.noteDao.getSummariesByGroupUid(groupUid)
+                .getOrNull()
+                ?: return null
+        }
+
+        return newSearchableEntriesState(
+            contentVersion = contentVersion,
+            sortKey = sortKey,
+            notesByGroupUid = notesByGroupUid,
+            groups = state.groups,
+            searchableGroupUids = state.searchableGroupUids
+        )
+    }
+
+    private suspend fun newSearchableEntriesState(
+        contentVersion: Long,
+        sortKey: SortKey,
+        notesByGroupUid: Map<UUID, List<NoteSummary>>,
+        groups: List<Group>,
+        searchableGroupUids: Set<UUID>
+    ): SearchableEntriesCache.State {
+        val entries = notesByGroupUid.values.flatten() + groups
+
+        val sortedEntries = sortUseCase.sortGroupsAndNotes(
+            items = entries,
+            sortType = sortKey.sortType,
+            direction = sortKey.sortDirection,
+            isGroupsAtStart = sortKey.isGroupsAtStart
+        )
+
+        return SearchableEntriesCache.State(
+            contentVersion = contentVersion,
+            sortKey = sortKey,
+            notesByGroupUid = notesByGroupUid,
+            groups = groups,
+            searchableGroupUids = searchableGroupUids,
+            entries = sortedEntries
+        )
+    }
+
+    private fun getMatcher(searchType: SearchType): EntryMatcher {
+        return when (searchType) {
+            SearchType.FUZZY -> fuzzyMatcher
+            SearchType.STRICT -> strictMatcher
         }
     }
+
+    private fun getGroupTitles(): Map<UUID, String> {
+        val db = getDbUseCase.getDatabaseSynchronously().getOrNull() ?: return emptyMap()
+        val groups = db.groupDao.all.getOrNull() ?: return emptyMap()
+
+        return groups.associate { group -> group.uid to group.title }
+    }
+
+    /**
+     * Properties are not kept in [NoteSummary], note is loaded by uid and the result of
+     * conversion is cached by the database
+     */
+    private fun getNoteProperties(note: NoteSummary): List<Property> {
+        val db = getDbUseCase.getDatabaseSynchronously().getOrNull() ?: return emptyList()
+        return db.noteDao.getNoteByUid(note.uid).getOrNull()?.properties ?: emptyList()
+    }
+
+    private fun getContentVersion(): Long? {
+        return getDbUseCase.getDatabaseSynchronously().getOrNull()?.contentVersion
+    }
+
+    companion object {
+        private const val MAX_FUZZY_RESULTS = 1000
+    }
 }
\ No newline at end of file
@@ -1,29 +1,98 @@
 package com.ivanovsky.passnotes.domain.usecases
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
 import com.ivanovsky.passnotes.data.repository.settings.Settings
 import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.LocaleProvider
 import com.ivanovsky.passnotes.domain.entity.SortDirection
 import com.ivanovsky.passnotes.domain.entity.SortType
+import com.ivanovsky.passnotes.domain.entity.SortedEntries
 import com.ivanovsky.passnotes.domain.usecases.sorrting.SortByDateStrategy
 import com.ivanovsky.passnotes.domain.usecases.sorrting.SortByDefaultOrderStrategy
 import com.ivanovsky.passnotes.domain.usecases.sorrting.SortByTitleStrategy
+import com.ivanovsky.passnotes.domain.usecases.sorrting.SortOrderCache
+import com.ivanovsky.passnotes.domain.usecases.sorrting.SortStrategy
+import com.ivanovsky.passnotes.domain.usecases.sorrting.SortedEntryList
+import com.ivanovsky.passnotes.domain.usecases.sorrting.TitleCollator
+import com.ivanovsky.passnotes.extensions.mapError
+import java.util.UUID
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
 
 class SortGroupsAndNotesUseCase(
     private val settings: Settings,
+    localeProvider: LocaleProvider,
     private val dispatchers: DispatcherProvider
 ) {
 
-    suspend fun sortGroupsAndNotesAccordingToSettings(
-        items: List<EncryptedDatabaseEntry>
-    ): List<EncryptedDatabaseEntry> =
-        sortGroupsAndNotes(
-            items = items,
-            sortType = settings.sortType,
-            direction = settings.sortDirection,
-            isGroupsAtStart = settings.isGroupsAtStartEnabled
-        )
+    private val titleCollator = TitleCollator(localeProvider)
+    private val sortOrderCache = SortOrderCache()
+    private val sortMutex = Mutex()
+
+    /**
+     * Returns entries of the group sorted according to settings. Sorted entries are cached,
+     * after notes of the group are changed they are moved into place without sorting of
+     * the whole group, positional changes are returned in [SortedEntries.changes].
+     */
+    suspend fun getSortedGroupEntriesAccordingToSettings(
+        db: EncryptedDatabase,
+        groupUid: UUID,
+        loadEntries: () -> OperationResult<List<EncryptedDatabaseEntry>>
+    ): OperationResult<SortedEntries> =
+        withContext(dispatchers.IO) {
+            sortMutex.withLock {
+                val key = SortOrderCache.Key(
+                    groupUid = groupUid,
+                    sortType = settings.sortType,
+                    sortDirection = settings.sortDirection,
+                    isGroupsAtStart = settings.isGroupsAtStartEnabled
+                )
+
+                val cachedEntries = sortOrderCache.get(db, key)
+                if (cachedEntries != null && cachedEntries.changedUids.isEmpty()) {
+                    val entries = cachedEntries.list.getEntries()
+                    return@withContext OperationResult.success(
+                        SortedEntries(entries, entries, emptyList())
+                    )
+                }
+
+                val changeCount = sortOrderCache.getChangeCount(db)
+
+                val loadResult = loadEntries.invoke()
+                if (loadResult.isFailed) {
+                    return@withContext loadResult.mapError()
+                }
+
+                if (cachedEntries != null) {
+                    val list = cachedEntries.list
+                    val previousEntries = list.getEntries()
+                    val changes = list.update(loadResult.obj, cachedEntries.changedUids)
+                    sortOrderCache.onListUpdated(db, key, cachedEntries.changedUids, changeCount)
+
+                    return@withContext OperationResult.success(
+                        SortedEntries(list.getEntries(), previousEntries, changes)
+                    )
+                }
+
+                val strategy = getStrategy(key.sortType)
+                val sortedEntries = strategy.sort(
+                    loadResult.obj,
+                    key.sortDirection,
+                    isGroupsAtStart = key.isGroupsAtStart
+                )
+                val comparator = strategy.getComparator(
+                    key.sortDirection,
+                    isGroupsAtStart = key.isGroupsAtStart
+                )
+                val list = SortedEntryList(sortedEntries, comparator)
+                sortOrderCache.put(db, key, list, changeCount)
+
+                OperationResult.success(SortedEntries(list.getEntries(), null, emptyList()))
+            }
+        }
 
     suspend fun sortGroupsAndNotes(
         items: List<EncryptedDatabaseEntry>,
@@ -32,30 +101,21 @@ class SortGroupsAndNotesUseCase(
         isGroupsAtStart: Boolean
     ): List<EncryptedDatabaseEntry> =
         withContext(dispatchers.IO) {
-            when (sortType) {
-                SortType.DEFAULT -> SortByDefaultOrderStrategy().sort(
-                    items,
-                    direction,
-                    isGroupsAtStart = isGroupsAtStart
-                )
-                SortType.TITLE -> SortByTitleStrategy().sort(
-                    items,
-                    direction,
-                    isGroupsAtStart = isGroupsAtStart
-                )
-                SortType.CREATION_DATE -> SortByDateStrategy(SortByDateStrategy.Type.CREATION_DATE)
-                    .sort(
-                        items,
-                        direction,
-                        isGroupsAtStart = isGroupsAtStart
-                    )
-                SortType.MODIFICATION_DATE -> SortByDateStrategy(
-                    SortByDateStrategy.Type.MODIFICATION_DATE
-                ).sort(
-                    items,
-                    direction,
-                    isGroupsAtStart = isGroupsAtStart
-                )
-            }
+            getStrategy(sortType).sort(
+                items,
+                direction,
+                isGroupsAtStart = isGroupsAtStart
+            )
+        }
+
+    private fun getStrategy(sortType: SortType): SortStrategy {
+        return when (sortType) {
+            SortType.DEFAULT -> SortByDefaultOrderStrategy()
+            SortType.TITLE -> SortByTitleStrategy(titleCollator)
+            SortType.CREATION_DATE -> SortByDateStrategy(SortByDateStrategy.Type.CREATION_DATE)
+            SortType.MODIFICATION_DATE -> SortByDateStrategy(
+                SortByDateStrategy.Type.MODIFICATION_DATE
+            )
         }
+    }
 }
\ No newline at end of file
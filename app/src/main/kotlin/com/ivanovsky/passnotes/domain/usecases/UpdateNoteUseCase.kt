@@ -20,11 +20,17 @@ class UpdateNoteUseCase(
             }
 
             val db = getDbResult.obj
-            val updateResult = db.noteDao.update(note, true)
+            val updateResult = db.noteDao.update(note, false)
             if (updateResult.isFailed) {
                 return@withContext updateResult.takeError()
             }
 
+            // waits for the write without blocking of the thread
+            val commitResult = db.commitAsync().await()
+            if (commitResult.isFailed) {
+                return@withContext commitResult.takeError()
+            }
+
             val groupUid = note.groupUid
             val oldUid = note.uid
             val newUid = updateResult.obj
@@ -6,6 +6,9 @@ import com.ivanovsky.passnotes.domain.DispatcherProvider
 import com.ivanovsky.passnotes.domain.NoteDiffer
 import com.ivanovsky.passnotes.domain.PropertyFactory
 import com.ivanovsky.passnotes.domain.PropertyFactory.createAutofillAppIdProperty
+import com.ivanovsky.passnotes.domain.autofill.DomainMatcher
+import com.ivanovsky.passnotes.domain.entity.DomainMatchType
+import com.ivanovsky.passnotes.domain.entity.PropertyFilter
 import com.ivanovsky.passnotes.extensions.addOrUpdateProperty
 import com.ivanovsky.passnotes.presentation.autofill.model.AutofillStructure
 import kotlinx.coroutines.withContext
@@ -13,6 +16,7 @@ import kotlinx.coroutines.withContext
 class UpdateNoteWithAutofillDataUseCase(
     private val updateNoteUseCase: UpdateNoteUseCase,
     private val noteDiffer: NoteDiffer,
+    private val domainMatcher: DomainMatcher,
     private val dispatchers: DispatcherProvider
 ) {
 
@@ -46,6 +50,10 @@ class UpdateNoteWithAutofillDataUseCase(
             var result = note
 
             if (structure.webDomain != null) {
+                if (hasMatchingUrl(note, structure.webDomain)) {
+                    return@withContext result
+                }
+
                 val newProperty = PropertyFactory.createUrlProperty(structure.webDomain)
                 result = result.addOrUpdateProperty(newProperty)
             } else if (structure.applicationId != null) {
@@ -55,4 +63,22 @@ class UpdateNoteWithAutofillDataUseCase(
 
             result
         }
+
+    private fun hasMatchingUrl(note: Note, webDomain: String): Boolean {
+        return URL_FILTER.apply(note.properties)
+            .mapNotNull { property -> property.value }
+            .any { url ->
+                val matchType = domainMatcher.getMatchType(webDomain, url)
+                matchType == DomainMatchType.EXACT_HOST ||
+                    matchType == DomainMatchType.REGISTRABLE_DOMAIN
+            }
+    }
+
+    companion object {
+
+        private val URL_FILTER = PropertyFilter.Builder()
+            .filterUrl()
+            .notEmpty()
+            .build()
+    }
 }
\ No newline at end of file
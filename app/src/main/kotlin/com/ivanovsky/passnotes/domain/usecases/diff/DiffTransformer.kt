@@ -1,13 +1,11 @@
 package com.ivanovsky.passnotes.domain.usecases.diff
 
-import app.keemobile.kotpass.models.DatabaseElement as KotpassDatabaseElement
-import app.keemobile.kotpass.models.Group as KotpassGroup
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseElement
 import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase
 import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffEvent
 import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffListItem
 import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffOriginType
-import java.util.LinkedList
+import com.ivanovsky.passnotes.extensions.getOrNull
 import java.util.UUID
 
 class DiffTransformer {
@@ -19,13 +17,13 @@ class DiffTransformer {
     ): List<DiffListItem> {
         val sortedDiff = DiffSorter().sort(diff)
 
-        val lhsDepthMap = lhs.getRawRootGroup().buildDepthMap()
-        val rhsDepthMap = rhs.getRawRootGroup().buildDepthMap()
+        val lhsDepthFinder = DepthFinder(lhs)
+        val rhsDepthFinder = DepthFinder(rhs)
 
         val eventsByParentMap = groupEventsByParent(sortedDiff)
         val eventsByDepthMap = groupEventsByDepth(
-            lhsDepthMap = lhsDepthMap,
-            rhsDepthMap = rhsDepthMap,
+            lhsDepthFinder = lhsDepthFinder,
+            rhsDepthFinder = rhsDepthFinder,
             eventsByParentMap = eventsByParentMap
         )
 
@@ -101,8 +99,8 @@ class DiffTransformer {
     }
 
     private fun groupEventsByDepth(
-        lhsDepthMap: Map<UUID, Int>,
-        rhsDepthMap: Map<UUID, Int>,
+        lhsDepthFinder: DepthFinder,
+        rhsDepthFinder: DepthFinder,
         eventsByParentMap: Map<UUID?, List<DiffEvent<EncryptedDatabaseElement>>>
     ): Map<Int, Map<UUID?, List<DiffEvent<EncryptedDatabaseElement>>>> {
         val allEventsByDepth =
@@ -110,8 +108,8 @@ class DiffTransformer {
 
         for ((parentUuid, eventsByParent) in eventsByParentMap) {
             val depth = getDepth(
-                lhsDepthMap = lhsDepthMap,
-                rhsDepthMap = rhsDepthMap,
+                lhsDepthFinder = lhsDepthFinder,
+                rhsDepthFinder = rhsDepthFinder,
                 event = eventsByParent.first()
             )
 
@@ -127,47 +125,18 @@ class DiffTransformer {
         return allEventsByDepth
     }
 
-    private fun KotpassGroup.buildDepthMap(): Map<UUID, Int> {
-        val depthMap = HashMap<UUID, Int>()
-
-        val nodes = LinkedList<KotpassDatabaseElement>()
-        nodes.add(this)
-
-        var level = 0
-        while (nodes.isNotEmpty()) {
-            repeat(nodes.size) {
-                val node = nodes.removeFirst()
-
-                depthMap[node.uuid] = level
-
-                if (node is KotpassGroup) {
-                    for (child in node.groups) {
-                        nodes.add(child)
-                    }
-                    for (child in node.entries) {
-                        nodes.add(child)
-                    }
-                }
-            }
-
-            level++
-        }
-
-        return depthMap
-    }
-
     private fun getDepth(
-        lhsDepthMap: Map<UUID, Int>,
-        rhsDepthMap: Map<UUID, Int>,
+        lhsDepthFinder: DepthFinder,
+        rhsDepthFinder: DepthFinder,
         event: DiffEvent<EncryptedDatabaseElement>
     ): Int {
-        val parentUuid = event.getParentUuid()
-        val depthMap = event.chooseSourceByEventType(
-            lhs = lhsDepthMap,
-            rhs = rhsDepthMap
+        val parentUuid = event.getParentUuid() ?: return 0
+        val depthFinder = event.chooseSourceByEventType(
+            lhs = lhsDepthFinder,
+            rhs = rhsDepthFinder
         )
 
-        return depthMap[parentUuid]?.let { depth ->
+        return depthFinder.getDepth(parentUuid)?.let { depth ->
             depth + 1
         } ?: 0
     }
@@ -192,4 +161,53 @@ class DiffTransformer {
             is DiffEvent.Update -> newParentUuid
         }
     }
+
+    /**
+     * Finds depth of the group or entry by walking up to the root with the database index,
+     * depths of the visited groups are memoized
+     */
+    private class DepthFinder(
+        private val db: KotpassDatabase
+    ) {
+
+        private val groupDepths = HashMap<UUID, Int>()
+
+        fun getDepth(uuid: UUID): Int? {
+            val entryAndGroup = db.getRawEntryAndGroupByUid(uuid).getOrNull()
+            if (entryAndGroup != null) {
+                val (group, _) = entryAndGroup
+                return getGroupDepth(group.uuid)?.let { depth -> depth + 1 }
+            }
+
+            return getGroupDepth(uuid)
+        }
+
+        private fun getGroupDepth(groupUuid: UUID): Int? {
+            groupDepths[groupUuid]?.let { return it }
+            if (db.getRawGroupByUid(groupUuid).isFailed) {
+                return null
+            }
+
+            val path = mutableListOf(groupUuid)
+            var parent = db.getRawParentGroup(groupUuid).getOrNull()
+            var depth = 0
+            while (parent != null) {
+                val parentDepth = groupDepths[parent.uuid]
+                if (parentDepth != null) {
+                    depth = parentDepth + 1
+                    break
+                }
+
+                path.add(parent.uuid)
+                parent = db.getRawParentGroup(parent.uuid).getOrNull()
+            }
+
+            for (uuid in path.asReversed()) {
+                groupDepths[uuid] = depth
+                depth++
+            }
+
+            return groupDepths[groupUuid]
+        }
+    }
 }
\ No newline at end of file
@@ -1,6 +1,5 @@
 package com.ivanovsky.passnotes.domain.usecases.diff
 
-import com.github.aivanovski.keepasstreediff.PathDiffer
 import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase
 import com.ivanovsky.passnotes.domain.DispatcherProvider
 import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffListItem
@@ -15,11 +14,14 @@ class GetDiffUseCase(
         rhs: KotpassDatabase
     ): List<DiffListItem> =
         withContext(dispatchers.Default) {
-            val diff = PathDiffer().diff(
-                lhs = lhs.buildNodeTree(),
-                rhs = rhs.buildNodeTree()
+            if (lhs.getContentHash() == rhs.getContentHash()) {
+                return@withContext emptyList()
+            }
+
+            val diff = UuidDiffer().diff(
+                lhs = lhs.getSnapshot(),
+                rhs = rhs.getSnapshot()
             )
-                .map { event -> event.toInternalDiffEvent() }
 
             DiffTransformer().transform(
                 lhs = lhs,
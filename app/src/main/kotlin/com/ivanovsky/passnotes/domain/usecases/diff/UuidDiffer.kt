@@ -0,0 +1,293 @@
+package com.ivanovsky.passnotes.domain.usecases.diff
+
+import app.keemobile.kotpass.models.DatabaseElement as KotpassDatabaseElement
+import app.keemobile.kotpass.models.Entry
+import app.keemobile.kotpass.models.Group as KotpassGroup
+import com.github.aivanovski.keepasstreediff.entity.StringField
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseElement
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabaseSnapshot
+import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffEvent
+import java.util.LinkedList
+import java.util.UUID
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+
+/**
+ * Calculates diff of two databases, groups and entries are matched by uid.
+ * Both group trees are descended together and child nodes that have the same parent
+ * and the same content hash on both sides are skipped, the rest of the nodes are joined
+ * by uid and compared in parallel.
+ *
+ * Node which is missing on one side is reported as inserted or deleted, node which was
+ * moved to another group is reported as deleted from the old group and inserted to the new
+ * one. Path of every node inside of the moved group is changed too, so these nodes are
+ * also reported as deleted and inserted, the same way as by PathDiffer.
+ * Modified fields are reported by field events where the node is a parent.
+ */
+class UuidDiffer(
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE
+) {
+
+    suspend fun diff(
+        lhs: KotpassDatabaseSnapshot,
+        rhs: KotpassDatabaseSnapshot
+    ): List<DiffEvent<EncryptedDatabaseElement>> {
+        if (lhs.getContentHash() == rhs.getContentHash()) {
+            return emptyList()
+        }
+
+        val lhsNodes = LinkedHashMap<UUID, Node>()
+        val rhsNodes = LinkedHashMap<UUID, Node>()
+        collectChangedNodes(lhs, rhs, lhsNodes, rhsNodes)
+
+        val insertedNodes = rhsNodes.values.filter { node -> node.uid !in lhsNodes }
+
+        return coroutineScope {
+            val compareJobs = lhsNodes.values.chunked(chunkSize).map { nodes ->
+                async {
+                    nodes.flatMap { node ->
+                        compareNodes(lhs, rhs, node, rhsNodes[node.uid])
+                    }
+                }
+            }
+
+            val insertJobs = insertedNodes.chunked(chunkSize).map { nodes ->
+                async {
+                    nodes.map { node -> node.toInsertEvent() }
+                }
+            }
+
+            (compareJobs + insertJobs).awaitAll().flatten()
+        }
+    }
+
+    private fun collectChangedNodes(
+        lhs: KotpassDatabaseSnapshot,
+        rhs: KotpassDatabaseSnapshot,
+        lhsNodes: MutableMap<UUID, Node>,
+        rhsNodes: MutableMap<UUID, Node>
+    ) {
+        val lhsRoot = lhs.getRawRootGroup()
+        val rhsRoot = rhs.getRawRootGroup()
+
+        if (lhsRoot.uuid != rhsRoot.uuid) {
+            addSubtree(lhsRoot, null, lhsNodes)
+            addSubtree(rhsRoot, null, rhsNodes)
+            return
+        }
+
+        lhsNodes[lhsRoot.uuid] = Node(lhsRoot, null)
+        rhsNodes[rhsRoot.uuid] = Node(rhsRoot, null)
+
+        val groups = LinkedList<Pair<KotpassGroup, KotpassGroup>>()
+        groups.add(Pair(lhsRoot, rhsRoot))
+
+        while (groups.isNotEmpty()) {
+            val (lhsGroup, rhsGroup) = groups.poll()
+
+            val rhsGroupsByUid = rhsGroup.groups.associateBy { group -> group.uuid }
+            for (lhsChildGroup in lhsGroup.groups) {
+                val rhsChildGroup = rhsGroupsByUid[lhsChildGroup.uuid]
+                if (rhsChildGroup == null) {
+                    addSubtree(lhsChildGroup, lhsGroup.uuid, lhsNodes)
+                    continue
+                }
+
+                if (lhs.getGroupContentHash(lhsChildGroup) ==
+                    rhs.getGroupContentHash(rhsChildGroup)
+                ) {
+                    continue
+                }
+
+                lhsNodes[lhsChildGroup.uuid] = Node(lhsChildGroup, lhsGroup.uuid)
+                rhsNodes[rhsChildGroup.uuid] = Node(rhsChildGroup, rhsGroup.uuid)
+                groups.add(Pair(lhsChildGroup, rhsChildGroup))
+            }
+
+            val lhsGroupUids = lhsGroup.groups.map { group -> group.uuid }.toSet()
+            for (rhsChildGroup in rhsGroup.groups) {
+                if (rhsChildGroup.uuid !in lhsGroupUids) {
+                    addSubtree(rhsChildGroup, rhsGroup.uuid, rhsNodes)
+                }
+            }
+
+            val rhsEntriesByUid = rhsGroup.entries.associateBy { entry -> entry.uuid }
+            for (lhsEntry in lhsGroup.entries) {
+                val rhsEntry = rhsEntriesByUid[lhsEntry.uuid]
+                if (rhsEntry != null &&
+                    lhs.getEntryContentHash(lhsEntry) == rhs.getEntryContentHash(rhsEntry)
+                ) {
+                    continue
+                }
+
+                lhsNodes[lhsEntry.uuid] = Node(lhsEntry, lhsGroup.uuid)
+                if (rhsEntry != null) {
+                    rhsNodes[rhsEntry.uuid] = Node(rhsEntry, rhsGroup.uuid)
+                }
+            }
+
+            val lhsEntryUids = lhsGroup.entries.map { entry -> entry.uuid }.toSet()
+            for (rhsEntry in rhsGroup.entries) {
+                if (rhsEntry.uuid !in lhsEntryUids) {
+                    rhsNodes[rhsEntry.uuid] = Node(rhsEntry, rhsGroup.uuid)
+                }
+            }
+        }
+    }
+
+    private fun addSubtree(
+        root: KotpassGroup,
+        parentUid: UUID?,
+        nodes: MutableMap<UUID, Node>
+    ) {
+        nodes[root.uuid] = Node(root, parentUid)
+
+        val groups = LinkedList<KotpassGroup>()
+        groups.add(root)
+
+        while (groups.isNotEmpty()) {
+            val group = groups.poll()
+
+            for (childGroup in group.groups) {
+                nodes[childGroup.uuid] = Node(childGroup, group.uuid, isDetached = true)
+                groups.add(childGroup)
+            }
+
+            for (entry in group.entries) {
+                nodes[entry.uuid] = Node(entry, group.uuid, isDetached = true)
+            }
+        }
+    }
+
+    private fun compareNodes(
+        lhs: KotpassDatabaseSnapshot,
+        rhs: KotpassDatabaseSnapshot,
+        lhsNode: Node,
+        rhsNode: Node?
+    ): List<DiffEvent<EncryptedDatabaseElement>> {
+        if (rhsNode == null) {
+            return listOf(lhsNode.toDeleteEvent())
+        }
+
+        val isPathChanged = lhsNode.isDetached || rhsNode.isDetached
+        if (lhsNode.parentUid != rhsNode.parentUid || isPathChanged) {
+            return listOf(lhsNode.toDeleteEvent(), rhsNode.toInsertEvent())
+        }
+
+        val lhsElement = lhsNode.element
+        val rhsElement = rhsNode.element
+        if (lhsElement is Entry &&
+            rhsElement is Entry &&
+            lhs.getEntryContentHash(lhsElement) == rhs.getEntryContentHash(rhsElement)
+        ) {
+            return emptyList()
+        }
+
+        return compareFields(
+            uid = lhsNode.uid,
+            lhsFields = lhsElement.getFields(),
+            rhsFields = rhsElement.getFields()
+        )
+    }
+
+    private fun compareFields(
+        uid: UUID,
+        lhsFields: Map<String, String>,
+        rhsFields: Map<String, String>
+    ): List<DiffEvent<EncryptedDatabaseElement>> {
+        val events = mutableListOf<DiffEvent<EncryptedDatabaseElement>>()
+
+        for ((name, lhsValue) in lhsFields) {
+            val rhsValue = rhsFields[name]
+            when {
+                rhsValue == null -> {
+                    events.add(
+                        DiffEvent.Delete(
+                            parentUuid = uid,
+                            entity = newProperty(name, lhsValue)
+                        )
+                    )
+                }
+
+                rhsValue != lhsValue -> {
+                    events.add(
+                        DiffEvent.Update(
+                            oldParentUuid = uid,
+                            newParentUuid = uid,
+                            oldEntity = newProperty(name, lhsValue),
+                            newEntity = newProperty(name, rhsValue)
+                        )
+                    )
+                }
+            }
+        }
+
+        for ((name, rhsValue) in rhsFields) {
+            if (name !in lhsFields) {
+                events.add(
+                    DiffEvent.Insert(
+                        parentUuid = uid,
+                        entity = newProperty(name, rhsValue)
+                    )
+                )
+            }
+        }
+
+        return events
+    }
+
+    private fun newProperty(name: String, value: String): EncryptedDatabaseElement {
+        return StringField(name, value).toProperty()
+    }
+
+    private fun KotpassDatabaseElement.getFields(): Map<String, String> {
+        return when (this) {
+            is KotpassGroup -> mapOf(PropertyType.TITLE.propertyName to name)
+            is Entry -> fields.entries.associate { (name, value) -> name to value.content }
+            else -> throw IllegalStateException("Unknown element type: $this")
+        }
+    }
+
+    private fun Node.toEntity(): EncryptedDatabaseElement {
+        return when (element) {
+            is KotpassGroup -> element.toDiffGroupEntity().toGroup(parentUid)
+            is Entry -> element.toDiffEntryEntity().toNote(
+                parentUid ?: throw IllegalStateException()
+            )
+            else -> throw IllegalStateException("Unknown element type: $element")
+        }
+    }
+
+    private fun Node.toInsertEvent(): DiffEvent<EncryptedDatabaseElement> {
+        return DiffEvent.Insert(
+            parentUuid = parentUid,
+            entity = toEntity()
+        )
+    }
+
+    private fun Node.toDeleteEvent(): DiffEvent<EncryptedDatabaseElement> {
+        return DiffEvent.Delete(
+            parentUuid = parentUid,
+            entity = toEntity()
+        )
+    }
+
+    /**
+     * @param isDetached true if the node is inside of the group tree which is missing under
+     * the same parent on the other side, it is also true for nodes of the moved group tree
+     */
+    private class Node(
+        val element: KotpassDatabaseElement,
+        val parentUid: UUID?,
+        val isDetached: Boolean = false
+    ) {
+        val uid: UUID
+            get() = element.uuid
+    }
+
+    companion object {
+        private const val DEFAULT_CHUNK_SIZE = 512
+    }
+}
\ No newline at end of file
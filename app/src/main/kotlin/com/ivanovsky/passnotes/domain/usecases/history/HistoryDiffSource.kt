@@ -0,0 +1,93 @@
+package com.ivanovsky.passnotes.domain.usecases.history
+
+import com.github.aivanovski.keepasstreediff.PathDiffer
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.domain.DispatcherProvider
+import com.ivanovsky.passnotes.domain.usecases.diff.DiffSorter
+import com.ivanovsky.passnotes.domain.usecases.diff.buildNodeTree
+import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffEvent
+import com.ivanovsky.passnotes.domain.usecases.diff.toInternalDiffEvent
+import com.ivanovsky.passnotes.domain.usecases.history.entity.HistoryDiffItem
+import kotlinx.coroutines.withContext
+
+/**
+ * Paged source of the history diff. Item with index i is the diff between versions i + 1
+ * and i, where versions are ordered from the newest to the oldest. Diff of the item is
+ * calculated when the item is requested for the first time, the last [cacheSize]
+ * calculated items are kept in LRU cache.
+ *
+ * @param versions versions of the note from the newest to the oldest
+ */
+class HistoryDiffSource(
+    private val versions: List<Note>,
+    private val dispatchers: DispatcherProvider,
+    private val cacheSize: Int = DEFAULT_CACHE_SIZE
+) {
+
+    private val cache = object : LinkedHashMap<Int, HistoryDiffItem>(cacheSize, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Int, HistoryDiffItem>?) =
+            size > cacheSize
+    }
+
+    /**
+     * Number of the items
+     */
+    val size: Int
+        get() = (versions.size - 1).coerceAtLeast(0)
+
+    fun getNewNote(index: Int): Note = versions[index]
+
+    fun getOldNote(index: Int): Note = versions[index + 1]
+
+    fun getOldestNote(): Note = versions.last()
+
+    suspend fun getItem(index: Int): HistoryDiffItem =
+        withContext(dispatchers.Default) {
+            getOrCreateItem(index)
+        }
+
+    /**
+     * @return items from [fromIndex] (inclusive) to [toIndex] (exclusive)
+     */
+    suspend fun getItems(fromIndex: Int, toIndex: Int): List<HistoryDiffItem> =
+        withContext(dispatchers.Default) {
+            (fromIndex until toIndex).map { index -> getOrCreateItem(index) }
+        }
+
+    @Synchronized
+    private fun getOrCreateItem(index: Int): HistoryDiffItem {
+        val cachedItem = cache[index]
+        if (cachedItem != null) {
+            return cachedItem
+        }
+
+        val item = createItem(index)
+        cache[index] = item
+        return item
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun createItem(index: Int): HistoryDiffItem {
+        val newNote = getNewNote(index)
+        val oldNote = getOldNote(index)
+
+        val diff = PathDiffer().diff(
+            lhs = oldNote.buildNodeTree(),
+            rhs = newNote.buildNodeTree()
+        )
+            .map { event -> event.toInternalDiffEvent() }
+
+        val sortedDiff = DiffSorter().sort(diff)
+
+        return HistoryDiffItem(
+            oldNote = oldNote,
+            newNote = newNote,
+            diffEvents = sortedDiff as List<DiffEvent<Property>>
+        )
+    }
+
+    companion object {
+        private const val DEFAULT_CACHE_SIZE = 32
+    }
+}
\ No newline at end of file
@@ -2,8 +2,9 @@ package com.ivanovsky.passnotes.domain.usecases.sorrting
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
 import com.ivanovsky.passnotes.data.entity.Group
-import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 import com.ivanovsky.passnotes.domain.entity.SortDirection
+import java.util.Date
 
 class SortByDateStrategy(
     private val type: Type
@@ -16,20 +17,30 @@ class SortByDateStrategy(
     ): List<EncryptedDatabaseEntry> {
         val groups = items.filterIsInstance(Group::class.java)
 
-        val notes = items.filterIsInstance(Note::class.java)
-            .map { item ->
-                val date = when (type) {
-                    Type.CREATION_DATE -> item.created
-                    Type.MODIFICATION_DATE -> item.modified
-                }
-                Pair(date, item)
-            }
-            .sortedByWithDirection(direction) { it.first }
-            .map { it.second }
+        val notes = items.filterIsInstance(NoteSummary::class.java)
+            .sortedByWithDirection(direction) { item -> item.getDate() }
 
         return groups + notes
     }
 
+    override fun getComparator(
+        direction: SortDirection,
+        isGroupsAtStart: Boolean
+    ): Comparator<EncryptedDatabaseEntry> {
+        val dateComparator = compareBy<EncryptedDatabaseEntry> { item ->
+            (item as? NoteSummary)?.getDate()
+        }
+
+        return GROUPS_FIRST_COMPARATOR.then(dateComparator.withDirection(direction))
+    }
+
+    private fun NoteSummary.getDate(): Date {
+        return when (type) {
+            Type.CREATION_DATE -> created
+            Type.MODIFICATION_DATE -> modified
+        }
+    }
+
     enum class Type {
         CREATION_DATE,
         MODIFICATION_DATE
@@ -24,4 +24,9 @@ class SortByDefaultOrderStrategy : SortStrategy {
             items.orderBy(direction)
         }
     }
+
+    override fun getComparator(
+        direction: SortDirection,
+        isGroupsAtStart: Boolean
+    ): Comparator<EncryptedDatabaseEntry>? = null
 }
\ No newline at end of file
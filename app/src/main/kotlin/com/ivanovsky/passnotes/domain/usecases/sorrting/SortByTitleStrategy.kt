@@ -1,11 +1,11 @@
 package com.ivanovsky.passnotes.domain.usecases.sorrting
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
-import com.ivanovsky.passnotes.data.entity.Group
-import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.domain.entity.SortDirection
 
-class SortByTitleStrategy : SortStrategy {
+class SortByTitleStrategy(
+    private val collator: TitleCollator
+) : SortStrategy {
 
     override fun sort(
         items: List<EncryptedDatabaseEntry>,
@@ -15,32 +15,41 @@ class SortByTitleStrategy : SortStrategy {
         return if (isGroupsAtStart) {
             val groups = items
                 .filterGroups()
-                .map { item -> Pair(item.title, item) }
-                .sortedByWithDirection(direction) { it.first }
-                .map { it.second }
+                .sortedByTitle(direction)
 
             val notes = items
                 .filterNotes()
-                .map { item -> Pair(item.title, item) }
-                .sortedByWithDirection(direction) { it.first }
-                .map { it.second }
+                .sortedByTitle(direction)
 
             groups + notes
         } else {
-            items
-                .map { item ->
-                    when (item) {
-                        is Group -> {
-                            Pair(item.title, item)
-                        }
-                        is Note -> {
-                            Pair(item.title, item)
-                        }
-                        else -> throw IllegalStateException()
-                    }
-                }
-                .sortedByWithDirection(direction) { it.first }
-                .map { it.second }
+            items.sortedByTitle(direction)
         }
     }
+
+    override fun getComparator(
+        direction: SortDirection,
+        isGroupsAtStart: Boolean
+    ): Comparator<EncryptedDatabaseEntry> {
+        val titleComparator = compareBy<EncryptedDatabaseEntry> { item ->
+            collator.getCollationKey(item.getTitle())
+        }
+            .withDirection(direction)
+
+        return if (isGroupsAtStart) {
+            GROUPS_FIRST_COMPARATOR.then(titleComparator)
+        } else {
+            titleComparator
+        }
+    }
+
+    private fun <T : EncryptedDatabaseEntry> List<T>.sortedByTitle(
+        direction: SortDirection
+    ): List<T> {
+        val keys = collator.getCollationKeys(map { item -> item.getTitle() })
+
+        return indices
+            .sortedByWithDirection(direction) { index -> keys[index] }
+            .map { index -> this[index] }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.ivanovsky.passnotes.domain.usecases.sorrting
+
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher
+import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabase
+import com.ivanovsky.passnotes.domain.entity.SortDirection
+import com.ivanovsky.passnotes.domain.entity.SortType
+import java.util.UUID
+
+/**
+ * Keeps sorted entries of the groups of a single database. Changes of the notes are
+ * collected from content watchers, so sorted entries of the group can be updated in place
+ * by [SortedEntryList.update]. Entries that can't be updated in place are dropped after
+ * the change, all entries are dropped after groups are changed or another database is opened.
+ */
+class SortOrderCache {
+
+    private var db: EncryptedDatabase? = null
+    private var changeCount = 0L
+    private val lists = HashMap<Key, CachedList>()
+
+    private val noteListener = object : ContentWatcher.OnContentChangeListener<Note> {
+        override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+            onNotesChanged(changes)
+        }
+    }
+
+    private val groupListener = object : ContentWatcher.OnContentChangeListener<Group> {
+        override fun onContentChanged(changes: List<ContentWatcher.Change<Group>>) {
+            onGroupsChanged()
+        }
+    }
+
+    /**
+     * @return cached entries and uids of the notes changed since the list was updated,
+     * changed uids are kept until [onListUpdated] is called
+     */
+    @Synchronized
+    fun get(
+        db: EncryptedDatabase,
+        key: Key
+    ): CachedEntries? {
+        bindDatabase(db)
+
+        val cachedList = lists[key] ?: return null
+        val changedUids = cachedList.changedUids.toSet()
+
+        return CachedEntries(cachedList.list, changedUids)
+    }
+
+    /**
+     * Resets [changedUids] after the list was updated with entries that were loaded when
+     * [db] had [changeCount] changes, uids that were changed meanwhile are kept
+     */
+    @Synchronized
+    fun onListUpdated(
+        db: EncryptedDatabase,
+        key: Key,
+        changedUids: Set<UUID>,
+        changeCount: Long
+    ) {
+        bindDatabase(db)
+        if (this.changeCount != changeCount) {
+            return
+        }
+
+        lists[key]?.changedUids?.removeAll(changedUids)
+    }
+
+    /**
+     * @return number of changes that were received from the content watchers of [db]
+     */
+    @Synchronized
+    fun getChangeCount(db: EncryptedDatabase): Long {
+        bindDatabase(db)
+        return changeCount
+    }
+
+    /**
+     * Puts [list] to the cache if [db] wasn't changed after [getChangeCount] returned
+     * [changeCount], otherwise changes that were made meanwhile would be lost
+     */
+    @Synchronized
+    fun put(
+        db: EncryptedDatabase,
+        key: Key,
+        list: SortedEntryList,
+        changeCount: Long
+    ) {
+        bindDatabase(db)
+        if (this.changeCount != changeCount) {
+            return
+        }
+
+        val groupUids = list.getEntries()
+            .filterIsInstance<Group>()
+            .map { group -> group.uid }
+            .toSet()
+
+        lists[key] = CachedList(list, groupUids)
+    }
+
+    private fun bindDatabase(db: EncryptedDatabase) {
+        if (this.db === db) {
+            return
+        }
+
+        unbindDatabase()
+
+        this.db = db
+        db.noteDao.contentWatcher.subscribe(noteListener)
+        db.groupDao.contentWatcher.subscribe(groupListener)
+    }
+
+    private fun unbindDatabase() {
+        val currentDb = db ?: return
+
+        currentDb.noteDao.contentWatcher.unsubscribe(noteListener)
+        currentDb.groupDao.contentWatcher.unsubscribe(groupListener)
+
+        db = null
+        lists.clear()
+    }
+
+    @Synchronized
+    private fun onNotesChanged(changes: List<ContentWatcher.Change<Note>>) {
+        changeCount++
+
+        for (change in changes) {
+            val (notes, groupUids) = when (change) {
+                is ContentWatcher.Change.Inserted -> {
+                    listOf(change.entry) to setOf(change.entry.groupUid)
+                }
+                is ContentWatcher.Change.Changed -> {
+                    listOf(change.oldEntry, change.newEntry) to
+                        setOf(change.oldEntry.groupUid, change.newEntry.groupUid)
+                }
+                is ContentWatcher.Change.Removed -> {
+                    listOf(change.entry) to setOf(change.entry.groupUid)
+                }
+            }
+
+            val noteUids = notes.mapNotNull { note -> note.uid }
+
+            val iterator = lists.iterator()
+            while (iterator.hasNext()) {
+                val (key, cachedList) = iterator.next()
+
+                // Groups in the list show number of their notes
+                val isChildGroupChanged = groupUids.any { uid -> uid in cachedList.groupUids }
+
+                if (key.groupUid in groupUids) {
+                    if (cachedList.list.isUpdatable && noteUids.isNotEmpty()) {
+                        cachedList.changedUids.addAll(noteUids)
+                    } else {
+                        iterator.remove()
+                    }
+                } else if (isChildGroupChanged) {
+                    iterator.remove()
+                }
+            }
+        }
+    }
+
+    @Synchronized
+    private fun onGroupsChanged() {
+        changeCount++
+        lists.clear()
+    }
+
+    class CachedEntries(
+        val list: SortedEntryList,
+        val changedUids: Set<UUID>
+    )
+
+    data class Key(
+        val groupUid: UUID,
+        val sortType: SortType,
+        val sortDirection: SortDirection,
+        val isGroupsAtStart: Boolean
+    )
+
+    private class CachedList(
+        val list: SortedEntryList,
+        val groupUids: Set<UUID>,
+        val changedUids: MutableSet<UUID> = LinkedHashSet()
+    )
+}
\ No newline at end of file
@@ -9,4 +9,13 @@ interface SortStrategy {
         direction: SortDirection,
         isGroupsAtStart: Boolean
     ): List<EncryptedDatabaseEntry>
+
+    /**
+     * @return comparator which orders entries the same way as [sort] does, or null if
+     * the order can't be defined by comparison of entries
+     */
+    fun getComparator(
+        direction: SortDirection,
+        isGroupsAtStart: Boolean
+    ): Comparator<EncryptedDatabaseEntry>?
 }
\ No newline at end of file
@@ -2,10 +2,17 @@ package com.ivanovsky.passnotes.domain.usecases.sorrting
 
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
 import com.ivanovsky.passnotes.data.entity.Group
-import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 import com.ivanovsky.passnotes.domain.entity.SortDirection
 import com.ivanovsky.passnotes.domain.entity.SortDirection.ASCENDING
 import com.ivanovsky.passnotes.domain.entity.SortDirection.DESCENDING
+import java.util.UUID
+
+/**
+ * Places groups before notes and keeps the order of entries of the same kind
+ */
+val GROUPS_FIRST_COMPARATOR: Comparator<EncryptedDatabaseEntry> =
+    compareBy<EncryptedDatabaseEntry> { item -> if (item is Group) 0 else 1 }
 
 fun <T, R : Comparable<R>> Iterable<T>.sortedByWithDirection(
     direction: SortDirection,
@@ -27,5 +34,28 @@ fun <T> Iterable<T>.orderBy(direction: SortDirection): List<T> {
 fun List<EncryptedDatabaseEntry>.filterGroups(): List<Group> =
     filterIsInstance(Group::class.java)
 
-fun List<EncryptedDatabaseEntry>.filterNotes(): List<Note> =
-    filterIsInstance(Note::class.java)
\ No newline at end of file
+fun List<EncryptedDatabaseEntry>.filterNotes(): List<NoteSummary> =
+    filterIsInstance(NoteSummary::class.java)
+
+fun <T> Comparator<T>.withDirection(direction: SortDirection): Comparator<T> {
+    return when (direction) {
+        ASCENDING -> this
+        DESCENDING -> this.reversed()
+    }
+}
+
+fun EncryptedDatabaseEntry.getTitle(): String {
+    return when (this) {
+        is Group -> title
+        is NoteSummary -> title
+        else -> throw IllegalStateException()
+    }
+}
+
+fun EncryptedDatabaseEntry.getUid(): UUID {
+    return when (this) {
+        is Group -> uid
+        is NoteSummary -> uid
+        else -> throw IllegalStateException()
+    }
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.ivanovsky.passnotes.domain.usecases.sorrting
+
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.domain.entity.ListChange
+import java.util.UUID
+
+/**
+ * Sorted entries which are updated in place: changed entries are removed and inserted
+ * again at the position found by binary search with [comparator]. Inserted entry is placed
+ * after the entries that are equal to it, the same as stable sort places entries appended
+ * to the end of the list. Changed entry which is equal to its previous version according
+ * to [comparator] is replaced at its position, so its order among equal entries is kept.
+ *
+ * @param entries entries that are already sorted with [comparator]
+ * @param comparator comparator of the entries or null if entries can't be updated in place
+ */
+class SortedEntryList(
+    entries: List<EncryptedDatabaseEntry>,
+    private val comparator: Comparator<EncryptedDatabaseEntry>?
+) {
+
+    private val entries = ArrayList(entries)
+    private val entriesByUid = entries.associateByTo(HashMap()) { entry -> entry.getUid() }
+    private var snapshot: List<EncryptedDatabaseEntry>? = null
+
+    val isUpdatable: Boolean
+        get() = comparator != null
+
+    /**
+     * @return immutable copy of the entries, the same instance is returned until
+     * the entries are updated
+     */
+    fun getEntries(): List<EncryptedDatabaseEntry> {
+        return snapshot ?: entries.toList().also { snapshot = it }
+    }
+
+    /**
+     * Replaces entries with uids from [changedUids] by the entries from [newEntries]
+     *
+     * @return positional changes that were made, in order of their application
+     */
+    fun update(
+        newEntries: List<EncryptedDatabaseEntry>,
+        changedUids: Set<UUID>
+    ): List<ListChange> {
+        if (comparator == null) {
+            throw IllegalStateException()
+        }
+
+        val newEntriesByUid = newEntries
+            .filter { entry -> entry.getUid() in changedUids }
+            .associateBy { entry -> entry.getUid() }
+
+        val changes = mutableListOf<ListChange>()
+        for (uid in changedUids) {
+            val oldEntry = entriesByUid[uid]
+            val newEntry = newEntriesByUid[uid]
+            if (oldEntry != null &&
+                newEntry != null &&
+                comparator.compare(oldEntry, newEntry) == 0
+            ) {
+                val position = replace(oldEntry, newEntry, comparator)
+                changes.add(ListChange.Changed(position))
+                continue
+            }
+
+            val oldPosition = remove(uid, comparator)
+            val newPosition = if (newEntry != null) insert(newEntry, comparator) else NO_POSITION
+
+            when {
+                oldPosition != NO_POSITION && newPosition != NO_POSITION -> {
+                    if (oldPosition != newPosition) {
+                        changes.add(ListChange.Moved(oldPosition, newPosition))
+                    }
+                    changes.add(ListChange.Changed(newPosition))
+                }
+                oldPosition != NO_POSITION -> changes.add(ListChange.Removed(oldPosition))
+                newPosition != NO_POSITION -> changes.add(ListChange.Inserted(newPosition))
+            }
+        }
+
+        if (changes.isNotEmpty()) {
+            snapshot = null
+        }
+
+        return changes
+    }
+
+    private fun insert(
+        entry: EncryptedDatabaseEntry,
+        comparator: Comparator<EncryptedDatabaseEntry>
+    ): Int {
+        // Position after the last entry which is less or equal to the entry
+        var low = 0
+        var high = entries.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (comparator.compare(entries[middle], entry) <= 0) {
+                low = middle + 1
+            } else {
+                high = middle
+            }
+        }
+
+        entries.add(low, entry)
+        entriesByUid[entry.getUid()] = entry
+        return low
+    }
+
+    private fun replace(
+        oldEntry: EncryptedDatabaseEntry,
+        newEntry: EncryptedDatabaseEntry,
+        comparator: Comparator<EncryptedDatabaseEntry>
+    ): Int {
+        val position = findPosition(oldEntry, comparator)
+
+        entries[position] = newEntry
+        entriesByUid[newEntry.getUid()] = newEntry
+        return position
+    }
+
+    private fun remove(
+        uid: UUID,
+        comparator: Comparator<EncryptedDatabaseEntry>
+    ): Int {
+        val entry = entriesByUid.remove(uid) ?: return NO_POSITION
+
+        val position = findPosition(entry, comparator)
+        entries.removeAt(position)
+        return position
+    }
+
+    private fun findPosition(
+        entry: EncryptedDatabaseEntry,
+        comparator: Comparator<EncryptedDatabaseEntry>
+    ): Int {
+        val uid = entry.getUid()
+
+        // Position of the first entry which is equal to the entry
+        var low = 0
+        var high = entries.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (comparator.compare(entries[middle], entry) < 0) {
+                low = middle + 1
+            } else {
+                high = middle
+            }
+        }
+
+        var position = low
+        while (position < entries.size && entries[position].getUid() != uid) {
+            position++
+        }
+
+        // Shouldn't happen while the order of the entries is consistent with the comparator
+        if (position == entries.size) {
+            position = entries.indexOfFirst { item -> item.getUid() == uid }
+        }
+
+        return position
+    }
+
+    companion object {
+        private const val NO_POSITION = -1
+    }
+}
\ No newline at end of file
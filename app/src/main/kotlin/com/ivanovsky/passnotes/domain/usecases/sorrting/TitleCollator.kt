@@ -0,0 +1,62 @@
+package com.ivanovsky.passnotes.domain.usecases.sorrting
+
+import com.ivanovsky.passnotes.domain.LocaleProvider
+import java.text.CollationKey
+import java.text.Collator
+import java.util.Locale
+
+/**
+ * Provides locale-aware [CollationKey]s for titles of groups and notes. Keys are
+ * computed once per title and are reused until the system locale is changed.
+ */
+class TitleCollator(
+    private val localeProvider: LocaleProvider
+) {
+
+    private var locale: Locale? = null
+    private var collator: Collator? = null
+    private val keys = HashMap<String, CollationKey>()
+
+    @Synchronized
+    fun getCollationKey(title: String): CollationKey {
+        val collator = getCollator()
+
+        if (keys.size >= MAX_CACHED_KEYS) {
+            keys.clear()
+        }
+
+        return keys.getOrPut(title) { collator.getCollationKey(title) }
+    }
+
+    @Synchronized
+    fun getCollationKeys(titles: List<String>): List<CollationKey> {
+        val collator = getCollator()
+
+        if (keys.size + titles.size > MAX_CACHED_KEYS) {
+            keys.clear()
+        }
+
+        return titles.map { title ->
+            keys.getOrPut(title) { collator.getCollationKey(title) }
+        }
+    }
+
+    private fun getCollator(): Collator {
+        val currentLocale = localeProvider.getSystemLocale()
+        val currentCollator = collator
+        if (currentCollator != null && currentLocale == locale) {
+            return currentCollator
+        }
+
+        keys.clear()
+
+        val newCollator = Collator.getInstance(currentLocale)
+        locale = currentLocale
+        collator = newCollator
+        return newCollator
+    }
+
+    companion object {
+        private const val MAX_CACHED_KEYS = 50_000
+    }
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.ivanovsky.passnotes.extensions
 
 import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 import com.ivanovsky.passnotes.data.entity.Property
 import com.ivanovsky.passnotes.domain.entity.PropertyFilter
 
@@ -41,4 +42,8 @@ fun Note.matches(query: String): Boolean {
 
 fun Note.isExpired(): Boolean {
     return expiration != null && expiration.time < System.currentTimeMillis()
+}
+
+fun NoteSummary.isExpired(): Boolean {
+    return expiration != null && expiration.time < System.currentTimeMillis()
 }
\ No newline at end of file
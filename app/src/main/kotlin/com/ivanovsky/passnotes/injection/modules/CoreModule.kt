@@ -1,5 +1,6 @@
 package com.ivanovsky.passnotes.injection.modules
 
+import android.content.Context
 import com.ivanovsky.passnotes.data.ObserverBus
 import com.ivanovsky.passnotes.data.crypto.DataCipherProvider
 import com.ivanovsky.passnotes.data.crypto.DataCipherProviderImpl
@@ -21,8 +22,11 @@ import com.ivanovsky.passnotes.domain.LoggerInteractor
 import com.ivanovsky.passnotes.domain.NoteDiffer
 import com.ivanovsky.passnotes.domain.PermissionHelper
 import com.ivanovsky.passnotes.domain.ResourceProvider
+import com.ivanovsky.passnotes.domain.autofill.DomainMatcher
+import com.ivanovsky.passnotes.domain.autofill.PublicSuffixList
 import com.ivanovsky.passnotes.domain.interactor.ErrorInteractor
 import com.ivanovsky.passnotes.domain.interactor.SelectionHolder
+import com.ivanovsky.passnotes.domain.search.SearchMetricsHolder
 import com.ivanovsky.passnotes.presentation.core.ThemeProvider
 import org.koin.dsl.module
 
@@ -42,6 +46,9 @@ object CoreModule {
             single { DateFormatter(get()) }
             single { NoteDiffer() }
             single { SelectionHolder() }
+            single { SearchMetricsHolder() }
+            single { PublicSuffixList(get<Context>()) }
+            single { DomainMatcher(get()) }
             single<Settings> { SettingsImpl(get()) }
             single<DataCipherProvider> { DataCipherProviderImpl(get()) }
             single { FileHelper(get(), get()) }
@@ -56,7 +63,7 @@ object CoreModule {
             // Files, Keepass
             single { DatabaseSyncStateProvider(get(), get(), get()) }
             single<EncryptedDatabaseRepository> {
-                KeepassDatabaseRepository(get(), get(), get(), get())
+                KeepassDatabaseRepository(get(), get(), get(), get(), get())
             }
         }
 
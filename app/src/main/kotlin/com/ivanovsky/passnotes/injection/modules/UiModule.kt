@@ -125,7 +125,7 @@ object UiModule {
             single { StorageListInteractor(get(), get(), get()) }
             single { NewDatabaseInteractor(get(), get(), get(), get()) }
             single { GroupEditorInteractor(get(), get(), get(), get(), get()) }
-            single { DebugMenuInteractor(get(), get(), get(), get(), get()) }
+            single { DebugMenuInteractor(get(), get(), get(), get(), get(), get()) }
             single {
                 NoteInteractor(
                     get(),
@@ -157,10 +157,12 @@ object UiModule {
                     get(),
                     get(),
                     get(),
+                    get(),
+                    get(),
                     get()
                 )
             }
-            single { NoteEditorInteractor(get(), get(), get(), get(), get(), get()) }
+            single { NoteEditorInteractor(get(), get(), get(), get(), get(), get(), get()) }
             single { ServerLoginInteractor(get(), get(), get()) }
             single { MainSettingsInteractor(get()) }
             single { DatabaseSettingsInteractor(get(), get()) }
@@ -46,14 +46,14 @@ object UseCaseModule {
             single { GetGroupUseCase(get(), get()) }
             single { IsDatabaseOpenedUseCase(get()) }
             single { GetNoteUseCase(get(), get()) }
-            single { FindNoteForAutofillUseCase(get(), get()) }
-            single { UpdateNoteWithAutofillDataUseCase(get(), get(), get()) }
-            single { CheckNoteAutofillDataUseCase(get()) }
+            single { FindNoteForAutofillUseCase(get(), get(), get()) }
+            single { UpdateNoteWithAutofillDataUseCase(get(), get(), get(), get()) }
+            single { CheckNoteAutofillDataUseCase(get(), get()) }
             single { UpdateNoteUseCase(get(), get(), get()) }
             single { RemoveUsedFileUseCase(get(), get(), get()) }
             single { GetUsedFileUseCase(get(), get()) }
             single { UpdateUsedFileUseCase(get(), get()) }
-            single { SortGroupsAndNotesUseCase(get(), get()) }
+            single { SortGroupsAndNotesUseCase(get(), get(), get()) }
             single { GeneratePasswordUseCase() }
             single { RemoveBiometricDataUseCase(get(), get(), get()) }
             single { DecodePasswordWithBiometricUseCase(get()) }
@@ -8,6 +8,7 @@ import androidx.lifecycle.LifecycleOwner
 import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.ivanovsky.passnotes.BR
+import com.ivanovsky.passnotes.domain.entity.ListChange
 import com.ivanovsky.passnotes.presentation.core.BaseCellViewModel
 import com.ivanovsky.passnotes.presentation.core.ViewModelTypes
 
@@ -27,6 +28,51 @@ class ViewModelsAdapter(
         diffResult.dispatchUpdatesTo(this)
     }
 
+    /**
+     * Dispatches positional [changes] without calculation of the diff, falls back to
+     * [updateItems] if [changes] don't turn the current items into [newItems]
+     */
+    fun updateItems(newItems: List<BaseCellViewModel>, changes: List<ListChange>) {
+        val expectedItems = applyChanges(items, changes)
+        if (expectedItems == null || expectedItems.size != newItems.size) {
+            updateItems(newItems)
+            return
+        }
+
+        val changedPositions = mutableListOf<Int>()
+        for ((position, expectedItem) in expectedItems.withIndex()) {
+            val newItem = newItems[position]
+            if (expectedItem == null) {
+                continue
+            }
+
+            if (!isSameItem(expectedItem, newItem)) {
+                updateItems(newItems)
+                return
+            }
+
+            if (!isSameContent(expectedItem, newItem)) {
+                changedPositions.add(position)
+            }
+        }
+
+        items.clear()
+        items.addAll(newItems)
+
+        for (change in changes) {
+            when (change) {
+                is ListChange.Inserted -> notifyItemRangeInserted(change.position, change.count)
+                is ListChange.Removed -> notifyItemRangeRemoved(change.position, change.count)
+                is ListChange.Moved -> notifyItemMoved(change.fromPosition, change.toPosition)
+                is ListChange.Changed -> notifyItemChanged(change.position)
+            }
+        }
+
+        for (position in changedPositions) {
+            notifyItemChanged(position)
+        }
+    }
+
     override fun getItemCount(): Int {
         return items.size
     }
@@ -87,15 +133,75 @@ class ViewModelsAdapter(
             val oldItem = oldItems[oldItemPosition]
             val newItem = newItems[newItemPosition]
 
+            return isSameItem(oldItem, newItem)
+        }
+
+        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
+            return isSameContent(oldItems[oldItemPosition], newItems[newItemPosition])
+        }
+    }
+
+    companion object {
+
+        private fun isSameItem(oldItem: BaseCellViewModel, newItem: BaseCellViewModel): Boolean {
             return if (oldItem.model.id != null && newItem.model.id != null) {
-                oldItems[oldItemPosition].model.id == newItems[newItemPosition].model.id
+                oldItem.model.id == newItem.model.id
             } else {
-                oldItems[oldItemPosition].model == newItems[newItemPosition].model
+                oldItem.model == newItem.model
             }
         }
 
-        override fun areContentsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-            return oldItems[oldItemPosition].model == newItems[newItemPosition].model
+        private fun isSameContent(
+            oldItem: BaseCellViewModel,
+            newItem: BaseCellViewModel
+        ): Boolean {
+            return oldItem.model == newItem.model
+        }
+
+        /**
+         * @return [items] after [changes], inserted items are represented by nulls, or null
+         * if [changes] can't be applied to [items]
+         */
+        private fun applyChanges(
+            items: List<BaseCellViewModel>,
+            changes: List<ListChange>
+        ): List<BaseCellViewModel?>? {
+            val result: MutableList<BaseCellViewModel?> = items.toMutableList()
+
+            for (change in changes) {
+                when (change) {
+                    is ListChange.Inserted -> {
+                        if (change.position !in 0..result.size) {
+                            return null
+                        }
+                        repeat(change.count) { result.add(change.position, null) }
+                    }
+
+                    is ListChange.Removed -> {
+                        if (change.position < 0 || change.position + change.count > result.size) {
+                            return null
+                        }
+                        repeat(change.count) { result.removeAt(change.position) }
+                    }
+
+                    is ListChange.Moved -> {
+                        if (change.fromPosition !in result.indices ||
+                            change.toPosition !in result.indices
+                        ) {
+                            return null
+                        }
+                        result.add(change.toPosition, result.removeAt(change.fromPosition))
+                    }
+
+                    is ListChange.Changed -> {
+                        if (change.position !in result.indices) {
+                            return null
+                        }
+                    }
+                }
+            }
+
+            return result
         }
     }
 }
\ No newline at end of file
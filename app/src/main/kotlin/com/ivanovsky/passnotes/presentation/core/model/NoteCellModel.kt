@@ -1,8 +1,8 @@
 package com.ivanovsky.passnotes.presentation.core.model
 
-import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 
 data class NoteCellModel(
     override val id: String,
-    val note: Note
+    val note: NoteSummary
 ) : BaseCellModel()
\ No newline at end of file
@@ -1,9 +1,6 @@
 package com.ivanovsky.passnotes.presentation.core.viewmodel
 
-import com.ivanovsky.passnotes.data.entity.Note
-import com.ivanovsky.passnotes.data.entity.PropertyType
 import com.ivanovsky.passnotes.domain.LocaleProvider
-import com.ivanovsky.passnotes.domain.entity.PropertyFilter
 import com.ivanovsky.passnotes.extensions.isExpired
 import com.ivanovsky.passnotes.presentation.core.BaseCellViewModel
 import com.ivanovsky.passnotes.presentation.core.event.Event.Companion.toEvent
@@ -18,11 +15,11 @@ class NoteCellViewModel(
 ) : BaseCellViewModel(model) {
 
     val title = model.note.title
-    val description = formatDescription(model.note)
+    val description = model.note.description
     val date = model.note.modified.formatAccordingLocale(localeProvider.getSystemLocale())
     val isDescriptionVisible = description.isNotEmpty()
-    val isAttachmentIconVisible = model.note.attachments.isNotEmpty()
-    val isOtpIconVisible = isOtpIconVisibleInternal()
+    val isAttachmentIconVisible = model.note.attachmentCount > 0
+    val isOtpIconVisible = model.note.isOtpEnabled
     val maxTitleLine = if (description.isNotEmpty()) {
         TITLE_MAX_LINES_WITH_DESCRIPTION
     } else {
@@ -30,19 +27,6 @@ class NoteCellViewModel(
     }
     val isExpired = model.note.isExpired()
 
-    private fun formatDescription(note: Note): String {
-        val filteredProperties = PROPERTY_FILTER.apply(note.properties)
-        return if (filteredProperties.isNotEmpty()) {
-            filteredProperties.first().value ?: ""
-        } else {
-            ""
-        }
-    }
-
-    private fun isOtpIconVisibleInternal(): Boolean {
-        return model.note.properties.any { property -> property.type == PropertyType.OTP }
-    }
-
     fun onClicked() {
         eventProvider.send((CLICK_EVENT to model.id).toEvent())
     }
@@ -57,11 +41,5 @@ class NoteCellViewModel(
 
         val CLICK_EVENT = NoteCellViewModel::class.qualifiedName + "_clickEvent"
         val LONG_CLICK_EVENT = NoteCellViewModel::class.qualifiedName + "_longClickEvent"
-
-        private val PROPERTY_FILTER = PropertyFilter.Builder()
-            .filterByType(PropertyType.USER_NAME, PropertyType.URL, PropertyType.NOTES)
-            .notEmpty()
-            .sortedByType()
-            .build()
     }
 }
\ No newline at end of file
@@ -52,6 +52,7 @@ class DebugMenuViewModel(
     val password = MutableLiveData(EMPTY)
     val debugServerUrlText = MutableLiveData(EMPTY)
     val debugCredentialsText = MutableLiveData(EMPTY)
+    val searchMetricsText = MutableLiveData(EMPTY)
     val isSAFButtonsVisible = MutableLiveData(false)
     val isServerUrlVisible = MutableLiveData(false)
     val isCredentialsVisible = MutableLiveData(false)
@@ -98,6 +99,7 @@ class DebugMenuViewModel(
 
     fun onScreenStart() {
         loadTestCredentials()
+        loadSearchMetrics()
     }
 
     fun onReadButtonClicked() {
@@ -537,6 +539,23 @@ class DebugMenuViewModel(
         )
     }
 
+    private fun loadSearchMetrics() {
+        val metrics = interactor.getLastSearchMetrics()
+
+        searchMetricsText.value = if (metrics != null) {
+            resourceProvider.getString(
+                R.string.search_metrics_with_str,
+                metrics.entryCount,
+                metrics.resultCount,
+                metrics.queueTime,
+                metrics.matchTime,
+                metrics.renderTime
+            )
+        } else {
+            resourceProvider.getString(R.string.no_search_metrics)
+        }
+    }
+
     fun navigateBack() = router.exit()
 
     private fun FSType.getTitle(): String {
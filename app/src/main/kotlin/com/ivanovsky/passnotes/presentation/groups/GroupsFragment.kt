@@ -9,6 +9,8 @@ import android.view.MenuItem
 import android.view.View
 import android.view.ViewGroup
 import androidx.lifecycle.ViewModelProvider
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
 import com.github.terrakok.cicerone.Router
 import com.ivanovsky.passnotes.R
 import com.ivanovsky.passnotes.data.entity.FileDescriptor
@@ -18,6 +20,7 @@ import com.ivanovsky.passnotes.data.entity.Template
 import com.ivanovsky.passnotes.databinding.GroupsFragmentBinding
 import com.ivanovsky.passnotes.domain.biometric.BiometricAuthenticator
 import com.ivanovsky.passnotes.domain.biometric.BiometricResolver
+import com.ivanovsky.passnotes.domain.entity.ListChange
 import com.ivanovsky.passnotes.domain.entity.SystemPermission
 import com.ivanovsky.passnotes.injection.GlobalInjector.get
 import com.ivanovsky.passnotes.injection.GlobalInjector.inject
@@ -105,6 +108,19 @@ class GroupsFragment : BaseFragment(), PermissionRequestResultReceiver {
         )
         binding.recyclerView.adapter = adapter
         binding.recyclerView.itemAnimator = null
+        binding.recyclerView.addOnScrollListener(
+            object : RecyclerView.OnScrollListener() {
+                override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+                    val layoutManager = recyclerView.layoutManager as? LinearLayoutManager
+                        ?: return
+
+                    val lastPosition = layoutManager.findLastVisibleItemPosition()
+                    if (lastPosition >= adapter.itemCount - SCROLL_THRESHOLD) {
+                        viewModel.onListScrolledToEnd()
+                    }
+                }
+            }
+        )
 
         syncIconAnimation = AnimationFactory.createRotationAnimation(binding.syncStateView.syncIcon)
             .apply {
@@ -187,7 +203,8 @@ class GroupsFragment : BaseFragment(), PermissionRequestResultReceiver {
         viewModel.cellViewModels.observe(viewLifecycleOwner) { data ->
             setCellViewModels(
                 isResetScroll = data.isResetScroll,
-                viewModels = data.viewModels
+                viewModels = data.viewModels,
+                changes = data.changes
             )
         }
     }
@@ -251,9 +268,14 @@ class GroupsFragment : BaseFragment(), PermissionRequestResultReceiver {
 
     private fun setCellViewModels(
         isResetScroll: Boolean,
-        viewModels: List<BaseCellViewModel>
+        viewModels: List<BaseCellViewModel>,
+        changes: List<ListChange>?
     ) {
-        adapter.updateItems(viewModels)
+        if (changes != null) {
+            adapter.updateItems(viewModels, changes)
+        } else {
+            adapter.updateItems(viewModels)
+        }
 
         if (isResetScroll) {
             binding.recyclerView.layoutManager?.scrollToPosition(0)
@@ -371,6 +393,7 @@ class GroupsFragment : BaseFragment(), PermissionRequestResultReceiver {
     companion object {
 
         private const val ARGUMENTS = "arguments"
+        private const val SCROLL_THRESHOLD = 10
 
         private val MENU_ACTIONS = mapOf<Int, (vm: GroupsViewModel) -> Unit>(
             android.R.id.home to { vm -> vm.navigateBack() },
@@ -14,6 +14,7 @@ import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
 import com.ivanovsky.passnotes.data.entity.FileDescriptor
 import com.ivanovsky.passnotes.data.entity.Group
 import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 import com.ivanovsky.passnotes.data.entity.OperationError
 import com.ivanovsky.passnotes.data.entity.OperationError.MESSAGE_UID_IS_NULL
 import com.ivanovsky.passnotes.data.entity.OperationError.Type.BIOMETRIC_DATA_INVALIDATED_ERROR
@@ -31,6 +32,8 @@ import com.ivanovsky.passnotes.domain.DatabaseLockInteractor
 import com.ivanovsky.passnotes.domain.PermissionHelper
 import com.ivanovsky.passnotes.domain.ResourceProvider
 import com.ivanovsky.passnotes.domain.biometric.BiometricResolver
+import com.ivanovsky.passnotes.domain.entity.ListChange
+import com.ivanovsky.passnotes.domain.entity.SearchMetrics
 import com.ivanovsky.passnotes.domain.entity.SelectionItem
 import com.ivanovsky.passnotes.domain.entity.SelectionItemType
 import com.ivanovsky.passnotes.domain.entity.SystemPermission
@@ -39,8 +42,10 @@ import com.ivanovsky.passnotes.domain.interactor.SelectionHolder
 import com.ivanovsky.passnotes.domain.interactor.SelectionHolder.ActionType
 import com.ivanovsky.passnotes.domain.interactor.groups.GroupsInteractor
 import com.ivanovsky.passnotes.domain.interactor.syncState.SyncStateInteractor
+import com.ivanovsky.passnotes.extensions.getOrNull
 import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.extensions.isRequireSynchronization
+import com.ivanovsky.passnotes.extensions.map
 import com.ivanovsky.passnotes.extensions.mapError
 import com.ivanovsky.passnotes.extensions.mapWithObject
 import com.ivanovsky.passnotes.injection.GlobalInjector
@@ -81,6 +86,7 @@ import com.ivanovsky.passnotes.presentation.groups.factory.GroupsCellModelFactor
 import com.ivanovsky.passnotes.presentation.groups.factory.GroupsCellViewModelFactory
 import com.ivanovsky.passnotes.presentation.groups.model.CellsData
 import com.ivanovsky.passnotes.presentation.groups.model.NavigationStackItem
+import com.ivanovsky.passnotes.presentation.groups.model.SearchRequest
 import com.ivanovsky.passnotes.presentation.note.NoteScreenArgs
 import com.ivanovsky.passnotes.presentation.note.NoteSource
 import com.ivanovsky.passnotes.presentation.noteEditor.NoteEditorArgs
@@ -95,9 +101,20 @@ import com.ivanovsky.passnotes.util.toUUID
 import java.util.Deque
 import java.util.LinkedList
 import java.util.UUID
+import kotlin.math.min
+import kotlin.system.measureTimeMillis
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.FlowPreview
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.debounce
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.last
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.mapLatest
+import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import org.koin.core.parameter.parametersOf
@@ -196,11 +213,16 @@ class GroupsViewModel(
     private var searchableEntries: List<EncryptedDatabaseEntry>? = null
     private var navigationPanelGroups: List<Group> = emptyList()
     private var loadDataJob: Job? = null
+    private var visibleEntryCount = SEARCH_PAGE_SIZE
+    private var visibleCellViewModels: List<BaseCellViewModel> = emptyList()
+    private val searchRequests = MutableStateFlow(SearchRequest.IDLE)
+    private var searchGeneration = 0
 
     init {
         observerBus.register(this)
         settings.register(this)
         subscribeToEvents()
+        subscribeToSearchRequests()
         syncStateViewModel.onAttach()
 
         if (args.groupUid == null) {
@@ -301,41 +323,31 @@ class GroupsViewModel(
                 isFillNavigationStack = false
             }
 
-            val getEntriesResult = when {
-                isSearchModeEnabled -> loadSearchEntries(searchQuery.value ?: EMPTY)
-                currentGroupUid == null -> interactor.getRootEntries()
-                else -> interactor.getGroupEntries(currentGroupUid ?: EMPTY_UUID)
+            if (isSearchModeEnabled) {
+                requestSearch(searchQuery.value ?: EMPTY, isResetScroll)
+                loadDataJob = null
+                return@launch
             }
 
-            if (getEntriesResult.isSucceededOrDeferred) {
-                currentEntries = if (!isSearchModeEnabled) {
-                    interactor.sortData(getEntriesResult.getOrThrow())
-                } else {
-                    getEntriesResult.getOrThrow()
-                }
-
-                if (currentEntries.isNotEmpty()) {
-                    cellViewModels.value = CellsData(
-                        isResetScroll = isResetScroll,
-                        viewModels = createCellViewModels(currentEntries)
-                    )
-                    setScreenState(ScreenState.data())
-                } else {
-                    val emptyText = if (isSearchModeEnabled) {
-                        resourceProvider.getString(R.string.no_search_results)
-                    } else {
-                        resourceProvider.getString(R.string.no_items)
-                    }
-
-                    setScreenState(ScreenState.empty(emptyText))
-                }
+            val getEntriesResult = if (currentGroupUid == null) {
+                interactor.getRootEntries()
+            } else {
+                interactor.getGroupEntries(currentGroupUid ?: EMPTY_UUID)
+            }
 
-                visibleMenuItems.value = getVisibleMenuItems()
+            // Entries can be updated in place only if they are currently displayed
+            val sortedEntries = getEntriesResult.getOrNull()
+            val changes = if (!isResetScroll && sortedEntries?.previousEntries === currentEntries) {
+                sortedEntries?.changes
             } else {
-                setErrorState(getEntriesResult.error)
+                null
             }
 
-            updateOptionPanelState()
+            onEntriesLoaded(
+                getEntriesResult = getEntriesResult.map { entries -> entries.entries },
+                isResetScroll = isResetScroll,
+                changes = changes
+            )
 
             loadDataJob = null
         }
@@ -641,7 +653,36 @@ class GroupsViewModel(
     }
 
     fun onSearchQueryChanged(query: String) {
-        loadData(isResetScroll = true)
+        if (!isSearchModeEnabled) {
+            return
+        }
+
+        visibleEntryCount = SEARCH_PAGE_SIZE
+        searchRequests.value = SearchRequest(
+            query = query,
+            generation = searchGeneration,
+            isResetScroll = true,
+            isDebounced = true,
+            createdAt = System.currentTimeMillis()
+        )
+    }
+
+    fun onListScrolledToEnd() {
+        if (!isSearchModeEnabled || visibleEntryCount >= currentEntries.size) {
+            return
+        }
+
+        val newVisibleEntryCount = min(visibleEntryCount + SEARCH_PAGE_SIZE, currentEntries.size)
+        val newCellViewModels = createCellViewModels(
+            currentEntries.subList(visibleEntryCount, newVisibleEntryCount)
+        )
+
+        visibleEntryCount = newVisibleEntryCount
+        visibleCellViewModels = visibleCellViewModels + newCellViewModels
+        cellViewModels.value = CellsData(
+            isResetScroll = false,
+            viewModels = visibleCellViewModels
+        )
     }
 
     fun onDiffWithButtonClicked() {
@@ -862,19 +903,27 @@ class GroupsViewModel(
     }
 
     private fun onNoteLongClicked(noteUid: UUID) {
-        val note = findNoteInItems(noteUid) ?: return
+        findNoteInItems(noteUid) ?: return
 
-        showNoteActionsDialogEvent.call(note)
+        viewModelScope.launch {
+            val getNoteResult = interactor.getNote(noteUid)
+            if (getNoteResult.isSucceededOrDeferred) {
+                showNoteActionsDialogEvent.call(getNoteResult.obj)
+            } else {
+                val message = errorInteractor.processAndGetMessage(getNoteResult.error)
+                setScreenState(ScreenState.error(message))
+            }
+        }
     }
 
-    private fun findNoteInItems(noteUid: UUID): Note? {
+    private fun findNoteInItems(noteUid: UUID): NoteSummary? {
         return currentEntries.firstOrNull { item ->
-            if (item is Note) {
+            if (item is NoteSummary) {
                 item.uid == noteUid
             } else {
                 false
             }
-        } as? Note
+        } as? NoteSummary
     }
 
     private fun getCurrentGroupUid(): UUID? {
@@ -1039,6 +1088,7 @@ class GroupsViewModel(
 
     private fun disableSearchMode() {
         isSearchModeEnabled = false
+        requestSearch(query = null, isResetScroll = false)
         isSearchQueryVisible.value = isSearchModeEnabled
         backIcon.value = getBackIconInternal()
         isKeyboardVisibleEvent.value = false
@@ -1064,8 +1114,97 @@ class GroupsViewModel(
         }
     }
 
+    /**
+     * Typed queries are debounced, the same query is not searched twice and search of
+     * the previous query is cancelled as soon as the next one is started
+     */
+    @OptIn(FlowPreview::class, ExperimentalCoroutinesApi::class)
+    private fun subscribeToSearchRequests() {
+        searchRequests
+            .debounce { request -> if (request.isDebounced) SEARCH_DELAY else 0L }
+            .distinctUntilChanged { old, new -> old.isSameSearch(new) }
+            .mapLatest { request -> search(request) }
+            .filterNotNull()
+            .onEach { metrics -> interactor.onSearchFinished(metrics) }
+            .launchIn(viewModelScope)
+    }
+
+    /**
+     * Searches [query] again even if it is the same as the previous one
+     */
+    private fun requestSearch(
+        query: String?,
+        isResetScroll: Boolean
+    ) {
+        searchGeneration++
+        searchRequests.value = SearchRequest(
+            query = query,
+            generation = searchGeneration,
+            isResetScroll = isResetScroll,
+            isDebounced = false,
+            createdAt = System.currentTimeMillis()
+        )
+    }
+
+    private fun isLatestSearch(request: SearchRequest): Boolean {
+        return isSearchModeEnabled && searchRequests.value.isSameSearch(request)
+    }
+
+    private suspend fun search(request: SearchRequest): SearchMetrics? {
+        val query = request.query ?: return null
+
+        val startTime = System.currentTimeMillis()
+        var renderTime = 0L
+        var isFirstPageShown = false
+
+        val getEntriesResult = loadSearchEntries(query) { firstPage ->
+            if (isLatestSearch(request)) {
+                renderTime += measureTimeMillis {
+                    currentEntries = firstPage
+                    showCurrentEntries(request.isResetScroll)
+                    setScreenState(ScreenState.data())
+                }
+                isFirstPageShown = true
+            }
+        }
+
+        if (!isLatestSearch(request)) {
+            return null
+        }
+
+        val matchTime = System.currentTimeMillis() - startTime - renderTime
+        renderTime += measureTimeMillis {
+            if (isFirstPageShown && getEntriesResult.isSucceeded) {
+                // Displayed first page is the beginning of the result, cells are kept and
+                // the rest of the entries is added by onListScrolledToEnd
+                currentEntries = getEntriesResult.getOrThrow()
+                visibleMenuItems.value = getVisibleMenuItems()
+                updateOptionPanelState()
+            } else {
+                onEntriesLoaded(getEntriesResult, request.isResetScroll)
+            }
+        }
+
+        if (getEntriesResult.isFailed) {
+            return null
+        }
+
+        return SearchMetrics(
+            entryCount = searchableEntries?.size ?: 0,
+            resultCount = getEntriesResult.getOrThrow().size,
+            queueTime = startTime - request.createdAt,
+            matchTime = matchTime,
+            renderTime = renderTime
+        )
+    }
+
+    /**
+     * @param onFirstPage is invoked with the best matched entries if they are known before
+     * all entries are matched
+     */
     private suspend fun loadSearchEntries(
-        query: String
+        query: String,
+        onFirstPage: (List<EncryptedDatabaseEntry>) -> Unit
     ): OperationResult<List<EncryptedDatabaseEntry>> {
         var allEntries = searchableEntries
         if (allEntries == null) {
@@ -1081,20 +1220,56 @@ class GroupsViewModel(
             allEntries = getAllEntriesResult.getOrThrow()
         }
 
-        if (query.isNotEmpty()) {
-            delay(SEARCH_DELAY)
+        if (query.isEmpty()) {
+            return OperationResult.success(emptyList())
         }
 
-        val searchEntries = if (query.isNotEmpty()) {
-            interactor.filterEntries(
-                entries = allEntries,
-                query = query
-            )
+        val results = interactor.searchEntries(
+            entries = allEntries,
+            query = query,
+            firstPageSize = SEARCH_PAGE_SIZE
+        )
+            .onEach { results ->
+                if (!results.isComplete && results.entries.isNotEmpty()) {
+                    onFirstPage.invoke(results.entries)
+                }
+            }
+            .last()
+
+        return OperationResult.success(results.entries)
+    }
+
+    /**
+     * @param changes positional changes of the entries that are currently displayed,
+     * or null if the entries should be compared with displayed ones
+     */
+    private fun onEntriesLoaded(
+        getEntriesResult: OperationResult<List<EncryptedDatabaseEntry>>,
+        isResetScroll: Boolean,
+        changes: List<ListChange>? = null
+    ) {
+        if (getEntriesResult.isSucceededOrDeferred) {
+            currentEntries = getEntriesResult.getOrThrow()
+
+            if (currentEntries.isNotEmpty()) {
+                showCurrentEntries(isResetScroll, changes)
+                setScreenState(ScreenState.data())
+            } else {
+                val emptyText = if (isSearchModeEnabled) {
+                    resourceProvider.getString(R.string.no_search_results)
+                } else {
+                    resourceProvider.getString(R.string.no_items)
+                }
+
+                setScreenState(ScreenState.empty(emptyText))
+            }
+
+            visibleMenuItems.value = getVisibleMenuItems()
         } else {
-            emptyList()
+            setErrorState(getEntriesResult.error)
         }
 
-        return OperationResult.success(searchEntries)
+        updateOptionPanelState()
     }
 
     private suspend fun loadTemplates(): OperationResult<Unit> {
@@ -1196,6 +1371,34 @@ class GroupsViewModel(
         }
     }
 
+    /**
+     * In search mode only the first [visibleEntryCount] entries are displayed, the rest are
+     * added by [onListScrolledToEnd]
+     */
+    private fun showCurrentEntries(
+        isResetScroll: Boolean,
+        changes: List<ListChange>? = null
+    ) {
+        val visibleEntries = if (isSearchModeEnabled) {
+            currentEntries.take(visibleEntryCount)
+        } else {
+            currentEntries
+        }
+
+        val cellChanges = if (changes != null && !isSearchModeEnabled) {
+            cellModelFactory.createCellChanges(changes)
+        } else {
+            null
+        }
+
+        visibleCellViewModels = createCellViewModels(visibleEntries)
+        cellViewModels.value = CellsData(
+            isResetScroll = isResetScroll,
+            viewModels = visibleCellViewModels,
+            changes = cellChanges
+        )
+    }
+
     private fun createCellViewModels(
         data: List<EncryptedDatabaseEntry>
     ): List<BaseCellViewModel> {
@@ -1354,5 +1557,6 @@ class GroupsViewModel(
     companion object {
         private val EMPTY_UUID = UUID(0, 0)
         private const val SEARCH_DELAY = 300L
+        private const val SEARCH_PAGE_SIZE = 50
     }
 }
\ No newline at end of file
@@ -3,8 +3,9 @@ package com.ivanovsky.passnotes.presentation.groups.factory
 import com.ivanovsky.passnotes.R
 import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
 import com.ivanovsky.passnotes.data.entity.Group
-import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.NoteSummary
 import com.ivanovsky.passnotes.domain.ResourceProvider
+import com.ivanovsky.passnotes.domain.entity.ListChange
 import com.ivanovsky.passnotes.presentation.core.factory.CellModelFactory
 import com.ivanovsky.passnotes.presentation.core.model.BaseCellModel
 import com.ivanovsky.passnotes.presentation.core.model.DividerCellModel
@@ -36,9 +37,9 @@ class GroupsCellModelFactory(
                     )
                 }
 
-                is Note -> {
+                is NoteSummary -> {
                     NoteCellModel(
-                        id = item.uid?.toString() ?: EMPTY,
+                        id = item.uid.toString(),
                         note = item
                     )
                 }
@@ -55,6 +56,55 @@ class GroupsCellModelFactory(
         return result
     }
 
+    /**
+     * Converts positional changes of the entries to changes of the cells created by
+     * [createCellModels], every entry is displayed with [CELLS_PER_ENTRY] cells
+     */
+    fun createCellChanges(changes: List<ListChange>): List<ListChange> {
+        val result = mutableListOf<ListChange>()
+
+        for (change in changes) {
+            when (change) {
+                is ListChange.Inserted -> {
+                    result.add(
+                        ListChange.Inserted(
+                            position = change.position * CELLS_PER_ENTRY,
+                            count = change.count * CELLS_PER_ENTRY
+                        )
+                    )
+                }
+
+                is ListChange.Removed -> {
+                    result.add(
+                        ListChange.Removed(
+                            position = change.position * CELLS_PER_ENTRY,
+                            count = change.count * CELLS_PER_ENTRY
+                        )
+                    )
+                }
+
+                is ListChange.Moved -> {
+                    // Entry cell is moved first, then its divider is moved next to it
+                    val from = change.fromPosition * CELLS_PER_ENTRY
+                    val to = change.toPosition * CELLS_PER_ENTRY
+                    if (from < to) {
+                        result.add(ListChange.Moved(from, to + 1))
+                        result.add(ListChange.Moved(from, to + 1))
+                    } else {
+                        result.add(ListChange.Moved(from, to))
+                        result.add(ListChange.Moved(from + 1, to + 1))
+                    }
+                }
+
+                is ListChange.Changed -> {
+                    result.add(ListChange.Changed(change.position * CELLS_PER_ENTRY))
+                }
+            }
+        }
+
+        return result
+    }
+
     fun createOptionPanelCellModel(state: OptionPanelState): OptionPanelCellModel {
         return when (state) {
             PASTE -> OptionPanelCellModel(
@@ -95,5 +145,6 @@ class GroupsCellModelFactory(
 
     companion object {
         private const val OPTION_PANEL_CELL_ID = "optionPanelCellId"
+        private const val CELLS_PER_ENTRY = 2
     }
 }
\ No newline at end of file
@@ -1,8 +1,14 @@
 package com.ivanovsky.passnotes.presentation.groups.model
 
+import com.ivanovsky.passnotes.domain.entity.ListChange
 import com.ivanovsky.passnotes.presentation.core.BaseCellViewModel
 
+/**
+ * @param changes positional changes of the displayed cells which result in [viewModels],
+ * or null if cells should be compared with displayed ones
+ */
 data class CellsData(
     val isResetScroll: Boolean,
-    val viewModels: List<BaseCellViewModel>
+    val viewModels: List<BaseCellViewModel>,
+    val changes: List<ListChange>? = null
 )
\ No newline at end of file
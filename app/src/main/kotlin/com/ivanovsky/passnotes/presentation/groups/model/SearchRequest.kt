@@ -0,0 +1,31 @@
+package com.ivanovsky.passnotes.presentation.groups.model
+
+/**
+ * @param query text to search or null if search mode is disabled
+ * @param generation is increased when the same [query] should be searched again,
+ * for example after the database was changed
+ * @param isDebounced true if the request was made by typing the query
+ * @param createdAt time in milliseconds when the request was made
+ */
+data class SearchRequest(
+    val query: String?,
+    val generation: Int,
+    val isResetScroll: Boolean,
+    val isDebounced: Boolean,
+    val createdAt: Long
+) {
+
+    fun isSameSearch(other: SearchRequest): Boolean {
+        return query == other.query && generation == other.generation
+    }
+
+    companion object {
+        val IDLE = SearchRequest(
+            query = null,
+            generation = 0,
+            isResetScroll = false,
+            isDebounced = false,
+            createdAt = 0L
+        )
+    }
+}
\ No newline at end of file
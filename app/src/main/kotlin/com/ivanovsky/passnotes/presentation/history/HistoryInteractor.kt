@@ -4,7 +4,7 @@ import com.ivanovsky.passnotes.data.entity.OperationResult
 import com.ivanovsky.passnotes.data.repository.settings.Settings
 import com.ivanovsky.passnotes.domain.ClipboardInteractor
 import com.ivanovsky.passnotes.domain.usecases.history.GetHistoryUseCase
-import com.ivanovsky.passnotes.domain.usecases.history.entity.HistoryDiffItem
+import com.ivanovsky.passnotes.domain.usecases.history.HistoryDiffSource
 import java.time.Duration
 import java.util.UUID
 
@@ -14,8 +14,8 @@ class HistoryInteractor(
     private val clipboardInteractor: ClipboardInteractor
 ) {
 
-    suspend fun getHistoryDiff(noteUid: UUID): OperationResult<List<HistoryDiffItem>> =
-        getHistoryUseCase.getHistoryDiff(noteUid)
+    suspend fun getHistoryDiffSource(noteUid: UUID): OperationResult<HistoryDiffSource> =
+        getHistoryUseCase.getHistoryDiffSource(noteUid)
 
     fun copyToClipboardWithTimeout(text: String, isProtected: Boolean) {
         clipboardInteractor.copyWithTimeout(text, isProtected, getClipboardTimeout())
@@ -3,8 +3,11 @@ package com.ivanovsky.passnotes.presentation.history
 import androidx.compose.foundation.layout.fillMaxSize
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.runtime.Composable
+import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.getValue
+import androidx.compose.runtime.snapshotFlow
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.tooling.preview.Preview
@@ -24,6 +27,7 @@ import com.ivanovsky.passnotes.presentation.history.cells.ui.newInsertModel
 import com.ivanovsky.passnotes.presentation.history.cells.ui.newUpdateModel
 import com.ivanovsky.passnotes.presentation.history.factory.HistoryCellViewModelFactory
 import com.ivanovsky.passnotes.presentation.history.model.HistoryState
+import kotlinx.coroutines.flow.distinctUntilChanged
 
 @Composable
 fun HistoryScreen(
@@ -31,12 +35,16 @@ fun HistoryScreen(
 ) {
     val state by viewModel.state.collectAsStateWithLifecycle()
 
-    HistoryScreen(state = state)
+    HistoryScreen(
+        state = state,
+        onScrolledToEnd = viewModel::onListScrolledToEnd
+    )
 }
 
 @Composable
 private fun HistoryScreen(
-    state: HistoryState
+    state: HistoryState,
+    onScrolledToEnd: () -> Unit = {}
 ) {
     val cellFactory = CellFactory()
 
@@ -58,7 +66,29 @@ private fun HistoryScreen(
         }
 
         is HistoryState.Data -> {
+            val listState = rememberLazyListState()
+
+            LaunchedEffect(listState) {
+                // Item count is emitted too, so the next page is requested again
+                // if the loaded page doesn't fill the screen
+                snapshotFlow {
+                    val layoutInfo = listState.layoutInfo
+                    val lastVisibleIndex = layoutInfo.visibleItemsInfo.lastOrNull()?.index ?: 0
+                    val isScrolledToEnd =
+                        lastVisibleIndex >= layoutInfo.totalItemsCount - SCROLL_THRESHOLD
+
+                    Pair(isScrolledToEnd, layoutInfo.totalItemsCount)
+                }
+                    .distinctUntilChanged()
+                    .collect { (isScrolledToEnd, _) ->
+                        if (isScrolledToEnd) {
+                            onScrolledToEnd.invoke()
+                        }
+                    }
+            }
+
             LazyColumn(
+                state = listState,
                 modifier = Modifier.fillMaxSize()
             ) {
                 items(state.viewModels) { viewModel ->
@@ -69,6 +99,8 @@ private fun HistoryScreen(
     }
 }
 
+private const val SCROLL_THRESHOLD = 5
+
 @Preview
 @Composable
 fun LightPreviewWithLoading() {
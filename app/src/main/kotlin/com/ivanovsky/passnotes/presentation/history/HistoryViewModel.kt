@@ -10,10 +10,11 @@ import com.ivanovsky.passnotes.data.entity.Property
 import com.ivanovsky.passnotes.domain.ResourceProvider
 import com.ivanovsky.passnotes.domain.interactor.ErrorInteractor
 import com.ivanovsky.passnotes.domain.usecases.diff.getEntity
-import com.ivanovsky.passnotes.domain.usecases.history.entity.HistoryDiffItem
+import com.ivanovsky.passnotes.domain.usecases.history.HistoryDiffSource
 import com.ivanovsky.passnotes.extensions.getOrThrow
 import com.ivanovsky.passnotes.injection.GlobalInjector
 import com.ivanovsky.passnotes.presentation.Screens.NoteScreen
+import com.ivanovsky.passnotes.presentation.core.BaseCellViewModel
 import com.ivanovsky.passnotes.presentation.core.ThemeProvider
 import com.ivanovsky.passnotes.presentation.core.compose.themeFlow
 import com.ivanovsky.passnotes.presentation.core.dialog.propertyAction.PropertyAction
@@ -27,6 +28,7 @@ import com.ivanovsky.passnotes.presentation.history.factory.HistoryCellViewModel
 import com.ivanovsky.passnotes.presentation.history.model.HistoryState
 import com.ivanovsky.passnotes.presentation.note.NoteScreenArgs
 import com.ivanovsky.passnotes.presentation.note.NoteSource
+import kotlin.math.min
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.launch
 import org.koin.core.parameter.parametersOf
@@ -47,7 +49,11 @@ class HistoryViewModel(
     val showPropertyActionDialog = SingleLiveEvent<Property>()
     val showSnackbarMessageEvent = SingleLiveEvent<String>()
 
-    private var diff: List<HistoryDiffItem> = emptyList()
+    private var source: HistoryDiffSource? = null
+    private var loadedItemCount = 0
+    private var loadedCellCount = 0
+    private var cellViewModels: List<BaseCellViewModel> = emptyList()
+    private var isPageLoading = false
     private val eventProvider = EventProviderImpl()
 
     init {
@@ -67,6 +73,15 @@ class HistoryViewModel(
         router.exit()
     }
 
+    fun onListScrolledToEnd() {
+        val source = source ?: return
+        if (isPageLoading || loadedItemCount >= source.size) {
+            return
+        }
+
+        loadNextPage(source)
+    }
+
     fun onPropertyActionClicked(action: PropertyAction) {
         when (action) {
             is PropertyAction.CopyText -> {
@@ -104,12 +119,12 @@ class HistoryViewModel(
     }
 
     private fun onNoteClicked(noteIndex: Int) {
-        val note = if (noteIndex != FIRST_VERSION_INDEX) {
-            diff.getOrNull(noteIndex)?.newNote
-        } else {
-            diff.lastOrNull()?.oldNote
+        val source = source ?: return
+        val note = when {
+            noteIndex == FIRST_VERSION_INDEX -> source.getOldestNote()
+            noteIndex in 0 until source.size -> source.getNewNote(noteIndex)
+            else -> return
         }
-            ?: return
 
         router.navigateTo(
             NoteScreen(
@@ -127,45 +142,76 @@ class HistoryViewModel(
         diffItemIndex: Int,
         eventIndex: Int
     ) {
-        val event = diff.getOrNull(diffItemIndex)
-            ?.diffEvents
-            ?.getOrNull(eventIndex)
-            ?: return
+        val source = source ?: return
+        if (diffItemIndex !in 0 until source.size) {
+            return
+        }
+
+        viewModelScope.launch {
+            // Item could be evicted from the cache, then its diff is calculated again
+            val event = source.getItem(diffItemIndex)
+                .diffEvents
+                .getOrNull(eventIndex)
+                ?: return@launch
 
-        showPropertyActionDialog.call(event.getEntity())
+            showPropertyActionDialog.call(event.getEntity())
+        }
     }
 
     private fun loadData() {
         state.value = HistoryState.Loading
 
         viewModelScope.launch {
-            val getHistoryDiff = interactor.getHistoryDiff(args.noteUid)
-            if (getHistoryDiff.isFailed) {
+            val getSourceResult = interactor.getHistoryDiffSource(args.noteUid)
+            if (getSourceResult.isFailed) {
                 state.value = HistoryState.Error(
-                    message = errorInteractor.processAndGetMessage(getHistoryDiff.error)
+                    message = errorInteractor.processAndGetMessage(getSourceResult.error)
                 )
                 return@launch
             }
 
-            val diff = getHistoryDiff.getOrThrow()
-            onDataLoaded(diff)
+            val source = getSourceResult.getOrThrow()
+            this@HistoryViewModel.source = source
+            loadedItemCount = 0
+            loadedCellCount = 0
+            cellViewModels = emptyList()
+
+            if (source.size > 0) {
+                loadNextPage(source)
+            } else {
+                state.value = HistoryState.Empty
+            }
         }
     }
 
-    private fun onDataLoaded(
-        diff: List<HistoryDiffItem>
-    ) {
-        this.diff = diff
+    /**
+     * Diffs are calculated only for the items of the page, next page is loaded
+     * by [onListScrolledToEnd]
+     */
+    private fun loadNextPage(source: HistoryDiffSource) {
+        isPageLoading = true
 
-        if (diff.isNotEmpty()) {
-            val models = modelFactory.createHistoryDiffModels(diff)
+        viewModelScope.launch {
+            val fromIndex = loadedItemCount
+            val toIndex = min(fromIndex + PAGE_SIZE, source.size)
+            val items = source.getItems(fromIndex, toIndex)
+
+            val models = modelFactory.createHistoryDiffModels(
+                items = items,
+                firstItemIndex = fromIndex,
+                firstCellId = loadedCellCount + 1,
+                oldestNote = if (toIndex == source.size) source.getOldestNote() else null
+            )
             val viewModels = viewModelFactory.createCellViewModels(models, eventProvider)
 
+            loadedItemCount = toIndex
+            loadedCellCount += models.size
+            cellViewModels = cellViewModels + viewModels
+            isPageLoading = false
+
             state.value = HistoryState.Data(
-                viewModels = viewModels
+                viewModels = cellViewModels
             )
-        } else {
-            state.value = HistoryState.Empty
         }
     }
 
@@ -199,4 +245,8 @@ class HistoryViewModel(
             ) as T
         }
     }
+
+    companion object {
+        private const val PAGE_SIZE = 10
+    }
 }
\ No newline at end of file
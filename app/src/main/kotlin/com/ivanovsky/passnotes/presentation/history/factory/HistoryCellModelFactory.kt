@@ -1,6 +1,7 @@
 package com.ivanovsky.passnotes.presentation.history.factory
 
 import com.ivanovsky.passnotes.R
+import com.ivanovsky.passnotes.data.entity.Note
 import com.ivanovsky.passnotes.data.entity.Property
 import com.ivanovsky.passnotes.domain.DateFormatter
 import com.ivanovsky.passnotes.domain.ResourceProvider
@@ -20,15 +21,28 @@ class HistoryCellModelFactory(
     private val dateFormatter: DateFormatter
 ) {
 
+    /**
+     * Creates cells for a page of the history
+     *
+     * @param firstItemIndex index of the first item of [items] in the whole history
+     * @param firstCellId id of the first cell, ids of the previous pages shouldn't be reused
+     * @param oldestNote the oldest version of the note, it should be specified only for
+     * the last page
+     */
     fun createHistoryDiffModels(
-        diff: List<HistoryDiffItem>
+        items: List<HistoryDiffItem>,
+        firstItemIndex: Int,
+        firstCellId: Int,
+        oldestNote: Note?
     ): List<BaseCellModel> {
         val models = mutableListOf<BaseCellModel>()
 
-        var cellId = 1
+        var cellId = firstCellId
         var eventId = 1
 
-        for ((diffItemIndex, item) in diff.withIndex()) {
+        for ((itemIndex, item) in items.withIndex()) {
+            val diffItemIndex = firstItemIndex + itemIndex
+
             models.add(
                 createHeaderCell(
                     cellId = cellId,
@@ -66,15 +80,15 @@ class HistoryCellModelFactory(
             }
         }
 
-        val oldestNote = diff.last().oldNote
-
-        models.add(
-            createHeaderCell(
-                cellId = cellId,
-                noteIndex = FIRST_VERSION_INDEX,
-                title = dateFormatter.formatDateAndTime(oldestNote.created)
+        if (oldestNote != null) {
+            models.add(
+                createHeaderCell(
+                    cellId = cellId,
+                    noteIndex = FIRST_VERSION_INDEX,
+                    title = dateFormatter.formatDateAndTime(oldestNote.created)
+                )
             )
-        )
+        }
 
         return models
     }
@@ -204,7 +204,7 @@ class NoteCellModelFactory(
                 AttachmentCellModel(
                     id = id.value,
                     name = attachment.name,
-                    size = StringUtils.formatFileSize(attachment.data.size.toLong()),
+                    size = StringUtils.formatFileSize(attachment.size),
                     backgroundShape = shape,
                     backgroundColor = resourceProvider.getAttributeColor(
                         R.attr.kpSecondaryBackgroundColor
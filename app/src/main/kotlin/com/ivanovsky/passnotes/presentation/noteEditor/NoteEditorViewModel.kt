@@ -111,6 +111,13 @@ class NoteEditorViewModel(
         subscribeToEvents()
     }
 
+    override fun onCleared() {
+        super.onCleared()
+        // Attachments are already in the database if note was saved, otherwise editing was
+        // cancelled and files that were copied to the cache directory are not needed anymore
+        interactor.removeCachedAttachments(attachmentMap.values)
+    }
+
     fun start() {
         val currentScreenState = screenState.value ?: return
         if (!currentScreenState.isNotInitialized) {
@@ -495,7 +502,10 @@ class NoteEditorViewModel(
     }
 
     private fun onRemoveAttachmentButtonClicked(uid: String) {
-        attachmentMap.remove(uid)
+        val attachment = attachmentMap.remove(uid)
+        if (attachment != null) {
+            interactor.removeCachedAttachments(listOf(attachment))
+        }
 
         setCellElements(removeAttachmentCell(getViewModels(), cellId = uid))
     }
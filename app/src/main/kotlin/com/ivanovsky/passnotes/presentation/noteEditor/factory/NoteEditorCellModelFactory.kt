@@ -365,7 +365,7 @@ class NoteEditorCellModelFactory(
         return AttachmentCellModel(
             id = attachment.uid,
             name = attachment.name,
-            size = StringUtils.formatFileSize(attachment.data.size.toLong())
+            size = StringUtils.formatFileSize(attachment.size)
         )
     }
 
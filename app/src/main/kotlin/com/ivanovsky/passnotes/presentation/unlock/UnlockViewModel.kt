@@ -21,6 +21,8 @@ import com.ivanovsky.passnotes.data.entity.SyncProgressStatus
 import com.ivanovsky.passnotes.data.entity.SyncState
 import com.ivanovsky.passnotes.data.entity.SyncStatus
 import com.ivanovsky.passnotes.data.entity.UsedFile
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenListener
+import com.ivanovsky.passnotes.data.repository.encdb.DatabaseOpenStage
 import com.ivanovsky.passnotes.data.repository.encdb.EncryptedDatabaseKey
 import com.ivanovsky.passnotes.data.repository.keepass.FileKeepassKey
 import com.ivanovsky.passnotes.data.repository.keepass.PasswordKeepassKey
@@ -97,6 +99,7 @@ class UnlockViewModel(
     val showFileActionsDialog = SingleLiveEvent<UsedFile>()
     val showAddMenuDialog = SingleLiveEvent<Unit>()
     val showUnlockOptionsDialog = SingleLiveEvent<List<UnlockOption>>()
+    val openProgressText = MutableLiveData<String?>(null)
 
     val fileCellTypes = ViewModelTypes()
         .add(DatabaseFileCellViewModel::class, R.layout.cell_database_file)
@@ -108,6 +111,14 @@ class UnlockViewModel(
     private var recentlyUsedFiles: List<UsedFile>? = null
     private var errorPanelButtonAction: ErrorPanelButtonAction? = null
     private var usedFileIdToSyncStateMap: MutableMap<Int?, SyncState?> = HashMap()
+    private val openListener = object : DatabaseOpenListener {
+        override fun onStageStarted(stage: DatabaseOpenStage) {
+            openProgressText.postValue(resourceProvider.getString(stage.getTextResId()))
+        }
+
+        override fun onStageFinished(stage: DatabaseOpenStage, durationInMillis: Long) {
+        }
+    }
 
     init {
         observerBus.register(this)
@@ -278,7 +289,8 @@ class UnlockViewModel(
         setScreenState(ScreenState.loading())
 
         viewModelScope.launch {
-            val open = interactor.openDatabase(key, selectedFile)
+            val open = interactor.openDatabase(key, selectedFile, openListener)
+            openProgressText.value = null
 
             if (open.isSucceededOrDeferred) {
                 onDatabaseUnlocked()
@@ -410,7 +422,9 @@ class UnlockViewModel(
                 else -> throw IllegalStateException()
             }
 
-            val openResult = interactor.openDatabase(key, selectedFile)
+            val openResult = interactor.openDatabase(key, selectedFile, openListener)
+            openProgressText.value = null
+
             if (openResult.isFailed) {
                 setErrorPanelState(openResult.error)
                 return@launch
@@ -906,6 +920,19 @@ class UnlockViewModel(
         }
     }
 
+    @StringRes
+    private fun DatabaseOpenStage.getTextResId(): Int {
+        return when (this) {
+            DatabaseOpenStage.FETCH -> R.string.open_stage_fetch
+            DatabaseOpenStage.PREPARE_KEY -> R.string.open_stage_prepare_key
+            DatabaseOpenStage.DECRYPT -> R.string.open_stage_decrypt
+            DatabaseOpenStage.BUILD_INDEX -> R.string.open_stage_build_index
+            DatabaseOpenStage.SCAN_TEMPLATES -> R.string.open_stage_scan_templates
+            DatabaseOpenStage.BUILD_SEARCH_INDEX -> R.string.open_stage_build_search_index
+            DatabaseOpenStage.NOTIFY -> R.string.open_stage_notify
+        }
+    }
+
     private fun getUnlockButtonColorInternal(): Int {
         return resourceProvider.getAttributeColor(R.attr.kpPrimaryColor)
     }
@@ -0,0 +1,38 @@
+package com.ivanovsky.passnotes.util
+
+import java.io.InputStream
+import java.nio.ByteBuffer
+
+class ByteBufferInputStream(
+    private val buffer: ByteBuffer
+) : InputStream() {
+
+    override fun read(): Int {
+        if (!buffer.hasRemaining()) {
+            return -1
+        }
+
+        return buffer.get().toInt() and 0xFF
+    }
+
+    override fun read(bytes: ByteArray, offset: Int, length: Int): Int {
+        if (length == 0) {
+            return 0
+        }
+        if (!buffer.hasRemaining()) {
+            return -1
+        }
+
+        val count = minOf(length, buffer.remaining())
+        buffer.get(bytes, offset, count)
+        return count
+    }
+
+    override fun skip(n: Long): Long {
+        val count = minOf(n, buffer.remaining().toLong()).coerceAtLeast(0L)
+        buffer.position(buffer.position() + count.toInt())
+        return count
+    }
+
+    override fun available(): Int = buffer.remaining()
+}
\ No newline at end of file
@@ -10,6 +10,8 @@ import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
 import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.nio.channels.FileChannel
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.Throws
 import timber.log.Timber
@@ -17,6 +19,7 @@ import timber.log.Timber
 object InputOutputUtils {
 
     private const val BUFFER_SIZE = 1024 * 8
+    private const val READ_MODE = "r"
     private val UNCANCELABLE = AtomicBoolean(false)
 
     @JvmStatic
@@ -39,6 +42,26 @@ object InputOutputUtils {
         }
     }
 
+    /**
+     * Maps content of the [file] into memory, so it can be read without copying it to the heap
+     */
+    @JvmStatic
+    fun newMappedFileInputStream(file: File): OperationResult<InputStream> {
+        return try {
+            val buffer = RandomAccessFile(file, READ_MODE).use { randomAccessFile ->
+                randomAccessFile.channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    0,
+                    randomAccessFile.length()
+                )
+            }
+            OperationResult.success(ByteBufferInputStream(buffer))
+        } catch (e: IOException) {
+            Timber.d(e)
+            OperationResult.error(newGenericIOError(e))
+        }
+    }
+
     fun copy(
         from: InputStream,
         to: OutputStream,
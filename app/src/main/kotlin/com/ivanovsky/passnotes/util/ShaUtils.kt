@@ -13,4 +13,12 @@ object ShaUtils {
         val sha = digest.digest(bytes)
         return Hash(sha, HashType.SHA_256)
     }
+
+    fun newSha256Digest(): MessageDigest {
+        return MessageDigest.getInstance(SHA_256)
+    }
+
+    fun sha256(digest: MessageDigest): Hash {
+        return Hash(digest.digest(), HashType.SHA_256)
+    }
 }
\ No newline at end of file
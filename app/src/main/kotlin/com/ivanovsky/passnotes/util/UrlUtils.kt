@@ -35,6 +35,22 @@ object UrlUtils {
         }
     }
 
+    /**
+     * @return lower case host of [url] without "www." prefix, user info and port
+     */
+    fun extractHost(url: String): String? {
+        val domain = parseUrl(url)?.domain ?: return null
+
+        val host = domain
+            .substringAfterLast('@')
+            .substringBefore(':')
+            .trimEnd('.')
+            .lowercase()
+            .removePrefix(WWW_PREFIX)
+
+        return host.ifEmpty { null }
+    }
+
     fun formatSecretUrl(url: String): String {
         val parsedUrl = parseUrl(url) ?: return url.substituteAt(0, url.length, STAR)
 
@@ -0,0 +1,128 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.GroupEntity
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.domain.PropertyFactory
+import java.util.UUID
+import org.junit.Test
+
+class KotpassAutofillIndexTest {
+
+    @Test
+    fun `findByDomain should return notes with the same host`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val noteUid = db.noteDao.insert(newAutofillNote(groupUid, URL)).obj
+
+        // act
+        val index = db.autofillIndex
+
+        // assert
+        assertThat(index.findByDomain("login.domain.com")).containsExactly(noteUid)
+        assertThat(index.findByDomain("domain.com")).isEmpty()
+        assertThat(index.findByDomain("other.domain.com")).isEmpty()
+        assertThat(index.findByDomain("domain.org")).isEmpty()
+    }
+
+    @Test
+    fun `findByDomain should not mix notes of parent and child domains`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val noteUid = db.noteDao.insert(newAutofillNote(groupUid, URL)).obj
+        val otherNoteUid = db.noteDao.insert(newAutofillNote(groupUid, "https://domain.com")).obj
+
+        // act
+        val index = db.autofillIndex
+
+        // assert
+        assertThat(index.findByDomain("login.domain.com")).containsExactly(noteUid)
+        assertThat(index.findByDomain("domain.com")).containsExactly(otherNoteUid)
+    }
+
+    @Test
+    fun `findByDomainSubstring should return notes which domain contains text`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val noteUid = db.noteDao.insert(newAutofillNote(groupUid, URL)).obj
+
+        // act
+        val index = db.autofillIndex
+
+        // assert
+        assertThat(index.findByDomainSubstring("login.domain")).containsExactly(noteUid)
+        assertThat(index.findByDomainSubstring("other")).isEmpty()
+    }
+
+    @Test
+    fun `index should be updated when notes are inserted and removed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val noteUid = db.noteDao.insert(newAutofillNote(groupUid, URL)).obj
+
+        // act
+        val afterInsert = db.autofillIndex.findByApplicationId(APPLICATION_ID)
+        db.noteDao.remove(noteUid)
+        val afterRemove = db.autofillIndex.findByApplicationId(APPLICATION_ID)
+
+        // assert
+        assertThat(afterInsert).containsExactly(noteUid)
+        assertThat(afterRemove).isEmpty()
+        assertThat(db.autofillIndex.findByDomain("login.domain.com")).isEmpty()
+    }
+
+    @Test
+    fun `index should be updated when group with notes is removed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val nestedGroupUid = db.groupDao.insert(
+            GroupEntity(
+                parentUid = groupUid,
+                title = "Nested Group",
+                autotypeEnabled = InheritableBooleanOption.ENABLED,
+                searchEnabled = InheritableBooleanOption.ENABLED
+            )
+        ).obj
+        val noteUid = db.noteDao.insert(newAutofillNote(groupUid, URL)).obj
+        val nestedNoteUid = db.noteDao.insert(newAutofillNote(nestedGroupUid, OTHER_URL)).obj
+
+        // act
+        val afterInsert = db.autofillIndex.findByApplicationId(APPLICATION_ID)
+        val removeResult = db.groupDao.remove(groupUid)
+        val afterRemove = db.autofillIndex.findByApplicationId(APPLICATION_ID)
+
+        // assert
+        assertThat(removeResult.isSucceeded).isTrue()
+        assertThat(afterInsert).containsExactly(noteUid, nestedNoteUid)
+        assertThat(afterRemove).isEmpty()
+        assertThat(db.autofillIndex.findByDomain("login.domain.com")).isEmpty()
+        assertThat(db.autofillIndex.findByDomain("other.domain.com")).isEmpty()
+    }
+
+    private fun newAutofillNote(groupUid: UUID, url: String): Note {
+        val note = newNote(groupUid, "Title")
+        return note.copy(
+            properties = note.properties + listOf(
+                PropertyFactory.createUrlProperty(url),
+                PropertyFactory.createAutofillAppIdProperty(APPLICATION_ID)
+            )
+        )
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 3
+        private const val ENTRIES_PER_GROUP = 5
+        private const val URL = "https://login.domain.com/path?query=1"
+        private const val OTHER_URL = "https://other.domain.com"
+        private const val APPLICATION_ID = "com.domain.app"
+    }
+}
\ No newline at end of file
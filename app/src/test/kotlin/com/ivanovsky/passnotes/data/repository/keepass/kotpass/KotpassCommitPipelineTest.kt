@@ -0,0 +1,153 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicReference
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class KotpassCommitPipelineTest {
+
+    @Test(timeout = TIMEOUT)
+    fun `submit should coalesce commits that arrive during write`() {
+        // arrange
+        val rawDb = newRawDatabase(groupCount = 1, entriesPerGroup = 1)
+        val snapshot = AtomicReference(KotpassDatabaseSnapshot.create(rawDb))
+        val writeStarted = CountDownLatch(1)
+        val writeReleased = CountDownLatch(1)
+        val writtenVersions = CopyOnWriteArrayList<Long>()
+        val committedResults = CopyOnWriteArrayList<OperationResult<Boolean>>()
+
+        val pipeline = KotpassCommitPipeline(
+            snapshotProvider = { snapshot.get() },
+            writer = { currentSnapshot ->
+                writeStarted.countDown()
+                writeReleased.await()
+                writtenVersions.add(currentSnapshot.version)
+                OperationResult.success(true)
+            },
+            onCommitted = { result -> committedResults.add(result) }
+        )
+
+        // act
+        val first = pipeline.submit(snapshot.get().version)
+        writeStarted.await()
+
+        val pending = (1..COMMIT_COUNT).map {
+            val newSnapshot = snapshot.get().rebuild(rawDb)
+            snapshot.set(newSnapshot)
+            pipeline.submit(newSnapshot.version)
+        }
+
+        writeReleased.countDown()
+        val results = runBlocking {
+            (listOf(first) + pending).awaitAll()
+        }
+
+        // assert
+        assertThat(results.all { it.isSucceeded }).isTrue()
+        assertThat(writtenVersions).containsExactly(0L, COMMIT_COUNT.toLong())
+        assertThat(committedResults).hasSize(2)
+        assertThat(pipeline.durableVersion).isEqualTo(COMMIT_COUNT.toLong())
+    }
+
+    @Test(timeout = TIMEOUT)
+    fun `submit should not rewrite already written version`() {
+        // arrange
+        val rawDb = newRawDatabase(groupCount = 1, entriesPerGroup = 1)
+        val snapshot = KotpassDatabaseSnapshot.create(rawDb)
+        val writtenVersions = CopyOnWriteArrayList<Long>()
+
+        val pipeline = KotpassCommitPipeline(
+            snapshotProvider = { snapshot },
+            writer = { currentSnapshot ->
+                writtenVersions.add(currentSnapshot.version)
+                OperationResult.success(true)
+            },
+            onCommitted = {}
+        )
+
+        // act
+        val firstResult = runBlocking { pipeline.submit(snapshot.version).await() }
+        val secondResult = runBlocking { pipeline.submit(snapshot.version).await() }
+
+        // assert
+        assertThat(firstResult.isSucceeded).isTrue()
+        assertThat(secondResult.isSucceeded).isTrue()
+        assertThat(writtenVersions).containsExactly(0L)
+    }
+
+    @Test(timeout = TIMEOUT)
+    fun `submit should fail after close`() {
+        // arrange
+        val rawDb = newRawDatabase(groupCount = 1, entriesPerGroup = 1)
+        val snapshot = KotpassDatabaseSnapshot.create(rawDb)
+        val writtenVersions = CopyOnWriteArrayList<Long>()
+
+        val pipeline = KotpassCommitPipeline(
+            snapshotProvider = { snapshot },
+            writer = { currentSnapshot ->
+                writtenVersions.add(currentSnapshot.version)
+                OperationResult.success(true)
+            },
+            onCommitted = {}
+        )
+
+        // act
+        pipeline.close()
+        val result = runBlocking { pipeline.submit(snapshot.version).await() }
+
+        // assert
+        assertThat(result.isFailed).isTrue()
+        assertThat(writtenVersions).isEmpty()
+    }
+
+    @Test(timeout = TIMEOUT)
+    fun `close should fail requests pending after running write`() {
+        // arrange
+        val rawDb = newRawDatabase(groupCount = 1, entriesPerGroup = 1)
+        val snapshot = AtomicReference(KotpassDatabaseSnapshot.create(rawDb))
+        val writeStarted = CountDownLatch(1)
+        val writeReleased = CountDownLatch(1)
+        val writtenVersions = CopyOnWriteArrayList<Long>()
+
+        val pipeline = KotpassCommitPipeline(
+            snapshotProvider = { snapshot.get() },
+            writer = { currentSnapshot ->
+                writeStarted.countDown()
+                writeReleased.await()
+                writtenVersions.add(currentSnapshot.version)
+                OperationResult.success(true)
+            },
+            onCommitted = {}
+        )
+
+        // act
+        val first = pipeline.submit(snapshot.get().version)
+        writeStarted.await()
+
+        val newSnapshot = snapshot.get().rebuild(rawDb)
+        snapshot.set(newSnapshot)
+        val pending = pipeline.submit(newSnapshot.version)
+
+        pipeline.close()
+        writeReleased.countDown()
+        val firstResult = runBlocking { first.await() }
+        val pendingResult = runBlocking { pending.await() }
+
+        // assert
+        assertThat(firstResult.isSucceeded).isTrue()
+        assertThat(pendingResult.isFailed).isTrue()
+        assertThat(writtenVersions).containsExactly(0L)
+        assertThat(pipeline.durableVersion).isEqualTo(0L)
+    }
+
+    companion object {
+        private const val TIMEOUT = 10_000L
+        private const val COMMIT_COUNT = 5
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.models.EntryFields
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawEntry
+import org.junit.Test
+
+class KotpassContentHashesTest {
+
+    @Test
+    fun `databases with the same content should have equal hashes`() {
+        // arrange
+        val rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val lhs = newDatabase(rawDb)
+        val rhs = newDatabase(rawDb)
+
+        // act
+        val lhsHash = lhs.getContentHash()
+        val rhsHash = rhs.getContentHash()
+
+        // assert
+        assertThat(lhsHash).isEqualTo(rhsHash)
+    }
+
+    @Test
+    fun `only hashes on the path to modified note should be changed`() {
+        // arrange
+        val rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val lhs = newDatabase(rawDb)
+        val rhs = newDatabase(rawDb)
+        val groupUid = rhs.getRawRootGroup().groups.first().uuid
+        val note = rhs.noteDao.getNotesByGroupUid(groupUid).obj.first()
+
+        // act
+        rhs.noteDao.update(
+            note.copy(
+                properties = listOf(
+                    Property(
+                        type = PropertyType.TITLE,
+                        name = PropertyType.TITLE.propertyName,
+                        value = "Modified"
+                    )
+                )
+            ),
+            false
+        )
+
+        // assert
+        val lhsSnapshot = lhs.getSnapshot()
+        val rhsSnapshot = rhs.getSnapshot()
+        val lhsGroups = lhs.getRawRootGroup().groups
+        val rhsGroups = rhs.getRawRootGroup().groups
+
+        assertThat(lhs.getContentHash()).isNotEqualTo(rhs.getContentHash())
+        assertThat(lhsSnapshot.getGroupContentHash(lhsGroups.first()))
+            .isNotEqualTo(rhsSnapshot.getGroupContentHash(rhsGroups.first()))
+        for (idx in 1 until GROUP_COUNT) {
+            assertThat(lhsSnapshot.getGroupContentHash(lhsGroups[idx]))
+                .isEqualTo(rhsSnapshot.getGroupContentHash(rhsGroups[idx]))
+        }
+    }
+
+    @Test
+    fun `hashes of removed group tree should be removed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        db.getContentHash()
+        val sizeBeforeRemove = db.getSnapshot().contentHashes.size
+
+        // act
+        db.groupDao.remove(groupUid)
+
+        // assert
+        assertThat(db.getSnapshot().contentHashes.size)
+            .isEqualTo(sizeBeforeRemove - ENTRIES_PER_GROUP - 1)
+    }
+
+    @Test
+    fun `order of fields should not change hash`() {
+        // arrange
+        val entry = newRawEntry(title = "Title")
+        val reversedEntry = entry.copy(
+            fields = EntryFields(
+                entry.fields.entries.reversed().associate { (key, value) -> key to value }
+            )
+        )
+
+        // act
+        val hash = KotpassContentHashes().getEntryHash(entry)
+        val reversedHash = KotpassContentHashes().getEntryHash(reversedEntry)
+
+        // assert
+        assertThat(hash).isEqualTo(reversedHash)
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 3
+        private const val ENTRIES_PER_GROUP = 5
+    }
+}
\ No newline at end of file
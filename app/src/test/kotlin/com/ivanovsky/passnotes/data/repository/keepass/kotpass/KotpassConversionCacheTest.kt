@@ -0,0 +1,77 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import org.junit.Test
+
+class KotpassConversionCacheTest {
+
+    @Test
+    fun `getNotesByGroupUid should reuse converted notes`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val firstNotes = db.noteDao.getNotesByGroupUid(groupUid).obj
+
+        // act
+        val secondNotes = db.noteDao.getNotesByGroupUid(groupUid).obj
+
+        // assert
+        val statistics = db.getConversionCacheStatistics()
+        assertThat(secondNotes.zip(firstNotes).all { (lhs, rhs) -> lhs === rhs }).isTrue()
+        assertThat(statistics.missCount).isEqualTo(ENTRIES_PER_GROUP.toLong())
+        assertThat(statistics.hitCount).isEqualTo(ENTRIES_PER_GROUP.toLong())
+    }
+
+    @Test
+    fun `only modified note should be converted after update`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val notes = db.noteDao.getNotesByGroupUid(groupUid).obj
+        val modifiedNote = notes.first().copy(
+            properties = listOf(
+                Property(
+                    type = PropertyType.TITLE,
+                    name = PropertyType.TITLE.propertyName,
+                    value = "Modified"
+                )
+            )
+        )
+
+        // act
+        db.noteDao.update(modifiedNote, false)
+        val newNotes = db.noteDao.getNotesByGroupUid(groupUid).obj
+
+        // assert
+        assertThat(newNotes.first()).isNotSameInstanceAs(notes.first())
+        assertThat(newNotes.drop(1).zip(notes.drop(1)).all { (lhs, rhs) -> lhs === rhs })
+            .isTrue()
+    }
+
+    @Test
+    fun `converted values of removed group tree should be removed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val rootUid = db.getRawRootGroup().uuid
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        db.groupDao.getChildGroups(rootUid)
+        db.noteDao.getNotesByGroupUid(groupUid)
+        val sizeBeforeRemove = db.getConversionCacheStatistics().size
+
+        // act
+        db.groupDao.remove(groupUid)
+
+        // assert
+        assertThat(db.getConversionCacheStatistics().size)
+            .isEqualTo(sizeBeforeRemove - ENTRIES_PER_GROUP - 1)
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 2
+        private const val ENTRIES_PER_GROUP = 5
+    }
+}
\ No newline at end of file
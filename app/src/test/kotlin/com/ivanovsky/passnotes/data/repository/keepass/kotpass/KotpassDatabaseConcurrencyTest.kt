@@ -0,0 +1,172 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newFileSystemProvider
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import org.junit.Test
+
+class KotpassDatabaseConcurrencyTest {
+
+    @Test(timeout = TIMEOUT)
+    fun `readers should not wait for commit`() {
+        // arrange
+        val commitStarted = CountDownLatch(1)
+        val commitReleased = CountDownLatch(1)
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(
+                onWrite = {
+                    commitStarted.countDown()
+                    commitReleased.await()
+                }
+            )
+        )
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val executor = Executors.newSingleThreadExecutor()
+
+        // act
+        val insertFuture = executor.submit<Boolean> {
+            db.noteDao.insert(newNote(groupUid, "New note")).isSucceededOrDeferred
+        }
+        commitStarted.await()
+
+        val getNotesResult = db.noteDao.all
+        val getGroupsResult = db.groupDao.all
+        val findResult = db.noteDao.find("New note")
+
+        commitReleased.countDown()
+
+        // assert
+        assertThat(getNotesResult.isSucceeded).isTrue()
+        assertThat(getGroupsResult.isSucceeded).isTrue()
+        assertThat(findResult.isSucceeded).isTrue()
+        assertThat(insertFuture.get()).isTrue()
+
+        executor.shutdown()
+    }
+
+    @Test(timeout = TIMEOUT)
+    fun `parallel readers should see consistent snapshots during commits`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val executor = Executors.newFixedThreadPool(READER_COUNT + 1)
+        val isWriterFinished = AtomicBoolean(false)
+        val readCount = AtomicInteger(0)
+        val errors = ConcurrentLinkedQueue<String>()
+
+        // act
+        val readers = (0 until READER_COUNT).map {
+            executor.submit {
+                var lastNoteCount = 0
+
+                while (!isWriterFinished.get()) {
+                    val notes = db.noteDao.all
+                    val groups = db.groupDao.all
+                    val groupNotes = db.noteDao.getNotesByGroupUid(groupUid)
+
+                    if (notes.isFailed || groups.isFailed || groupNotes.isFailed) {
+                        errors.add("Failed to read data")
+                        break
+                    }
+
+                    if (notes.obj.size < lastNoteCount) {
+                        errors.add("Note count decreased: ${notes.obj.size} < $lastNoteCount")
+                    }
+                    lastNoteCount = notes.obj.size
+
+                    val groupUids = groups.obj.map { group -> group.uid }.toSet()
+                    if (groups.obj.any { it.parentUid != null && it.parentUid !in groupUids }) {
+                        errors.add("Group without parent")
+                    }
+
+                    if (groupNotes.obj.any { note -> note.groupUid != groupUid }) {
+                        errors.add("Note from another group")
+                    }
+
+                    readCount.incrementAndGet()
+                }
+            }
+        }
+
+        val writer = executor.submit {
+            repeat(COMMIT_COUNT) { idx ->
+                val result = db.noteDao.insert(newNote(groupUid, "Note $idx"))
+                if (result.isFailed) {
+                    errors.add("Failed to insert note: ${result.error}")
+                }
+            }
+            isWriterFinished.set(true)
+        }
+
+        writer.get()
+        readers.forEach { reader -> reader.get() }
+        executor.shutdown()
+        executor.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS)
+
+        // assert
+        assertThat(errors).isEmpty()
+        assertThat(readCount.get()).isGreaterThan(0)
+        assertThat(db.noteDao.all.obj.size).isEqualTo(
+            GROUP_COUNT * ENTRIES_PER_GROUP + COMMIT_COUNT
+        )
+    }
+
+    @Test(timeout = TIMEOUT)
+    fun `parallel updates should report every replaced note once`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val note = db.noteDao.all.obj.first()
+        val replacedTitles = ConcurrentLinkedQueue<String>()
+        db.noteDao.contentWatcher.subscribe(
+            object : ContentWatcher.OnContentChangeListener<Note> {
+                override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+                    for (change in changes) {
+                        if (change is ContentWatcher.Change.Changed) {
+                            replacedTitles.add(change.oldEntry.title)
+                        }
+                    }
+                }
+            }
+        )
+        val executor = Executors.newFixedThreadPool(WRITER_COUNT)
+
+        // act
+        val writers = (0 until WRITER_COUNT).map { writerIdx ->
+            executor.submit<Boolean> {
+                (0 until UPDATE_COUNT).all { idx ->
+                    val newNote = newNote(note.groupUid, "Note $writerIdx $idx")
+                        .copy(uid = note.uid)
+                    db.noteDao.update(newNote, false).isSucceeded
+                }
+            }
+        }
+        val results = writers.map { writer -> writer.get() }
+        executor.shutdown()
+
+        // assert
+        assertThat(results).doesNotContain(false)
+        assertThat(replacedTitles).hasSize(WRITER_COUNT * UPDATE_COUNT)
+        assertThat(replacedTitles.toSet()).hasSize(WRITER_COUNT * UPDATE_COUNT)
+    }
+
+    companion object {
+        private const val TIMEOUT = 120_000L
+        private const val GROUP_COUNT = 20
+        private const val ENTRIES_PER_GROUP = 50
+        private const val READER_COUNT = 4
+        private const val COMMIT_COUNT = 5
+        private const val WRITER_COUNT = 4
+        private const val UPDATE_COUNT = 50
+    }
+}
\ No newline at end of file
@@ -0,0 +1,203 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.constants.GroupOverride
+import app.keemobile.kotpass.database.KeePassDatabase
+import app.keemobile.kotpass.database.modifiers.modifyGroup
+import app.keemobile.kotpass.database.modifiers.moveGroup
+import app.keemobile.kotpass.database.modifiers.removeEntry
+import app.keemobile.kotpass.database.modifiers.removeGroup
+import app.keemobile.kotpass.models.Group as RawGroup
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawEntry
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.model.DatabaseChange
+import java.util.UUID
+import org.junit.Test
+
+class KotpassDatabaseIndexTest {
+
+    @Test
+    fun `applyChanges should index inserted entry`() {
+        // arrange
+        val db = newRawDatabase(groupCount = 3, entriesPerGroup = 3)
+        val index = KotpassDatabaseIndex.build(db)
+        val group = db.firstGroup()
+        val entry = newRawEntry(title = "New entry")
+
+        // act
+        val newDb = db.modifyGroup(group.uuid) {
+            copy(entries = entries + entry)
+        }
+        val newIndex = index.applyChanges(
+            newDb,
+            listOf(DatabaseChange.EntryInserted(group.uuid, entry))
+        )
+
+        // assert
+        assertThat(newIndex.getEntryAndGroup(entry.uuid)?.first?.uuid).isEqualTo(group.uuid)
+        assertIndexMatches(newIndex, newDb)
+    }
+
+    @Test
+    fun `applyChanges should index moved entry`() {
+        // arrange
+        val db = newRawDatabase(groupCount = 3, entriesPerGroup = 3)
+        val index = KotpassDatabaseIndex.build(db)
+        val source = db.content.group.groups[0]
+        val target = db.content.group.groups[1]
+        val entry = source.entries.first()
+
+        // act
+        val newDb = db
+            .modifyGroup(source.uuid) {
+                copy(entries = entries.filter { it.uuid != entry.uuid })
+            }
+            .modifyGroup(target.uuid) {
+                copy(entries = entries + entry)
+            }
+        val newIndex = index.applyChanges(
+            newDb,
+            listOf(DatabaseChange.EntryMoved(target.uuid, entry))
+        )
+
+        // assert
+        assertThat(newIndex.getEntryAndGroup(entry.uuid)?.first?.uuid).isEqualTo(target.uuid)
+        assertIndexMatches(newIndex, newDb)
+    }
+
+    @Test
+    fun `applyChanges should remove entry`() {
+        // arrange
+        val db = newRawDatabase(groupCount = 3, entriesPerGroup = 3)
+        val index = KotpassDatabaseIndex.build(db)
+        val entry = db.firstGroup().entries.first()
+
+        // act
+        val newDb = db.removeEntry(entry.uuid)
+        val newIndex = index.applyChanges(
+            newDb,
+            listOf(DatabaseChange.EntryRemoved(entry.uuid))
+        )
+
+        // assert
+        assertThat(newIndex.getEntryAndGroup(entry.uuid)).isNull()
+        assertIndexMatches(newIndex, newDb)
+    }
+
+    @Test
+    fun `applyChanges should index inserted, moved and removed groups`() {
+        // arrange
+        val db = newRawDatabase(groupCount = 3, entriesPerGroup = 3)
+        val index = KotpassDatabaseIndex.build(db)
+        val parent = db.content.group.groups[0]
+        val moved = db.content.group.groups[1]
+        val removed = db.content.group.groups[2]
+        val inserted = RawGroup(
+            uuid = UUID.randomUUID(),
+            name = "Inserted",
+            enableAutoType = GroupOverride.Disabled
+        )
+
+        // act
+        val newDb = db
+            .modifyGroup(parent.uuid) {
+                copy(groups = groups + inserted)
+            }
+            .moveGroup(moved.uuid, inserted.uuid)
+            .removeGroup(removed.uuid)
+
+        val newIndex = index.applyChanges(
+            newDb,
+            listOf(
+                DatabaseChange.GroupInserted(parent.uuid, inserted.uuid),
+                DatabaseChange.GroupMoved(inserted.uuid, moved.uuid),
+                DatabaseChange.GroupRemoved(removed.uuid)
+            )
+        )
+
+        // assert
+        assertThat(newIndex.getParentGroup(moved.uuid)?.uuid).isEqualTo(inserted.uuid)
+        assertThat(newIndex.getOptions(moved.uuid)?.autotypeEnabled?.isEnabled).isFalse()
+        assertThat(newIndex.getGroup(removed.uuid)).isNull()
+        assertIndexMatches(newIndex, newDb)
+    }
+
+    @Test
+    fun `applyChanges should update options of group subtree`() {
+        // arrange
+        val db = newRawDatabase(groupCount = 2, entriesPerGroup = 1)
+        val parent = db.content.group.groups[0]
+        val child = db.content.group.groups[1]
+        val dbWithChild = db.moveGroup(child.uuid, parent.uuid)
+        val index = KotpassDatabaseIndex.build(dbWithChild)
+
+        // act
+        val newDb = dbWithChild.modifyGroup(parent.uuid) {
+            copy(enableSearching = GroupOverride.Disabled)
+        }
+        val newIndex = index.applyChanges(
+            newDb,
+            listOf(DatabaseChange.GroupUpdated(parent.uuid))
+        )
+
+        // assert
+        assertThat(newIndex.getOptions(child.uuid)?.searchEnabled?.isEnabled).isFalse()
+        assertIndexMatches(newIndex, newDb)
+    }
+
+    @Test
+    fun `isGroupInsideTree and isEntryInsideTree should check ancestry`() {
+        // arrange
+        val db = newRawDatabase(groupCount = 3, entriesPerGroup = 2)
+        val parent = db.content.group.groups[0]
+        val child = db.content.group.groups[1]
+        val other = db.content.group.groups[2]
+        val newDb = db.moveGroup(child.uuid, parent.uuid)
+        val rootUid = newDb.content.group.uuid
+
+        // act
+        val index = KotpassDatabaseIndex.build(newDb)
+
+        // assert
+        assertThat(index.isGroupInsideTree(child.uuid, parent.uuid)).isTrue()
+        assertThat(index.isGroupInsideTree(child.uuid, rootUid)).isTrue()
+        assertThat(index.isGroupInsideTree(parent.uuid, parent.uuid)).isFalse()
+        assertThat(index.isGroupInsideTree(parent.uuid, child.uuid)).isFalse()
+        assertThat(index.isGroupInsideTree(other.uuid, parent.uuid)).isFalse()
+        assertThat(index.isEntryInsideTree(parent.entries.first().uuid, parent.uuid)).isTrue()
+        assertThat(index.isEntryInsideTree(child.entries.first().uuid, parent.uuid)).isTrue()
+        assertThat(index.isEntryInsideTree(other.entries.first().uuid, parent.uuid)).isFalse()
+        assertThat(index.getSubtreeGroupCount(parent.uuid)).isEqualTo(1)
+        assertThat(index.getSubtreeEntryCount(parent.uuid)).isEqualTo(4)
+        assertThat(index.getSubtreeEntryCount(rootUid)).isEqualTo(6)
+    }
+
+    private fun assertIndexMatches(
+        index: KotpassDatabaseIndex,
+        db: KeePassDatabase
+    ) {
+        val expected = KotpassDatabaseIndex.build(db)
+
+        for (group in db.getAllGroups()) {
+            assertThat(index.getGroup(group.uuid)).isEqualTo(group)
+            assertThat(index.getParentGroup(group.uuid)).isEqualTo(
+                expected.getParentGroup(group.uuid)
+            )
+            assertThat(index.getOptions(group.uuid)).isEqualTo(
+                expected.getOptions(group.uuid)
+            )
+            assertThat(index.getSubtreeGroupCount(group.uuid)).isEqualTo(
+                expected.getSubtreeGroupCount(group.uuid)
+            )
+            assertThat(index.getSubtreeEntryCount(group.uuid)).isEqualTo(
+                expected.getSubtreeEntryCount(group.uuid)
+            )
+
+            for (entry in group.entries) {
+                assertThat(index.getEntryAndGroup(entry.uuid)).isEqualTo(Pair(group, entry))
+            }
+        }
+    }
+
+    private fun KeePassDatabase.firstGroup(): RawGroup = content.group.groups.first()
+}
\ No newline at end of file
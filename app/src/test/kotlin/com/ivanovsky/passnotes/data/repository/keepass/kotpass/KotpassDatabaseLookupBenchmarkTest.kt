@@ -0,0 +1,67 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import java.util.UUID
+import org.junit.Ignore
+import org.junit.Test
+
+/**
+ * Prints latency of the lookups for databases of different sizes, it is ignored because
+ * timings are not stable on CI machines and should be run manually
+ */
+@Ignore("Benchmark, should be run manually")
+class KotpassDatabaseLookupBenchmarkTest {
+
+    @Test
+    fun `measure getRawEntryAndGroupByUid latency for different database sizes`() {
+        // arrange
+        val timings = ENTRY_COUNTS.associateWith { entryCount ->
+            val db = newDatabase(
+                newRawDatabase(
+                    groupCount = entryCount / ENTRIES_PER_GROUP,
+                    entriesPerGroup = ENTRIES_PER_GROUP
+                )
+            )
+
+            val uids = db.getRawChildEntries(db.getRawRootGroup())
+                .map { entry -> entry.uuid }
+                .shuffled()
+                .take(LOOKUP_COUNT)
+
+            // act
+            measureLookup(db, uids)
+        }
+
+        for ((entryCount, nanos) in timings) {
+            println("getRawEntryAndGroupByUid: entries=$entryCount, avg=${nanos}ns")
+        }
+    }
+
+    private fun measureLookup(db: KotpassDatabase, uids: List<UUID>): Long {
+        repeat(WARMUP_ITERATIONS) {
+            for (uid in uids) {
+                assertThat(db.getRawEntryAndGroupByUid(uid).isSucceeded).isTrue()
+            }
+        }
+
+        val start = System.nanoTime()
+        repeat(ITERATIONS) {
+            for (uid in uids) {
+                db.getRawEntryAndGroupByUid(uid)
+            }
+        }
+        val end = System.nanoTime()
+
+        return (end - start) / (ITERATIONS * uids.size)
+    }
+
+    companion object {
+        private val ENTRY_COUNTS = listOf(1_000, 10_000, 100_000)
+        private const val ENTRIES_PER_GROUP = 100
+        private const val LOOKUP_COUNT = 1_000
+        private const val WARMUP_ITERATIONS = 10
+        private const val ITERATIONS = 50
+    }
+}
\ No newline at end of file
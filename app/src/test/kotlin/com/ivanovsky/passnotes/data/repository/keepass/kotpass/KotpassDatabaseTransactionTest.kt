@@ -0,0 +1,172 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.OperationError.newDbError
+import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.repository.encdb.ContentWatcher
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newFileSystemProvider
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.domain.PropertyFactory
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class KotpassDatabaseTransactionTest {
+
+    @Test
+    fun `transaction should commit and notify once`() {
+        // arrange
+        val writeCount = AtomicInteger(0)
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(onWrite = { writeCount.incrementAndGet() })
+        )
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val batches = CopyOnWriteArrayList<List<ContentWatcher.Change<Note>>>()
+        db.noteDao.contentWatcher.subscribe(
+            object : ContentWatcher.OnContentChangeListener<Note> {
+                override fun onContentChanged(changes: List<ContentWatcher.Change<Note>>) {
+                    batches.add(changes)
+                }
+            }
+        )
+
+        // act
+        val result = db.transaction {
+            repeat(NOTE_COUNT) { idx ->
+                db.noteDao.insert(newNote(groupUid, "Note $idx"))
+            }
+            OperationResult.success(true)
+        }
+
+        // assert
+        assertThat(result.isSucceeded).isTrue()
+        assertThat(writeCount.get()).isEqualTo(1)
+        assertThat(batches).hasSize(1)
+        assertThat(batches.first()).hasSize(NOTE_COUNT)
+        assertThat(db.noteDao.getNotesByGroupUid(groupUid).obj.size).isEqualTo(
+            ENTRIES_PER_GROUP + NOTE_COUNT
+        )
+    }
+
+    @Test
+    fun `transaction should discard changes if failed`() {
+        // arrange
+        val writeCount = AtomicInteger(0)
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(onWrite = { writeCount.incrementAndGet() })
+        )
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val initialVersion = db.getSnapshot().version
+
+        // act
+        val result = db.transaction {
+            db.noteDao.insert(newNote(groupUid, "Note"))
+            OperationResult.error<Boolean>(newDbError("Error"))
+        }
+
+        // assert
+        assertThat(result.isFailed).isTrue()
+        assertThat(writeCount.get()).isEqualTo(0)
+        assertThat(db.getSnapshot().version).isEqualTo(initialVersion)
+        assertThat(db.noteDao.getNotesByGroupUid(groupUid).obj.size).isEqualTo(
+            ENTRIES_PER_GROUP
+        )
+    }
+
+    @Test
+    fun `transaction should notify watchers if write is failed`() {
+        // arrange
+        val writeCount = AtomicInteger(0)
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(
+                onWrite = { writeCount.incrementAndGet() },
+                isWriteFailed = true
+            )
+        )
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val note = newNote(groupUid, "Unique Title")
+
+        // act
+        val result = db.transaction {
+            db.noteDao.insert(
+                note.copy(
+                    properties = note.properties + listOf(
+                        PropertyFactory.createUrlProperty(URL)
+                    )
+                )
+            )
+        }
+
+        // assert
+        assertThat(result.isFailed).isTrue()
+        assertThat(writeCount.get()).isEqualTo(1)
+
+        val notes = db.noteDao.getNotesByGroupUid(groupUid).obj
+        val noteUid = notes.first { it.title == "Unique Title" }.uid
+        assertThat(notes.size).isEqualTo(ENTRIES_PER_GROUP + 1)
+        assertThat(db.searchIndex.findCandidates("unique")).containsExactly(noteUid)
+        assertThat(db.autofillIndex.findByDomain(DOMAIN)).containsExactly(noteUid)
+    }
+
+    @Test
+    fun `insert should add notes in a single commit`() {
+        // arrange
+        val writeCount = AtomicInteger(0)
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(onWrite = { writeCount.incrementAndGet() })
+        )
+        val groupUids = db.getRawRootGroup().groups.map { group -> group.uuid }
+        val notes = (0 until NOTE_COUNT).map { idx ->
+            newNote(groupUids[idx % groupUids.size], "Note $idx")
+        }
+
+        // act
+        val result = db.noteDao.insert(notes)
+
+        // assert
+        assertThat(result.isSucceeded).isTrue()
+        assertThat(writeCount.get()).isEqualTo(1)
+        assertThat(db.noteDao.all.obj.size).isEqualTo(
+            GROUP_COUNT * ENTRIES_PER_GROUP + NOTE_COUNT
+        )
+    }
+
+    @Test
+    fun `commitAsync should be completed after changes are written`() {
+        // arrange
+        val writeCount = AtomicInteger(0)
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(onWrite = { writeCount.incrementAndGet() })
+        )
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val note = db.noteDao.getNotesByGroupUid(groupUid).obj.first()
+
+        // act
+        val updateResult = db.noteDao.update(note.copy(title = "New Title"), false)
+        val writeCountBeforeCommit = writeCount.get()
+        val commitResult = runBlocking { db.commitAsync().await() }
+
+        // assert
+        assertThat(updateResult.isSucceeded).isTrue()
+        assertThat(commitResult.isSucceeded).isTrue()
+        assertThat(writeCountBeforeCommit).isEqualTo(0)
+        assertThat(writeCount.get()).isEqualTo(1)
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 5
+        private const val ENTRIES_PER_GROUP = 10
+        private const val NOTE_COUNT = 100
+        private const val DOMAIN = "login.domain.com"
+        private const val URL = "https://$DOMAIN/path"
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Attachment
+import com.ivanovsky.passnotes.data.entity.AttachmentSource
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.util.ShaUtils
+import org.junit.Test
+
+class KotpassNoteDaoAttachmentTest {
+
+    @Test
+    fun `attachment should be read from binary pool`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(groupCount = 1, entriesPerGroup = 1))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val content = CONTENT.toByteArray()
+        val hash = ShaUtils.sha256(content)
+        val note = newNote(groupUid, "Note").copy(
+            attachments = listOf(
+                Attachment(
+                    uid = hash.toString(),
+                    name = FILE_NAME,
+                    hash = hash,
+                    size = content.size.toLong(),
+                    source = AttachmentSource.InMemory(content)
+                )
+            )
+        )
+        val noteUid = db.noteDao.insert(note).obj
+
+        // act
+        val attachment = db.noteDao.getNoteByUid(noteUid).obj.attachments.first()
+        val stream = db.noteDao.openAttachment(attachment).obj
+
+        // assert
+        assertThat(attachment.source).isEqualTo(AttachmentSource.BinaryPool)
+        assertThat(attachment.size).isEqualTo(content.size.toLong())
+        assertThat(stream.use { it.readBytes() }).isEqualTo(content)
+    }
+
+    @Test
+    fun `insert should fail if attachment can't be read`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(groupCount = 1, entriesPerGroup = 1))
+        val group = db.getRawRootGroup().groups.first()
+        val binaries = db.getSnapshot().binaries
+        val content = CONTENT.toByteArray()
+        val hash = ShaUtils.sha256(content)
+        val note = newNote(group.uuid, "Note").copy(
+            attachments = listOf(
+                Attachment(
+                    uid = hash.toString(),
+                    name = FILE_NAME,
+                    hash = hash,
+                    size = content.size.toLong(),
+                    source = AttachmentSource.CachedFile(MISSING_FILE_PATH)
+                )
+            )
+        )
+
+        // act
+        val result = db.noteDao.insert(note)
+
+        // assert
+        assertThat(result.isFailed).isTrue()
+        assertThat(db.getRawGroupByUid(group.uuid).obj.entries).isEqualTo(group.entries)
+        assertThat(db.getSnapshot().binaries).isEqualTo(binaries)
+    }
+
+    companion object {
+        private const val FILE_NAME = "file.txt"
+        private const val CONTENT = "file-content"
+        private const val MISSING_FILE_PATH = "/missing/file.txt"
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.domain.entity.PropertyFilter
+import org.junit.Test
+
+class KotpassNoteDaoSummaryTest {
+
+    @Test
+    fun `getSummariesByGroupUid should return the same list fields as notes`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+
+        // act
+        val notes = db.noteDao.getNotesByGroupUid(groupUid).obj
+        val summaries = db.noteDao.getSummariesByGroupUid(groupUid).obj
+
+        // assert
+        assertThat(summaries.map { it.uid }).isEqualTo(notes.map { it.uid })
+        assertThat(summaries.map { it.title }).isEqualTo(notes.map { it.title })
+        assertThat(summaries.map { it.description }).isEqualTo(
+            notes.map { note ->
+                DESCRIPTION_FILTER.apply(note.properties).firstOrNull()?.value ?: ""
+            }
+        )
+        assertThat(summaries.map { it.isOtpEnabled }).isEqualTo(
+            notes.map { note -> note.properties.any { it.type == PropertyType.OTP } }
+        )
+        assertThat(summaries.map { it.modified }).isEqualTo(notes.map { it.modified })
+        assertThat(summaries.map { it.attachmentCount }).isEqualTo(
+            notes.map { it.attachments.size }
+        )
+    }
+
+    @Test
+    fun `getAllSummaries should return summary for every note`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+
+        // act
+        val notes = db.noteDao.all.obj
+        val summaries = db.noteDao.allSummaries.obj
+
+        // assert
+        assertThat(summaries.map { it.uid }).containsExactlyElementsIn(notes.map { it.uid })
+        assertThat(summaries.map { it.groupUid }).containsExactlyElementsIn(
+            notes.map { it.groupUid }
+        )
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 3
+        private const val ENTRIES_PER_GROUP = 5
+
+        private val DESCRIPTION_FILTER = PropertyFilter.Builder()
+            .filterByType(PropertyType.USER_NAME, PropertyType.URL, PropertyType.NOTES)
+            .notEmpty()
+            .sortedByType()
+            .build()
+    }
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.database.modifiers.modifyGroup
+import app.keemobile.kotpass.models.Group as RawGroup
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.GroupEntity
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newFileSystemProvider
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawEntry
+import com.ivanovsky.passnotes.domain.search.StrictEntryMatcher
+import com.ivanovsky.passnotes.domain.search.query.FieldQueryMatcher
+import com.ivanovsky.passnotes.domain.search.query.SearchPlan
+import com.ivanovsky.passnotes.domain.search.query.SearchQueryParser
+import java.util.UUID
+import kotlinx.coroutines.runBlocking
+import org.junit.Ignore
+import org.junit.Test
+
+class KotpassSearchIndexTest {
+
+    @Test
+    fun `match should return the same entries with and without index`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val entries = db.getAllEntries()
+        val indexMatcher = StrictEntryMatcher(
+            indexProvider = { db.searchIndex },
+            propertiesProvider = { note -> db.getNoteProperties(note) }
+        )
+        val scanMatcher = StrictEntryMatcher(
+            propertiesProvider = { note -> db.getNoteProperties(note) }
+        )
+
+        for (query in QUERIES) {
+            // act
+            val indexResult = runBlocking { indexMatcher.match(query, entries) }
+            val scanResult = runBlocking { scanMatcher.match(query, entries) }
+
+            // assert
+            assertThat(indexResult).containsExactlyElementsIn(scanResult).inOrder()
+        }
+    }
+
+    @Test
+    fun `index should be updated when notes are inserted and removed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val noteUid = db.noteDao.insert(newNote(groupUid, "Unique Title")).obj
+
+        // act
+        val afterInsert = db.searchIndex.findCandidates("unique")
+        db.noteDao.remove(noteUid)
+        val afterRemove = db.searchIndex.findCandidates("unique")
+
+        // assert
+        assertThat(afterInsert).containsExactly(noteUid)
+        assertThat(afterRemove).isEmpty()
+    }
+
+    @Test
+    fun `index should be updated when group with notes is removed`() {
+        // arrange
+        val rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val group = rawDb.content.group.groups.first()
+        val nestedGroup = RawGroup(
+            uuid = UUID.randomUUID(),
+            name = "Nested Group",
+            entries = listOf(newRawEntry(title = "Nested Entry"))
+        )
+        val db = newDatabase(
+            rawDb.modifyGroup(group.uuid) {
+                copy(groups = groups + nestedGroup)
+            }
+        )
+        val removedUids = listOf(group.uuid, nestedGroup.uuid) +
+            (group.entries + nestedGroup.entries).map { entry -> entry.uuid }
+        val sizeBeforeRemove = db.searchIndex.size
+
+        // act
+        val removeResult = db.groupDao.remove(group.uuid)
+
+        // assert
+        assertThat(removeResult.isSucceeded).isTrue()
+        assertThat(db.searchIndex.size).isEqualTo(sizeBeforeRemove - removedUids.size)
+        assertThat(db.searchIndex.findCandidates("nested")).isEmpty()
+        assertThat(db.searchIndex.findCandidates("entry")).containsNoneIn(removedUids)
+    }
+
+    @Test
+    fun `index should be updated if write is failed`() {
+        // arrange
+        val db = newDatabase(
+            rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP),
+            fsProvider = newFileSystemProvider(isWriteFailed = true)
+        )
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val note = db.noteDao.getNotesByGroupUid(groupUid).obj.first()
+
+        // act
+        val updateResult = db.noteDao.update(note.copy(title = "Unique Note"), true)
+        val insertResult = db.groupDao.insert(
+            GroupEntity(
+                parentUid = groupUid,
+                title = "Unique Group",
+                autotypeEnabled = InheritableBooleanOption.ENABLED,
+                searchEnabled = InheritableBooleanOption.ENABLED
+            )
+        )
+
+        // assert
+        val insertedGroup = db.groupDao.all.obj.first { group -> group.title == "Unique Group" }
+        assertThat(updateResult.isFailed).isTrue()
+        assertThat(insertResult.isFailed).isTrue()
+        assertThat(db.searchIndex.findCandidates("unique"))
+            .containsExactly(note.uid, insertedGroup.uid)
+    }
+
+    @Test
+    fun `filter should return the same entries with and without index`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val entries = db.getAllEntries()
+        val indexMatcher = FieldQueryMatcher(
+            indexProvider = { db.searchIndex },
+            propertiesProvider = { note -> db.getNoteProperties(note) }
+        )
+        val scanMatcher = FieldQueryMatcher(
+            propertiesProvider = { note -> db.getNoteProperties(note) }
+        )
+
+        for (query in FIELD_QUERIES) {
+            val plan = SearchPlan.create(SearchQueryParser.parse(query))
+
+            // act
+            val indexResult = indexMatcher.filter(plan, entries)
+            val scanResult = scanMatcher.filter(plan, entries)
+
+            // assert
+            assertThat(indexResult).containsExactlyElementsIn(scanResult).inOrder()
+        }
+    }
+
+    @Ignore("Benchmark, should be run manually")
+    @Test
+    fun `measure match with index and full scan`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(LARGE_GROUP_COUNT, ENTRIES_PER_GROUP))
+        val entries = db.getAllEntries()
+        val indexMatcher = StrictEntryMatcher(
+            indexProvider = { db.searchIndex },
+            propertiesProvider = { note -> db.getNoteProperties(note) }
+        )
+        val scanMatcher = StrictEntryMatcher(
+            propertiesProvider = { note -> db.getNoteProperties(note) }
+        )
+
+        // act
+        val indexNanos = measureMatch(indexMatcher, entries)
+        val scanNanos = measureMatch(scanMatcher, entries)
+
+        println(
+            "StrictEntryMatcher: entries=${entries.size}, " +
+                "index=${indexNanos / 1000}us, scan=${scanNanos / 1000}us"
+        )
+    }
+
+    private fun KotpassDatabase.getAllEntries(): List<EncryptedDatabaseEntry> {
+        return noteDao.allSummaries.obj + groupDao.all.obj
+    }
+
+    private fun KotpassDatabase.getNoteProperties(note: NoteSummary): List<Property> {
+        return noteDao.getNoteByUid(note.uid).obj.properties
+    }
+
+    private fun measureMatch(
+        matcher: StrictEntryMatcher,
+        entries: List<EncryptedDatabaseEntry>
+    ): Long {
+        return runBlocking {
+            repeat(WARMUP_ITERATIONS) {
+                matcher.match(SELECTIVE_QUERY, entries)
+            }
+
+            val start = System.nanoTime()
+            repeat(ITERATIONS) {
+                matcher.match(SELECTIVE_QUERY, entries)
+            }
+            val end = System.nanoTime()
+
+            (end - start) / ITERATIONS
+        }
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 20
+        private const val LARGE_GROUP_COUNT = 1_000
+        private const val ENTRIES_PER_GROUP = 20
+        private const val WARMUP_ITERATIONS = 5
+        private const val ITERATIONS = 20
+        private const val SELECTIVE_QUERY = "Entry 42.7"
+        private val FIELD_QUERIES = listOf(
+            "title:entry",
+            "title:\"Entry 3.1\"",
+            "url:example.com",
+            "user:user title:group",
+            "title:Group",
+            "url:missing"
+        )
+        private val QUERIES = listOf(
+            "e",
+            "en",
+            "ENTRY",
+            "Entry 1",
+            "entry 12.",
+            "group 3",
+            "example.COM",
+            "user",
+            "missing"
+        )
+    }
+}
\ No newline at end of file
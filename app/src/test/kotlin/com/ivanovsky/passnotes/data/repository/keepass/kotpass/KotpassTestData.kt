@@ -0,0 +1,137 @@
+package com.ivanovsky.passnotes.data.repository.keepass.kotpass
+
+import app.keemobile.kotpass.cryptography.EncryptedValue
+import app.keemobile.kotpass.database.Credentials
+import app.keemobile.kotpass.database.KeePassDatabase
+import app.keemobile.kotpass.database.modifiers.modifyGroup
+import app.keemobile.kotpass.models.Entry as RawEntry
+import app.keemobile.kotpass.models.EntryFields
+import app.keemobile.kotpass.models.EntryValue
+import app.keemobile.kotpass.models.Group as RawGroup
+import app.keemobile.kotpass.models.Meta
+import com.ivanovsky.passnotes.data.entity.FSAuthority
+import com.ivanovsky.passnotes.data.entity.FileDescriptor
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.OperationError.newGenericIOError
+import com.ivanovsky.passnotes.data.entity.OperationResult
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.file.FSOptions
+import com.ivanovsky.passnotes.data.repository.file.FileSystemProvider
+import com.ivanovsky.passnotes.data.repository.file.FileSystemResolver
+import com.ivanovsky.passnotes.data.repository.keepass.PasswordKeepassKey
+import io.mockk.every
+import io.mockk.mockk
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+import java.util.Date
+import java.util.UUID
+
+object KotpassTestData {
+
+    private const val PASSWORD = "abc123"
+
+    val FILE = FileDescriptor(
+        fsAuthority = FSAuthority.INTERNAL_FS_AUTHORITY,
+        path = "/test.kdbx",
+        uid = "/test.kdbx",
+        name = "test.kdbx",
+        isDirectory = false,
+        isRoot = false
+    )
+
+    fun newRawDatabase(
+        groupCount: Int,
+        entriesPerGroup: Int
+    ): KeePassDatabase {
+        val db = KeePassDatabase.Ver4x.create(
+            rootName = "Database",
+            meta = Meta(),
+            credentials = Credentials.from(EncryptedValue.fromString(PASSWORD))
+        )
+
+        val groups = (0 until groupCount).map { groupIdx ->
+            RawGroup(
+                uuid = UUID.randomUUID(),
+                name = "Group $groupIdx",
+                entries = (0 until entriesPerGroup).map { entryIdx ->
+                    newRawEntry(title = "Entry $groupIdx.$entryIdx")
+                }
+            )
+        }
+
+        return db.modifyGroup(db.content.group.uuid) {
+            copy(groups = groups)
+        }
+    }
+
+    fun newRawEntry(
+        title: String,
+        uid: UUID = UUID.randomUUID()
+    ): RawEntry {
+        return RawEntry(
+            uuid = uid,
+            fields = EntryFields(
+                mapOf(
+                    PropertyType.TITLE.propertyName to EntryValue.Plain(title),
+                    PropertyType.USER_NAME.propertyName to EntryValue.Plain("user"),
+                    PropertyType.URL.propertyName to EntryValue.Plain("https://example.com")
+                )
+            )
+        )
+    }
+
+    fun newNote(
+        groupUid: UUID,
+        title: String
+    ): Note {
+        return Note(
+            groupUid = groupUid,
+            created = Date(),
+            modified = Date(),
+            expiration = null,
+            title = title,
+            properties = listOf(
+                Property(
+                    type = PropertyType.TITLE,
+                    name = PropertyType.TITLE.propertyName,
+                    value = title
+                )
+            )
+        )
+    }
+
+    fun newFileSystemProvider(
+        onWrite: () -> Unit = {},
+        isWriteFailed: Boolean = false
+    ): FileSystemProvider {
+        val provider = mockk<FileSystemProvider>()
+
+        every { provider.openFileForWrite(any(), any(), any()) } answers {
+            onWrite.invoke()
+            if (isWriteFailed) {
+                OperationResult.error(newGenericIOError("Failed to write"))
+            } else {
+                OperationResult.success<OutputStream>(ByteArrayOutputStream())
+            }
+        }
+
+        return provider
+    }
+
+    fun newDatabase(
+        rawDb: KeePassDatabase,
+        fsProvider: FileSystemProvider = newFileSystemProvider()
+    ): KotpassDatabase {
+        val fsResolver = mockk<FileSystemResolver>()
+        every { fsResolver.resolveProvider(any()) } returns fsProvider
+
+        return KotpassDatabase(
+            fsResolver = fsResolver,
+            fsOptions = FSOptions.NO_CACHE,
+            file = FILE,
+            key = PasswordKeepassKey(PASSWORD),
+            db = rawDb
+        )
+    }
+}
\ No newline at end of file
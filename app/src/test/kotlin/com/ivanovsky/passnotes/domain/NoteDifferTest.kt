@@ -2,6 +2,7 @@ package com.ivanovsky.passnotes.domain
 
 import com.google.common.truth.Truth.assertThat
 import com.ivanovsky.passnotes.data.entity.Attachment
+import com.ivanovsky.passnotes.data.entity.AttachmentSource
 import com.ivanovsky.passnotes.data.entity.Hash
 import com.ivanovsky.passnotes.data.entity.HashType
 import com.ivanovsky.passnotes.data.entity.Note
@@ -109,28 +110,32 @@ class NoteDifferTest {
             uid = "file1-uid",
             name = "file1.txt",
             hash = Hash("hash1".toByteArray(), HashType.SHA_256),
-            data = "file1-content".toByteArray()
+            size = 13,
+            source = AttachmentSource.InMemory("file1-content".toByteArray())
         )
 
         val SECOND = Attachment(
             uid = "file2-uid",
             name = "file2.txt",
             hash = Hash("hash2".toByteArray(), HashType.SHA_256),
-            data = "file2-content".toByteArray()
+            size = 13,
+            source = AttachmentSource.InMemory("file2-content".toByteArray())
         )
 
         val THIRD = Attachment(
             uid = "file3-uid",
             name = "file3.txt",
             hash = Hash("hash3".toByteArray(), HashType.SHA_256),
-            data = "file3-content".toByteArray()
+            size = 13,
+            source = AttachmentSource.InMemory("file3-content".toByteArray())
         )
 
         val FOURTH = Attachment(
             uid = "file4-uid",
             name = "file4.txt",
             hash = Hash("hash4".toByteArray(), HashType.SHA_256),
-            data = "file4-content".toByteArray()
+            size = 13,
+            source = AttachmentSource.InMemory("file4-content".toByteArray())
         )
     }
 
@@ -0,0 +1,151 @@
+package com.ivanovsky.passnotes.domain.autofill
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.repository.encdb.AutofillIndex
+import com.ivanovsky.passnotes.domain.PropertyFactory
+import com.ivanovsky.passnotes.domain.entity.DomainMatchType
+import java.io.File
+import java.util.Date
+import java.util.UUID
+import org.junit.Ignore
+import org.junit.Test
+
+class DomainMatcherTest {
+
+    private val matcher = DomainMatcher(
+        PublicSuffixList { File(PUBLIC_SUFFIX_LIST_PATH).inputStream() }
+    )
+
+    @Test
+    fun `getLookupDomains should return domains until registrable domain`() {
+        assertThat(matcher.getLookupDomains("https://a.login.example.co.uk/path"))
+            .containsExactly("a.login.example.co.uk", "login.example.co.uk", "example.co.uk")
+            .inOrder()
+        assertThat(matcher.getLookupDomains("example.com")).containsExactly("example.com")
+        assertThat(matcher.getLookupDomains("user.github.io")).containsExactly("user.github.io")
+        assertThat(matcher.getLookupDomains("invalid")).isEmpty()
+    }
+
+    @Test
+    fun `getMatchType should return the strongest match`() {
+        assertThat(matcher.getMatchType("login.example.co.uk", "https://login.example.co.uk"))
+            .isEqualTo(DomainMatchType.EXACT_HOST)
+        assertThat(matcher.getMatchType("login.example.co.uk", "https://example.co.uk"))
+            .isEqualTo(DomainMatchType.REGISTRABLE_DOMAIN)
+        assertThat(matcher.getMatchType("example.co.uk", "https://example.co.uk.other.com"))
+            .isEqualTo(DomainMatchType.SUBSTRING)
+        assertThat(matcher.getMatchType("example.co.uk", "https://other.co.uk")).isNull()
+        assertThat(matcher.getMatchType("first.github.io", "https://second.github.io"))
+            .isNull()
+        assertThat(matcher.getMatchType("first.myshopify.com", "https://second.myshopify.com"))
+            .isNull()
+    }
+
+    @Test
+    fun `index lookup should return notes of url corpus`() {
+        // arrange
+        val urls = newUrlCorpus(CORPUS_SIZE)
+        val index = AutofillIndex()
+        val uids = urls.map { url -> index.putNewNote(url) }
+        val queries = newQueries(urls)
+        val expected = queries.map { query -> uids[urls.indexOf(query)] }
+
+        // act
+        val result = queries.map { query -> index.lookup(query) }
+
+        // assert
+        assertThat(result).containsExactlyElementsIn(expected).inOrder()
+    }
+
+    @Ignore("Benchmark, should be run manually")
+    @Test
+    fun `measure index lookup and scan of url corpus`() {
+        // arrange
+        val urls = newUrlCorpus(LARGE_CORPUS_SIZE)
+        val index = AutofillIndex()
+        urls.forEach { url -> index.putNewNote(url) }
+        val queries = newQueries(urls)
+
+        // act
+        val indexNanos = measure {
+            for (query in queries) {
+                index.lookup(query)
+            }
+        }
+        val scanNanos = measure {
+            for (query in queries) {
+                urls.indexOfFirst { url ->
+                    matcher.getMatchType(query, url) == DomainMatchType.EXACT_HOST
+                }
+            }
+        }
+
+        println(
+            "DomainMatcher: urls=${urls.size}, queries=${queries.size}, " +
+                "index=${indexNanos / 1000}us, scan=${scanNanos / 1000}us"
+        )
+    }
+
+    private fun AutofillIndex.putNewNote(url: String): UUID {
+        val note = newNote(url)
+        putNote(note)
+        return requireNotNull(note.uid)
+    }
+
+    private fun AutofillIndex.lookup(query: String): UUID? {
+        return matcher.getLookupDomains(query)
+            .firstNotNullOfOrNull { domain -> findByDomain(domain).firstOrNull() }
+    }
+
+    private fun newQueries(urls: List<String>): List<String> {
+        return (0 until QUERY_COUNT).map { i -> urls[i * (urls.size / QUERY_COUNT)] }
+    }
+
+    private fun newUrlCorpus(size: Int): List<String> {
+        return (0 until size).map { i ->
+            val suffix = SUFFIXES[i % SUFFIXES.size]
+            "https://login$i.site${i / SUFFIXES.size}.$suffix/path?id=$i"
+        }
+    }
+
+    private fun newNote(url: String): Note {
+        return Note(
+            uid = UUID.randomUUID(),
+            groupUid = UUID.randomUUID(),
+            created = Date(),
+            modified = Date(),
+            expiration = null,
+            title = url,
+            properties = listOf(PropertyFactory.createUrlProperty(url))
+        )
+    }
+
+    private fun measure(block: () -> Unit): Long {
+        repeat(WARMUP_ITERATIONS) { block.invoke() }
+
+        val start = System.nanoTime()
+        repeat(ITERATIONS) { block.invoke() }
+        val end = System.nanoTime()
+
+        return (end - start) / ITERATIONS
+    }
+
+    companion object {
+        private const val PUBLIC_SUFFIX_LIST_PATH = "src/main/assets/public_suffix_list.dat"
+        private const val CORPUS_SIZE = 1_000
+        private const val LARGE_CORPUS_SIZE = 20_000
+        private const val QUERY_COUNT = 20
+        private const val WARMUP_ITERATIONS = 2
+        private const val ITERATIONS = 5
+        private val SUFFIXES = listOf(
+            "com",
+            "co.uk",
+            "com.au",
+            "github.io",
+            "herokuapp.com",
+            "de",
+            "co.jp"
+        )
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.ivanovsky.passnotes.domain.autofill
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class PublicSuffixListTest {
+
+    @Test
+    fun `getRegistrableDomain should return domain with one label before public suffix`() {
+        // arrange
+        val list = newPublicSuffixList()
+
+        // act, assert
+        assertThat(list.getRegistrableDomain("example.com")).isEqualTo("example.com")
+        assertThat(list.getRegistrableDomain("login.example.com")).isEqualTo("example.com")
+        assertThat(list.getRegistrableDomain("login.example.co.uk")).isEqualTo("example.co.uk")
+        assertThat(list.getRegistrableDomain("example.co.uk")).isEqualTo("example.co.uk")
+        assertThat(list.getRegistrableDomain("user.github.io")).isEqualTo("user.github.io")
+    }
+
+    @Test
+    fun `getRegistrableDomain should use default rule for unknown suffix`() {
+        // arrange
+        val list = newPublicSuffixList()
+
+        // act, assert
+        assertThat(list.getRegistrableDomain("login.example.unknown"))
+            .isEqualTo("example.unknown")
+        assertThat(list.getPublicSuffix("login.example.unknown")).isEqualTo("unknown")
+    }
+
+    @Test
+    fun `getRegistrableDomain should apply wildcard and exception rules`() {
+        // arrange
+        val list = newPublicSuffixList()
+
+        // act, assert
+        assertThat(list.getPublicSuffix("login.example.ck")).isEqualTo("example.ck")
+        assertThat(list.getRegistrableDomain("login.example.ck")).isEqualTo("login.example.ck")
+        assertThat(list.getPublicSuffix("www.ck")).isEqualTo("ck")
+        assertThat(list.getRegistrableDomain("login.www.ck")).isEqualTo("www.ck")
+    }
+
+    @Test
+    fun `getRegistrableDomain should return null for public suffix`() {
+        // arrange
+        val list = newPublicSuffixList()
+
+        // act, assert
+        assertThat(list.getRegistrableDomain("com")).isNull()
+        assertThat(list.getRegistrableDomain("co.uk")).isNull()
+        assertThat(list.getRegistrableDomain("github.io")).isNull()
+        assertThat(list.getRegistrableDomain("example.ck")).isNull()
+    }
+
+    @Test
+    fun `getRegistrableDomain should return null for invalid host`() {
+        // arrange
+        val list = newPublicSuffixList()
+
+        // act, assert
+        assertThat(list.getRegistrableDomain("")).isNull()
+        assertThat(list.getRegistrableDomain("example..com")).isNull()
+        assertThat(list.getRegistrableDomain("192.168.0.1")).isNull()
+    }
+
+    private fun newPublicSuffixList(): PublicSuffixList {
+        return PublicSuffixList { RULES.byteInputStream() }
+    }
+
+    companion object {
+        private val RULES = """
+            // ===BEGIN ICANN DOMAINS===
+            com
+            io
+            uk
+            co.uk
+            *.ck
+            !www.ck
+
+            // ===BEGIN PRIVATE DOMAINS===
+            github.io
+        """.trimIndent()
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import java.util.Date
+import java.util.UUID
+import org.junit.Test
+
+class FuzzySearchCorpusTest {
+
+    @Test
+    fun `getShards should return titles followed by content`() {
+        // arrange
+        val corpus = FuzzySearchCorpus(PROPERTIES_PROVIDER)
+        val entries = listOf(
+            newNote("GitHub", "user"),
+            newNote("GitLab", "admin"),
+            newNote("Gmail", "guest")
+        )
+
+        // act
+        val shards = corpus.getShards(entries, VERSION, shardSize = 2)
+
+        // assert
+        assertThat(shards).hasSize(2)
+        assertThat(shards[0].offset).isEqualTo(0)
+        assertThat(shards[0].texts).containsExactly(
+            "GitHub",
+            "GitLab",
+            "UserName user",
+            "UserName admin"
+        ).inOrder()
+        assertThat(shards[1].offset).isEqualTo(2)
+        assertThat(shards[1].texts).containsExactly("Gmail", "UserName guest").inOrder()
+    }
+
+    @Test
+    fun `getShards should reuse texts of unchanged entries after version change`() {
+        // arrange
+        val corpus = FuzzySearchCorpus(PROPERTIES_PROVIDER)
+        val first = newNote("GitHub", "user")
+        val second = newNote("GitLab", "admin")
+        val oldTexts = corpus.getShards(listOf(first, second), VERSION, SHARD_SIZE).first().texts
+
+        // act
+        val changedSecond = second.copy(title = "Bitbucket")
+        val newTexts = corpus.getShards(listOf(first, changedSecond), VERSION + 1, SHARD_SIZE)
+            .first()
+            .texts
+
+        // assert
+        assertThat(newTexts[0]).isSameInstanceAs(oldTexts[0])
+        assertThat(newTexts[1]).isEqualTo("Bitbucket")
+    }
+
+    private fun newNote(title: String, userName: String): NoteSummary {
+        return NoteSummary(
+            uid = UUID.randomUUID(),
+            groupUid = UUID.randomUUID(),
+            created = Date(),
+            modified = Date(),
+            expiration = null,
+            title = title,
+            description = userName,
+            isOtpEnabled = false,
+            attachmentCount = 0
+        )
+    }
+
+    companion object {
+        private const val VERSION = 1L
+        private const val SHARD_SIZE = 10
+
+        private val PROPERTIES_PROVIDER: (NoteSummary) -> List<Property> = { note ->
+            listOf(Property(name = "UserName", value = note.description))
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.data.entity.Property
+import java.util.Date
+import java.util.UUID
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class Fzf4jFuzzyEntryMatcherTest {
+
+    @Test
+    fun `matchProgressively should emit title matches before content matches`() {
+        // arrange
+        val github = newNote("GitHub", "user")
+        val gitlab = newNote("GitLab", "admin")
+        val mail = newNote("Mail", "git-user")
+        val bank = newNote("Bank", "admin")
+        val matcher = Fzf4jFuzzyEntryMatcher(propertiesProvider = PROPERTIES_PROVIDER)
+
+        // act
+        val results = runBlocking {
+            matcher.matchProgressively(
+                query = "git",
+                entries = listOf(github, mail, bank, gitlab),
+                firstPageSize = 2
+            )
+                .toList()
+        }
+
+        // assert
+        assertThat(results).hasSize(2)
+        assertThat(results[0].isComplete).isFalse()
+        assertThat(results[0].entries).containsExactly(github, gitlab)
+        assertThat(results[1].isComplete).isTrue()
+        assertThat(results[1].entries).containsExactly(
+            results[0].entries[0],
+            results[0].entries[1],
+            mail
+        ).inOrder()
+    }
+
+    @Test
+    fun `matchProgressively should not match content if max results are matched by title`() {
+        // arrange
+        val github = newNote("GitHub", "user")
+        val mail = newNote("Mail", "git-user")
+        val matcher = Fzf4jFuzzyEntryMatcher(
+            maxResults = 1,
+            propertiesProvider = PROPERTIES_PROVIDER
+        )
+
+        // act
+        val results = runBlocking {
+            matcher.matchProgressively(
+                query = "git",
+                entries = listOf(mail, github),
+                firstPageSize = 1
+            )
+                .toList()
+        }
+
+        // assert
+        assertThat(results).hasSize(1)
+        assertThat(results[0].isComplete).isTrue()
+        assertThat(results[0].entries).containsExactly(github)
+    }
+
+    @Test
+    fun `match should return max results of all shard chunks`() {
+        // arrange
+        val entries = (0 until ENTRY_COUNT).map { idx -> newNote("Entry $idx", "user") }
+            .toMutableList()
+        val matchedIndices = listOf(10, ENTRY_COUNT / 2, ENTRY_COUNT - 1)
+        for (idx in matchedIndices) {
+            entries[idx] = newNote("GitHub $idx", "user")
+        }
+        val matcher = Fzf4jFuzzyEntryMatcher(
+            maxResults = 2,
+            propertiesProvider = PROPERTIES_PROVIDER
+        )
+
+        // act
+        val result = runBlocking { matcher.match("github", entries) }
+
+        // assert
+        assertThat(result).hasSize(2)
+        assertThat(matchedIndices.map { idx -> entries[idx] }).containsAtLeastElementsIn(result)
+    }
+
+    private fun newNote(title: String, userName: String): NoteSummary {
+        return NoteSummary(
+            uid = UUID.randomUUID(),
+            groupUid = UUID.randomUUID(),
+            created = Date(),
+            modified = Date(),
+            expiration = null,
+            title = title,
+            description = userName,
+            isOtpEnabled = false,
+            attachmentCount = 0
+        )
+    }
+
+    companion object {
+        private const val ENTRY_COUNT = 1000
+        private val PROPERTIES_PROVIDER: (NoteSummary) -> List<Property> = { note ->
+            listOf(Property(name = "UserName", value = note.description))
+        }
+    }
+}
\ No newline at end of file
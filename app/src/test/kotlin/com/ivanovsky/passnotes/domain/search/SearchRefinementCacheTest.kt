@@ -0,0 +1,90 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.domain.entity.SearchType
+import java.util.UUID
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class SearchRefinementCacheTest {
+
+    @Test
+    fun `getCandidates should return previous result if query is extended`() {
+        // arrange
+        val cache = SearchRefinementCache()
+        val entries = newEntries()
+        val first = search(cache, "git", entries)
+
+        // act
+        val candidates = cache.getCandidates("gith", entries, SearchType.STRICT, VERSION)
+
+        // assert
+        assertThat(first).hasSize(2)
+        assertThat(candidates.cachedResult).isNull()
+        assertThat(candidates.entries).containsExactlyElementsIn(first).inOrder()
+    }
+
+    @Test
+    fun `getCandidates should return cached result after backspace`() {
+        // arrange
+        val cache = SearchRefinementCache()
+        val entries = newEntries()
+        val first = search(cache, "git", entries)
+        search(cache, "gith", entries)
+        search(cache, "githu", entries)
+
+        // act
+        val candidates = cache.getCandidates("git", entries, SearchType.STRICT, VERSION)
+
+        // assert
+        assertThat(candidates.cachedResult).isSameInstanceAs(first)
+    }
+
+    @Test
+    fun `getCandidates should ignore cache if content version is changed`() {
+        // arrange
+        val cache = SearchRefinementCache()
+        val entries = newEntries()
+        search(cache, "git", entries)
+
+        // act
+        val candidates = cache.getCandidates("gith", entries, SearchType.STRICT, VERSION + 1)
+
+        // assert
+        assertThat(candidates.cachedResult).isNull()
+        assertThat(candidates.entries).isSameInstanceAs(entries)
+    }
+
+    private fun search(
+        cache: SearchRefinementCache,
+        query: String,
+        entries: List<EncryptedDatabaseEntry>
+    ): List<EncryptedDatabaseEntry> {
+        val candidates = cache.getCandidates(query, entries, SearchType.STRICT, VERSION)
+        val result = candidates.cachedResult
+            ?: runBlocking { StrictEntryMatcher().match(query, candidates.entries) }
+        cache.put(query, result, entries)
+        return result
+    }
+
+    private fun newEntries(): List<EncryptedDatabaseEntry> {
+        return listOf("GitHub", "GitLab", "Bitbucket", "Gmail").map { title ->
+            Group(
+                uid = UUID.randomUUID(),
+                parentUid = null,
+                title = title,
+                groupCount = 0,
+                noteCount = 0,
+                autotypeEnabled = InheritableBooleanOption.ENABLED,
+                searchEnabled = InheritableBooleanOption.ENABLED
+            )
+        }
+    }
+
+    companion object {
+        private const val VERSION = 1L
+    }
+}
\ No newline at end of file
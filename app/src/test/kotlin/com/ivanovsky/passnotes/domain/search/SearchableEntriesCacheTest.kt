@@ -0,0 +1,96 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.GroupEntity
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.domain.entity.SortDirection
+import com.ivanovsky.passnotes.domain.entity.SortType
+import org.junit.Test
+
+class SearchableEntriesCacheTest {
+
+    @Test
+    fun `takeChanges should return groups of changed notes`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUids = db.getRawRootGroup().groups.map { group -> group.uuid }
+        val cache = SearchableEntriesCache()
+        cache.takeChanges(db, isRespectAutotypeProperty = false)
+
+        // act
+        db.noteDao.insert(newNote(groupUids.first(), "Note"))
+        val changes = cache.takeChanges(db, isRespectAutotypeProperty = false)
+        val otherChanges = cache.takeChanges(db, isRespectAutotypeProperty = true)
+        val emptyChanges = cache.takeChanges(db, isRespectAutotypeProperty = false)
+
+        // assert
+        assertThat(changes.groupUids).containsExactly(groupUids.first())
+        assertThat(changes.isGroupsChanged).isFalse()
+        assertThat(otherChanges.groupUids).containsExactly(groupUids.first())
+        assertThat(emptyChanges.groupUids).isEmpty()
+    }
+
+    @Test
+    fun `takeChanges should return group change flag`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val rootUid = db.getRawRootGroup().uuid
+        val cache = SearchableEntriesCache()
+        cache.takeChanges(db, isRespectAutotypeProperty = false)
+
+        // act
+        db.groupDao.insert(
+            GroupEntity(
+                parentUid = rootUid,
+                title = "Group",
+                autotypeEnabled = InheritableBooleanOption.ENABLED,
+                searchEnabled = InheritableBooleanOption.ENABLED
+            )
+        )
+        val changes = cache.takeChanges(db, isRespectAutotypeProperty = false)
+
+        // assert
+        assertThat(changes.isGroupsChanged).isTrue()
+    }
+
+    @Test
+    fun `getState should return null for another database`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val otherDb = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val cache = SearchableEntriesCache()
+        cache.getState(db, isRespectAutotypeProperty = false)
+        cache.putState(
+            db = db,
+            isRespectAutotypeProperty = false,
+            state = SearchableEntriesCache.State(
+                contentVersion = db.contentVersion,
+                sortKey = SearchableEntriesCache.SortKey(
+                    sortType = SortType.TITLE,
+                    sortDirection = SortDirection.ASCENDING,
+                    isGroupsAtStart = true
+                ),
+                notesByGroupUid = emptyMap(),
+                groups = emptyList(),
+                searchableGroupUids = emptySet(),
+                entries = emptyList()
+            )
+        )
+
+        // act
+        val state = cache.getState(db, isRespectAutotypeProperty = false)
+        val otherState = cache.getState(otherDb, isRespectAutotypeProperty = false)
+
+        // assert
+        assertThat(state).isNotNull()
+        assertThat(otherState).isNull()
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 3
+        private const val ENTRIES_PER_GROUP = 5
+    }
+}
\ No newline at end of file
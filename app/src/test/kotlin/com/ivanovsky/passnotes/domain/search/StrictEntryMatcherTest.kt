@@ -0,0 +1,49 @@
+package com.ivanovsky.passnotes.domain.search
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import java.util.UUID
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class StrictEntryMatcherTest {
+
+    @Test
+    fun `matchProgressively should emit first page before all results`() {
+        // arrange
+        val entries = (1..ENTRY_COUNT).map { idx -> newGroup("Group $idx") }
+        val matcher = StrictEntryMatcher()
+
+        // act
+        val results = runBlocking {
+            matcher.matchProgressively("group", entries, PAGE_SIZE).toList()
+        }
+
+        // assert
+        assertThat(results).hasSize(2)
+        assertThat(results[0].isComplete).isFalse()
+        assertThat(results[0].entries).containsExactlyElementsIn(entries.take(PAGE_SIZE))
+            .inOrder()
+        assertThat(results[1].isComplete).isTrue()
+        assertThat(results[1].entries).containsExactlyElementsIn(entries).inOrder()
+    }
+
+    private fun newGroup(title: String): Group {
+        return Group(
+            uid = UUID.randomUUID(),
+            parentUid = null,
+            title = title,
+            groupCount = 0,
+            noteCount = 0,
+            autotypeEnabled = InheritableBooleanOption.ENABLED,
+            searchEnabled = InheritableBooleanOption.ENABLED
+        )
+    }
+
+    companion object {
+        private const val ENTRY_COUNT = 20
+        private const val PAGE_SIZE = 5
+    }
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.ivanovsky.passnotes.domain.search.query
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class SearchQueryParserTest {
+
+    @Test
+    fun `parse should return query without fields as is`() {
+        // act
+        val query = SearchQueryParser.parse("my  bank: account")
+
+        // assert
+        assertThat(query.isFieldScoped).isFalse()
+        assertThat(query.text).isEqualTo("my  bank: account")
+    }
+
+    @Test
+    fun `parse should extract field predicates`() {
+        // act
+        val query = SearchQueryParser.parse("url:example.com user:\"John Doe\" bank expired:no")
+
+        // assert
+        assertThat(query.predicates).containsExactly(
+            FieldPredicate(QueryField.URL, "example.com"),
+            FieldPredicate(QueryField.USER, "John Doe"),
+            FieldPredicate(QueryField.EXPIRED, "no")
+        ).inOrder()
+        assertThat(query.text).isEqualTo("bank")
+    }
+
+    @Test
+    fun `parse should treat invalid predicates as text`() {
+        // act
+        val query = SearchQueryParser.parse("title:bank https://example.com expired:maybe tag:")
+
+        // assert
+        assertThat(query.predicates).containsExactly(FieldPredicate(QueryField.TITLE, "bank"))
+        assertThat(query.text).isEqualTo("https://example.com expired:maybe tag:")
+    }
+}
\ No newline at end of file
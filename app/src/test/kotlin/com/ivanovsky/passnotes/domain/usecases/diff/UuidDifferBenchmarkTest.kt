@@ -0,0 +1,194 @@
+package com.ivanovsky.passnotes.domain.usecases.diff
+
+import app.keemobile.kotpass.database.KeePassDatabase
+import app.keemobile.kotpass.database.modifiers.modifyGroup
+import app.keemobile.kotpass.models.EntryFields
+import app.keemobile.kotpass.models.EntryValue
+import app.keemobile.kotpass.models.Group as RawGroup
+import com.github.aivanovski.keepasstreediff.PathDiffer
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseElement
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawEntry
+import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffEvent
+import java.util.UUID
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runBlocking
+import org.junit.Ignore
+import org.junit.Test
+
+class UuidDifferBenchmarkTest {
+
+    @Test
+    fun `UuidDiffer should return the same events as PathDiffer`() {
+        // arrange
+        val lhsRaw = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val lhs = newDatabase(lhsRaw)
+        val rhs = newDatabase(modify(lhsRaw))
+
+        // act
+        val pathEvents = diffWithPathDiffer(lhs, rhs)
+        val uuidEvents = diffWithUuidDiffer(lhs, rhs)
+
+        // assert
+        assertThat(uuidEvents.map { event -> event.describe() })
+            .containsExactlyElementsIn(pathEvents.map { event -> event.describe() })
+    }
+
+    @Test
+    fun `UuidDiffer should return the same events as PathDiffer if group is moved`() {
+        // arrange
+        val rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val (destination, source) = rawDb.content.group.groups
+        val lhsRaw = rawDb.modifyGroup(source.uuid) {
+            copy(
+                groups = groups + RawGroup(
+                    uuid = UUID.randomUUID(),
+                    name = "Nested Group",
+                    entries = listOf(newRawEntry(title = "Nested Entry"))
+                )
+            )
+        }
+        val movedGroup = lhsRaw.content.group.groups.first { group -> group.uuid == source.uuid }
+        val rhsRaw = lhsRaw
+            .modifyGroup(lhsRaw.content.group.uuid) {
+                copy(groups = groups.filter { group -> group.uuid != movedGroup.uuid })
+            }
+            .modifyGroup(destination.uuid) {
+                copy(groups = groups + movedGroup)
+            }
+        val lhs = newDatabase(lhsRaw)
+        val rhs = newDatabase(rhsRaw)
+
+        // act
+        val pathEvents = diffWithPathDiffer(lhs, rhs)
+        val uuidEvents = diffWithUuidDiffer(lhs, rhs)
+
+        // assert
+        assertThat(uuidEvents).hasSize(2 * (ENTRIES_PER_GROUP + 3))
+        assertThat(uuidEvents.map { event -> event.describe() })
+            .containsExactlyElementsIn(pathEvents.map { event -> event.describe() })
+    }
+
+    @Ignore("Benchmark, should be run manually")
+    @Test
+    fun `measure UuidDiffer and PathDiffer`() {
+        // arrange
+        val lhsRaw = newRawDatabase(LARGE_GROUP_COUNT, LARGE_ENTRIES_PER_GROUP)
+        val lhs = newDatabase(lhsRaw)
+        val rhs = newDatabase(modify(lhsRaw))
+
+        // act
+        val pathNanos = measure { diffWithPathDiffer(lhs, rhs) }
+        val uuidNanos = measure { diffWithUuidDiffer(lhs, rhs) }
+
+        println(
+            "diff: entries=${LARGE_GROUP_COUNT * LARGE_ENTRIES_PER_GROUP}, " +
+                "PathDiffer=${pathNanos / NANOS_IN_MILLIS}ms, " +
+                "UuidDiffer=${uuidNanos / NANOS_IN_MILLIS}ms"
+        )
+    }
+
+    private fun diffWithPathDiffer(
+        lhs: KotpassDatabase,
+        rhs: KotpassDatabase
+    ): List<DiffEvent<EncryptedDatabaseElement>> {
+        return PathDiffer().diff(
+            lhs = lhs.buildNodeTree(),
+            rhs = rhs.buildNodeTree()
+        )
+            .map { event -> event.toInternalDiffEvent() }
+    }
+
+    private fun diffWithUuidDiffer(
+        lhs: KotpassDatabase,
+        rhs: KotpassDatabase
+    ): List<DiffEvent<EncryptedDatabaseElement>> {
+        // New snapshots are created, so content hashes are not reused between iterations
+        return runBlocking(Dispatchers.Default) {
+            UuidDiffer().diff(
+                newDatabase(lhs.getRawDatabase()).getSnapshot(),
+                newDatabase(rhs.getRawDatabase()).getSnapshot()
+            )
+        }
+    }
+
+    private fun measure(block: () -> Unit): Long {
+        repeat(WARMUP_ITERATIONS) {
+            block.invoke()
+        }
+
+        val start = System.nanoTime()
+        repeat(ITERATIONS) {
+            block.invoke()
+        }
+        val end = System.nanoTime()
+
+        return (end - start) / ITERATIONS
+    }
+
+    /**
+     * Changes a field in the first entry of several groups, removes the last entry
+     * of several groups and inserts a new entry into several groups
+     */
+    private fun modify(db: KeePassDatabase): KeePassDatabase {
+        var result = db
+        val groups = db.content.group.groups
+
+        for (group in groups.take(MODIFIED_GROUP_COUNT)) {
+            result = result.modifyGroup(group.uuid) {
+                val firstEntry = entries.first()
+                val changedEntry = firstEntry.copy(
+                    fields = EntryFields(firstEntry.fields + NEW_FIELD)
+                )
+
+                copy(entries = listOf(changedEntry) + entries.drop(1).dropLast(1))
+            }
+        }
+
+        for (group in groups.takeLast(MODIFIED_GROUP_COUNT)) {
+            result = result.modifyGroup(group.uuid) {
+                copy(entries = entries + newRawEntry(title = "Inserted into ${group.name}"))
+            }
+        }
+
+        return result
+    }
+
+    private fun DiffEvent<EncryptedDatabaseElement>.describe(): String {
+        return when (this) {
+            is DiffEvent.Insert -> "+ $parentUuid ${entity.describe()}"
+            is DiffEvent.Delete -> "- $parentUuid ${entity.describe()}"
+            is DiffEvent.Update -> {
+                "~ $oldParentUuid $newParentUuid ${oldEntity.describe()} ${newEntity.describe()}"
+            }
+        }
+    }
+
+    private fun EncryptedDatabaseElement.describe(): String {
+        return when (this) {
+            is Group -> "group $uid"
+            is Note -> "note $uid"
+            is Property -> "field $name=$value"
+            else -> throw IllegalStateException()
+        }
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 20
+        private const val ENTRIES_PER_GROUP = 10
+        private const val LARGE_GROUP_COUNT = 500
+        private const val LARGE_ENTRIES_PER_GROUP = 100
+        private const val MODIFIED_GROUP_COUNT = 10
+        private const val WARMUP_ITERATIONS = 2
+        private const val ITERATIONS = 5
+        private const val NANOS_IN_MILLIS = 1_000_000L
+        private val NEW_FIELD = PropertyType.USER_NAME.propertyName to EntryValue.Plain("changed")
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.ivanovsky.passnotes.domain.usecases.diff
+
+import app.keemobile.kotpass.database.KeePassDatabase
+import app.keemobile.kotpass.database.modifiers.modifyGroup
+import app.keemobile.kotpass.models.EntryFields
+import app.keemobile.kotpass.models.EntryValue
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseElement
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawEntry
+import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffEvent
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class UuidDifferTest {
+
+    @Test
+    fun `diff should be empty for the same databases`() {
+        // arrange
+        val rawDb = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+
+        // act
+        val diff = diff(rawDb, rawDb)
+
+        // assert
+        assertThat(diff).isEmpty()
+    }
+
+    @Test
+    fun `diff should return changed field of entry`() {
+        // arrange
+        val lhs = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val group = lhs.content.group.groups.first()
+        val entry = group.entries.first()
+        val rhs = lhs.modifyGroup(group.uuid) {
+            copy(
+                entries = entries.map { item ->
+                    if (item.uuid == entry.uuid) {
+                        item.copy(fields = EntryFields(item.fields + NEW_FIELD))
+                    } else {
+                        item
+                    }
+                }
+            )
+        }
+
+        // act
+        val diff = diff(lhs, rhs)
+
+        // assert
+        assertThat(diff).hasSize(1)
+        val event = diff.first() as DiffEvent.Update
+        assertThat(event.oldParentUuid).isEqualTo(entry.uuid)
+        assertThat(event.newParentUuid).isEqualTo(entry.uuid)
+        assertThat((event.newEntity as Property).name).isEqualTo(USER_NAME)
+        assertThat((event.newEntity as Property).value).isEqualTo(VALUE)
+    }
+
+    @Test
+    fun `diff should return inserted and deleted entries`() {
+        // arrange
+        val lhs = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val group = lhs.content.group.groups.first()
+        val deletedEntry = group.entries.first()
+        val insertedEntry = newRawEntry(title = "Inserted")
+        val rhs = lhs.modifyGroup(group.uuid) {
+            copy(entries = entries.drop(1) + insertedEntry)
+        }
+
+        // act
+        val diff = diff(lhs, rhs)
+
+        // assert
+        assertThat(diff.map { event -> event.describe() }).containsExactly(
+            "- ${group.uuid} ${deletedEntry.uuid}",
+            "+ ${group.uuid} ${insertedEntry.uuid}"
+        )
+    }
+
+    @Test
+    fun `diff should return moved entry as deleted and inserted`() {
+        // arrange
+        val lhs = newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP)
+        val (source, destination) = lhs.content.group.groups
+        val movedEntry = source.entries.first()
+        val rhs = lhs
+            .modifyGroup(source.uuid) {
+                copy(entries = entries.drop(1))
+            }
+            .modifyGroup(destination.uuid) {
+                copy(entries = entries + movedEntry)
+            }
+
+        // act
+        val diff = diff(lhs, rhs)
+
+        // assert
+        assertThat(diff.map { event -> event.describe() }).containsExactly(
+            "- ${source.uuid} ${movedEntry.uuid}",
+            "+ ${destination.uuid} ${movedEntry.uuid}"
+        )
+    }
+
+    private fun diff(
+        lhs: KeePassDatabase,
+        rhs: KeePassDatabase
+    ): List<DiffEvent<EncryptedDatabaseElement>> {
+        return runBlocking {
+            UuidDiffer(chunkSize = CHUNK_SIZE).diff(
+                newDatabase(lhs).getSnapshot(),
+                newDatabase(rhs).getSnapshot()
+            )
+        }
+    }
+
+    private fun DiffEvent<EncryptedDatabaseElement>.describe(): String {
+        return when (this) {
+            is DiffEvent.Insert -> "+ $parentUuid ${(entity as Note).uid}"
+            is DiffEvent.Delete -> "- $parentUuid ${(entity as Note).uid}"
+            is DiffEvent.Update -> throw IllegalStateException()
+        }
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 3
+        private const val ENTRIES_PER_GROUP = 5
+        private const val CHUNK_SIZE = 2
+        private const val VALUE = "changed"
+        private val USER_NAME = PropertyType.USER_NAME.propertyName
+        private val NEW_FIELD = USER_NAME to EntryValue.Plain(VALUE)
+    }
+}
\ No newline at end of file
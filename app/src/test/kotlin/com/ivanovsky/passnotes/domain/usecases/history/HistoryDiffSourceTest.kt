@@ -0,0 +1,84 @@
+package com.ivanovsky.passnotes.domain.usecases.history
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.TEST_DISPATCHER_PROVIDER
+import com.ivanovsky.passnotes.data.entity.Note
+import com.ivanovsky.passnotes.data.entity.Property
+import com.ivanovsky.passnotes.data.entity.PropertyType
+import com.ivanovsky.passnotes.domain.usecases.diff.entity.DiffEvent
+import java.util.Date
+import java.util.UUID
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+class HistoryDiffSourceTest {
+
+    @Test
+    fun `getItem should return diff between consecutive versions`() {
+        // arrange
+        val versions = newVersions("Third", "Second", "First")
+        val source = HistoryDiffSource(versions, TEST_DISPATCHER_PROVIDER)
+
+        // act
+        val item = runBlocking { source.getItem(1) }
+
+        // assert
+        assertThat(source.size).isEqualTo(2)
+        assertThat(item.newNote).isSameInstanceAs(versions[1])
+        assertThat(item.oldNote).isSameInstanceAs(versions[2])
+
+        val event = item.diffEvents.single() as DiffEvent.Update
+        assertThat(event.oldEntity.value).isEqualTo("First")
+        assertThat(event.newEntity.value).isEqualTo("Second")
+    }
+
+    @Test
+    fun `getItem should reuse cached items and recalculate evicted items`() {
+        // arrange
+        val versions = newVersions("Third", "Second", "First")
+        val source = HistoryDiffSource(versions, TEST_DISPATCHER_PROVIDER, cacheSize = 1)
+
+        // act
+        val first = runBlocking { source.getItem(0) }
+        val cached = runBlocking { source.getItem(0) }
+        runBlocking { source.getItem(1) }
+        val evicted = runBlocking { source.getItem(0) }
+
+        // assert
+        assertThat(cached).isSameInstanceAs(first)
+        assertThat(evicted).isNotSameInstanceAs(first)
+        assertThat(evicted).isEqualTo(first)
+    }
+
+    private fun newVersions(vararg userNames: String): List<Note> {
+        val uid = UUID.randomUUID()
+        val groupUid = UUID.randomUUID()
+
+        return userNames.map { userName ->
+            Note(
+                uid = uid,
+                groupUid = groupUid,
+                created = Date(),
+                modified = Date(),
+                expiration = null,
+                title = TITLE,
+                properties = listOf(
+                    Property(
+                        type = PropertyType.TITLE,
+                        name = PropertyType.TITLE.propertyName,
+                        value = TITLE
+                    ),
+                    Property(
+                        type = PropertyType.USER_NAME,
+                        name = PropertyType.USER_NAME.propertyName,
+                        value = userName
+                    )
+                )
+            )
+        }
+    }
+
+    companion object {
+        private const val TITLE = "Title"
+    }
+}
\ No newline at end of file
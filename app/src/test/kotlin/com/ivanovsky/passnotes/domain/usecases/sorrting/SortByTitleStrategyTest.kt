@@ -0,0 +1,89 @@
+package com.ivanovsky.passnotes.domain.usecases.sorrting
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.Group
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.domain.LocaleProvider
+import com.ivanovsky.passnotes.domain.entity.SortDirection
+import io.mockk.every
+import io.mockk.mockk
+import java.util.Date
+import java.util.Locale
+import java.util.UUID
+import org.junit.Test
+
+class SortByTitleStrategyTest {
+
+    private val localeProvider: LocaleProvider = mockk {
+        every { getSystemLocale() } returns Locale.ENGLISH
+    }
+
+    @Test
+    fun `sort should order titles according to locale`() {
+        // arrange
+        val strategy = SortByTitleStrategy(TitleCollator(localeProvider))
+        val items = listOf("beta", "Ápple", "alpha2", "Alpha").map { newNote(it) }
+
+        // act
+        val result = strategy.sort(items, SortDirection.ASCENDING, isGroupsAtStart = false)
+
+        // assert
+        assertThat(result.titles()).containsExactly("Alpha", "alpha2", "Ápple", "beta").inOrder()
+    }
+
+    @Test
+    fun `sort should place groups at start`() {
+        // arrange
+        val strategy = SortByTitleStrategy(TitleCollator(localeProvider))
+        val items = listOf(
+            newNote("a"),
+            newGroup("b"),
+            newNote("c"),
+            newGroup("d")
+        )
+
+        // act
+        val result = strategy.sort(items, SortDirection.DESCENDING, isGroupsAtStart = true)
+
+        // assert
+        assertThat(result.titles()).containsExactly("d", "b", "c", "a").inOrder()
+    }
+
+    private fun List<EncryptedDatabaseEntry>.titles(): List<String> {
+        return map { entry ->
+            when (entry) {
+                is Group -> entry.title
+                is NoteSummary -> entry.title
+                else -> throw IllegalStateException()
+            }
+        }
+    }
+
+    private fun newNote(title: String): NoteSummary {
+        return NoteSummary(
+            uid = UUID.randomUUID(),
+            groupUid = UUID.randomUUID(),
+            created = Date(),
+            modified = Date(),
+            expiration = null,
+            title = title,
+            description = "",
+            isOtpEnabled = false,
+            attachmentCount = 0
+        )
+    }
+
+    private fun newGroup(title: String): Group {
+        return Group(
+            uid = UUID.randomUUID(),
+            parentUid = null,
+            title = title,
+            groupCount = 0,
+            noteCount = 0,
+            autotypeEnabled = InheritableBooleanOption.ENABLED,
+            searchEnabled = InheritableBooleanOption.ENABLED
+        )
+    }
+}
\ No newline at end of file
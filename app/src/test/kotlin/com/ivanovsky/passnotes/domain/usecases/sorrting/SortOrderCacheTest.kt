@@ -0,0 +1,137 @@
+package com.ivanovsky.passnotes.domain.usecases.sorrting
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.GroupEntity
+import com.ivanovsky.passnotes.data.entity.InheritableBooleanOption
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newDatabase
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newNote
+import com.ivanovsky.passnotes.data.repository.keepass.kotpass.KotpassTestData.newRawDatabase
+import com.ivanovsky.passnotes.domain.entity.SortDirection
+import com.ivanovsky.passnotes.domain.entity.SortType
+import java.util.UUID
+import org.junit.Test
+
+class SortOrderCacheTest {
+
+    @Test
+    fun `get should return uids of changed notes of the group`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val key = newKey(groupUid)
+        val cache = SortOrderCache()
+        cache.put(db, key, newList(db, groupUid), cache.getChangeCount(db))
+
+        // act
+        val noteUid = db.noteDao.insert(newNote(groupUid, "Note")).obj
+        val entries = cache.get(db, key)
+        val changeCount = cache.getChangeCount(db)
+        cache.onListUpdated(db, key, entries?.changedUids.orEmpty(), changeCount)
+        val otherEntries = cache.get(db, key)
+
+        // assert
+        assertThat(entries?.changedUids).containsExactly(noteUid)
+        assertThat(otherEntries?.changedUids).isEmpty()
+    }
+
+    @Test
+    fun `get should keep uids of changed notes until list is updated`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val key = newKey(groupUid)
+        val cache = SortOrderCache()
+        cache.put(db, key, newList(db, groupUid), cache.getChangeCount(db))
+        val noteUid = db.noteDao.insert(newNote(groupUid, "Note")).obj
+
+        // act
+        val entries = cache.get(db, key)
+        val changeCount = cache.getChangeCount(db)
+        val otherNoteUid = db.noteDao.insert(newNote(groupUid, "Other Note")).obj
+        cache.onListUpdated(db, key, entries?.changedUids.orEmpty(), changeCount)
+        val otherEntries = cache.get(db, key)
+
+        // assert
+        assertThat(entries?.changedUids).containsExactly(noteUid)
+        assertThat(otherEntries?.changedUids).containsExactly(noteUid, otherNoteUid)
+    }
+
+    @Test
+    fun `get should return null after groups are changed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val rootUid = db.getRawRootGroup().uuid
+        val key = newKey(rootUid)
+        val cache = SortOrderCache()
+        cache.put(db, key, newList(db, rootUid), cache.getChangeCount(db))
+
+        // act
+        db.groupDao.insert(
+            GroupEntity(
+                parentUid = rootUid,
+                title = "Group",
+                autotypeEnabled = InheritableBooleanOption.ENABLED,
+                searchEnabled = InheritableBooleanOption.ENABLED
+            )
+        )
+
+        // assert
+        assertThat(cache.get(db, key)).isNull()
+    }
+
+    @Test
+    fun `get should return null if notes of child group are changed`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val rootUid = db.getRawRootGroup().uuid
+        val childUid = db.getRawRootGroup().groups.first().uuid
+        val key = newKey(rootUid)
+        val cache = SortOrderCache()
+        cache.put(db, key, newList(db, rootUid), cache.getChangeCount(db))
+
+        // act
+        db.noteDao.insert(newNote(childUid, "Note"))
+
+        // assert
+        assertThat(cache.get(db, key)).isNull()
+    }
+
+    @Test
+    fun `put should ignore entries if database was changed meanwhile`() {
+        // arrange
+        val db = newDatabase(newRawDatabase(GROUP_COUNT, ENTRIES_PER_GROUP))
+        val groupUid = db.getRawRootGroup().groups.first().uuid
+        val key = newKey(groupUid)
+        val cache = SortOrderCache()
+        val changeCount = cache.getChangeCount(db)
+
+        // act
+        db.noteDao.insert(newNote(groupUid, "Note"))
+        cache.put(db, key, newList(db, groupUid), changeCount)
+
+        // assert
+        assertThat(cache.get(db, key)).isNull()
+    }
+
+    private fun newList(db: KotpassDatabase, groupUid: UUID): SortedEntryList {
+        val entries = db.groupDao.getChildGroups(groupUid).obj +
+            db.noteDao.getSummariesByGroupUid(groupUid).obj
+
+        return SortedEntryList(entries, GROUPS_FIRST_COMPARATOR)
+    }
+
+    private fun newKey(groupUid: UUID): SortOrderCache.Key {
+        return SortOrderCache.Key(
+            groupUid = groupUid,
+            sortType = SortType.TITLE,
+            sortDirection = SortDirection.ASCENDING,
+            isGroupsAtStart = true
+        )
+    }
+
+    companion object {
+        private const val GROUP_COUNT = 3
+        private const val ENTRIES_PER_GROUP = 5
+    }
+}
\ No newline at end of file
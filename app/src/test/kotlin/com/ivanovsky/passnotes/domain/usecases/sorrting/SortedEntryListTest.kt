@@ -0,0 +1,154 @@
+package com.ivanovsky.passnotes.domain.usecases.sorrting
+
+import com.google.common.truth.Truth.assertThat
+import com.ivanovsky.passnotes.data.entity.EncryptedDatabaseEntry
+import com.ivanovsky.passnotes.data.entity.NoteSummary
+import com.ivanovsky.passnotes.domain.entity.ListChange
+import java.util.Date
+import java.util.Random
+import java.util.UUID
+import org.junit.Test
+
+class SortedEntryListTest {
+
+    @Test
+    fun `update should insert entry into place`() {
+        // arrange
+        val entries = listOf(newNote("a"), newNote("c"), newNote("e"))
+        val list = SortedEntryList(entries, COMPARATOR)
+        val newEntry = newNote("d")
+
+        // act
+        val changes = list.update(entries + newEntry, setOf(newEntry.uid))
+
+        // assert
+        assertThat(list.getEntries().titles()).containsExactly("a", "c", "d", "e").inOrder()
+        assertThat(changes).containsExactly(ListChange.Inserted(2))
+    }
+
+    @Test
+    fun `update should remove entry`() {
+        // arrange
+        val entries = listOf(newNote("a"), newNote("c"), newNote("e"))
+        val list = SortedEntryList(entries, COMPARATOR)
+
+        // act
+        val changes = list.update(entries - entries[1], setOf(entries[1].uid))
+
+        // assert
+        assertThat(list.getEntries().titles()).containsExactly("a", "e").inOrder()
+        assertThat(changes).containsExactly(ListChange.Removed(1))
+    }
+
+    @Test
+    fun `update should move changed entry`() {
+        // arrange
+        val entries = listOf(newNote("a"), newNote("c"), newNote("e"))
+        val list = SortedEntryList(entries, COMPARATOR)
+        val changedEntry = entries[0].copy(title = "f")
+
+        // act
+        val changes = list.update(
+            listOf(changedEntry, entries[1], entries[2]),
+            setOf(changedEntry.uid)
+        )
+
+        // assert
+        assertThat(list.getEntries().titles()).containsExactly("c", "e", "f").inOrder()
+        assertThat(changes)
+            .containsExactly(ListChange.Moved(0, 2), ListChange.Changed(2))
+            .inOrder()
+    }
+
+    @Test
+    fun `update should keep position of changed entry with the same key`() {
+        // arrange
+        val entries = listOf(newNote("a"), newNote("b"), newNote("b"), newNote("c"))
+        val list = SortedEntryList(entries, COMPARATOR)
+        val changedEntry = entries[1].copy(description = "changed")
+
+        // act
+        val changes = list.update(
+            listOf(entries[0], changedEntry, entries[2], entries[3]),
+            setOf(changedEntry.uid)
+        )
+
+        // assert
+        assertThat(list.getEntries())
+            .containsExactly(entries[0], changedEntry, entries[2], entries[3])
+            .inOrder()
+        assertThat(changes).containsExactly(ListChange.Changed(1))
+    }
+
+    @Test
+    fun `update should keep the same order as full sort`() {
+        // arrange
+        val random = Random(SEED)
+        var entries: List<NoteSummary> = (0 until ENTRY_COUNT)
+            .map { newNote(random.nextInt(TITLE_RANGE).toString()) }
+            .sortedWith(COMPARATOR)
+        val list = SortedEntryList(entries, COMPARATOR)
+
+        repeat(ITERATIONS) {
+            val removedEntry = entries[random.nextInt(entries.size)]
+            val oldEntry = entries[random.nextInt(entries.size)]
+            val changedEntry = oldEntry.copy(title = random.nextInt(TITLE_RANGE).toString())
+            val insertedEntry = newNote(random.nextInt(TITLE_RANGE).toString())
+
+            // Changed entry with the same title keeps its position, otherwise changed and
+            // inserted entries are placed after equal entries
+            entries = if (COMPARATOR.compare(oldEntry, changedEntry) == 0) {
+                val otherEntries = entries
+                    .filter { entry ->
+                        entry.uid != removedEntry.uid || entry.uid == changedEntry.uid
+                    }
+                    .map { entry -> if (entry.uid == changedEntry.uid) changedEntry else entry }
+                (otherEntries + insertedEntry).sortedWith(COMPARATOR)
+            } else {
+                val otherEntries = entries
+                    .filter { entry ->
+                        entry.uid != removedEntry.uid && entry.uid != changedEntry.uid
+                    }
+                (otherEntries + changedEntry + insertedEntry).sortedWith(COMPARATOR)
+            }
+
+            // act
+            list.update(
+                entries,
+                linkedSetOf(removedEntry.uid, changedEntry.uid, insertedEntry.uid)
+            )
+
+            // assert
+            assertThat(list.getEntries().titles())
+                .containsExactlyElementsIn(entries.titles())
+                .inOrder()
+        }
+    }
+
+    private fun List<EncryptedDatabaseEntry>.titles(): List<String> {
+        return map { entry -> entry.getTitle() }
+    }
+
+    private fun newNote(title: String): NoteSummary {
+        return NoteSummary(
+            uid = UUID.randomUUID(),
+            groupUid = GROUP_UID,
+            created = Date(),
+            modified = Date(),
+            expiration = null,
+            title = title,
+            description = "",
+            isOtpEnabled = false,
+            attachmentCount = 0
+        )
+    }
+
+    companion object {
+        private const val SEED = 42L
+        private const val ENTRY_COUNT = 200
+        private const val TITLE_RANGE = 50
+        private const val ITERATIONS = 100
+        private val GROUP_UID = UUID(0L, 1L)
+        private val COMPARATOR = compareBy<EncryptedDatabaseEntry> { entry -> entry.getTitle() }
+    }
+}
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.ivanovsky.passnotes.RobolectricApp
 import com.ivanovsky.passnotes.domain.entity.ParsedUrl
 import com.ivanovsky.passnotes.util.UrlUtils.SECRET_HOST_MASK
 import com.ivanovsky.passnotes.util.UrlUtils.extractCleanWebDomain
+import com.ivanovsky.passnotes.util.UrlUtils.extractHost
 import com.ivanovsky.passnotes.util.UrlUtils.formatSecretUrl
 import com.ivanovsky.passnotes.util.UrlUtils.parseUrl
 import org.junit.Test
@@ -37,6 +38,14 @@ class UrlUtilsTest {
         assertThat(extractCleanWebDomain("domain")).isEqualTo(null)
     }
 
+    @Test
+    fun `extractHost should return lower case host without user info and port`() {
+        assertThat(extractHost("https://Login.Domain.co.uk/path")).isEqualTo("login.domain.co.uk")
+        assertThat(extractHost("https://user@www.domain.com:8080")).isEqualTo("domain.com")
+        assertThat(extractHost("domain.com.")).isEqualTo("domain.com")
+        assertThat(extractHost("domain")).isEqualTo(null)
+    }
+
     @Test
     fun `parseUrl should parse url correctly`() {
         assertThat(parseUrl("domain.com/path"))